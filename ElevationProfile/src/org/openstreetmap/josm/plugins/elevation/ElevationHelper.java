@@ -12,6 +12,7 @@ import org.openstreetmap.josm.data.SystemOfMeasurement;
 import org.openstreetmap.josm.data.coor.ILatLon;
 import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.gpx.WayPoint;
+import org.openstreetmap.josm.plugins.elevation.HgtReader.Interpolation;
 import org.openstreetmap.josm.plugins.elevation.gpx.GeoidCorrectionKind;
 import org.openstreetmap.josm.tools.Logging;
 
@@ -164,20 +165,31 @@ public final class ElevationHelper {
      *            The coordinate.
      * @return The z coordinate or {@link Double#NaN}, if elevation value could not be obtained
      *         not height attribute.
+     * @see #getSrtmElevations(ILatLon...)
      */
     public static double getSrtmElevation(ILatLon ll) {
         if (ll != null) {
-            // Try to read data from SRTM file
-            // TODO: Option to switch this off
-            double eleHgt = HgtReader.getElevationFromHgt(ll);
-
-            if (isValidElevation(eleHgt)) {
-                return eleHgt;
-            }
+            return getSrtmElevations(ll)[0];
         }
         return NO_ELEVATION;
     }
 
+    /**
+     * Gets the SRTM elevations (Z coordinates) of the given coordinates, interpolated bilinearly between
+     * the samples of the SRTM files. Prefer this method over {@link #getSrtmElevation(ILatLon)} to read
+     * many coordinates, each SRTM file is then looked up only once.
+     *
+     * @param coors
+     *            The coordinates.
+     * @return The z coordinates, in the order of {@code coors}. A value is {@link Double#NaN},
+     *         if elevation value could not be obtained.
+     */
+    public static double[] getSrtmElevations(ILatLon... coors) {
+        // Try to read data from SRTM files
+        // TODO: Option to switch this off
+        return HgtReader.readElevations(coors, Interpolation.BILINEAR);
+    }
+
     /**
      * Get the bounds for the pixel elevation for the latitude
      * @param location The location to get
@@ -202,8 +214,8 @@ public final class ElevationHelper {
         LatLon tl = bounds.getMin();
         LatLon br = bounds.getMax();
 
-        return isValidElevation(getSrtmElevation(tl)) &&
-                isValidElevation(getSrtmElevation(br));
+        double[] ele = getSrtmElevations(tl, br);
+        return isValidElevation(ele[0]) && isValidElevation(ele[1]);
     }
 
     /*
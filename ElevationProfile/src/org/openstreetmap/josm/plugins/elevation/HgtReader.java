@@ -5,21 +5,26 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
-import java.nio.file.Paths;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import org.apache.commons.compress.utils.IOUtils;
 import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.Preferences;
 import org.openstreetmap.josm.data.coor.ILatLon;
+import org.openstreetmap.josm.data.gpx.IGpxTrackSegment;
 import org.openstreetmap.josm.io.Compression;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.CheckParameterUtil;
 import org.openstreetmap.josm.tools.Logging;
 
@@ -27,6 +32,10 @@ import org.openstreetmap.josm.tools.Logging;
  *  Class HgtReader reads data from SRTM HGT files. Currently this class is restricted to a resolution of 3 arc seconds.
  *
  *  SRTM data files are available at the <a href="http://dds.cr.usgs.gov/srtm/version2_1/SRTM3">NASA SRTM site</a>
+ *  <p>
+ *  Uncompressed files are memory-mapped, compressed ones are decompressed once to the JOSM cache directory first.
+ *  At most {@code elevation.hgt.max-tiles} tiles are kept mapped, least recently used ones are evicted first.
+ *  Evicted tiles are mapped again from the file they have been read from, including files imported by the user.
  *  @author Oliver Wieland &lt;oliver.wieland@online.de&gt;
  */
 public class HgtReader {
@@ -38,57 +47,122 @@ public class HgtReader {
     // alter these values for different SRTM resolutions
     public static final int HGT_VOID = Short.MIN_VALUE; // magic number which indicates 'void data' in HGT file
 
-    private static final HashMap<String, short[][]> cache = new HashMap<>();
+    /**
+     * Interpolation methods between HGT samples.
+     * @see HgtReader#readElevations(ILatLon[], Interpolation)
+     */
+    public enum Interpolation {
+        /** Value of the nearest sample, as returned by {@link HgtReader#readElevation(ILatLon)} */
+        NEAREST,
+        /** Bilinear interpolation of the 4 surrounding samples */
+        BILINEAR,
+        /** Bicubic (Catmull-Rom) interpolation of the 16 surrounding samples */
+        BICUBIC
+    }
+
+    /** Default maximum number of mapped tiles */
+    private static final int DEFAULT_MAX_TILES = 16;
+
+    private static final Map<String, HgtTile> cache = new LinkedHashMap<String, HgtTile>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, HgtTile> eldest) {
+            return size() > getMaxTiles();
+        }
+    };
+
+    /** Files that have been searched but are not there */
+    private static final Set<String> missing = new HashSet<>();
+
+    /** Files the tiles have been read from, so that evicted tiles can be mapped again */
+    private static final Map<String, File> sources = new HashMap<>();
+
+    private static int getMaxTiles() {
+        return Math.max(1, Config.getPref().getInt("elevation.hgt.max-tiles", DEFAULT_MAX_TILES));
+    }
 
     public static double getElevationFromHgt(ILatLon coor) {
+        HgtTile tile = loadTile(coor, getHgtFileName(coor));
+        return tile == null ? ElevationHelper.NO_ELEVATION : readSample(tile, coor);
+    }
+
+    /**
+     * Returns the tile with the given file name, searching and mapping the HGT file if needed.
+     * @param coor the coordinate for which the tile is needed, used in error messages
+     * @param file the HGT file name
+     * @return the tile, or {@code null} if the file is missing or cannot be read
+     */
+    private static HgtTile loadTile(ILatLon coor, String file) {
         try {
-            String file = getHgtFileName(coor);
             // given area in cache?
-            if (!cache.containsKey(file)) {
-
-                // fill initial cache value. If no file is found, then
-                // we use it as a marker to indicate 'file has been searched
-                // but is not there'
-                cache.put(file, null);
-                // Try all resource directories
-                for (String location : Preferences.getAllPossiblePreferenceDirs()) {
-                    String fullPath = new File(location + File.separator + "elevation", file).getPath();
-                    File f = new File(fullPath);
-                    if (!f.exists()) {
-                        for (String ext : COMPRESSION_EXT) {
-                            f = new File(fullPath + "." + ext);
-                            if (f.exists()) break;
-                        }
-                    }
-                    if (f.exists()) {
-                        read(f);
-                        break;
-                    }
+            if (!isKnown(file)) {
+                // mark the file as missing first, so that an unreadable file is not searched again.
+                // This mark is removed once the file has been read successfully
+                synchronized (cache) {
+                    missing.add(file);
+                }
+                File f = getSource(file);
+                if (f == null) {
+                    f = findHgtFile(file);
+                }
+                if (f != null) {
+                    read(f);
                 }
             }
-
-            // read elevation value
-            return readElevation(coor, file);
+            return getTile(file);
         } catch (FileNotFoundException e) {
             Logging.error("Get elevation from HGT " + coor + " failed: => " + e.getMessage());
             // no problem... file not there
-            return ElevationHelper.NO_ELEVATION;
+            return null;
         } catch (Exception ioe) {
             // oops...
             Logging.error(ioe);
             // fallback
-            return ElevationHelper.NO_ELEVATION;
+            return null;
+        }
+    }
+
+    private static boolean isKnown(String file) {
+        synchronized (cache) {
+            return cache.containsKey(file) || missing.contains(file);
         }
     }
 
+    private static File getSource(String file) {
+        synchronized (cache) {
+            return sources.get(file);
+        }
+    }
+
+    private static File findHgtFile(String file) {
+        // Try all resource directories
+        for (String location : Preferences.getAllPossiblePreferenceDirs()) {
+            String fullPath = new File(location + File.separator + "elevation", file).getPath();
+            File f = new File(fullPath);
+            if (!f.exists()) {
+                for (String ext : COMPRESSION_EXT) {
+                    f = new File(fullPath + "." + ext);
+                    if (f.exists()) break;
+                }
+            }
+            if (f.exists()) {
+                return f;
+            }
+        }
+        return null;
+    }
+
     public static Bounds read(File file) throws IOException {
         String location = file.getName();
         for (String ext : COMPRESSION_EXT) {
             location = location.replaceAll("\\." + ext + "$", "");
         }
-        short[][] sb = readHgtFile(file.getPath());
+        HgtTile tile = HgtTile.map(getUncompressedFile(file, location));
         // Overwrite the cache file (assume that is desired)
-        cache.put(location, sb);
+        synchronized (cache) {
+            cache.put(location, tile);
+            sources.put(location, file);
+            missing.remove(location);
+        }
         Pattern pattern = Pattern.compile("([NS])(\\d{2})([EW])(\\d{3})");
         Matcher matcher = pattern.matcher(location);
         if (matcher.lookingAt()) {
@@ -99,30 +173,50 @@ public class HgtReader {
         return null;
     }
 
-    private static short[][] readHgtFile(String file) throws IOException {
+    /**
+     * Returns an uncompressed version of the given HGT file, which can be memory-mapped.
+     * Compressed files are decompressed to the cache directory, unless this has already been done.
+     * @param file HGT file, compressed or not
+     * @param location name of the uncompressed HGT file
+     * @return the uncompressed HGT file
+     * @throws IOException if the file cannot be decompressed
+     */
+    private static Path getUncompressedFile(File file, String location) throws IOException {
         CheckParameterUtil.ensureParameterNotNull(file);
+        Path path = file.toPath();
+        if (location.equals(file.getName())) {
+            return path;
+        }
+        Path dir = Config.getDirs().getCacheDirectory(true).toPath().resolve("elevation");
+        Path target = dir.resolve(location);
+        if (Files.exists(target) && Files.getLastModifiedTime(target).compareTo(Files.getLastModifiedTime(path)) >= 0) {
+            return target;
+        }
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, location, ".tmp");
+        try (InputStream in = Compression.getUncompressedFileInputStream(path)) {
+            Files.copy(in, tmp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        return target;
+    }
 
-        short[][] data = null;
-
-        try (InputStream fis = Compression.getUncompressedFileInputStream(Paths.get(file))) {
-            // choose the right endianness
-            ByteBuffer bb = ByteBuffer.wrap(fis.readAllBytes());
-            bb.order(ByteOrder.BIG_ENDIAN);
-            int size = (int) Math.sqrt(bb.array().length / 2.0);
-            data = new short[size][size];
-            int x = 0;
-            int y = 0;
-            while (x < size) {
-                while (y < size) {
-                    data[x][y] = bb.getShort(2 * (x * size + y));
-                    y++;
-                }
-                x++;
-                y = 0;
-            }
+    private static HgtTile getTile(String fileName) {
+        synchronized (cache) {
+            return cache.get(fileName);
         }
+    }
 
-        return data;
+    /**
+     * Returns the number of currently mapped tiles.
+     * @return the number of currently mapped tiles
+     */
+    static int getCachedTileCount() {
+        synchronized (cache) {
+            return cache.size();
+        }
     }
 
     /**
@@ -147,14 +241,17 @@ public class HgtReader {
      */
     public static double readElevation(ILatLon coor, String fileName) {
 
-        short[][] sb = cache.get(fileName);
+        HgtTile tile = loadTile(coor, fileName);
 
-        if (sb == null) {
+        if (tile == null) {
             return ElevationHelper.NO_ELEVATION;
         }
+        return readSample(tile, coor);
+    }
 
-        int[] index = getIndex(coor, sb.length);
-        short ele = sb[index[0]][index[1]];
+    private static double readSample(HgtTile tile, ILatLon coor) {
+        int[] index = getIndex(coor, tile.getSize());
+        short ele = tile.get(index[0], index[1]);
 
         if (ele == HGT_VOID) {
             return ElevationHelper.NO_ELEVATION;
@@ -162,22 +259,156 @@ public class HgtReader {
         return ele;
     }
 
+    /**
+     * Reads the elevation values of all points of the given GPX track segment, using bilinear interpolation.
+     * @param segment the GPX track segment
+     * @return the elevation values, in the order of {@link IGpxTrackSegment#getWayPoints()}.
+     * A value is <code>Double.NaN</code> if no data is present for the point
+     * @see #readElevations(ILatLon[], Interpolation)
+     */
+    public static double[] readElevations(IGpxTrackSegment segment) {
+        return readElevations(segment.getWayPoints().toArray(new ILatLon[0]), Interpolation.BILINEAR);
+    }
+
+    /**
+     * Reads the elevation values for the given coordinates.
+     * <p>
+     * Coordinates are grouped by SRTM tile first, so that each tile is looked up and loaded only once,
+     * whatever the order of the coordinates.
+     * @param coors the coordinates to get the elevation data for
+     * @param interpolation the interpolation method
+     * @return the elevation values, in the order of {@code coors}.
+     * A value is <code>Double.NaN</code> if no data is present for the coordinate
+     */
+    public static double[] readElevations(ILatLon[] coors, Interpolation interpolation) {
+        CheckParameterUtil.ensureParameterNotNull(coors, "coors");
+        CheckParameterUtil.ensureParameterNotNull(interpolation, "interpolation");
+        double[] result = new double[coors.length];
+        // Sort coordinate indexes by tile, the tile key is stored in the upper 32 bits
+        long[] order = new long[coors.length];
+        for (int i = 0; i < coors.length; i++) {
+            long key = getTileKey(coors[i]);
+            order[i] = key << 32 | i;
+        }
+        Arrays.sort(order);
+
+        int i = 0;
+        while (i < order.length) {
+            long key = order[i] >>> 32;
+            int first = (int) order[i];
+            HgtTile tile = loadTile(coors[first], getHgtFileName(coors[first]));
+            for (; i < order.length && order[i] >>> 32 == key; i++) {
+                int index = (int) order[i];
+                result[index] = tile == null ? ElevationHelper.NO_ELEVATION : interpolate(tile, coors[index], interpolation);
+            }
+        }
+        return result;
+    }
+
+    private static long getTileKey(ILatLon coor) {
+        long lat = (long) Math.floor(coor.lat()) + 90;
+        long lon = (long) Math.floor(coor.lon()) + 180;
+        return lat * 361 + lon;
+    }
+
+    private static double interpolate(HgtTile tile, ILatLon coor, Interpolation interpolation) {
+        switch (interpolation) {
+        case BILINEAR:
+            return interpolateBilinear(tile, coor);
+        case BICUBIC:
+            return interpolateBicubic(tile, coor);
+        default:
+            return readSample(tile, coor);
+        }
+    }
+
+    /**
+     * Returns the fractional row of the given coordinate in the tile, row 0 being the northern edge.
+     */
+    private static double row(HgtTile tile, ILatLon coor) {
+        return (Math.floor(coor.lat()) + 1 - coor.lat()) * (tile.getSize() - 1);
+    }
+
+    /**
+     * Returns the fractional column of the given coordinate in the tile, column 0 being the western edge.
+     */
+    private static double col(HgtTile tile, ILatLon coor) {
+        return (coor.lon() - Math.floor(coor.lon())) * (tile.getSize() - 1);
+    }
+
+    private static double interpolateBilinear(HgtTile tile, ILatLon coor) {
+        int last = tile.getSize() - 1;
+        double row = row(tile, coor);
+        double col = col(tile, coor);
+        int r = Math.min((int) row, last - 1);
+        int c = Math.min((int) col, last - 1);
+        double dr = row - r;
+        double dc = col - c;
+        short s00 = tile.get(r, c);
+        short s01 = tile.get(r, c + 1);
+        short s10 = tile.get(r + 1, c);
+        short s11 = tile.get(r + 1, c + 1);
+        if (s00 == HGT_VOID || s01 == HGT_VOID || s10 == HGT_VOID || s11 == HGT_VOID) {
+            return readSample(tile, coor);
+        }
+        return (s00 * (1 - dc) + s01 * dc) * (1 - dr) + (s10 * (1 - dc) + s11 * dc) * dr;
+    }
+
+    private static double interpolateBicubic(HgtTile tile, ILatLon coor) {
+        int last = tile.getSize() - 1;
+        double row = row(tile, coor);
+        double col = col(tile, coor);
+        int r = Math.min((int) row, last - 1);
+        int c = Math.min((int) col, last - 1);
+        double dc = col - c;
+        double p0 = cubicRow(tile, Math.max(0, r - 1), c, dc);
+        double p1 = cubicRow(tile, r, c, dc);
+        double p2 = cubicRow(tile, r + 1, c, dc);
+        double p3 = cubicRow(tile, Math.min(last, r + 2), c, dc);
+        if (Double.isNaN(p0) || Double.isNaN(p1) || Double.isNaN(p2) || Double.isNaN(p3)) {
+            return interpolateBilinear(tile, coor);
+        }
+        return cubic(p0, p1, p2, p3, row - r);
+    }
+
+    /**
+     * Interpolates along a row of the tile, between columns c and c + 1.
+     * @return the interpolated value, or <code>Double.NaN</code> if one of the 4 samples is void
+     */
+    private static double cubicRow(HgtTile tile, int r, int c, double dc) {
+        short s0 = tile.get(r, Math.max(0, c - 1));
+        short s1 = tile.get(r, c);
+        short s2 = tile.get(r, c + 1);
+        short s3 = tile.get(r, Math.min(tile.getSize() - 1, c + 2));
+        if (s0 == HGT_VOID || s1 == HGT_VOID || s2 == HGT_VOID || s3 == HGT_VOID) {
+            return Double.NaN;
+        }
+        return cubic(s0, s1, s2, s3, dc);
+    }
+
+    /**
+     * Catmull-Rom spline between p1 (t = 0) and p2 (t = 1).
+     */
+    private static double cubic(double p0, double p1, double p2, double p3, double t) {
+        return p1 + 0.5 * t * (p2 - p0 + t * (2 * p0 - 5 * p1 + 4 * p2 - p3 + t * (3 * (p1 - p2) + p3 - p0)));
+    }
+
     public static Optional<Bounds> getBounds(ILatLon location) {
         final String fileName = getHgtFileName(location);
-        final short[][] sb = cache.get(fileName);
+        final HgtTile tile = loadTile(location, fileName);
 
-        if (sb == null) {
+        if (tile == null) {
             return Optional.empty();
         }
 
         final double latDegrees = location.lat();
         final double lonDegrees = location.lon();
 
-        final float fraction = ((float) SRTM_EXTENT) / sb.length;
+        final float fraction = ((float) SRTM_EXTENT) / tile.getSize();
         final int latitude = (int) Math.floor(latDegrees) + (latDegrees < 0 ? 1 : 0);
         final int longitude = (int) Math.floor(lonDegrees) + (lonDegrees < 0 ? 1 : 0);
 
-        final int[] index = getIndex(location, sb.length);
+        final int[] index = getIndex(location, tile.getSize());
         final int latSign = latitude > 0 ? 1 : -1;
         final int lonSign = longitude > 0 ? 1 : -1;
         final double minLat = latitude + latSign * fraction * index[0];
@@ -254,6 +485,10 @@ public class HgtReader {
     }
 
     public static void clearCache() {
-        cache.clear();
+        synchronized (cache) {
+            cache.clear();
+            missing.clear();
+            sources.clear();
+        }
     }
 }
@@ -0,0 +1,64 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.elevation;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A single SRTM tile, memory-mapped from an uncompressed HGT file.
+ * <p>
+ * Samples are read directly from the mapped file, so a tile does not use any heap space besides this object.
+ * The mapping is released by the garbage collector once the tile is no longer referenced.
+ */
+final class HgtTile {
+
+    private final ShortBuffer data;
+    private final int size;
+
+    private HgtTile(ShortBuffer data, int size) {
+        this.data = data;
+        this.size = size;
+    }
+
+    /**
+     * Maps the given HGT file.
+     * @param file uncompressed HGT file
+     * @return the mapped tile
+     * @throws IOException if the file cannot be mapped or is not a valid HGT file
+     */
+    static HgtTile map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long length = channel.size();
+            int size = (int) Math.sqrt(length / 2.0);
+            if (size < 2 || 2L * size * size != length) {
+                throw new IOException("Invalid HGT file size " + length + ": " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            // HGT samples are big-endian signed 16-bit integers
+            return new HgtTile(buffer.order(ByteOrder.BIG_ENDIAN).asShortBuffer(), size);
+        }
+    }
+
+    /**
+     * Returns the number of samples per row and column.
+     * @return the number of samples per row and column
+     */
+    int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the raw sample at the given position.
+     * @param row row index, from north to south
+     * @param col column index, from west to east
+     * @return the elevation in meters, or {@link HgtReader#HGT_VOID}
+     */
+    short get(int row, int col) {
+        return data.get(row * size + col);
+    }
+}
@@ -3,6 +3,7 @@ package org.openstreetmap.josm.plugins.elevation.grid;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import org.openstreetmap.josm.data.coor.ILatLon;
@@ -51,6 +52,44 @@ public class EleVertex {
     }
 
     public List<EleVertex> divide() {
+        return divide(Collections.singletonList(this));
+    }
+
+    /**
+     * Divides each of the given vertices at the mid point of its longest edge.
+     * The SRTM elevations of all new points are read in one batch.
+     *
+     * @param list the vertices to divide
+     * @return the new vertices, two for each given vertex
+     */
+    public static List<EleVertex> divide(List<EleVertex> list) {
+        TriangleEdge[] longest = new TriangleEdge[list.size()];
+        List<ILatLon> mids = new ArrayList<>();
+        for (int n = 0; n < list.size(); n++) {
+            EleVertex vertex = list.get(n);
+            longest[n] = vertex.getLongestEdge();
+            if (longest[n].getDist() > MIN_DIST) {
+                mids.add(getMidLatLon(vertex.points[longest[n].getI()], vertex.points[longest[n].getJ()]));
+            }
+        }
+        double[] ele = ElevationHelper.getSrtmElevations(mids.toArray(new ILatLon[0]));
+
+        List<EleVertex> res = new ArrayList<>(2 * list.size());
+        int m = 0;
+        for (int n = 0; n < list.size(); n++) {
+            EleVertex vertex = list.get(n);
+            EleCoordinate pI = vertex.points[longest[n].getI()];
+            EleCoordinate pJ = vertex.points[longest[n].getJ()];
+            EleCoordinate pK = vertex.points[longest[n].getK()];
+            EleCoordinate newP = getMid(pI, pJ,
+                    longest[n].getDist() > MIN_DIST ? ele[m++] : ElevationHelper.NO_ELEVATION);
+            res.add(new EleVertex(pI, pK, newP));
+            res.add(new EleVertex(pJ, pK, newP));
+        }
+        return res;
+    }
+
+    private TriangleEdge getLongestEdge() {
         TriangleEdge[] edges = new TriangleEdge[NPOINTS];
 
         int k = 0;
@@ -66,18 +105,7 @@ public class EleVertex {
         // sort by distance
         Arrays.sort(edges);
         // pick the longest edge
-        TriangleEdge longest = edges[0];
-
-        EleCoordinate pI = points[longest.getI()];
-        EleCoordinate pJ = points[longest.getJ()];
-        EleCoordinate pK = points[longest.getK()];
-        EleCoordinate newP = getMid(pI, pJ);
-
-        List<EleVertex> res = new ArrayList<>();
-        res.add(new EleVertex(pI, pK, newP));
-        res.add(new EleVertex(pJ, pK, newP));
-
-        return res;
+        return edges[0];
     }
 
     /**
@@ -115,19 +143,27 @@ public class EleVertex {
      * @return the mid point
      */
     public EleCoordinate getMid(EleCoordinate c1, EleCoordinate c2) {
-        double x = (c1.getX() + c2.getX()) / 2.0;
-        double y = (c1.getY() + c2.getY()) / 2.0;
-
-        double z = (c1.getEle() + c2.getEle()) / 2.0;
+        double hgtZ = ElevationHelper.NO_ELEVATION;
         if (c1.greatCircleDistance((ILatLon) c2) > MIN_DIST) {
-            double hgtZ = ElevationHelper.getSrtmElevation(new LatLon(y, x));
+            hgtZ = ElevationHelper.getSrtmElevation(getMidLatLon(c1, c2));
+        }
+        return getMid(c1, c2, hgtZ);
+    }
 
-            if (ElevationHelper.isValidElevation(hgtZ)) {
-                z = hgtZ;
-            }
+    /**
+     * Gets the mid point of c1 and c2, at the given SRTM elevation or else at the mean elevation of c1 and c2.
+     */
+    private static EleCoordinate getMid(EleCoordinate c1, EleCoordinate c2, double hgtZ) {
+        LatLon mid = getMidLatLon(c1, c2);
+        double z = (c1.getEle() + c2.getEle()) / 2.0;
+        if (ElevationHelper.isValidElevation(hgtZ)) {
+            z = hgtZ;
         }
+        return new EleCoordinate(mid, z);
+    }
 
-        return new EleCoordinate(y, x, z);
+    private static LatLon getMidLatLon(EleCoordinate c1, EleCoordinate c2) {
+        return new LatLon((c1.getY() + c2.getY()) / 2.0, (c1.getX() + c2.getX()) / 2.0);
     }
 
     /**
@@ -9,6 +9,8 @@ import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.BlockingDeque;
 import java.util.concurrent.LinkedBlockingDeque;
 
@@ -80,13 +82,16 @@ public class ElevationGridTile extends Tile {
         // We abuse the loadImage method to render the vertices...
         //
         while (!toDo.isEmpty()) {
-            EleVertex vertex = toDo.poll();
-
-            if (vertex.isFinished()) {
-                vertices.add(vertex);
-            } else {
-                toDo.addAll(vertex.divide());
+            // divide all unfinished vertices at once, so that the elevations of the new points are read in one batch
+            List<EleVertex> toDivide = new ArrayList<>();
+            for (EleVertex vertex = toDo.poll(); vertex != null; vertex = toDo.poll()) {
+                if (vertex.isFinished()) {
+                    vertices.add(vertex);
+                } else {
+                    toDivide.add(vertex);
+                }
             }
+            toDo.addAll(EleVertex.divide(toDivide));
         }
         setLoaded(true);
     }
@@ -119,20 +124,19 @@ public class ElevationGridTile extends Tile {
         LatLon h1 = new LatLon(min.lat(), max.lon());
         LatLon h2 = new LatLon(max.lat(), min.lon());
 
-        double eleMin = ElevationHelper.getSrtmElevation(min);
-        double eleMax = ElevationHelper.getSrtmElevation(max);
+        double[] ele = ElevationHelper.getSrtmElevations(min, h1, max, h2);
 
         // SRTM files present?
-        if (!ElevationHelper.isValidElevation(eleMax) || !ElevationHelper.isValidElevation(eleMin)) {
+        if (!ElevationHelper.isValidElevation(ele[2]) || !ElevationHelper.isValidElevation(ele[0])) {
             setError(tr("No SRTM data"));
             return;
         }
 
         // compute elevation coords
-        EleCoordinate p0 = new EleCoordinate(min, eleMin);
-        EleCoordinate p1 = new EleCoordinate(h1, ElevationHelper.getSrtmElevation(h1));
-        EleCoordinate p2 = new EleCoordinate(max, eleMax);
-        EleCoordinate p3 = new EleCoordinate(h2, ElevationHelper.getSrtmElevation(h2));
+        EleCoordinate p0 = new EleCoordinate(min, ele[0]);
+        EleCoordinate p1 = new EleCoordinate(h1, ele[1]);
+        EleCoordinate p2 = new EleCoordinate(max, ele[2]);
+        EleCoordinate p3 = new EleCoordinate(h2, ele[3]);
 
         // compute initial vertices
         EleVertex v1 = new EleVertex(p0, p1, p2);
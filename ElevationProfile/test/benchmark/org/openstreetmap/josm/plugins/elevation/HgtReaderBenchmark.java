@@ -0,0 +1,93 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.elevation;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.Preferences;
+import org.openstreetmap.josm.data.coor.ILatLon;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.plugins.elevation.HgtReader.Interpolation;
+import org.openstreetmap.josm.spi.preferences.Config;
+
+/**
+ * Compares per-point elevation lookups with the batch API of {@link HgtReader}, in time per point.
+ * Run with {@code mvn -Pbenchmark -pl ElevationProfile test-compile exec:exec -Dbenchmark=HgtReader}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HgtReaderBenchmark {
+
+    private static final int POINTS = 1_000_000;
+
+    /** Comma separated HGT files to read, the files of the test data if empty */
+    @Param("")
+    public String files;
+
+    /** Interpolation of the batch lookups, per-point lookups always use the nearest sample */
+    @Param({"NEAREST", "BILINEAR", "BICUBIC"})
+    public Interpolation interpolation;
+
+    private ILatLon[] coors;
+
+    @Setup
+    public void setUp() throws Exception {
+        Config.setPreferencesInstance(Preferences.main());
+        File[] hgt = files.isEmpty()
+                ? new File(TestUtils.getTestDataRoot()).listFiles((dir, name) -> name.endsWith(".hgt"))
+                : Arrays.stream(files.split(",", -1)).map(File::new).toArray(File[]::new);
+        Bounds bounds = null;
+        for (File file : hgt) {
+            Bounds b = HgtReader.read(file);
+            if (bounds == null) {
+                bounds = b;
+            } else {
+                bounds.extend(b);
+            }
+        }
+        if (bounds == null) {
+            throw new IllegalArgumentException("No HGT file found");
+        }
+        Random random = new Random(42);
+        coors = new ILatLon[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            coors[i] = new LatLon(bounds.getMinLat() + random.nextDouble() * bounds.getHeight(),
+                    bounds.getMinLon() + random.nextDouble() * bounds.getWidth());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public void perPoint(Blackhole blackhole) {
+        for (ILatLon coor : coors) {
+            blackhole.consume(HgtReader.readElevation(coor));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double[] batch() {
+        return HgtReader.readElevations(coors, interpolation);
+    }
+}
@@ -3,6 +3,7 @@ package org.openstreetmap.josm.plugins.elevation;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.IOException;
 import java.nio.file.DirectoryIteratorException;
@@ -13,11 +14,15 @@ import java.nio.file.Paths;
 import java.util.stream.Stream;
 
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.ILatLon;
 import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.plugins.elevation.HgtReader.Interpolation;
 import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
 import org.openstreetmap.josm.tools.Logging;
@@ -78,4 +83,80 @@ class HgtReaderTest {
 
         assertEquals(expHeight, (int) d);
     }
+
+    /**
+     * Checks that the number of mapped tiles is bounded, and that evicted tiles are mapped again when needed.
+     */
+    @Test
+    void testTileEviction() {
+        Config.getPref().putInt("elevation.hgt.max-tiles", 1);
+        try {
+            HgtReader.clearCache();
+            LatLon l1 = new LatLon(50.6607106, 8.7337029);
+            LatLon l2 = new LatLon(50.5767627, 9.1938483);
+            assertEquals(199, (int) HgtReader.getElevationFromHgt(l1));
+            assertEquals(560, (int) HgtReader.getElevationFromHgt(l2));
+            assertEquals(1, HgtReader.getCachedTileCount());
+            assertEquals(199, (int) HgtReader.getElevationFromHgt(l1));
+            assertEquals(1, HgtReader.getCachedTileCount());
+        } finally {
+            Config.getPref().put("elevation.hgt.max-tiles", null);
+            HgtReader.clearCache();
+        }
+    }
+
+    /**
+     * Checks that a tile imported from a file outside of the elevation directories is mapped again once evicted.
+     * @param dir temporary directory
+     * @throws IOException if the tile cannot be read
+     */
+    @Test
+    void testImportedTileEviction(@TempDir Path dir) throws IOException {
+        // the data of N50E008, under the name of a tile which is not in the elevation directories
+        Path file = dir.resolve("N10E010.hgt");
+        Files.copy(Paths.get(TestUtils.getTestDataRoot(), "N50E008.hgt"), file);
+        Config.getPref().putInt("elevation.hgt.max-tiles", 1);
+        try {
+            HgtReader.clearCache();
+            HgtReader.read(file.toFile());
+            LatLon imported = new LatLon(10.6607106, 10.7337029);
+            assertEquals(199, (int) HgtReader.getElevationFromHgt(imported));
+            assertEquals(560, (int) HgtReader.getElevationFromHgt(new LatLon(50.5767627, 9.1938483)));
+            assertEquals(1, HgtReader.getCachedTileCount());
+            assertEquals(199, (int) HgtReader.getElevationFromHgt(imported));
+            assertEquals(199, (int) HgtReader.readElevation(imported));
+        } finally {
+            Config.getPref().put("elevation.hgt.max-tiles", null);
+            HgtReader.clearCache();
+        }
+    }
+
+    /**
+     * Unit test of {@link HgtReader#readElevations(ILatLon[], Interpolation)}.
+     */
+    @Test
+    void testReadElevations() {
+        ILatLon[] coors = {
+            new LatLon(50.6607106, 8.7337029),
+            new LatLon(50.5767627, 9.1938483),
+            new LatLon(0.5, 0.5),
+            new LatLon(50.5, 8.5),
+            new LatLon(50.0000001, 8.999999),
+        };
+        double[] nearest = HgtReader.readElevations(coors, Interpolation.NEAREST);
+        for (int i = 0; i < coors.length; i++) {
+            assertEquals(HgtReader.getElevationFromHgt(coors[i]), nearest[i], 0, coors[i].toString());
+        }
+        assertTrue(Double.isNaN(nearest[2]));
+        for (Interpolation interpolation : new Interpolation[] {Interpolation.BILINEAR, Interpolation.BICUBIC}) {
+            double[] values = HgtReader.readElevations(coors, interpolation);
+            assertTrue(Double.isNaN(values[2]));
+            for (int i = 0; i < coors.length; i++) {
+                if (i != 2) {
+                    // SRTM3 samples are about 90 m apart
+                    assertEquals(nearest[i], values[i], 30, interpolation + " " + coors[i]);
+                }
+            }
+        }
+    }
 }
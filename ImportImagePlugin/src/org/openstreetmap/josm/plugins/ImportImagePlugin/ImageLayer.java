@@ -11,16 +11,20 @@ import java.awt.image.RenderedImage;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
 
-import javax.media.jai.PlanarImage;
 import javax.swing.AbstractAction;
 import javax.swing.Action;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 
 import org.geotools.coverage.grid.GridCoverage2D;
+import org.geotools.coverage.grid.GridEnvelope2D;
+import org.geotools.coverage.grid.GridGeometry2D;
 import org.geotools.geometry.jts.ReferencedEnvelope;
-import org.geotools.image.ImageWorker;
 import org.geotools.referencing.CRS;
 import org.geotools.api.referencing.FactoryException;
 import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
@@ -36,6 +40,7 @@ import org.openstreetmap.josm.gui.MapView;
 import org.openstreetmap.josm.gui.dialogs.LayerListDialog;
 import org.openstreetmap.josm.gui.dialogs.LayerListPopup;
 import org.openstreetmap.josm.gui.layer.Layer;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.Logging;
 
 /**
@@ -48,7 +53,8 @@ public class ImageLayer extends Layer {
 
     private final File imageFile;
 
-    private BufferedImage image;
+    // tiles of the reprojected image, computed when they are drawn
+    private TilePyramid pyramid;
 
     // coordinates of upper left corner
     private EastNorth upperLeft;
@@ -64,6 +70,10 @@ public class ImageLayer extends Layer {
     // reference system of the original image
     private CoordinateReferenceSystem sourceRefSys;
 
+    // the original image, before reprojection, and the reference system it has been read with (null if read from file)
+    private GridCoverage2D sourceCoverage;
+    private CoordinateReferenceSystem readRefSys;
+
     /**
      * Constructor
      */
@@ -71,7 +81,7 @@ public class ImageLayer extends Layer {
         super(file.getName());
 
         this.imageFile = file;
-        this.image = createImage();
+        this.pyramid = createPyramid(createCoverage());
         URL iconURL = getClass().getResource("images/layericon.png");
         if (iconURL != null) {
             layericon = new ImageIcon(iconURL);
@@ -79,9 +89,9 @@ public class ImageLayer extends Layer {
     }
 
     /**
-     * create spatial referenced image.
+     * create spatial referenced coverage, reprojected to JOSM's current projection.
      */
-    private BufferedImage createImage() throws IOException {
+    private GridCoverage2D createCoverage() throws IOException {
 
         // geotools type for images and value coverages
         GridCoverage2D coverage;
@@ -89,6 +99,8 @@ public class ImageLayer extends Layer {
             // create a grid coverage from the image
             coverage = PluginOperations.createGridFromFile(imageFile, null, true);
             this.sourceRefSys = coverage.getCoordinateReferenceSystem();
+            this.sourceCoverage = coverage;
+            this.readRefSys = null;
 
             // now reproject grid coverage
             coverage = PluginOperations.reprojectCoverage(coverage, CRS.decode(ProjectionRegistry.getProjection().toCode()));
@@ -126,6 +138,8 @@ public class ImageLayer extends Layer {
                     // create a grid coverage from the image
                     coverage = PluginOperations.createGridFromFile(imageFile, src, false);
                     this.sourceRefSys = coverage.getCoordinateReferenceSystem();
+                    this.sourceCoverage = coverage;
+                    this.readRefSys = src;
                     if (val == 1) {
                         coverage = PluginOperations.reprojectCoverage(coverage, CRS.decode(ProjectionRegistry.getProjection().toCode()));
                     }
@@ -142,35 +156,79 @@ public class ImageLayer extends Layer {
 
         }
         Logging.debug("ImportImagePlugin ImageLayer: Coverage created: {0}", coverage);
+        return coverage;
+    }
 
+    /**
+     * create the tile pyramid of a coverage. The reprojection of the coverage is deferred,
+     * it is only computed for the tiles which are drawn. The coarser levels are reprojected
+     * from the original image at their own resolution.
+     */
+    private TilePyramid createPyramid(GridCoverage2D coverage) {
         upperLeft = new EastNorth(coverage.getEnvelope2D().getMinX(),
                 coverage.getEnvelope2D().getMaxY());
         angle = 0;
         bbox = coverage.getEnvelope2D();
 
-        RenderedImage img = coverage.getRenderedImage();
+        File cacheDir = null;
+        if (Config.getPref().getBoolean("plugins.importimage.disk-cache", false)) {
+            // tiles depend on the image, its reference system and the target projection
+            File cacheRoot = new File(ImportImagePlugin.PLUGIN_DIR, "cache");
+            cacheDir = new File(cacheRoot, TilePyramid.cacheName(imageFile.getAbsolutePath(),
+                    Long.toString(imageFile.lastModified()), Long.toString(imageFile.length()),
+                    Objects.toString(sourceRefSys), ProjectionRegistry.getProjection().toCode()));
+            long maxDiskBytes = Config.getPref().getInt("plugins.importimage.disk-cache-size", 512) * 1024L * 1024L;
+            File current = cacheDir;
+            MainApplication.worker.submit(() -> TilePyramid.pruneDiskCache(cacheRoot, current, maxDiskBytes));
+        }
+        long maxBytes = Config.getPref().getInt("plugins.importimage.tile-cache-size", 128) * 1024L * 1024L;
+        RenderedImage image = coverage.getRenderedImage();
+        GridCoverage2D source = sourceCoverage;
+        CoordinateReferenceSystem refSys = readRefSys;
+        ReferencedEnvelope envelope = new ReferencedEnvelope(bbox);
+        return new TilePyramid(image, (level, width, height) -> createOverview(source, refSys, envelope,
+                image.getWidth(), image.getHeight(), level, width, height), maxBytes, cacheDir);
+    }
+
+    /**
+     * create the image of a level of the pyramid, by reprojecting the original image at the resolution of the level.
+     * GeoTIFF images are read at a reduced resolution, from their overviews if they have some.
+     * @return the image, or {@code null} if the level must be subsampled from the full resolution image
+     */
+    private RenderedImage createOverview(GridCoverage2D source, CoordinateReferenceSystem refSys,
+            ReferencedEnvelope envelope, int fullWidth, int fullHeight, int level, int width, int height) {
         try {
-            BufferedImage bi = new ImageWorker(img).getBufferedImage();
-            BufferedImage dst = new BufferedImage(bi.getWidth(), bi.getHeight(), BufferedImage.TYPE_INT_ARGB);
-            Graphics2D g2d = dst.createGraphics();
-            try {
-                // Check image can be drawn correctly
-                g2d.drawImage(bi, 0, 0, null);
-            } finally {
-                g2d.dispose();
+            GridCoverage2D levelSource = source;
+            String name = imageFile.getName().toLowerCase(Locale.ROOT);
+            if (name.endsWith(".tif") || name.endsWith(".tiff")) {
+                try {
+                    levelSource = PluginOperations.readGeoTiff(imageFile, refSys, 1 << level);
+                } catch (IOException e) {
+                    // not a GeoTIFF, but an image with a world file
+                    Logging.trace(e);
+                }
             }
-            return bi;
-        } catch (ArrayIndexOutOfBoundsException e) {
+            // the pixels of the level cover 2^level pixels of the reprojected image
+            double levelWidth = envelope.getWidth() / fullWidth * width * (1 << level);
+            double levelHeight = envelope.getHeight() / fullHeight * height * (1 << level);
+            ReferencedEnvelope levelEnvelope = new ReferencedEnvelope(envelope.getMinX(),
+                    envelope.getMinX() + levelWidth, envelope.getMaxY() - levelHeight, envelope.getMaxY(),
+                    envelope.getCoordinateReferenceSystem());
+            GridGeometry2D grid = new GridGeometry2D(new GridEnvelope2D(0, 0, width, height), levelEnvelope);
+            return PluginOperations.resampleCoverage(levelSource, grid).getRenderedImage();
+        } catch (RuntimeException e) {
+            Logging.warn("ImportImagePlugin ImageLayer: Unable to create overview of level " + level
+                    + ", subsampling it");
             Logging.debug(e);
-            // See #12108 - rescale to bytes in case of ComponentColorModel index error
-            return new ImageWorker(img).rescaleToBytes().getBufferedImage();
+            return null;
         }
     }
 
     @Override
     public void paint(Graphics2D g2, MapView mv, Bounds bounds) {
 
-        if (image != null && g2 != null) {
+        TilePyramid tiles = pyramid;
+        if (tiles != null && g2 != null) {
 
             // Position image at the right graphical place
             EastNorth center = mv.getCenter();
@@ -207,28 +265,64 @@ public class ImageLayer extends Layer {
             double pixels4bbox_height = ratio_y * mv.getHeight();
 
             // Scale image to JOSM extents
-            double scalex = pixels4bbox_width / image.getWidth();
-            double scaley = pixels4bbox_height / image.getHeight();
-
-            if ((scalex > 10) || (scaley > 10)) {
-                Logging.warn("ImportImagePlugin ImageLayer: Not drawing image - scale too big");
-                return;
-            }
-            g.scale(scalex, scaley);
-
-            // Draw picture
-            try {
-                g.drawImage(image, 0, 0, null);
-            } catch (ArrayIndexOutOfBoundsException e) {
-                // TODO: prevents this to happen when displaying GeoTIFF images (see #7902)
-                Logging.error(e);
+            double scalex = pixels4bbox_width / tiles.getWidth();
+            double scaley = pixels4bbox_height / tiles.getHeight();
+
+            // Draw the tiles of the level matching the scale, which intersect the map view
+            int level = tiles.getLevel(Math.max(scalex, scaley));
+            double levelPixels = (double) TilePyramid.TILE_SIZE * (1 << level);
+            int minX = Math.max(0, (int) Math.floor(-pic_offset_x / scalex / levelPixels));
+            int minY = Math.max(0, (int) Math.floor(-pic_offset_y / scaley / levelPixels));
+            int maxX = Math.min(tiles.getTilesX(level) - 1, (int) Math.floor((mv.getWidth() - pic_offset_x) / scalex / levelPixels));
+            int maxY = Math.min(tiles.getTilesY(level) - 1, (int) Math.floor((mv.getHeight() - pic_offset_y) / scaley / levelPixels));
+            g.scale(scalex * (1 << level), scaley * (1 << level));
+
+            Set<String> missing = new LinkedHashSet<>();
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    BufferedImage tile = tiles.getCachedTile(level, x, y);
+                    if (tile != null) {
+                        drawTile(g, tile, x * TilePyramid.TILE_SIZE, y * TilePyramid.TILE_SIZE);
+                    } else {
+                        missing.add(TilePyramid.key(level, x, y));
+                        drawAncestor(g, tiles, level, x, y);
+                    }
+                }
             }
+            g.dispose();
+            tiles.request(missing, this::invalidate);
 
         } else {
             Logging.error("ImportImagePlugin ImageLayer: Error while drawing image: image == null or Graphics == null");
         }
     }
 
+    /**
+     * draws the part of the nearest cached coarser tile which covers a missing tile, until it is computed.
+     */
+    private static void drawAncestor(Graphics2D g, TilePyramid tiles, int level, int x, int y) {
+        for (int up = 1; level + up <= tiles.getMaxLevel(); up++) {
+            BufferedImage ancestor = tiles.getCachedTile(level + up, x >> up, y >> up);
+            if (ancestor != null) {
+                Graphics2D ga = (Graphics2D) g.create();
+                ga.clipRect(x * TilePyramid.TILE_SIZE, y * TilePyramid.TILE_SIZE, TilePyramid.TILE_SIZE, TilePyramid.TILE_SIZE);
+                ga.scale(1 << up, 1 << up);
+                drawTile(ga, ancestor, (x >> up) * TilePyramid.TILE_SIZE, (y >> up) * TilePyramid.TILE_SIZE);
+                ga.dispose();
+                return;
+            }
+        }
+    }
+
+    private static void drawTile(Graphics2D g, BufferedImage tile, int x, int y) {
+        try {
+            g.drawImage(tile, x, y, null);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            // TODO: prevents this to happen when displaying GeoTIFF images (see #7902)
+            Logging.error(e);
+        }
+    }
+
     public ReferencedEnvelope getBbox() {
         return bbox;
     }
@@ -285,8 +379,28 @@ public class ImageLayer extends Layer {
         return imageFile;
     }
 
-    public BufferedImage getImage() {
-        return image;
+    /**
+     * Returns the width of the reprojected image.
+     * @return the width in pixels
+     */
+    public int getImageWidth() {
+        return pyramid.getWidth();
+    }
+
+    /**
+     * Returns the height of the reprojected image.
+     * @return the height in pixels
+     */
+    public int getImageHeight() {
+        return pyramid.getHeight();
+    }
+
+    @Override
+    public synchronized void destroy() {
+        super.destroy();
+        if (pyramid != null) {
+            pyramid.dispose();
+        }
     }
 
     /**
@@ -296,12 +410,13 @@ public class ImageLayer extends Layer {
     void resample(CoordinateReferenceSystem refSys) throws IOException, FactoryException {
         Logging.debug("ImportImagePlugin ImageLayer: resample");
         GridCoverage2D coverage = PluginOperations.createGridFromFile(this.imageFile, refSys, true);
+        this.sourceRefSys = coverage.getCoordinateReferenceSystem();
+        this.sourceCoverage = coverage;
+        this.readRefSys = refSys;
         coverage = PluginOperations.reprojectCoverage(coverage, CRS.decode(ProjectionRegistry.getProjection().toCode()));
-        this.bbox = coverage.getEnvelope2D();
-        this.image = ((PlanarImage) coverage.getRenderedImage()).getAsBufferedImage();
-
-        upperLeft = new EastNorth(coverage.getEnvelope2D().getMinX(), coverage.getEnvelope2D().getMaxY());
-        angle = 0;
+        TilePyramid old = this.pyramid;
+        this.pyramid = createPyramid(coverage);
+        old.dispose();
 
         // repaint and zoom to new bbox
         BoundingXYVisitor boundingXYVisitor = new BoundingXYVisitor();
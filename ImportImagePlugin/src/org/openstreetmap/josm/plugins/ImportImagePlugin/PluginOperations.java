@@ -16,6 +16,8 @@ import java.util.Vector;
 import javax.imageio.ImageIO;
 
 import org.geotools.api.data.DataSourceException;
+import org.geotools.api.parameter.GeneralParameterValue;
+import org.geotools.api.parameter.ParameterValue;
 import org.geotools.api.parameter.ParameterValueGroup;
 import org.geotools.api.referencing.FactoryException;
 import org.geotools.api.referencing.crs.CRSAuthorityFactory;
@@ -23,6 +25,9 @@ import org.geotools.api.referencing.crs.CoordinateReferenceSystem;
 import org.geotools.api.util.InternationalString;
 import org.geotools.coverage.grid.GridCoverage2D;
 import org.geotools.coverage.grid.GridCoverageFactory;
+import org.geotools.coverage.grid.GridEnvelope2D;
+import org.geotools.coverage.grid.GridGeometry2D;
+import org.geotools.coverage.grid.io.AbstractGridFormat;
 import org.geotools.coverage.processing.CoverageProcessor;
 import org.geotools.data.WorldFileReader;
 import org.geotools.gce.geotiff.GeoTiffReader;
@@ -82,6 +87,23 @@ public final class PluginOperations {
         return destination;
     }
 
+    /**
+     * Resamples a GridCoverage to a given grid, e.g. to reproject it at a lower resolution.
+     * @param coverage The coverage to resample
+     * @param gridGeometry The grid of the resampled coverage, with its CRS
+     * @return The resampled coverage, computed on demand
+     */
+    public static GridCoverage2D resampleCoverage(GridCoverage2D coverage, GridGeometry2D gridGeometry) {
+        CoverageProcessor processor = new CoverageProcessor();
+        ParameterValueGroup resampleParams = processor.getOperation("Resample").getParameters();
+
+        resampleParams.parameter("Source").setValue(coverage);
+        resampleParams.parameter("CoordinateReferenceSystem").setValue(gridGeometry.getCoordinateReferenceSystem());
+        resampleParams.parameter("GridGeometry").setValue(gridGeometry);
+
+        return (GridCoverage2D) processor.doOperation(resampleParams);
+    }
+
     /**
      * Creates a {@link GridCoverage2D} from a given file.
      * @param file The file to read from
@@ -302,7 +324,37 @@ public final class PluginOperations {
      * @param refSys if delivered, the coverage will be forced to use this crs
      */
     public static GridCoverage2D readGeoTiff(File file, CoordinateReferenceSystem refSys) throws IOException {
-        GridCoverage2D coverage;
+        GeoTiffReader reader = createGeoTiffReader(file, refSys);
+        try {
+            return reader.read(null);
+        } finally {
+            // the coverage reads its pixels through its own stream
+            reader.dispose();
+        }
+    }
+
+    /**
+     * Method for reading a GeoTIFF file at a reduced resolution.
+     * The overviews of the file are used if it has some, otherwise the image is subsampled.
+     *
+     * @param refSys if delivered, the coverage will be forced to use this crs
+     * @param factor the number of image pixels in each direction for one pixel of the coverage
+     */
+    public static GridCoverage2D readGeoTiff(File file, CoordinateReferenceSystem refSys, int factor) throws IOException {
+        GeoTiffReader reader = createGeoTiffReader(file, refSys);
+        try {
+            GridEnvelope2D range = new GridEnvelope2D(0, 0,
+                    Math.max(1, reader.getOriginalGridRange().getSpan(0) / factor),
+                    Math.max(1, reader.getOriginalGridRange().getSpan(1) / factor));
+            ParameterValue<GridGeometry2D> gridGeometry = AbstractGridFormat.READ_GRIDGEOMETRY2D.createValue();
+            gridGeometry.setValue(new GridGeometry2D(range, reader.getOriginalEnvelope()));
+            return reader.read(new GeneralParameterValue[] {gridGeometry});
+        } finally {
+            reader.dispose();
+        }
+    }
+
+    private static GeoTiffReader createGeoTiffReader(File file, CoordinateReferenceSystem refSys) throws IOException {
         Hints hints = new Hints(Hints.FORCE_LONGITUDE_FIRST_AXIS_ORDER, true);
         if (refSys != null) {
             hints.put(Hints.DEFAULT_COORDINATE_REFERENCE_SYSTEM, refSys);
@@ -310,11 +362,7 @@ public final class PluginOperations {
         // don't use the EPSG-Factory because of wrong behaviour
         //hints.put(Hints.CRS_AUTHORITY_FACTORY, CRS.getAuthorityFactory(true));
 
-        GeoTiffReader reader = new GeoTiffReader(file, hints);
-
-        coverage = reader.read(null);
-
-        return coverage;
+        return new GeoTiffReader(file, hints);
     }
 
     /**
@@ -0,0 +1,537 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.ImportImagePlugin;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.Raster;
+import java.awt.image.RenderedImage;
+import java.awt.image.WritableRaster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.imageio.ImageIO;
+
+import org.geotools.image.ImageWorker;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Tile pyramid of a (reprojected) image, so that only the visible part of the image is computed and drawn.
+ * <p>
+ * Level 0 contains the tiles of the full resolution image, each next level halves the resolution,
+ * up to the level where the image fits in one tile. Tiles are only computed when they are requested,
+ * from the image of their level: level 0 tiles are read from the source image, which computes the reprojection
+ * of this area only, tiles of other levels are read from the overview of their level, computed at the resolution
+ * of the level. Without overview, they are subsampled from the source image.
+ * Computed tiles are kept in a least recently used cache, bounded by the memory used by the tile pixels,
+ * and optionally written as PNG files to a disk cache.
+ */
+public final class TilePyramid {
+
+    /** Width and height of the tiles in pixels */
+    public static final int TILE_SIZE = 256;
+
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() - 1),
+            Utils.newThreadFactory("importimage-tiles-%d", Thread.NORM_PRIORITY));
+
+    /**
+     * Provides the images of the levels coarser than the source image.
+     */
+    @FunctionalInterface
+    public interface OverviewSource {
+        /**
+         * Returns the image of a level, usually a deferred reprojection at the resolution of the level.
+         * @param level the level, at least 1
+         * @param width the width of the level, see {@link TilePyramid#getLevelWidth(int)}
+         * @param height the height of the level, see {@link TilePyramid#getLevelHeight(int)}
+         * @return an image of the given size, whose pixels cover {@code 2^level} pixels of the source image,
+         * or {@code null} to subsample the source image
+         */
+        RenderedImage getOverview(int level, int width, int height);
+    }
+
+    private final OverviewSource overviews;
+
+    // images of the levels, created when first needed, replaced once if their color model cannot be drawn (see #12108)
+    private final RenderedImage[] levels;
+    private final boolean[] levelCreated;
+
+    private final int width;
+    private final int height;
+    private final int maxLevel;
+
+    private final long maxBytes;
+    private final Map<String, BufferedImage> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private long bytes;
+
+    // directory of the disk cache, null if tiles are only cached in memory
+    private final File cacheDir;
+
+    // the tiles requested in the background, by key
+    private final Map<String, Future<?>> pending = new ConcurrentHashMap<>();
+
+    // the tiles being computed, by key, so that concurrent requests of a tile compute it once
+    private final Map<String, CompletableFuture<BufferedImage>> computing = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor, for a pyramid whose coarser levels are subsampled from the source image
+     * @param source The source image
+     * @param maxBytes The maximum number of bytes used by the tiles cached in memory
+     * @param cacheDir The directory of the disk cache, {@code null} to cache tiles in memory only
+     */
+    public TilePyramid(RenderedImage source, long maxBytes, File cacheDir) {
+        this(source, null, maxBytes, cacheDir);
+    }
+
+    /**
+     * Constructor
+     * @param source The source image, usually a deferred reprojection which is computed on demand
+     * @param overviews The images of the coarser levels, {@code null} to subsample the source image
+     * @param maxBytes The maximum number of bytes used by the tiles cached in memory
+     * @param cacheDir The directory of the disk cache, {@code null} to cache tiles in memory only
+     */
+    public TilePyramid(RenderedImage source, OverviewSource overviews, long maxBytes, File cacheDir) {
+        this.overviews = overviews;
+        this.width = source.getWidth();
+        this.height = source.getHeight();
+        this.maxBytes = maxBytes;
+        this.cacheDir = cacheDir;
+        int level = 0;
+        while (getLevelWidth(level) > TILE_SIZE || getLevelHeight(level) > TILE_SIZE) {
+            level++;
+        }
+        this.maxLevel = level;
+        this.levels = new RenderedImage[level + 1];
+        this.levelCreated = new boolean[level + 1];
+        this.levels[0] = source;
+        this.levelCreated[0] = true;
+    }
+
+    /**
+     * Returns the width of the full resolution image.
+     * @return the width in pixels
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * Returns the height of the full resolution image.
+     * @return the height in pixels
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * Returns the coarsest level, where the image fits in one tile.
+     * @return the maximum level
+     */
+    public int getMaxLevel() {
+        return maxLevel;
+    }
+
+    /**
+     * Returns the width of the image at a level.
+     * @param level the level
+     * @return the width in pixels of the level
+     */
+    public int getLevelWidth(int level) {
+        return ((width - 1) >> level) + 1;
+    }
+
+    /**
+     * Returns the height of the image at a level.
+     * @param level the level
+     * @return the height in pixels of the level
+     */
+    public int getLevelHeight(int level) {
+        return ((height - 1) >> level) + 1;
+    }
+
+    /**
+     * Returns the number of tile columns of a level.
+     * @param level the level
+     * @return the number of columns
+     */
+    public int getTilesX(int level) {
+        return (getLevelWidth(level) - 1) / TILE_SIZE + 1;
+    }
+
+    /**
+     * Returns the number of tile rows of a level.
+     * @param level the level
+     * @return the number of rows
+     */
+    public int getTilesY(int level) {
+        return (getLevelHeight(level) - 1) / TILE_SIZE + 1;
+    }
+
+    /**
+     * Returns the level to draw the image at a given scale, i.e. the coarsest level
+     * whose pixels are not larger than the screen pixels.
+     * @param scale number of screen pixels per full resolution image pixel
+     * @return the level to draw
+     */
+    public int getLevel(double scale) {
+        if (!(scale > 0)) {
+            return maxLevel;
+        }
+        int level = (int) Math.floor(-Math.log(scale) / Math.log(2));
+        return Math.max(0, Math.min(maxLevel, level));
+    }
+
+    /**
+     * Returns a tile if it is cached in memory, without computing it.
+     * @param level the level
+     * @param x the tile column
+     * @param y the tile row
+     * @return the tile, or {@code null} if it is not cached
+     */
+    public synchronized BufferedImage getCachedTile(int level, int x, int y) {
+        return tiles.get(key(level, x, y));
+    }
+
+    /**
+     * Returns a tile, computing it if needed. A tile being computed by another thread is waited for.
+     * @param level the level
+     * @param x the tile column
+     * @param y the tile row
+     * @return the tile, or {@code null} if it is outside of the image
+     * @throws CancellationException if the thread is interrupted
+     */
+    public BufferedImage getTile(int level, int x, int y) {
+        if (level < 0 || level > maxLevel || x < 0 || y < 0 || x >= getTilesX(level) || y >= getTilesY(level)) {
+            return null;
+        }
+        String key = key(level, x, y);
+        while (true) {
+            BufferedImage tile = getCachedTile(level, x, y);
+            if (tile != null) {
+                return tile;
+            }
+            CompletableFuture<BufferedImage> future = new CompletableFuture<>();
+            CompletableFuture<BufferedImage> other = computing.putIfAbsent(key, future);
+            if (other == null) {
+                return computeTile(key, level, x, y, future);
+            }
+            try {
+                return other.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException(e.getMessage());
+            } catch (CancellationException e) {
+                // the other thread has been cancelled, compute the tile in this one
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+    }
+
+    private BufferedImage computeTile(String key, int level, int x, int y, CompletableFuture<BufferedImage> future) {
+        try {
+            // the tile may have been computed since it was looked up
+            BufferedImage tile = getCachedTile(level, x, y);
+            if (tile == null) {
+                tile = readDiskTile(key);
+                if (tile == null) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new CancellationException();
+                    }
+                    tile = readLevelTile(level, x, y);
+                    writeDiskTile(key, tile);
+                }
+                put(key, tile);
+            }
+            future.complete(tile);
+            return tile;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            computing.remove(key, future);
+        }
+    }
+
+    /**
+     * Computes tiles in the background. Tiles of previous requests which are not requested anymore are cancelled,
+     * tiles which have been computed since are requested again if they are not cached anymore.
+     * @param keys the keys of the requested tiles, see {@link #key(int, int, int)}
+     * @param loaded called from a background thread each time a tile has been computed
+     */
+    public void request(Collection<String> keys, Runnable loaded) {
+        for (Iterator<Map.Entry<String, Future<?>>> it = pending.entrySet().iterator(); it.hasNext();) {
+            Map.Entry<String, Future<?>> entry = it.next();
+            if (entry.getValue().isDone() || !keys.contains(entry.getKey())) {
+                entry.getValue().cancel(true);
+                it.remove();
+            }
+        }
+        for (String key : keys) {
+            pending.computeIfAbsent(key, k -> POOL.submit(() -> {
+                try {
+                    String[] parts = k.split("/", -1);
+                    getTile(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+                    loaded.run();
+                } catch (CancellationException e) {
+                    Logging.trace(e);
+                } catch (RuntimeException e) {
+                    Logging.error("ImportImagePlugin TilePyramid: Error while computing tile " + k);
+                    Logging.error(e);
+                }
+            }));
+        }
+    }
+
+    /**
+     * Cancels the computation of all tiles and removes the tiles cached in memory.
+     */
+    public void dispose() {
+        pending.values().forEach(f -> f.cancel(true));
+        pending.clear();
+        synchronized (this) {
+            tiles.clear();
+            bytes = 0;
+        }
+    }
+
+    /**
+     * Returns the cache key of a tile, which is also its path in the disk cache.
+     * @param level the level
+     * @param x the tile column
+     * @param y the tile row
+     * @return the key
+     */
+    public static String key(int level, int x, int y) {
+        return level + "/" + x + "/" + y;
+    }
+
+    private synchronized void put(String key, BufferedImage tile) {
+        long size = sizeOf(tile);
+        if (size > maxBytes) {
+            return;
+        }
+        BufferedImage old = tiles.put(key, tile);
+        if (old != null) {
+            bytes -= sizeOf(old);
+        }
+        bytes += size;
+        Iterator<BufferedImage> eldest = tiles.values().iterator();
+        while (bytes > maxBytes) {
+            bytes -= sizeOf(eldest.next());
+            eldest.remove();
+        }
+    }
+
+    private RenderedImage getLevelImage(int level) {
+        synchronized (levels) {
+            if (!levelCreated[level]) {
+                levels[level] = overviews != null
+                        ? overviews.getOverview(level, getLevelWidth(level), getLevelHeight(level)) : null;
+                levelCreated[level] = true;
+            }
+            return levels[level];
+        }
+    }
+
+    private BufferedImage readLevelTile(int level, int x, int y) {
+        Rectangle rect = new Rectangle(x * TILE_SIZE, y * TILE_SIZE,
+                Math.min(TILE_SIZE, getLevelWidth(level) - x * TILE_SIZE),
+                Math.min(TILE_SIZE, getLevelHeight(level) - y * TILE_SIZE));
+        // levels without overview are subsampled from the source image
+        int imageLevel = getLevelImage(level) != null ? level : 0;
+        RenderedImage img = getLevelImage(imageLevel);
+        try {
+            return imageLevel == level ? toTile(img, rect) : subsample(img, level, rect);
+        } catch (ArrayIndexOutOfBoundsException e) {
+            Logging.debug(e);
+            // See #12108 - rescale to bytes in case of ComponentColorModel index error
+            synchronized (levels) {
+                if (levels[imageLevel] == img) {
+                    levels[imageLevel] = new ImageWorker(img).rescaleToBytes().getRenderedImage();
+                }
+                img = levels[imageLevel];
+            }
+            return imageLevel == level ? toTile(img, rect) : subsample(img, level, rect);
+        }
+    }
+
+    private static BufferedImage toTile(RenderedImage img, Rectangle rect) {
+        Raster data = img.getData(new Rectangle(img.getMinX() + rect.x, img.getMinY() + rect.y,
+                rect.width, rect.height));
+        WritableRaster raster = data.createCompatibleWritableRaster(rect.width, rect.height);
+        raster.setRect(-data.getMinX(), -data.getMinY(), data);
+        return toTile(img.getColorModel(), raster);
+    }
+
+    /**
+     * Reads a tile of a level from the source image, taking one source pixel out of {@code 2^level} in each direction.
+     * Only the source rows of these pixels are read.
+     */
+    private BufferedImage subsample(RenderedImage img, int level, Rectangle rect) {
+        int step = 1 << level;
+        int sourceX = rect.x << level;
+        int sourceWidth = Math.min(width - sourceX, (rect.width - 1) * step + 1);
+        WritableRaster raster = null;
+        Object pixel = null;
+        for (int j = 0; j < rect.height; j++) {
+            if (Thread.currentThread().isInterrupted()) {
+                throw new CancellationException();
+            }
+            Raster row = img.getData(new Rectangle(img.getMinX() + sourceX, img.getMinY() + ((rect.y + j) << level),
+                    sourceWidth, 1));
+            if (raster == null) {
+                raster = row.createCompatibleWritableRaster(rect.width, rect.height);
+            }
+            for (int i = 0; i < rect.width; i++) {
+                pixel = row.getDataElements(row.getMinX() + i * step, row.getMinY(), pixel);
+                raster.setDataElements(i, j, pixel);
+            }
+        }
+        return toTile(img.getColorModel(), raster);
+    }
+
+    private static BufferedImage toTile(ColorModel cm, WritableRaster raster) {
+        BufferedImage tile = new BufferedImage(raster.getWidth(), raster.getHeight(), BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = tile.createGraphics();
+        try {
+            g.drawImage(new BufferedImage(cm, raster, cm.isAlphaPremultiplied(), null), 0, 0, null);
+        } finally {
+            g.dispose();
+        }
+        return tile;
+    }
+
+    private BufferedImage readDiskTile(String key) {
+        if (cacheDir == null) {
+            return null;
+        }
+        File file = new File(cacheDir, key + ".png");
+        if (file.isFile()) {
+            try {
+                return ImageIO.read(file);
+            } catch (IOException e) {
+                Logging.warn("ImportImagePlugin TilePyramid: Unable to read cached tile " + file);
+                Logging.debug(e);
+            }
+        }
+        return null;
+    }
+
+    private void writeDiskTile(String key, BufferedImage tile) {
+        if (cacheDir == null) {
+            return;
+        }
+        File file = new File(cacheDir, key + ".png");
+        try {
+            Utils.mkDirs(file.getParentFile());
+            ImageIO.write(tile, "png", file);
+        } catch (IOException e) {
+            Logging.warn("ImportImagePlugin TilePyramid: Unable to write cached tile " + file);
+            Logging.debug(e);
+        }
+    }
+
+    /**
+     * Returns the name of the disk cache directory of a pyramid, which identifies its tiles.
+     * @param parts what the tiles depend on, e.g. the source file, its reference system and the target projection
+     * @return the SHA-256 digest of the parts, in hexadecimal
+     */
+    public static String cacheName(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String part : parts) {
+                byte[] data = part.getBytes(StandardCharsets.UTF_8);
+                // the length separates the parts
+                digest.update(Integer.toString(data.length).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) ':');
+                digest.update(data);
+            }
+            return Utils.toHexString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Deletes the least recently used pyramid directories of a disk cache, until the cache fits in a given size.
+     * @param cacheRoot the directory containing the pyramid directories
+     * @param current the directory of the pyramid in use, which is kept and marked as the most recently used
+     * @param maxBytes the maximum size of the disk cache
+     */
+    public static void pruneDiskCache(File cacheRoot, File current, long maxBytes) {
+        if (current.isDirectory() && !current.setLastModified(System.currentTimeMillis())) {
+            Logging.debug("ImportImagePlugin TilePyramid: Unable to mark cache directory " + current);
+        }
+        File[] dirs = cacheRoot.listFiles(File::isDirectory);
+        if (dirs == null) {
+            return;
+        }
+        List<File> candidates = new ArrayList<>(Arrays.asList(dirs));
+        candidates.sort(Comparator.comparingLong(File::lastModified));
+        long total = 0;
+        List<Long> sizes = new ArrayList<>(candidates.size());
+        for (File dir : candidates) {
+            long size = sizeOf(dir);
+            sizes.add(size);
+            total += size;
+        }
+        for (int i = 0; i < candidates.size() && total > maxBytes; i++) {
+            File dir = candidates.get(i);
+            if (!dir.equals(current)) {
+                Logging.debug("ImportImagePlugin TilePyramid: Deleting cache directory " + dir);
+                Utils.deleteDirectory(dir);
+                total -= sizes.get(i);
+            }
+        }
+    }
+
+    private static long sizeOf(File dir) {
+        long size = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.isDirectory() ? sizeOf(file) : file.length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Estimates the memory used by the pixels of an image.
+     * @param image the image
+     * @return the size in bytes
+     */
+    static long sizeOf(BufferedImage image) {
+        DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+}
@@ -0,0 +1,253 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.ImportImagePlugin;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Unit tests of {@link TilePyramid} class.
+ */
+class TilePyramidTest {
+
+    private static BufferedImage image(int width, int height, Color color) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setColor(color);
+            g.fillRect(0, 0, width, height);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * Returns an image whose pixels encode their coordinates.
+     */
+    private static BufferedImage gradient(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                image.setRGB(x, y, x << 12 | y);
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Test the levels and tiles of the pyramid.
+     */
+    @Test
+    void testLevels() {
+        TilePyramid pyramid = new TilePyramid(image(1000, 300, Color.RED), Long.MAX_VALUE, null);
+        assertEquals(2, pyramid.getMaxLevel());
+        assertEquals(4, pyramid.getTilesX(0));
+        assertEquals(2, pyramid.getTilesY(0));
+        assertEquals(250, pyramid.getLevelWidth(2));
+        assertEquals(75, pyramid.getLevelHeight(2));
+        assertEquals(1, pyramid.getTilesX(2));
+
+        assertEquals(0, pyramid.getLevel(1));
+        assertEquals(0, pyramid.getLevel(10));
+        assertEquals(1, pyramid.getLevel(0.5));
+        assertEquals(1, pyramid.getLevel(0.3));
+        assertEquals(2, pyramid.getLevel(0.01));
+        assertEquals(2, pyramid.getLevel(0));
+
+        assertNull(pyramid.getTile(0, 4, 0));
+        assertNull(pyramid.getTile(3, 0, 0));
+    }
+
+    /**
+     * Test that tiles are computed on demand, coarser levels being subsampled from the source image.
+     */
+    @Test
+    void testGetTile() {
+        BufferedImage source = gradient(1000, 300);
+        TilePyramid pyramid = new TilePyramid(source, Long.MAX_VALUE, null);
+        assertNull(pyramid.getCachedTile(1, 0, 0));
+
+        BufferedImage tile = pyramid.getTile(1, 1, 0);
+        assertEquals(244, tile.getWidth());
+        assertEquals(150, tile.getHeight());
+        for (int y = 0; y < tile.getHeight(); y += 7) {
+            for (int x = 0; x < tile.getWidth(); x += 7) {
+                assertEquals(source.getRGB(2 * (256 + x), 2 * y), tile.getRGB(x, y), x + "," + y);
+            }
+        }
+        assertNotNull(pyramid.getCachedTile(1, 1, 0));
+        assertNull(pyramid.getCachedTile(0, 3, 1));
+
+        tile = pyramid.getTile(0, 3, 1);
+        assertEquals(232, tile.getWidth());
+        assertEquals(44, tile.getHeight());
+        assertEquals(source.getRGB(3 * 256 + 5, 256 + 7), tile.getRGB(5, 7));
+    }
+
+    /**
+     * Test that tiles of coarser levels are read from their overview, without reading the source image.
+     */
+    @Test
+    void testOverviews() {
+        BufferedImage source = new BufferedImage(1000, 300, BufferedImage.TYPE_INT_RGB) {
+            @Override
+            public Raster getData(Rectangle rect) {
+                throw new AssertionError("source image read");
+            }
+        };
+        StringBuilder requested = new StringBuilder();
+        TilePyramid pyramid = new TilePyramid(source, (level, width, height) -> {
+            requested.append(level).append(':').append(width).append('x').append(height).append(' ');
+            return level == 1 ? image(width, height, Color.BLUE) : null;
+        }, Long.MAX_VALUE, null);
+
+        assertEquals(Color.BLUE.getRGB(), pyramid.getTile(1, 1, 0).getRGB(100, 100));
+        assertEquals(244, pyramid.getTile(1, 1, 0).getWidth());
+        assertEquals(Color.BLUE.getRGB(), pyramid.getTile(1, 0, 0).getRGB(10, 10));
+        assertEquals("1:500x150 ", requested.toString());
+    }
+
+    /**
+     * Test that a tile requested by several threads at once is computed once.
+     * @throws Exception if the test is interrupted
+     */
+    @Test
+    @Timeout(30)
+    void testConcurrentGetTile() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger reads = new AtomicInteger();
+        BufferedImage source = new BufferedImage(300, 300, BufferedImage.TYPE_INT_RGB) {
+            @Override
+            public Raster getData(Rectangle rect) {
+                if (reads.getAndIncrement() == 0) {
+                    entered.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                }
+                return super.getData(rect);
+            }
+        };
+        TilePyramid pyramid = new TilePyramid(source, Long.MAX_VALUE, null);
+
+        AtomicReference<BufferedImage> first = new AtomicReference<>();
+        Thread owner = new Thread(() -> first.set(pyramid.getTile(0, 0, 0)));
+        owner.start();
+        assertTrue(entered.await(10, TimeUnit.SECONDS));
+        AtomicReference<BufferedImage> second = new AtomicReference<>();
+        Thread waiter = new Thread(() -> second.set(pyramid.getTile(0, 0, 0)));
+        waiter.start();
+        while (waiter.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+        release.countDown();
+        owner.join();
+        waiter.join();
+
+        assertEquals(1, reads.get());
+        assertNotNull(first.get());
+        assertSame(first.get(), second.get());
+    }
+
+    /**
+     * Test that the least recently used tiles are evicted.
+     */
+    @Test
+    void testEviction() {
+        // 2 full tiles
+        TilePyramid pyramid = new TilePyramid(image(1024, 256, Color.BLUE), 2L * 256 * 256 * 4, null);
+        pyramid.getTile(0, 0, 0);
+        pyramid.getTile(0, 1, 0);
+        pyramid.getCachedTile(0, 0, 0);
+        pyramid.getTile(0, 2, 0);
+        assertNotNull(pyramid.getCachedTile(0, 0, 0));
+        assertNull(pyramid.getCachedTile(0, 1, 0));
+        assertNotNull(pyramid.getCachedTile(0, 2, 0));
+
+        pyramid.dispose();
+        assertNull(pyramid.getCachedTile(0, 0, 0));
+    }
+
+    /**
+     * Test that tiles are read from the disk cache.
+     * @param cacheDir temporary cache directory
+     */
+    @Test
+    void testDiskCache(@TempDir File cacheDir) {
+        new TilePyramid(image(300, 300, Color.GREEN), Long.MAX_VALUE, cacheDir).getTile(1, 0, 0);
+        assertTrue(new File(cacheDir, "1/0/0.png").isFile());
+        assertFalse(new File(cacheDir, "0/0/0.png").exists());
+
+        // the cached tiles are used, not the new source image
+        TilePyramid pyramid = new TilePyramid(image(300, 300, Color.BLACK), Long.MAX_VALUE, cacheDir);
+        assertEquals(Color.GREEN.getRGB(), pyramid.getTile(1, 0, 0).getRGB(10, 10));
+        assertEquals(Color.BLACK.getRGB(), pyramid.getTile(0, 0, 0).getRGB(10, 10));
+    }
+
+    /**
+     * Test the names of the disk cache directories.
+     */
+    @Test
+    void testCacheName() {
+        String name = TilePyramid.cacheName("/data/image.tif", "1234", "EPSG:2154");
+        assertEquals(64, name.length());
+        assertTrue(name.matches("[0-9a-f]+"), name);
+        assertEquals(name, TilePyramid.cacheName("/data/image.tif", "1234", "EPSG:2154"));
+        assertNotEquals(name, TilePyramid.cacheName("/data/image.tif", "1235", "EPSG:2154"));
+        assertNotEquals(TilePyramid.cacheName("ab", "c"), TilePyramid.cacheName("a", "bc"));
+    }
+
+    /**
+     * Test that the least recently used pyramids are deleted from the disk cache, except the one in use.
+     * @param cacheRoot temporary cache directory
+     * @throws IOException if the cache cannot be written
+     */
+    @Test
+    void testPruneDiskCache(@TempDir File cacheRoot) throws IOException {
+        long time = System.currentTimeMillis() - 100_000;
+        File[] dirs = new File[4];
+        for (int i = 0; i < dirs.length; i++) {
+            dirs[i] = new File(cacheRoot, "pyramid" + i);
+            File tile = new File(dirs[i], "0/0/0.png");
+            assertTrue(tile.getParentFile().mkdirs());
+            Files.write(tile.toPath(), new byte[100]);
+            assertTrue(dirs[i].setLastModified(time + i * 1000));
+        }
+
+        // the oldest one is in use
+        TilePyramid.pruneDiskCache(cacheRoot, dirs[0], 250);
+        assertTrue(dirs[0].isDirectory());
+        assertFalse(dirs[1].exists());
+        assertFalse(dirs[2].exists());
+        assertTrue(dirs[3].isDirectory());
+
+        TilePyramid.pruneDiskCache(cacheRoot, dirs[0], 1000);
+        assertTrue(dirs[0].isDirectory());
+        assertTrue(dirs[3].isDirectory());
+    }
+}
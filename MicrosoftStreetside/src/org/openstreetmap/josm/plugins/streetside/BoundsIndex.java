@@ -0,0 +1,57 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.streetside;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.LatLon;
+
+/**
+ * Index of the areas for which images have been downloaded.
+ * <p>
+ * Bounds are sorted by their minimum latitude, so that only the bounds whose latitude interval may contain
+ * a position are tested.
+ */
+final class BoundsIndex {
+    private final NavigableMap<Double, List<Bounds>> byMinLat = new TreeMap<>();
+    /** The largest latitude span of all bounds */
+    private double maxHeight;
+
+    /**
+     * Add bounds to the index
+     * @param bounds The bounds to add
+     */
+    synchronized void add(Bounds bounds) {
+        byMinLat.computeIfAbsent(bounds.getMinLat(), k -> new ArrayList<>(1)).add(bounds);
+        maxHeight = Math.max(maxHeight, bounds.getHeight());
+    }
+
+    /**
+     * Check if some bounds contain a position
+     * @param latLon The position
+     * @return {@code true} if the position is in some bounds of the index
+     */
+    synchronized boolean contains(LatLon latLon) {
+        for (List<Bounds> list : byMinLat.subMap(latLon.lat() - maxHeight, true, latLon.lat(), true).values()) {
+            for (Bounds bounds : list) {
+                if (bounds.contains(latLon)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if the index holds bounds equal to the given ones
+     * @param bounds The bounds to look for
+     * @return {@code true} if the bounds have already been added
+     */
+    synchronized boolean containsBounds(Bounds bounds) {
+        final List<Bounds> list = byMinLat.get(bounds.getMinLat());
+        return list != null && list.contains(bounds);
+    }
+}
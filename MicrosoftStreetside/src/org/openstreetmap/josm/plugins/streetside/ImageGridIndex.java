@@ -0,0 +1,112 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.streetside;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+import org.openstreetmap.josm.data.coor.ILatLon;
+
+/**
+ * Uniform grid of image positions, used to find the images nearest to a position without scanning all images.
+ * <p>
+ * The grid is searched in rings of cells around the position, until no remaining cell can hold a closer image.
+ *
+ * @see StreetsideData#getNearestImages(StreetsideImage, int, double)
+ */
+final class ImageGridIndex {
+    /** Size of a cell in degrees, about 100 m */
+    private static final double CELL_SIZE = 0.001;
+    /** Lower bound of the length of a degree of latitude, in meters */
+    private static final double METERS_PER_DEGREE = 110_000;
+
+    private final Map<Long, List<StreetsideImage>> cells = new HashMap<>();
+
+    private static long cell(double coordinate) {
+        return (long) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    private static long key(long lonCell, long latCell) {
+        return (latCell << 32) ^ (lonCell & 0xffffffffL);
+    }
+
+    /**
+     * Add an image to the index
+     * @param image The image to add
+     */
+    synchronized void add(StreetsideImage image) {
+        cells.computeIfAbsent(key(cell(image.lon()), cell(image.lat())), k -> new ArrayList<>(2)).add(image);
+    }
+
+    /**
+     * Remove all images
+     */
+    synchronized void clear() {
+        cells.clear();
+    }
+
+    /**
+     * Find the images nearest to a position
+     * @param target The position to look around
+     * @param limit The maximum number of images to return
+     * @param maxDistance The maximum distance in meters
+     * @param filter The images to consider
+     * @return The nearest images, sorted by distance
+     */
+    synchronized List<StreetsideImage> nearest(ILatLon target, int limit, double maxDistance,
+            Predicate<StreetsideImage> filter) {
+        record Candidate(StreetsideImage image, double distance) {
+        }
+        // Largest distance first, so that the farthest candidate can be dropped
+        final PriorityQueue<Candidate> best = new PriorityQueue<>(limit + 1,
+                Comparator.comparingDouble(Candidate::distance).reversed());
+        final double latDegrees = maxDistance / METERS_PER_DEGREE;
+        // Cells are narrower towards the poles, use the smallest cosine in the searched area
+        final double cos = Math.cos(Math.toRadians(Math.min(89, Math.abs(target.lat()) + latDegrees + CELL_SIZE)));
+        final int latRings = (int) Math.ceil(latDegrees / CELL_SIZE);
+        final int lonRings = (int) Math.ceil(latDegrees / cos / CELL_SIZE);
+        final long lonCell = cell(target.lon());
+        final long latCell = cell(target.lat());
+
+        for (var ring = 0; ring <= Math.max(latRings, lonRings); ring++) {
+            // All images in this ring are at least (ring - 1) cells away
+            if (best.size() == limit && (ring - 1) * CELL_SIZE * METERS_PER_DEGREE * cos > best.peek().distance()) {
+                break;
+            }
+            for (int dy = -Math.min(ring, latRings); dy <= Math.min(ring, latRings); dy++) {
+                final int step = Math.abs(dy) == ring ? 1 : 2 * ring;
+                for (int dx = -ring; dx <= ring && dx <= lonRings; dx += Math.max(step, 1)) {
+                    if (dx < -lonRings) {
+                        continue;
+                    }
+                    final List<StreetsideImage> images = cells.get(key(lonCell + dx, latCell + dy));
+                    if (images == null) {
+                        continue;
+                    }
+                    for (StreetsideImage image : images) {
+                        if (!filter.test(image)) {
+                            continue;
+                        }
+                        final double distance = image.greatCircleDistance(target);
+                        if (distance < maxDistance) {
+                            best.add(new Candidate(image, distance));
+                            if (best.size() > limit) {
+                                best.poll();
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        final List<Candidate> sorted = new ArrayList<>(best);
+        sorted.sort(Comparator.comparingDouble(Candidate::distance));
+        final List<StreetsideImage> result = new ArrayList<>(sorted.size());
+        sorted.forEach(c -> result.add(c.image()));
+        return result;
+    }
+}
@@ -6,8 +6,10 @@ import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
@@ -38,6 +40,14 @@ import org.openstreetmap.josm.plugins.streetside.utils.StreetsideProperties;
 public class StreetsideData implements Data {
     private final QuadBuckets<StreetsideImage> images = new QuadBuckets<>();
     private final List<StreetsideImage> sortedImages = new ArrayList<>();
+    /**
+     * The position of each image in {@link #sortedImages}.
+     */
+    private final Map<StreetsideImage, Integer> sortedIndexes = new HashMap<>();
+    /**
+     * Index of the image positions, for nearest image lookups.
+     */
+    private final ImageGridIndex imageIndex = new ImageGridIndex();
     /**
      * Listeners of the class.
      */
@@ -46,6 +56,10 @@ public class StreetsideData implements Data {
      * The bounds of the areas for which the pictures have been downloaded.
      */
     private final List<Bounds> bounds;
+    /**
+     * Index of {@link #bounds}.
+     */
+    private final BoundsIndex boundsIndex = new BoundsIndex();
     /**
      * The image currently selected, this is the one being shown.
      */
@@ -132,6 +146,7 @@ public class StreetsideData implements Data {
             return;
         }
         this.images.add(image);
+        this.imageIndex.add(image);
         if (update) {
             StreetsideLayer.invalidateInstance();
         }
@@ -157,8 +172,13 @@ public class StreetsideData implements Data {
         newImages = new HashSet<>(newImages);
         newImages.removeIf(this.images::contains);
         images.addAll(newImages);
+        newImages.forEach(imageIndex::add);
         sortedImages.addAll(newImages);
         sortedImages.sort(Comparator.naturalOrder());
+        sortedIndexes.clear();
+        for (var i = 0; i < sortedImages.size(); i++) {
+            sortedIndexes.put(sortedImages.get(i), i);
+        }
         if (update) {
             StreetsideLayer.invalidateInstance();
         }
@@ -174,8 +194,39 @@ public class StreetsideData implements Data {
         listeners.add(lis);
     }
 
+    /**
+     * Get the areas for which images have been downloaded
+     * @return The downloaded areas (unmodifiable), see {@link #addBounds(Bounds)}
+     */
     public List<Bounds> getBounds() {
-        return bounds;
+        return Collections.unmodifiableList(bounds);
+    }
+
+    /**
+     * Add an area for which images have been downloaded
+     * @param area The area
+     */
+    public void addBounds(Bounds area) {
+        bounds.add(area);
+        boundsIndex.add(area);
+    }
+
+    /**
+     * Check if an area has already been added with {@link #addBounds(Bounds)}
+     * @param area The area
+     * @return {@code true} if the same area has been added
+     */
+    public boolean containsBounds(Bounds area) {
+        return boundsIndex.containsBounds(area);
+    }
+
+    /**
+     * Check if images have been downloaded for a position
+     * @param latLon The position
+     * @return {@code true} if the position is in a downloaded area
+     */
+    public boolean isDownloaded(LatLon latLon) {
+        return boundsIndex.contains(latLon);
     }
 
     /**
@@ -223,6 +274,7 @@ public class StreetsideData implements Data {
     public void setImages(Collection<StreetsideImage> newImages) {
         synchronized (this) {
             this.images.clear();
+            this.imageIndex.clear();
             this.sortedImages.clear();
             this.addAll(newImages);
         }
@@ -356,7 +408,7 @@ public class StreetsideData implements Data {
      * @return The next image, if available
      */
     public StreetsideImage next(StreetsideImage current) {
-        final int currentIndex = sortedImages.indexOf(current);
+        final int currentIndex = indexOf(current);
         if (currentIndex + 1 >= sortedImages.size()) {
             return null;
         }
@@ -369,13 +421,29 @@ public class StreetsideData implements Data {
      * @return The previous image, if available
      */
     public StreetsideImage previous(StreetsideImage current) {
-        final int currentIndex = sortedImages.indexOf(current);
+        final int currentIndex = indexOf(current);
         if (currentIndex - 1 < 0) {
             return null;
         }
         return sortedImages.get(currentIndex - 1);
     }
 
+    private int indexOf(StreetsideImage image) {
+        final Integer index = image == null ? null : sortedIndexes.get(image);
+        return index == null ? -1 : index;
+    }
+
+    /**
+     * Find the images nearest to an image
+     * @param target The image to look around
+     * @param limit The maximum number of images to return
+     * @param maxDistance The maximum distance in meters
+     * @return The images other than the target, sorted by distance
+     */
+    public List<StreetsideImage> getNearestImages(StreetsideImage target, int limit, double maxDistance) {
+        return imageIndex.nearest(target, limit, maxDistance, image -> !target.equals(image));
+    }
+
     /**
      * Search for images
      * @param target The image to look around
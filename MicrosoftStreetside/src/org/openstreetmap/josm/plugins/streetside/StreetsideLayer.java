@@ -458,12 +458,8 @@ public final class StreetsideLayer extends AbstractModifiableLayer
      * @return An array containing the closest images belonging to different sequences sorted by distance from target.
      */
     private StreetsideImage[] getNearestImagesFromDifferentSequences(StreetsideImage target, int limit) {
-        return data.search(target, 0.01).parallelStream().filter(i -> !target.equals(i))
-                // Filters out images too far away from target
-                .filter(img -> img != null
-                        && img.greatCircleDistance(target) < StreetsideProperties.SEQUENCE_MAX_JUMP_DISTANCE.get())
-                .sorted(new NearestImgToTargetComparator(target)).map(StreetsideImage.class::cast).limit(limit)
-                .toArray(StreetsideImage[]::new);
+        return data.getNearestImages(target, limit, StreetsideProperties.SEQUENCE_MAX_JUMP_DISTANCE.get())
+                .toArray(new StreetsideImage[0]);
     }
 
     private synchronized void updateNearestImages() {
@@ -484,11 +480,4 @@ public final class StreetsideLayer extends AbstractModifiableLayer
             }
         }
     }
-
-    private record NearestImgToTargetComparator(StreetsideAbstractImage target) implements Comparator<StreetsideAbstractImage> {
-
-    @Override
-    public int compare(StreetsideAbstractImage img1, StreetsideAbstractImage img2) {
-        return (int) Math.signum(img1.greatCircleDistance(target) - img2.greatCircleDistance(target));
-    }
-}}
+}
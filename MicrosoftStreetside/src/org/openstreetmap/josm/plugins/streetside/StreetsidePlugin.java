@@ -13,6 +13,7 @@ import org.openstreetmap.josm.plugins.streetside.actions.StreetsideDownloadViewA
 import org.openstreetmap.josm.plugins.streetside.actions.StreetsideWalkAction;
 import org.openstreetmap.josm.plugins.streetside.actions.StreetsideZoomAction;
 import org.openstreetmap.josm.plugins.streetside.cubemap.CubemapBuilder;
+import org.openstreetmap.josm.plugins.streetside.cubemap.CubemapPrefetcher;
 import org.openstreetmap.josm.plugins.streetside.gui.StreetsideMainDialog;
 import org.openstreetmap.josm.plugins.streetside.gui.StreetsidePreferenceSetting;
 import org.openstreetmap.josm.plugins.streetside.gui.StreetsideViewerDialog;
@@ -89,6 +90,7 @@ public class StreetsidePlugin extends Plugin {
             StreetsideMainDialog.destroyInstance();
             ImageInfoPanel.destroyInstance();
             CubemapBuilder.destroyInstance();
+            CubemapPrefetcher.destroyInstance();
             StreetsideViewerDialog.destroyInstance();
         }
     }
@@ -12,6 +12,7 @@ import org.openstreetmap.josm.plugins.streetside.StreetsideDataListener;
 import org.openstreetmap.josm.plugins.streetside.StreetsideImage;
 import org.openstreetmap.josm.plugins.streetside.StreetsideLayer;
 import org.openstreetmap.josm.plugins.streetside.cache.CacheUtils;
+import org.openstreetmap.josm.plugins.streetside.cubemap.CubemapPrefetcher;
 import org.openstreetmap.josm.plugins.streetside.gui.StreetsideMainDialog;
 import org.openstreetmap.josm.plugins.streetside.utils.StreetsideProperties;
 import org.openstreetmap.josm.tools.Logging;
@@ -75,7 +76,8 @@ public class WalkThread extends Thread implements StreetsideDataListener {
                     // Predownload next 10 thumbnails.
                     preDownloadImages(this.data.next(image), 10, CacheUtils.PICTURE.THUMBNAIL);
                     if (Boolean.TRUE.equals(StreetsideProperties.PREDOWNLOAD_CUBEMAPS.get())) {
-                        preDownloadCubemaps(this.data.next(image), 10);
+                        CubemapPrefetcher.getInstance().prefetch(data, image, goForward,
+                                StreetsideProperties.PRE_FETCH_IMAGE_COUNT.get());
                     }
                     if (waitForFullQuality) {
                         // Start downloading 3 next full images.
@@ -123,23 +125,6 @@ public class WalkThread extends Thread implements StreetsideDataListener {
         end();
     }
 
-    private void preDownloadCubemaps(StreetsideImage startImage, int n) {
-        if (n >= 1 && startImage != null) {
-
-            for (int i = 0; i < 6; i++) {
-                for (int j = 0; j < 4; j++) {
-                    for (int k = 0; k < 4; k++) {
-
-                        CacheUtils.downloadPicture(startImage, CacheUtils.PICTURE.CUBEMAP);
-                        if (this.data.next(startImage) != null && n >= 2) {
-                            preDownloadCubemaps(this.data.next(startImage), n - 1);
-                        }
-                    }
-                }
-            }
-        }
-    }
-
     @Override
     public void imagesAdded() {
         // Nothing
@@ -147,7 +132,7 @@ public class WalkThread extends Thread implements StreetsideDataListener {
 
     @Override
     public void selectedImageChanged(StreetsideImage oldImage, StreetsideImage newImage) {
-        if (newImage != this.data.next(oldImage)) {
+        if (newImage != (goForward ? this.data.next(oldImage) : this.data.previous(oldImage))) {
             end();
             interrupt();
         }
@@ -186,6 +171,7 @@ public class WalkThread extends Thread implements StreetsideDataListener {
         if (SwingUtilities.isEventDispatchThread()) {
             end = true;
             data.removeListener(this);
+            CubemapPrefetcher.getInstance().cancel();
             StreetsideMainDialog.getInstance().setMode(StreetsideMainDialog.MODE.NORMAL);
         } else {
             SwingUtilities.invokeLater(this::end);
@@ -0,0 +1,164 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.streetside.cubemap;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import javax.imageio.ImageIO;
+
+import org.openstreetmap.josm.plugins.streetside.CubeMapTileXY;
+import org.openstreetmap.josm.plugins.streetside.StreetsideAbstractImage;
+import org.openstreetmap.josm.plugins.streetside.StreetsideData;
+import org.openstreetmap.josm.plugins.streetside.StreetsideImage;
+import org.openstreetmap.josm.plugins.streetside.utils.StreetsideProperties;
+import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Pair;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Downloads and decodes the cubemap tiles of the images ahead of the walk direction, so that the
+ * {@link TileDownloadingTask}s of the next selected image can take them from memory.
+ * <p>
+ * Prefetching runs in a small pool of low priority threads. Prefetches for images which are no longer ahead,
+ * for example because the walk direction changed, are cancelled.
+ */
+public final class CubemapPrefetcher {
+
+    private static final Logger LOGGER = Logger.getLogger(CubemapPrefetcher.class.getCanonicalName());
+
+    private static CubemapPrefetcher instance;
+
+    private final CubemapTileCache cache;
+    private final ExecutorService pool;
+    /** The running or queued prefetches, by image id, in walk order */
+    private final Map<String, Future<?>> pending = new LinkedHashMap<>();
+    /** The direction of the last prefetch, {@code null} if nothing is prefetched */
+    private Boolean forward;
+
+    private CubemapPrefetcher() {
+        cache = new CubemapTileCache(StreetsideProperties.PREFETCH_CACHE_SIZE.get() * 1024L * 1024L);
+        pool = Executors.newFixedThreadPool(Math.max(1, StreetsideProperties.PREFETCH_THREADS.get()),
+                Utils.newThreadFactory("streetside-prefetch-%d", Thread.MIN_PRIORITY));
+    }
+
+    public static synchronized CubemapPrefetcher getInstance() {
+        if (instance == null) {
+            instance = new CubemapPrefetcher();
+        }
+        return instance;
+    }
+
+    /**
+     * Destroys the unique instance of the class, cancelling all prefetches.
+     */
+    public static synchronized void destroyInstance() {
+        if (instance != null) {
+            instance.cancel();
+            instance.pool.shutdownNow();
+            instance.cache.clear();
+            instance = null;
+        }
+    }
+
+    /**
+     * Get the cache of prefetched tiles, for its hit rate
+     * @return The tile cache
+     */
+    public CubemapTileCache getCache() {
+        return cache;
+    }
+
+    /**
+     * Get a prefetched tile
+     * @param url The tile URL
+     * @return The decoded tile, or {@code null} if it was not prefetched
+     */
+    public BufferedImage getTile(String url) {
+        return cache.get(url);
+    }
+
+    /**
+     * Prefetch the cubemaps of the images following an image in the walk direction.
+     * Prefetches of images which are not among them anymore are cancelled.
+     *
+     * @param data The data containing the images
+     * @param current The current image, which is not prefetched
+     * @param forward {@code true} to prefetch the next images, {@code false} for the previous ones
+     * @param count The number of images to prefetch
+     */
+    public synchronized void prefetch(StreetsideData data, StreetsideImage current, boolean forward, int count) {
+        final List<StreetsideImage> targets = new ArrayList<>(Math.max(0, count));
+        var image = current;
+        while (targets.size() < count && (image = forward ? data.next(image) : data.previous(image)) != null) {
+            targets.add(image);
+        }
+
+        if (this.forward != null && this.forward != forward) {
+            cancel();
+        }
+        this.forward = forward;
+
+        final Set<String> ids = targets.stream().map(StreetsideImage::id).collect(Collectors.toSet());
+        for (Iterator<Map.Entry<String, Future<?>>> it = pending.entrySet().iterator(); it.hasNext();) {
+            final Map.Entry<String, Future<?>> entry = it.next();
+            if (!ids.contains(entry.getKey())) {
+                entry.getValue().cancel(true);
+                it.remove();
+            }
+        }
+
+        for (StreetsideImage target : targets) {
+            pending.computeIfAbsent(target.id(), id -> pool.submit(() -> download(target)));
+        }
+
+        if (Boolean.TRUE.equals(StreetsideProperties.DEBUGING_ENABLED.get())) {
+            LOGGER.log(Logging.LEVEL_DEBUG, "Prefetching {0} cubemaps, cache: {1}",
+                    new Object[] { targets.size(), cache });
+        }
+    }
+
+    /**
+     * Cancel all prefetches. Tiles which are already prefetched are kept.
+     */
+    public synchronized void cancel() {
+        pending.values().forEach(f -> f.cancel(true));
+        pending.clear();
+        forward = null;
+    }
+
+    private void download(StreetsideAbstractImage image) {
+        final int zoom = Boolean.TRUE.equals(StreetsideProperties.SHOW_HIGH_RES_STREETSIDE_IMAGERY.get())
+                ? image.zoomMax()
+                : image.zoomMin();
+        for (var face : CubemapUtils.CubemapFaces.values()) {
+            for (Pair<CubeMapTileXY, String> tile : image.getFaceTiles(face, zoom).toList()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                if (!cache.contains(tile.b)) {
+                    try {
+                        final BufferedImage tileImage = ImageIO.read(URI.create(tile.b).toURL());
+                        if (tileImage != null) {
+                            cache.put(tile.b, tileImage);
+                        }
+                    } catch (IOException e) {
+                        // The tile is downloaded again when the image is selected
+                        Logging.trace(e);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.streetside.cubemap;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A least recently used cache of decoded cubemap tiles, bounded by the memory used by the tile pixels.
+ * <p>
+ * Lookups are counted, so that the hit rate of the cache can be used to judge how well prefetching works.
+ */
+public final class CubemapTileCache {
+    private final Map<String, BufferedImage> tiles = new LinkedHashMap<>(64, 0.75f, true);
+    private final long maxBytes;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Create a new cache
+     * @param maxBytes The maximum number of bytes used by the cached tiles
+     */
+    public CubemapTileCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get a tile, counting the lookup as a hit or a miss
+     * @param url The tile URL
+     * @return The tile, or {@code null} if it is not cached
+     */
+    public synchronized BufferedImage get(String url) {
+        final BufferedImage tile = tiles.get(url);
+        if (tile == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return tile;
+    }
+
+    /**
+     * Check if a tile is cached, without counting the lookup or changing the eviction order
+     * @param url The tile URL
+     * @return {@code true} if the tile is cached
+     */
+    public synchronized boolean contains(String url) {
+        return tiles.containsKey(url);
+    }
+
+    /**
+     * Add a tile, evicting the least recently used tiles if needed. Tiles larger than the cache are ignored.
+     * @param url The tile URL
+     * @param tile The decoded tile
+     */
+    public synchronized void put(String url, BufferedImage tile) {
+        final long size = sizeOf(tile);
+        if (size > maxBytes) {
+            return;
+        }
+        final BufferedImage old = tiles.put(url, tile);
+        if (old != null) {
+            bytes -= sizeOf(old);
+        }
+        bytes += size;
+        final Iterator<BufferedImage> eldest = tiles.values().iterator();
+        while (bytes > maxBytes) {
+            bytes -= sizeOf(eldest.next());
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Remove all tiles. The counters are kept.
+     */
+    public synchronized void clear() {
+        tiles.clear();
+        bytes = 0;
+    }
+
+    /**
+     * Get the number of cached tiles
+     * @return The number of tiles
+     */
+    public synchronized int size() {
+        return tiles.size();
+    }
+
+    /**
+     * Get the memory used by the cached tiles
+     * @return The size in bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Get the maximum memory used by the cached tiles
+     * @return The size in bytes
+     */
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Get the number of lookups which found a tile
+     * @return The hit count
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of lookups which did not find a tile
+     * @return The miss count
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get the number of tiles evicted to stay below the maximum size
+     * @return The eviction count
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Get the ratio of lookups which found a tile
+     * @return The hit rate, between 0 and 1 (0 if there was no lookup)
+     */
+    public synchronized double getHitRate() {
+        final long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Estimate the memory used by the pixels of an image
+     * @param image The image
+     * @return The size in bytes
+     */
+    static long sizeOf(BufferedImage image) {
+        final DataBuffer buffer = image.getRaster().getDataBuffer();
+        return (long) buffer.getSize() * buffer.getNumBanks() * DataBuffer.getDataTypeSize(buffer.getDataType()) / 8;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.ROOT, "%d tiles, %d of %d bytes, %d hits, %d misses, %d evictions",
+                tiles.size(), bytes, maxBytes, hits, misses, evictions);
+    }
+}
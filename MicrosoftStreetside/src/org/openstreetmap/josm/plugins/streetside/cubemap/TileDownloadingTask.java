@@ -108,7 +108,10 @@ public class TileDownloadingTask implements Callable<List<String>> {
         long startTime = System.currentTimeMillis();
 
         try {
-            img = ImageIO.read(URI.create(url).toURL());
+            img = CubemapPrefetcher.getInstance().getTile(url);
+            if (img == null) {
+                img = ImageIO.read(URI.create(url).toURL());
+            }
 
             if (img == null) {
                 LOGGER.log(Logging.LEVEL_ERROR, "Download of BufferedImage {0} is null!", url);
@@ -56,9 +56,9 @@ public final class StreetsideDownloader {
             return;
         }
         MainApplication.getLayerManager().getEditLayer().data.getDataSourceBounds().stream()
-                .filter(bounds -> !StreetsideLayer.getInstance().getData().getBounds().contains(bounds))
+                .filter(bounds -> !StreetsideLayer.getInstance().getData().containsBounds(bounds))
                 .forEach(bounds -> {
-                    StreetsideLayer.getInstance().getData().getBounds().add(bounds);
+                    StreetsideLayer.getInstance().getData().addBounds(bounds);
                     StreetsideDownloader.getImages(bounds.getMin(), bounds.getMax());
                 });
     }
@@ -110,7 +110,7 @@ public final class StreetsideDownloader {
         if (isViewDownloaded(view)) {
             return;
         }
-        StreetsideLayer.getInstance().getData().getBounds().add(view);
+        StreetsideLayer.getInstance().getData().addBounds(view);
         getImages(view);
     }
 
@@ -142,7 +142,7 @@ public final class StreetsideDownloader {
      * @return true if it lies inside the bounds; false otherwise;
      */
     private static boolean isInBounds(LatLon latlon) {
-        return StreetsideLayer.getInstance().getData().getBounds().parallelStream().anyMatch(b -> b.contains(latlon));
+        return StreetsideLayer.getInstance().getData().isDownloaded(latlon);
     }
 
     /**
@@ -80,6 +80,17 @@ public final class StreetsideProperties {
     public static final IntegerProperty PRE_FETCH_IMAGE_COUNT = new IntegerProperty("streetside.prefetch-image-count",
             2);
 
+    /**
+     * The maximum memory used by the cubemap tiles prefetched in walk mode, in MiB
+     */
+    public static final IntegerProperty PREFETCH_CACHE_SIZE = new IntegerProperty("streetside.prefetch-cache-size",
+            128);
+
+    /**
+     * The number of threads downloading and decoding the cubemap tiles prefetched in walk mode
+     */
+    public static final IntegerProperty PREFETCH_THREADS = new IntegerProperty("streetside.prefetch-threads", 2);
+
     private StreetsideProperties() {
         // Private constructor to avoid instantiation
     }
@@ -2,15 +2,24 @@
 package org.openstreetmap.josm.plugins.streetside;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
 import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.stream.Collectors;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.plugins.streetside.utils.TestUtil;
 import org.openstreetmap.josm.testutils.annotations.Main;
 
@@ -133,4 +142,45 @@ class StreetsideDataTest {
         data.setSelectedImage(null);
         assertThrows(IllegalStateException.class, data::selectPrevious);
     }
+
+    /**
+     * Test that {@link StreetsideData#getNearestImages(StreetsideImage, int, double)} returns the same
+     * images as sorting all images by distance.
+     */
+    @Test
+    void testGetNearestImages() {
+        final Random random = new Random(42);
+        final List<StreetsideImage> images = new ArrayList<>();
+        for (var i = 0; i < 2000; i++) {
+            images.add(TestUtil.generateImage(Integer.toString(i), 48.5 + random.nextDouble() * 0.02,
+                    2.5 + random.nextDouble() * 0.02));
+        }
+        data = new StreetsideData();
+        data.addAll(images);
+
+        for (var i = 0; i < 50; i++) {
+            final StreetsideImage target = images.get(random.nextInt(images.size()));
+            final List<StreetsideImage> expected = images.stream().filter(img -> !img.equals(target))
+                    .filter(img -> img.greatCircleDistance(target) < 100)
+                    .sorted(Comparator.comparingDouble(img -> img.greatCircleDistance(target)))
+                    .limit(5).collect(Collectors.toList());
+            assertEquals(expected, data.getNearestImages(target, 5, 100));
+        }
+    }
+
+    /**
+     * Test the index of downloaded areas.
+     */
+    @Test
+    void testDownloadedBounds() {
+        data.addBounds(new Bounds(0, 0, 1, 1));
+        data.addBounds(new Bounds(0.5, 2, 3, 3));
+        assertTrue(data.isDownloaded(new LatLon(0.5, 0.5)));
+        assertTrue(data.isDownloaded(new LatLon(2.5, 2.5)));
+        assertFalse(data.isDownloaded(new LatLon(2.5, 0.5)));
+        assertFalse(data.isDownloaded(new LatLon(-0.5, 0.5)));
+        assertTrue(data.containsBounds(new Bounds(0, 0, 1, 1)));
+        assertFalse(data.containsBounds(new Bounds(0, 0, 1, 2)));
+        assertEquals(2, data.getBounds().size());
+    }
 }
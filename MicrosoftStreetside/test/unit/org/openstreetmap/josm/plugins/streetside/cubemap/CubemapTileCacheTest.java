@@ -0,0 +1,76 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.streetside.cubemap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+class CubemapTileCacheTest {
+
+    /** A 16x16 tile uses 1 KiB */
+    private static BufferedImage tile() {
+        return new BufferedImage(16, 16, BufferedImage.TYPE_INT_ARGB);
+    }
+
+    @Test
+    void testSizeOf() {
+        assertEquals(1024, CubemapTileCache.sizeOf(tile()));
+        assertEquals(256, CubemapTileCache.sizeOf(new BufferedImage(16, 16, BufferedImage.TYPE_BYTE_GRAY)));
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsed() {
+        final var cache = new CubemapTileCache(3 * 1024);
+        final var a = tile();
+        cache.put("a", a);
+        cache.put("b", tile());
+        cache.put("c", tile());
+        assertEquals(3 * 1024, cache.getBytes());
+
+        // "a" becomes the most recently used tile, so "b" is evicted
+        assertSame(a, cache.get("a"));
+        cache.put("d", tile());
+        assertEquals(3, cache.size());
+        assertEquals(3 * 1024, cache.getBytes());
+        assertEquals(1, cache.getEvictions());
+        assertTrue(cache.contains("a"));
+        assertFalse(cache.contains("b"));
+
+        // replacing a tile does not count its old size
+        cache.put("d", tile());
+        assertEquals(3 * 1024, cache.getBytes());
+        assertEquals(1, cache.getEvictions());
+
+        // tiles larger than the cache are ignored
+        cache.put("large", new BufferedImage(64, 64, BufferedImage.TYPE_INT_ARGB));
+        assertFalse(cache.contains("large"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    void testHitRate() {
+        final var cache = new CubemapTileCache(1024 * 1024);
+        assertEquals(0, cache.getHitRate());
+        cache.put("a", tile());
+        assertNull(cache.get("b"));
+        cache.get("a");
+        cache.get("a");
+        cache.get("c");
+        // contains does not count as a lookup
+        cache.contains("a");
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate());
+
+        cache.clear();
+        assertEquals(0, cache.getBytes());
+        assertNull(cache.get("a"));
+        assertEquals(3, cache.getMisses());
+    }
+}
@@ -3,8 +3,8 @@ package org.openstreetmap.josm.plugins.fr.cadastre.edigeo;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -143,8 +143,17 @@ abstract class EdigeoFile {
         this.path = path;
     }
 
+    /**
+     * Returns the source providing the content of this file.
+     * @return the source providing the content of this file
+     */
+    EdigeoSource getSource() {
+        return EdigeoSource.FILE_SYSTEM;
+    }
+
     public EdigeoFile read() throws IOException, ReflectiveOperationException {
-        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.ISO_8859_1)) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(getSource().open(path), StandardCharsets.ISO_8859_1))) {
             String line;
             while ((line = reader.readLine()) != null) {
                 if (!line.isEmpty()) {
@@ -4,25 +4,40 @@ package org.openstreetmap.josm.plugins.fr.cadastre.edigeo;
 import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.nio.file.Path;
 import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.openstreetmap.josm.actions.SimplifyWayAction;
 import org.openstreetmap.josm.command.SequenceCommand;
 import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.plugins.fr.cadastre.download.CadastreDownloadData;
 import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
 
 /**
  * Edigeo THF file.
  */
 public class EdigeoFileTHF extends EdigeoFile {
 
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors()),
+            Utils.newThreadFactory("cadastre-edigeo-%d", Thread.NORM_PRIORITY));
+
     /**
      * Support descriptor.
      */
@@ -229,7 +244,9 @@ public class EdigeoFileTHF extends EdigeoFile {
         EdigeoFileSCD scd;
         EdigeoFileQAL qal;
         final List<EdigeoFileVEC> vec = new ArrayList<>();
+        final Map<String, EdigeoFileVEC> vecBySubsetId = new HashMap<>();
         final List<EdigeoLotFile<?>> allFiles = new ArrayList<>();
+        EdigeoSource source = EdigeoSource.FILE_SYSTEM;
 
         Lot(String type) {
             super(type);
@@ -258,15 +275,38 @@ public class EdigeoFileTHF extends EdigeoFile {
             }
         }
 
-        void readFiles(Path path) throws IOException, ReflectiveOperationException {
-            Path dir = path.getParent();
-            allFiles.add(new EdigeoFileGEN(this, genId, dir.resolve(name + genName + ".GEN")).read());
-            allFiles.add(new EdigeoFileGEO(this, geoId, dir.resolve(name + geoName + ".GEO")).read());
-            allFiles.add(new EdigeoFileDIC(this, dicId, dir.resolve(name + dicName + ".DIC")).read());
-            allFiles.add(new EdigeoFileSCD(this, scdId, dir.resolve(name + scdName + ".SCD")).read());
-            allFiles.add(new EdigeoFileQAL(this, qalId, dir.resolve(name + qalName + ".QAL")).read());
+        void readFiles(Path path, EdigeoSource source) throws IOException, ReflectiveOperationException {
+            this.source = Objects.requireNonNull(source, "source");
+            EdigeoFileGEN genFile = new EdigeoFileGEN(this, genId, path.resolveSibling(name + genName + ".GEN"));
+            EdigeoFileGEO geoFile = new EdigeoFileGEO(this, geoId, path.resolveSibling(name + geoName + ".GEO"));
+            EdigeoFileDIC dicFile = new EdigeoFileDIC(this, dicId, path.resolveSibling(name + dicName + ".DIC"));
+            EdigeoFileSCD scdFile = new EdigeoFileSCD(this, scdId, path.resolveSibling(name + scdName + ".SCD"));
+            EdigeoFileQAL qalFile = new EdigeoFileQAL(this, qalId, path.resolveSibling(name + qalName + ".QAL"));
+            Collections.addAll(allFiles, genFile, geoFile, dicFile, scdFile, qalFile);
             for (int i = 0; i < getNumberOfGeoData(); i++) {
-                allFiles.add(new EdigeoFileVEC(this, vecId.get(i), dir.resolve(name + vecName.get(i) + ".VEC")).read());
+                allFiles.add(new EdigeoFileVEC(this, vecId.get(i), path.resolveSibling(name + vecName.get(i) + ".VEC")));
+            }
+            // Files are read concurrently, except that the SCD file references DIC blocks
+            // and VEC files reference SCD blocks, which must have been read before
+            List<Future<?>> tasks = new ArrayList<>();
+            try {
+                tasks.add(POOL.submit(genFile::read));
+                tasks.add(POOL.submit(geoFile::read));
+                tasks.add(POOL.submit(qalFile::read));
+                Future<?> scdTask = POOL.submit(() -> {
+                    dicFile.read();
+                    return scdFile.read();
+                });
+                tasks.add(scdTask);
+                await(scdTask);
+                for (EdigeoFileVEC vecFile : vec) {
+                    tasks.add(POOL.submit(vecFile::read));
+                }
+                for (Future<?> task : tasks) {
+                    await(task);
+                }
+            } finally {
+                tasks.forEach(t -> t.cancel(true));
             }
             allFiles.forEach(EdigeoFile::resolve);
             for (EdigeoFile f : allFiles) {
@@ -443,13 +483,47 @@ public class EdigeoFileTHF extends EdigeoFile {
     /** GTS */ Support support;
     /** GTL */ final List<Lot> lots = new ArrayList<>();
 
+    private final EdigeoSource source;
+
     /**
      * Constructs a new {@code EdigeoFileTHF}.
      * @param path path to THF file
      * @throws IOException if any I/O error occurs
      */
     public EdigeoFileTHF(Path path) throws IOException {
+        this(path, EdigeoSource.FILE_SYSTEM);
+    }
+
+    /**
+     * Constructs a new {@code EdigeoFileTHF} whose files, including the lot files, are read from the given source.
+     * @param path path to THF file. Lot files are expected in the same directory
+     * @param source source providing the content of the files, for example the entries of an archive
+     * @throws IOException if any I/O error occurs
+     */
+    public EdigeoFileTHF(Path path, EdigeoSource source) throws IOException {
         super(path);
+        this.source = Objects.requireNonNull(source, "source");
+    }
+
+    private static void await(Future<?> task) throws IOException, ReflectiveOperationException {
+        try {
+            task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (InterruptedIOException) new InterruptedIOException().initCause(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof ReflectiveOperationException) {
+                throw (ReflectiveOperationException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
     }
 
     /**
@@ -478,11 +552,16 @@ public class EdigeoFileTHF extends EdigeoFile {
         }
     }
 
+    @Override
+    EdigeoSource getSource() {
+        return source;
+    }
+
     @Override
     public EdigeoFileTHF read() throws IOException, ReflectiveOperationException {
         super.read();
         for (Lot lot : getLots()) {
-            lot.readFiles(path);
+            lot.readFiles(path, source);
         }
         return this;
     }
@@ -490,11 +569,13 @@ public class EdigeoFileTHF extends EdigeoFile {
     @Override
     public EdigeoFileTHF fill(DataSet ds, CadastreDownloadData data) {
         super.fill(ds, data);
+        // Only simplify the ways of this file, when several files are loaded in the same data set
+        Set<Way> existingWays = new HashSet<>(ds.getWays());
         for (Lot lot : getLots()) {
             //ds.addDataSource(new DataSource(lot.gen.getGeoBounds().getBounds(), support.author));
             lot.fill(ds, data);
         }
-        ds.getWays().forEach(w -> {
+        ds.getWays().stream().filter(w -> !existingWays.contains(w)).forEach(w -> {
             SequenceCommand command = SimplifyWayAction.createSimplifyCommand(w,
                     Config.getPref().getDouble("cadastre.simplify-way.max-error", 0.20));
             if (command != null) {
@@ -422,9 +422,11 @@ public class EdigeoFileVEC extends EdigeoLotFile<VecBlock<?>> {
         final void resolvePhase1() {
             super.resolvePhase1();
             for (List<String> values : lElements) {
-                VecBlock<?> b = lot.vec.stream().filter(v -> v.subsetId.equals(values.get(1))).findAny()
-                        .orElseThrow(() -> new IllegalArgumentException(values.toString()))
-                        .find(values, VecBlock.class);
+                EdigeoFileVEC vec = lot.vecBySubsetId.get(values.get(1));
+                if (vec == null) {
+                    throw new IllegalArgumentException(values.toString());
+                }
+                VecBlock<?> b = vec.find(values, VecBlock.class);
                 b.addRelation(this);
                 elements.add(b);
                 compositions.put(b, mCompositions.get(values));
@@ -533,6 +535,7 @@ public class EdigeoFileVEC extends EdigeoLotFile<VecBlock<?>> {
         register("FEA", ObjectBlock.class);
         register("LNK", RelationBlock.class);
         lot.vec.add(this);
+        lot.vecBySubsetId.putIfAbsent(seId, this);
     }
 
     private static BBox around(LatLon ll) {
@@ -25,6 +25,8 @@ public abstract class EdigeoLotFile<B extends ChildBlock> extends EdigeoFile {
 
     private final Map<String, Class<? extends B>> classes = new HashMap<>();
     protected final ClassToInstancesMap<B> blocks = new MutableClassToInstancesMap<>();
+    /** Blocks by identifier, for each block class. Built once the file is read */
+    private Map<Class<? extends B>, Map<String, B>> index;
 
     EdigeoLotFile(Lot lot, String subsetId, Path path) throws IOException {
         super(path);
@@ -43,12 +45,31 @@ public abstract class EdigeoLotFile<B extends ChildBlock> extends EdigeoFile {
         return addBlock(blocks.get(klass), klass.getDeclaredConstructor(Lot.class, String.class).newInstance(lot, type));
     }
 
+    @Override
+    EdigeoSource getSource() {
+        return lot.source;
+    }
+
     @Override
     public EdigeoLotFile<B> read() throws IOException, ReflectiveOperationException {
         super.read();
+        buildIndex();
         return this;
     }
 
+    private void buildIndex() {
+        Map<Class<? extends B>, Map<String, B>> newIndex = new HashMap<>();
+        blocks.forEach((k, v) -> {
+            Map<String, B> byIdentifier = new HashMap<>(Math.max(16, v.size() * 4 / 3 + 1));
+            for (B b : v) {
+                // keep the first block of duplicate identifiers
+                byIdentifier.putIfAbsent(b.identifier, b);
+            }
+            newIndex.put(k, byIdentifier);
+        });
+        index = newIndex;
+    }
+
     @Override
     final boolean isValid() {
         return blocks.values().stream().allMatch(l -> l.stream().allMatch(Block::isValid));
@@ -68,10 +89,15 @@ public abstract class EdigeoLotFile<B extends ChildBlock> extends EdigeoFile {
      * <li>Descriptor type</li>
      * <li>Descriptor identifier</li></ol>
      * @return found descriptor
+     * @throws IllegalArgumentException if the descriptor type is unknown, or if no descriptor has this identifier
      */
     public final B find(List<String> values) {
         assert values.size() == 4 : values;
-        return find(values, classes.get(values.get(2)));
+        Class<? extends B> klass = classes.get(values.get(2));
+        if (klass == null) {
+            throw new IllegalArgumentException(values.toString());
+        }
+        return find(values, klass);
     }
 
     /**
@@ -84,23 +110,32 @@ public abstract class EdigeoLotFile<B extends ChildBlock> extends EdigeoFile {
      * <li>Descriptor identifier</li></ol>
      * @param klass descriptor class
      * @return found descriptor
+     * @throws IllegalArgumentException if the descriptor type is unknown or not a {@code klass},
+     * or if no descriptor has this identifier
      */
-    @SuppressWarnings("unchecked")
     public final <T extends B> T find(List<String> values, Class<T> klass) {
         assert values.size() == 4 : values;
         assert values.get(0).equals(lot.identifier) : values + " / " + lot.identifier;
         assert values.get(1).equals(subsetId) : values + " / " + subsetId;
-        assert klass.isAssignableFrom(classes.get(values.get(2))) : values;
-        List<T> list = blocks.getInstances(klass);
-        if (list == null) {
-            Class<? extends B> realClass = classes.get(values.get(2));
-            if (klass.isAssignableFrom(realClass)) {
-                list = (List<T>) blocks.getInstances(realClass);
-            } else {
-                throw new IllegalArgumentException(values + " / " + klass + " / " + realClass);
-            }
+        Class<? extends B> realClass = classes.get(values.get(2));
+        if (realClass == null || !klass.isAssignableFrom(realClass)) {
+            throw new IllegalArgumentException(values + " / " + klass + " / " + realClass);
+        }
+        Class<? extends B> type = blocks.containsKey(klass) ? klass : realClass;
+        String id = values.get(3);
+        B block;
+        if (index != null) {
+            Map<String, B> byIdentifier = index.get(type);
+            block = byIdentifier != null ? byIdentifier.get(id) : null;
+        } else {
+            // Blocks referenced while this file is read are not indexed yet
+            List<B> candidates = blocks.get(type);
+            block = candidates != null
+                    ? candidates.stream().filter(x -> x.identifier.equals(id)).findAny().orElse(null) : null;
+        }
+        if (block == null) {
+            throw new IllegalArgumentException(values + " / " + klass);
         }
-        return list.stream().filter(x -> x.identifier.equals(values.get(3))).findAny().orElseThrow(
-                () -> new IllegalArgumentException(values + " / " + klass));
+        return klass.cast(block);
     }
 }
@@ -0,0 +1,25 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.fr.cadastre.edigeo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Provides the content of Edigeo files, read from the file system or from an archive.
+ */
+@FunctionalInterface
+public interface EdigeoSource {
+
+    /** Reads Edigeo files from the file system */
+    EdigeoSource FILE_SYSTEM = Files::newInputStream;
+
+    /**
+     * Opens an Edigeo file.
+     * @param path path to the file
+     * @return a new input stream of the file content
+     * @throws IOException if the file does not exist or cannot be read
+     */
+    InputStream open(Path path) throws IOException;
+}
@@ -8,13 +8,17 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.List;
 import java.util.Objects;
 
 import org.openstreetmap.josm.actions.ExtensionFileFilter;
 import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.MainApplication;
 import org.openstreetmap.josm.gui.io.importexport.OsmImporter;
+import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
+import org.openstreetmap.josm.gui.util.GuiHelper;
 import org.openstreetmap.josm.io.CachedFile;
 import org.openstreetmap.josm.io.IllegalDataException;
 import org.openstreetmap.josm.plugins.fr.cadastre.download.CadastreDownloadData;
@@ -38,6 +42,38 @@ public class EdigeoPciImporter extends OsmImporter {
         super(EDIGEO_FILE_FILTER);
     }
 
+    @Override
+    public boolean isBatchImporter() {
+        return true;
+    }
+
+    /**
+     * Imports several files, typically the archives of neighbouring communes, into a single data layer.
+     */
+    @Override
+    public void importData(List<File> files, ProgressMonitor progressMonitor)
+            throws IOException, IllegalDataException {
+        if (files.size() == 1) {
+            importData(files.get(0), progressMonitor);
+            return;
+        }
+        File associatedFile = files.get(0);
+        String layerName = tr("Cadastre ({0} files)", files.size());
+        DataSet dataSet;
+        try {
+            dataSet = EdigeoPciReader.parseDataSet(files, getData(), progressMonitor);
+        } catch (IOException e) {
+            throw new IllegalDataException(e);
+        }
+        OsmDataLayer layer = createLayer(dataSet, associatedFile, layerName);
+        Runnable postLayerTask = createPostLayerTask(dataSet, associatedFile, layerName, layer);
+        GuiHelper.runInEDT(() -> {
+            MainApplication.getLayerManager().addLayer(layer);
+            postLayerTask.run();
+            layer.onPostLoadFromFile();
+        });
+    }
+
     @Override
     public void importData(File file, ProgressMonitor progressMonitor)
             throws IOException, IllegalDataException {
@@ -54,15 +90,19 @@ public class EdigeoPciImporter extends OsmImporter {
     @Override
     protected DataSet parseDataSet(InputStream in, ProgressMonitor instance) throws IllegalDataException {
         try {
-            if (data == null) {
-                data = new CadastreDownloadData(true, true, true, true, true, true, true, true, true);
-            }
-            return EdigeoPciReader.parseDataSet(in, file, data, instance);
+            return EdigeoPciReader.parseDataSet(in, file, getData(), instance);
         } catch (IOException e) {
             throw new IllegalDataException(e);
         }
     }
 
+    private CadastreDownloadData getData() {
+        if (data == null) {
+            data = new CadastreDownloadData(true, true, true, true, true, true, true, true, true);
+        }
+        return data;
+    }
+
     /**
      * Import data from an URL.
      * @param source source URL
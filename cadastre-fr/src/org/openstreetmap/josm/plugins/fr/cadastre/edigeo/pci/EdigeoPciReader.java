@@ -1,20 +1,32 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.fr.cadastre.edigeo.pci;
 
+import static org.openstreetmap.josm.tools.I18n.tr;
+
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.BiPredicate;
 import java.util.function.Predicate;
+import java.util.stream.Collectors;
 
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
@@ -32,6 +44,7 @@ import org.openstreetmap.josm.io.IllegalDataException;
 import org.openstreetmap.josm.plugins.fr.cadastre.download.CadastreDownloadData;
 import org.openstreetmap.josm.plugins.fr.cadastre.edigeo.EdigeoFileTHF;
 import org.openstreetmap.josm.plugins.fr.cadastre.edigeo.EdigeoFileVEC;
+import org.openstreetmap.josm.plugins.fr.cadastre.edigeo.EdigeoSource;
 import org.openstreetmap.josm.tools.Logging;
 import org.openstreetmap.josm.tools.Utils;
 
@@ -40,6 +53,11 @@ import org.openstreetmap.josm.tools.Utils;
  */
 public class EdigeoPciReader extends AbstractReader {
 
+    // Reads (and decompresses) several archives at once, in addition to the files of each archive read concurrently
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+            Utils.newThreadFactory("cadastre-edigeo-archive-%d", Thread.NORM_PRIORITY));
+
     private static final BiPredicate<CadastreDownloadData, OsmPrimitive> water = (x, p) -> !x.isDownloadWater();
     private static final BiPredicate<CadastreDownloadData, OsmPrimitive> build = (x, p) -> !x.isDownloadBuilding();
     private static final BiPredicate<CadastreDownloadData, OsmPrimitive> symbo = (x, p) -> !x.isDownloadSymbol();
@@ -272,8 +290,12 @@ public class EdigeoPciReader extends AbstractReader {
         if (in != null) {
             in.close();
         }
+        return parseDataSet(Collections.singletonList(file), data, instance);
+    }
+
+    static DataSet parseDataSet(List<File> files, CadastreDownloadData data, ProgressMonitor instance) throws IOException {
         try {
-            return new EdigeoPciReader().parse(file.toPath(), data, instance);
+            return new EdigeoPciReader().parse(files.stream().map(File::toPath).collect(Collectors.toList()), data, instance);
         } catch (IOException e) {
             throw e;
         } catch (Exception | AssertionError e) {
@@ -283,38 +305,117 @@ public class EdigeoPciReader extends AbstractReader {
     }
 
     DataSet parse(Path path, CadastreDownloadData data, ProgressMonitor instance) throws IOException, ReflectiveOperationException {
-        Path tmpDir = null;
-        Path thfPath = path;
+        return parse(Collections.singletonList(path), data, instance);
+    }
+
+    /**
+     * Parses several THF files or {@code .tar.bz2} archives into a single data set.
+     * Files are read concurrently, then filled into the data set one after another, in the given order.
+     * @param paths paths to THF files or {@code .tar.bz2} archives
+     * @param data defines which data has to be read
+     * @param instance progress monitor
+     * @return the data set
+     * @throws IOException if any I/O error occurs
+     * @throws ReflectiveOperationException if an Edigeo block cannot be created
+     */
+    DataSet parse(List<Path> paths, CadastreDownloadData data, ProgressMonitor instance) throws IOException, ReflectiveOperationException {
+        instance.beginTask(tr("Reading cadastre files"), paths.size());
+        List<Future<EdigeoFileTHF>> tasks = new ArrayList<>(paths.size());
         try {
-            if (thfPath.toString().endsWith(".tar.bz2")) {
-                try (InputStream fin = Files.newInputStream(path);
-                     BufferedInputStream in = new BufferedInputStream(fin);
-                     BZip2CompressorInputStream bzIn = new BZip2CompressorInputStream(in);
-                     TarArchiveInputStream tar = new TarArchiveInputStream(bzIn)
-                ) {
-                    TarArchiveEntry entry;
-                    tmpDir = Files.createTempDirectory(Utils.getJosmTempDir().toPath(), "cadastre");
-                    while ((entry = tar.getNextTarEntry()) != null) {
-                        File file = tmpDir.resolve(entry.getName()).toFile();
-                        try (FileOutputStream out = new FileOutputStream(file)) {
-                            if (IOUtils.copy(tar, out) < entry.getSize()) {
-                                throw new IOException(String.format("Unable to write ''%s'' entirely", file));
-                            } else if (file.toString().endsWith(".THF")) {
-                                thfPath = file.toPath();
-                            }
-                        }
-                    }
-                }
+            for (Path path : paths) {
+                tasks.add(POOL.submit(() -> read(path)));
             }
             DataSet ds = new DataSet();
             ds.setUploadPolicy(UploadPolicy.BLOCKED);
-            EdigeoFileTHF thf = new EdigeoFileTHF(thfPath).read().fill(ds, data);
-            ds.setName(thf.getSupport().getBlockIdentifier());
+            List<String> names = new ArrayList<>(paths.size());
+            for (int i = 0; i < paths.size(); i++) {
+                instance.subTask(tr("Reading {0}", paths.get(i).getFileName()));
+                EdigeoFileTHF thf = await(tasks.get(i));
+                thf.fill(ds, data);
+                names.add(thf.getSupport().getBlockIdentifier());
+                instance.worked(1);
+            }
+            ds.setName(String.join(", ", names));
             return ds;
         } finally {
-            if (tmpDir != null) {
-                Utils.deleteDirectory(tmpDir.toFile());
+            tasks.forEach(t -> t.cancel(true));
+            instance.finishTask();
+        }
+    }
+
+    /**
+     * Reads a THF file, or a {@code .tar.bz2} archive in memory.
+     * @param path path to a THF file or a {@code .tar.bz2} archive
+     * @return the THF file, with all its lots read
+     * @throws IOException if any I/O error occurs
+     * @throws ReflectiveOperationException if an Edigeo block cannot be created
+     */
+    static EdigeoFileTHF read(Path path) throws IOException, ReflectiveOperationException {
+        if (!path.toString().endsWith(".tar.bz2")) {
+            return new EdigeoFileTHF(path).read();
+        }
+        // Keep archive entries in memory, by file name, instead of extracting them to disk
+        Map<String, byte[]> entries = new HashMap<>();
+        Path thfPath = null;
+        try (InputStream fin = Files.newInputStream(path);
+             BufferedInputStream in = new BufferedInputStream(fin);
+             BZip2CompressorInputStream bzIn = new BZip2CompressorInputStream(in);
+             TarArchiveInputStream tar = new TarArchiveInputStream(bzIn)
+        ) {
+            TarArchiveEntry entry;
+            while ((entry = tar.getNextTarEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                String name = Paths.get(entry.getName()).getFileName().toString();
+                byte[] content = IOUtils.toByteArray(tar);
+                if (content.length < entry.getSize()) {
+                    throw new IOException(String.format("Unable to read '%s' entirely", entry.getName()));
+                } else if (name.endsWith(".THF")) {
+                    thfPath = path.resolveSibling(name);
+                }
+                entries.put(name, content);
+            }
+        }
+        if (thfPath == null) {
+            throw new IOException(tr("No THF file found in {0}", path));
+        }
+        try {
+            return new EdigeoFileTHF(thfPath, archiveSource(entries)).read();
+        } finally {
+            // Release the entries, the files do not need them once read
+            entries.clear();
+        }
+    }
+
+    private static EdigeoSource archiveSource(Map<String, byte[]> entries) {
+        return p -> {
+            byte[] content = entries.get(p.getFileName().toString());
+            if (content == null) {
+                throw new NoSuchFileException(p.toString());
+            }
+            return new ByteArrayInputStream(content);
+        };
+    }
+
+    private static <T> T await(Future<T> task) throws IOException, ReflectiveOperationException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (InterruptedIOException) new InterruptedIOException().initCause(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof ReflectiveOperationException) {
+                throw (ReflectiveOperationException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
             }
+            throw new IOException(cause);
         }
     }
 
@@ -0,0 +1,153 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.fr.cadastre.edigeo;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.plugins.fr.cadastre.edigeo.EdigeoFileTHF.Lot;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Measures reading and resolving a large synthetic {@link EdigeoFileVEC}, dominated by block lookups.
+ * The file contains as many nodes as arcs, and a relation linking each node to an arc.
+ * Run with {@code mvn -Pbenchmark -pl cadastre-fr test-compile exec:exec -Dbenchmark=EdigeoFileVEC}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EdigeoFileVECBenchmark {
+
+    private static final String LOT = "BENCH01";
+    private static final String SCD = "SeSD";
+    private static final String VEC = "SeVEC";
+
+    /** Number of nodes */
+    @Param("100000")
+    public int count;
+
+    private Path dir;
+    private Path scd;
+    private Path vec;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("edigeo");
+        scd = dir.resolve("BENCH01.SCD");
+        vec = dir.resolve("BENCH01.VEC");
+        writeScd(scd);
+        writeVec(vec, count);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Utils.deleteDirectory(dir.toFile());
+    }
+
+    private EdigeoFileVEC readFiles() throws IOException, ReflectiveOperationException {
+        Lot lot = new Lot("GTL");
+        lot.identifier = LOT;
+        new EdigeoFileSCD(lot, SCD, scd).read();
+        EdigeoFileVEC file = new EdigeoFileVEC(lot, VEC, vec);
+        file.read();
+        return file;
+    }
+
+    @Benchmark
+    public EdigeoFileVEC read() throws IOException, ReflectiveOperationException {
+        return readFiles();
+    }
+
+    @Benchmark
+    public int readAndResolve() throws IOException, ReflectiveOperationException {
+        EdigeoFileVEC file = readFiles();
+        file.resolve();
+        return file.getRelations().stream().mapToInt(r -> r.elements.size()).sum();
+    }
+
+    private static String record(String name, char nature, char format, String value) {
+        return String.format(Locale.ROOT, "%s%c%c%02d:%s", name, nature, format, value.length(), value);
+    }
+
+    private static String ref(String subsetId, String type, String id) {
+        return record(type.equals("PGE") || type.equals("REL") ? "SCP" : "FTP", 'C', 'P',
+                String.join(";", LOT, subsetId, type, id));
+    }
+
+    private static void block(BufferedWriter w, String type, String id, String... records) throws IOException {
+        w.write(record("RTY", 'S', 'A', type));
+        w.newLine();
+        w.write(record("RID", 'S', 'A', id));
+        w.newLine();
+        for (String r : records) {
+            w.write(r);
+            w.newLine();
+        }
+    }
+
+    private static BufferedWriter open(Path path) throws IOException {
+        BufferedWriter w = Files.newBufferedWriter(path, StandardCharsets.ISO_8859_1);
+        w.write("BOMT 12:" + path.getFileName());
+        w.newLine();
+        w.write("CSET 03:IRV");
+        w.newLine();
+        return w;
+    }
+
+    private static void close(BufferedWriter w) throws IOException {
+        w.write("EOMT 00:");
+        w.newLine();
+        w.close();
+    }
+
+    private static void writeScd(Path path) throws IOException {
+        BufferedWriter w = open(path);
+        String none = record("AAC", 'S', 'N', "0");
+        block(w, "PGE", "Noeud", record("KND", 'S', 'A', "NOD"), none);
+        block(w, "PGE", "Arc", record("KND", 'S', 'A', "ARC"), none);
+        block(w, "REL", "Rel_Noeud_Arc", record("KND", 'S', 'A', "IND"), none);
+        close(w);
+    }
+
+    private static void writeVec(Path path, int count) throws IOException {
+        BufferedWriter w = open(path);
+        String none = record("ATC", 'S', 'N', "0");
+        for (int i = 0; i < count; i++) {
+            String coordinates = String.format(Locale.ROOT, "+%.2f;+%.2f", 1000 + i * 0.5, 2000 + i * 0.25);
+            block(w, "PNO", "N_" + i, ref(SCD, "PGE", "Noeud"), record("TYP", 'S', 'N', "1"),
+                    record("COR", 'C', 'C', coordinates), none);
+        }
+        for (int i = 0; i < count; i++) {
+            String from = String.format(Locale.ROOT, "+%.2f;+%.2f", 1000 + i * 0.5, 2000 + i * 0.25);
+            String to = String.format(Locale.ROOT, "+%.2f;+%.2f", 1000.5 + i * 0.5, 2000.25 + i * 0.25);
+            block(w, "PAR", "A_" + i, ref(SCD, "PGE", "Arc"), record("TYP", 'S', 'N', "1"),
+                    record("PTC", 'S', 'N', "2"), record("COR", 'C', 'C', from), record("COR", 'C', 'C', to), none);
+        }
+        // relations reference blocks spread over the whole file
+        for (int i = 0; i < count; i++) {
+            int node = (int) ((i * 7919L) % count);
+            block(w, "LNK", "L_" + i, ref(SCD, "REL", "Rel_Noeud_Arc"), record("FTC", 'S', 'N', "2"),
+                    ref(VEC, "PNO", "N_" + node), ref(VEC, "PAR", "A_" + i), none);
+        }
+        close(w);
+    }
+}
@@ -0,0 +1,94 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.fr.cadastre.edigeo;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.openstreetmap.josm.plugins.fr.cadastre.edigeo.EdigeoFileSCD.McdConstructionRelationDef;
+import org.openstreetmap.josm.plugins.fr.cadastre.edigeo.EdigeoFileSCD.McdObjectDef;
+import org.openstreetmap.josm.plugins.fr.cadastre.edigeo.EdigeoFileSCD.McdPrimitiveDef;
+import org.openstreetmap.josm.plugins.fr.cadastre.edigeo.EdigeoFileTHF.Lot;
+
+/**
+ * Unit test of {@link EdigeoLotFile}.
+ */
+class EdigeoLotFileTest {
+
+    private static final String LOT = "TEST01";
+    private static final String SCD = "SeSD";
+
+    @TempDir
+    Path dir;
+
+    private static String record(String name, char nature, char format, String value) {
+        return String.format(Locale.ROOT, "%s%c%c%02d:%s", name, nature, format, value.length(), value);
+    }
+
+    private static List<String> ref(String type, String id) {
+        return Arrays.asList(LOT, SCD, type, id);
+    }
+
+    /**
+     * Reads a SCD file with a primitive definition, and a relation definition referencing the given primitive.
+     */
+    private EdigeoFileSCD readScd(String referencedId) throws IOException, ReflectiveOperationException {
+        List<String> lines = new ArrayList<>();
+        Collections.addAll(lines, "BOMT 12:TEST0101.SCD", "CSET 03:IRV",
+                record("RTY", 'S', 'A', "PGE"), record("RID", 'S', 'A', "Noeud"), record("KND", 'S', 'A', "NOD"),
+                record("RTY", 'S', 'A', "REL"), record("RID", 'S', 'A', "Rel_Noeud"), record("KND", 'S', 'A', "IND"),
+                record("SCP", 'C', 'P', String.join(";", ref("PGE", referencedId))),
+                "EOMT 00:");
+        Path path = dir.resolve("TEST0101.SCD");
+        Files.write(path, lines, StandardCharsets.ISO_8859_1);
+        Lot lot = new Lot("GTL");
+        lot.identifier = LOT;
+        return (EdigeoFileSCD) new EdigeoFileSCD(lot, SCD, path).read();
+    }
+
+    /**
+     * Unit test of {@link EdigeoLotFile#find}, for blocks referenced while the file is read, before it is indexed.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testFindWhileReading() throws Exception {
+        EdigeoFileSCD scd = readScd("Noeud");
+        McdConstructionRelationDef relation = scd.find(ref("REL", "Rel_Noeud"), McdConstructionRelationDef.class);
+        assertEquals(1, relation.scdRef.size());
+        assertSame(scd.find(ref("PGE", "Noeud"), McdPrimitiveDef.class), relation.scdRef.get(0));
+
+        assertThrows(IllegalArgumentException.class, () -> readScd("Arc"));
+    }
+
+    /**
+     * Unit test of {@link EdigeoLotFile#find}, once the file is read.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testFindAfterRead() throws Exception {
+        EdigeoFileSCD scd = readScd("Noeud");
+        McdPrimitiveDef node = scd.find(ref("PGE", "Noeud"), McdPrimitiveDef.class);
+        assertEquals("Noeud", node.identifier);
+        assertSame(node, scd.find(ref("PGE", "Noeud")));
+
+        // unknown identifier
+        assertThrows(IllegalArgumentException.class, () -> scd.find(ref("PGE", "Arc")));
+        // unknown block type
+        assertThrows(IllegalArgumentException.class, () -> scd.find(ref("XYZ", "Noeud")));
+        assertThrows(IllegalArgumentException.class, () -> scd.find(ref("XYZ", "Noeud"), McdPrimitiveDef.class));
+        // block type of another class
+        assertThrows(IllegalArgumentException.class, () -> scd.find(ref("PGE", "Noeud"), McdObjectDef.class));
+    }
+}
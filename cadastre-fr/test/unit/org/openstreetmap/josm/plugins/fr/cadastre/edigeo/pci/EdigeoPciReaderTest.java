@@ -0,0 +1,103 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.fr.cadastre.edigeo.pci;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.UploadPolicy;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.plugins.fr.cadastre.download.CadastreDownloadData;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+import org.openstreetmap.josm.testutils.annotations.Projection;
+
+/**
+ * Unit test of {@link EdigeoPciReader}.
+ * Each test archive holds a single street, made of one arc of 3 aligned points.
+ */
+@BasicPreferences
+@Projection
+class EdigeoPciReaderTest {
+
+    private static final CadastreDownloadData ALL = new CadastreDownloadData(true, true, true, true, true, true, true, true, true);
+
+    private static Path archive(String commune) {
+        return Paths.get(TestUtils.getTestDataRoot(), "edigeo", "edigeo-" + commune + ".tar.bz2");
+    }
+
+    private static Map<String, Way> waysByName(DataSet ds) {
+        return ds.getWays().stream().filter(w -> !w.isDeleted())
+                .collect(Collectors.toMap(w -> w.get("name"), Function.identity()));
+    }
+
+    /**
+     * Unit test of {@link EdigeoPciReader#parse}, with a single archive.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testParseArchive() throws Exception {
+        DataSet ds = new EdigeoPciReader().parse(archive("38001000AB01"), ALL, NullProgressMonitor.INSTANCE);
+        assertEquals("38001000AB01", ds.getName());
+        assertEquals(UploadPolicy.BLOCKED, ds.getUploadPolicy());
+
+        Map<String, Way> ways = waysByName(ds);
+        assertEquals(1, ways.size());
+        Way street = ways.get("Rue Du Moulin");
+        assertEquals("road", street.get("highway"));
+        // the middle point is removed by the simplification
+        assertEquals(2, street.getNodesCount());
+    }
+
+    /**
+     * Unit test of {@link EdigeoPciReader#parse}, with two archives of neighbouring communes loaded in the same data set.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testParseBatch() throws Exception {
+        DataSet ds = new EdigeoPciReader().parse(
+                Arrays.asList(archive("38001000AB01"), archive("38002000AC01")), ALL, NullProgressMonitor.INSTANCE);
+        assertEquals("38001000AB01, 38002000AC01", ds.getName());
+
+        Map<String, Way> ways = waysByName(ds);
+        assertEquals(2, ways.size());
+        assertEquals(2, ways.get("Rue Du Moulin").getNodesCount());
+        assertEquals(2, ways.get("Rue De La Gare").getNodesCount());
+    }
+
+    /**
+     * Checks that filling an archive into a data set only simplifies the ways of this archive.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testSimplifyOnlyNewWays() throws Exception {
+        DataSet ds = new DataSet();
+        Way existing = new Way();
+        for (int i = 0; i < 3; i++) {
+            Node n = new Node(new LatLon(45.0 + i * 0.0005, 5.0));
+            ds.addPrimitive(n);
+            existing.addNode(n);
+        }
+        existing.put("name", "Existing");
+        ds.addPrimitive(existing);
+
+        EdigeoPciReader.read(archive("38002000AC01")).fill(ds, ALL);
+
+        Map<String, Way> ways = waysByName(ds);
+        assertEquals(2, ways.size());
+        assertEquals(3, existing.getNodesCount());
+        assertTrue(existing.getNodes().stream().noneMatch(Node::isDeleted));
+        assertEquals(2, ways.get("Rue De La Gare").getNodesCount());
+    }
+}
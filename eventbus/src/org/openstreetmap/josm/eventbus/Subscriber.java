@@ -16,7 +16,9 @@ package org.openstreetmap.josm.eventbus;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Executor;
 
 /**
@@ -43,6 +45,15 @@ class Subscriber {
         : new SynchronizedSubscriber(bus, listener, method);
   }
 
+  /** Invokers of subscriber methods by method, for each class declaring subscriber methods. */
+  private static final ClassValue<Map<Method, SubscriberInvoker>> invokers =
+      new ClassValue<Map<Method, SubscriberInvoker>>() {
+        @Override
+        protected Map<Method, SubscriberInvoker> computeValue(Class<?> type) {
+          return new ConcurrentHashMap<>();
+        }
+      };
+
   /** The event bus this subscriber belongs to. */
   private EventBus bus;
 
@@ -52,6 +63,9 @@ class Subscriber {
   /** Subscriber method. */
   private final Method method;
 
+  /** Invoker of the subscriber method, shared by all subscribers of the method. */
+  private final SubscriberInvoker invoker;
+
   /** Executor to use for dispatching events to this subscriber. */
   private final Executor executor;
 
@@ -60,6 +74,8 @@ class Subscriber {
     this.target = Objects.requireNonNull(target);
     this.method = method;
     method.setAccessible(true);
+    this.invoker =
+        invokers.get(method.getDeclaringClass()).computeIfAbsent(method, SubscriberInvoker::create);
 
     this.executor = bus.executor();
   }
@@ -86,17 +102,13 @@ class Subscriber {
    * @throws InvocationTargetException if the invocation fails
    */
   void invokeSubscriberMethod(Object event) throws InvocationTargetException {
+    Objects.requireNonNull(event);
     try {
-      method.invoke(target, Objects.requireNonNull(event));
-    } catch (IllegalArgumentException e) {
-      throw new Error("Method rejected target/argument: " + event, e);
-    } catch (IllegalAccessException e) {
-      throw new Error("Method became inaccessible: " + event, e);
-    } catch (InvocationTargetException e) {
-      if (e.getCause() instanceof Error) {
-        throw (Error) e.getCause();
-      }
+      invoker.invoke(target, event);
+    } catch (Error e) {
       throw e;
+    } catch (Throwable e) {
+      throw new InvocationTargetException(e);
     }
   }
 
@@ -0,0 +1,71 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.eventbus;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.function.BiConsumer;
+
+import org.openstreetmap.josm.tools.Logging;
+
+/**
+ * Calls a subscriber method without going through {@link Method#invoke}.
+ * <p>
+ * Instance methods are called through a class generated by {@link LambdaMetafactory}, other
+ * methods or methods that cannot be accessed that way are called through a {@link MethodHandle}.
+ */
+@FunctionalInterface
+interface SubscriberInvoker {
+
+  /**
+   * Calls the subscriber method.
+   * @param target object with the subscriber method
+   * @param event event to pass to the method
+   * @throws Throwable anything thrown by the method
+   */
+  void invoke(Object target, Object event) throws Throwable;
+
+  /**
+   * Creates the invoker of a subscriber method.
+   * @param method accessible subscriber method, with exactly one parameter
+   * @return invoker of {@code method}
+   */
+  static SubscriberInvoker create(Method method) {
+    if (!Modifier.isStatic(method.getModifiers())) {
+      try {
+        MethodHandles.Lookup lookup =
+            MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup());
+        MethodHandle handle = lookup.unreflect(method);
+        // BiConsumer is visible from any class loader,
+        // checked exceptions are not enforced at runtime
+        CallSite site = LambdaMetafactory.metafactory(lookup, "accept",
+            MethodType.methodType(BiConsumer.class),
+            MethodType.methodType(void.class, Object.class, Object.class),
+            handle, handle.type().changeReturnType(void.class));
+        @SuppressWarnings("unchecked")
+        BiConsumer<Object, Object> consumer =
+            (BiConsumer<Object, Object>) site.getTarget().invoke();
+        return consumer::accept;
+      } catch (Throwable e) { // NOPMD
+        Logging.trace(e);
+      }
+    }
+    try {
+      MethodHandle handle = MethodHandles.lookup().unreflect(method);
+      if (Modifier.isStatic(method.getModifiers())) {
+        handle = MethodHandles.dropArguments(handle, 0, Object.class);
+      }
+      MethodHandle invoker =
+          handle.asType(MethodType.methodType(void.class, Object.class, Object.class));
+      return (target, event) -> {
+        invoker.invokeExact(target, event);
+      };
+    } catch (IllegalAccessException e) {
+      throw new IllegalArgumentException("Method is inaccessible: " + method, e);
+    }
+  }
+}
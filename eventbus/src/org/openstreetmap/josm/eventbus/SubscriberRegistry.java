@@ -156,8 +156,17 @@ final class SubscriberRegistry {
     return methodsInListener;
   }
 
+  /** Global cache of classes to their subscriber methods. */
+  private static final ClassValue<List<Method>> subscriberMethodsCache =
+      new ClassValue<List<Method>>() {
+        @Override
+        protected List<Method> computeValue(Class<?> type) {
+          return Collections.unmodifiableList(getAnnotatedMethodsNotCached(type));
+        }
+      };
+
   private static List<Method> getAnnotatedMethods(Class<?> clazz) {
-    return getAnnotatedMethodsNotCached(clazz);
+    return subscriberMethodsCache.get(clazz);
   }
 
   private static List<Method> getAnnotatedMethodsNotCached(Class<?> clazz) {
@@ -187,7 +196,13 @@ final class SubscriberRegistry {
   }
 
   /** Global cache of classes to their flattened hierarchy of supertypes. */
-  private static final Map<Class<?>, Set<Class<?>>> flattenHierarchyCache = new HashMap<>();
+  private static final ClassValue<Set<Class<?>>> flattenHierarchyCache =
+      new ClassValue<Set<Class<?>>>() {
+        @Override
+        protected Set<Class<?>> computeValue(Class<?> type) {
+          return Collections.unmodifiableSet(getClassesAndInterfaces(type));
+        }
+      };
 
   /**
    * Flattens a class's type hierarchy into a set of {@code Class} objects including all
@@ -196,8 +211,7 @@ final class SubscriberRegistry {
    * @return set of {@code Class} objects including all superclasses and interfaces
    */
   static Set<Class<?>> flattenHierarchy(Class<?> concreteClass) {
-      return flattenHierarchyCache.computeIfAbsent(
-              concreteClass, SubscriberRegistry::getClassesAndInterfaces);
+      return flattenHierarchyCache.get(concreteClass);
   }
 
   private static final class MethodIdentifier {
@@ -0,0 +1,101 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.eventbus;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link EventBus#register} and {@link EventBus#post}, the latter from several threads,
+ * with subscribers called concurrently or one at a time.
+ * Run with {@code mvn -Pbenchmark -pl eventbus test-compile exec:exec -Dbenchmark=EventBus}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventBusBenchmark {
+
+  /** Subscriber which may be called concurrently. */
+  public static final class ConcurrentSubscriber {
+    private final LongAdder count;
+
+    ConcurrentSubscriber(LongAdder count) {
+      this.count = count;
+    }
+
+    /**
+     * Counts an event.
+     * @param event the event
+     */
+    @Subscribe
+    @AllowConcurrentEvents
+    public void onEvent(Integer event) {
+      count.increment();
+    }
+  }
+
+  /** Subscriber whose calls are serialized by the bus. */
+  public static final class SynchronizedSubscriber {
+    private final LongAdder count;
+
+    SynchronizedSubscriber(LongAdder count) {
+      this.count = count;
+    }
+
+    /**
+     * Counts an event.
+     * @param event the event
+     */
+    @Subscribe
+    public void onEvent(Number event) {
+      count.increment();
+    }
+  }
+
+  /** Number of subscribers, half of them synchronized */
+  @Param("100")
+  public int subscribers;
+
+  private final LongAdder count = new LongAdder();
+  private Object[] listeners;
+  private EventBus bus;
+
+  @Setup
+  public void setUp() {
+    listeners = new Object[subscribers];
+    for (int i = 0; i < subscribers; i++) {
+      listeners[i] = i % 2 == 0 ? new ConcurrentSubscriber(count) : new SynchronizedSubscriber(count);
+    }
+    bus = register();
+  }
+
+  @Benchmark
+  public EventBus register() {
+    EventBus eventBus = new EventBus();
+    for (Object listener : listeners) {
+      eventBus.register(listener);
+    }
+    return eventBus;
+  }
+
+  @Benchmark
+  @Threads(Threads.MAX)
+  public void post() {
+    bus.post(42);
+  }
+}
@@ -0,0 +1,103 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.eventbus;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for {@link SubscriberInvoker}, for the methods called through a {@link
+ * java.lang.invoke.MethodHandle}.
+ */
+class SubscriberInvokerTest {
+
+  private static final List<Object> staticEvents = new ArrayList<>();
+
+  @Subscribe
+  public static void staticMethod(Object event) {
+    staticEvents.add(event);
+  }
+
+  @Subscribe
+  public static void staticExceptionThrowingMethod(Object event) throws Exception {
+    throw new IntentionalException();
+  }
+
+  /** Local exception subclass to check variety of exception thrown. */
+  static class IntentionalException extends Exception {
+
+    private static final long serialVersionUID = 5240129337390214785L;
+  }
+
+  /** Subscriber loaded by another class loader in {@link #testOtherClassLoader}. */
+  public static class Recorder {
+    public final List<Object> events = new ArrayList<>();
+
+    @Subscribe
+    public void record(Object event) {
+      events.add(event);
+    }
+  }
+
+  @Test
+  void testStaticMethod() throws Throwable {
+    staticEvents.clear();
+    SubscriberInvoker invoker =
+        SubscriberInvoker.create(getClass().getMethod("staticMethod", Object.class));
+
+    invoker.invoke(this, "event");
+    invoker.invoke(null, 42);
+
+    assertEquals(Arrays.asList("event", 42), staticEvents);
+  }
+
+  @Test
+  void testStaticMethodException() throws Exception {
+    SubscriberInvoker invoker =
+        SubscriberInvoker.create(
+            getClass().getMethod("staticExceptionThrowingMethod", Object.class));
+
+    assertThrows(IntentionalException.class, () -> invoker.invoke(null, "event"));
+  }
+
+  @Test
+  void testOtherClassLoader() throws Throwable {
+    Class<?> type = loadIsolated(Recorder.class);
+    assertNotSame(Recorder.class, type);
+    Object recorder = type.getConstructor().newInstance();
+    Method method = type.getMethod("record", Object.class);
+    method.setAccessible(true);
+
+    SubscriberInvoker invoker = SubscriberInvoker.create(method);
+    invoker.invoke(recorder, "event");
+    invoker.invoke(recorder, 42);
+
+    assertEquals(Arrays.asList("event", 42), type.getField("events").get(recorder));
+  }
+
+  /**
+   * Defines a class again in a class loader which does not delegate to the class loader of the
+   * tests, so that the class cannot be reached with a lookup from the event bus classes.
+   */
+  private static Class<?> loadIsolated(Class<?> type) throws IOException {
+    byte[] bytes;
+    try (InputStream in =
+        type.getClassLoader().getResourceAsStream(type.getName().replace('.', '/') + ".class")) {
+      bytes = in.readAllBytes();
+    }
+    return new ClassLoader(null) {
+      Class<?> define() {
+        return defineClass(type.getName(), bytes, 0, bytes.length);
+      }
+    }.define();
+  }
+}
@@ -3,8 +3,10 @@ package org.openstreetmap.josm.plugins.o5m.io;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Locale;
 
 import org.openstreetmap.josm.actions.ExtensionFileFilter;
 import org.openstreetmap.josm.data.osm.DataSet;
@@ -35,6 +37,20 @@ public class O5mImporter extends OsmImporter {
         return O5mReader.parseDataSet(in, progressMonitor);
     }
 
+    @Override
+    public OsmImporterData loadLayer(InputStream in, File associatedFile, String layerName, ProgressMonitor progressMonitor)
+            throws IllegalDataException {
+        // Uncompressed local files are memory mapped instead of read through the stream
+        if (associatedFile != null && associatedFile.getName().toLowerCase(Locale.ENGLISH).endsWith("." + EXTENSION)) {
+            try {
+                return createLayer(O5mReader.parseDataSet(associatedFile.toPath(), progressMonitor), associatedFile, layerName);
+            } catch (IOException e) {
+                throw new IllegalDataException(e);
+            }
+        }
+        return super.loadLayer(in, associatedFile, layerName, progressMonitor);
+    }
+
     protected DataSet parseDataSet(final String source) throws IOException, IllegalDataException {
         try (CachedFile cf = new CachedFile(source)) {
             return parseDataSet(cf.getInputStream(), NullProgressMonitor.INSTANCE);
@@ -4,11 +4,18 @@ package org.openstreetmap.josm.plugins.o5m.io;
 import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
@@ -79,22 +86,25 @@ public class O5mReader extends AbstractReader {
     private static final String[] REL_REF_TYPES = {"node", "way", "relation", "?"};
     private static final double FACTOR = 1d/1_000_000_000; // used with 100*<Val>*FACTOR 
 
-    private BufferedInputStream fis;
-    private InputStream is;
+    // size of the file regions mapped at once when reading from a file channel
+    private static final int MAP_WINDOW_SIZE = 64 * 1024 * 1024;
+
+    private Input input;
 
     // buffer for byte -> String conversions
     private byte[] cnvBuffer; 
 
-    private byte[] ioBuf;
-    private int ioBufPos;
+    // the current data set, positioned after its length and limited to its end
+    private ByteBuffer buf;
     // the o5m string table
-    private String[][] stringTable;
+    private final String[] stringTableKeys = new String[STRING_TABLE_SIZE];
+    private final String[] stringTableValues = new String[STRING_TABLE_SIZE];
     private String[] stringPair;
     private int currStringTablePos;
-    // a counter that must be maintained by all routines that read data from the stream
-    private int bytesToRead;
-    // total number of bytes read from stream
-    private long countBytes;
+    // pool of tag keys, so that all primitives share the same key instances
+    private final Map<String, String> keyPool = new HashMap<>();
+    // tags of the current primitive, copied by PrimitiveData.setKeys
+    private final Map<String, String> keys = new HashMap<>();
 
     // for delta calculations
     private long lastNodeId;
@@ -113,8 +123,6 @@ public class O5mReader extends AbstractReader {
      */
     O5mReader() {
         this.cnvBuffer = new byte[4000]; // OSM data should not contain string pairs with length > 512
-        this.ioBuf = new byte[8192];
-        this.ioBufPos = 0;
         this.stringPair = new String[2];
         this.lastRef = new long[3];
         reset();
@@ -126,12 +134,23 @@ public class O5mReader extends AbstractReader {
      * @throws ParsingCancelException if operation was canceled 
      */
     public void parse(InputStream source) throws ParsingCancelException {
-        this.fis = new BufferedInputStream(source);
-        is = fis;
+        parse(new StreamInput(source));
+    }
+
+    /**
+     * parse a local file through its channel, decoding data sets directly from mapped memory
+     * @param channel The FileChannel of a file that contains the OSM data in o5m format
+     * @throws IOException if the channel cannot be mapped
+     * @throws ParsingCancelException if operation was canceled 
+     */
+    public void parse(FileChannel channel) throws IOException, ParsingCancelException {
+        parse(new ChannelInput(channel));
+    }
 
+    private void parse(Input source) throws ParsingCancelException {
+        this.input = source;
         try {
-            int start = is.read();
-            ++countBytes;
+            int start = input.read();
             if (start != RESET_FLAG) 
                 throw new IOException(tr("wrong header byte ") + Integer.toHexString(start));
             readFile();
@@ -147,18 +166,11 @@ public class O5mReader extends AbstractReader {
         while (!done) {
             if (cancel) {
                 cancel = false;
-                throw new ParsingCancelException(tr("Reading was canceled at file offset {0}", countBytes));
+                throw new ParsingCancelException(tr("Reading was canceled at file offset {0}", input.position()));
             }
-            is = fis;
-            long size = 0;
-            int fileType = is.read();
-            ++countBytes;
+            int fileType = input.read();
             if (fileType >= 0 && fileType < 0xf0) {
-                bytesToRead = 0;
-                size = readUnsignedNum64FromStream();
-                countBytes += size - bytesToRead; // bytesToRead is negative 
-                bytesToRead = (int) size;
-
+                long size = input.readUnsignedNum64();
                 switch(fileType) {
                 case NODE_DATASET: 
                 case WAY_DATASET: 
@@ -166,38 +178,24 @@ public class O5mReader extends AbstractReader {
                 case BBOX_DATASET:
                 case TIMESTAMP_DATASET:
                 case HEADER_DATASET:
-                    is = fillByteArray();
+                    buf = input.dataSet((int) size);
                     break;                    
-                default: break;    
+                default:
+                    input.skip(size); // skip unknown data set 
+                    continue;
                 }
-            }
-            if (fileType == EOF_FLAG) done = true; 
-            else if (fileType == NODE_DATASET) readNode();
-            else if (fileType == WAY_DATASET) readWay();
-            else if (fileType == REL_DATASET) readRel();
-            else if (fileType == BBOX_DATASET) readBBox();
-            else if (fileType == TIMESTAMP_DATASET) readFileTimestamp();
-            else if (fileType == HEADER_DATASET) readHeader();
+                if (fileType == NODE_DATASET) readNode();
+                else if (fileType == WAY_DATASET) readWay();
+                else if (fileType == REL_DATASET) readRel();
+                else if (fileType == BBOX_DATASET) readBBox();
+                else if (fileType == TIMESTAMP_DATASET) readFileTimestamp();
+                else if (fileType == HEADER_DATASET) readHeader();
+                input.endDataSet();
+            } 
+            else if (fileType == EOF_FLAG) done = true; 
             else if (fileType == EOD_FLAG) done = true;
             else if (fileType == RESET_FLAG) reset();
-            else {
-                if (fileType < 0xf0) skip(size); // skip unknown data set 
-            }
-        }
-    }
-
-    private InputStream fillByteArray() throws IOException {
-        if (bytesToRead > ioBuf.length) {
-            ioBuf = new byte[bytesToRead + 100];
-        }
-        int bytesRead = 0;
-        int neededBytes = bytesToRead;
-        while (neededBytes > 0) {
-            bytesRead += is.read(ioBuf, bytesRead, neededBytes);
-            neededBytes -= bytesRead;
         }
-        ioBufPos = 0;
-        return new ByteArrayInputStream(ioBuf, 0, bytesToRead);
     }
 
     /**
@@ -207,18 +205,6 @@ public class O5mReader extends AbstractReader {
         /*long fileTimeStamp = */readSignedNum64();
     }
 
-    /**
-     * Skip the given number of bytes
-     * @param bytes number of bytes to skip 
-     * @throws IOException in case of I/O error
-     */
-    private void skip(long bytes) throws IOException {
-        long toSkip = bytes;
-        while (toSkip > 0) {
-            toSkip -= is.skip(toSkip);
-        }
-    }
-
     /**
      * read the bounding box data set
      */
@@ -258,29 +244,28 @@ public class O5mReader extends AbstractReader {
             return;
         try {
             lastNodeId += readSignedNum64();
-            if (bytesToRead == 0)
+            if (!buf.hasRemaining())
                 return; // only nodeId: this is a delete action, we ignore it
             readVersionTsAuthor();
 
-            if (bytesToRead == 0)
+            if (!buf.hasRemaining())
                 return; // only nodeId+version: this is a delete action, we ignore it 
             int lon = readSignedNum32() + lastLon; lastLon = lon;
             int lat = readSignedNum32() + lastLat; lastLat = lat;
 
-            double flon = FACTOR * (100L*lon);
-            double flat = FACTOR * (100L*lat);
+            double flon = LatLon.roundToOsmPrecision(FACTOR * (100L*lon));
+            double flat = LatLon.roundToOsmPrecision(FACTOR * (100L*lat));
             assert flat >= -90.0 && flat <= 90.0;  
             assert flon >= -180.0 && flon <= 180.0;  
             if (version == 0)
                 discourageUpload = true;
             NodeData nd = new NodeData(lastNodeId);
-            nd.setCoor(new LatLon(flat, flon).getRoundedToOsmPrecision());
+            nd.setCoor(new LatLon(flat, flon));
             checkCoordinates(nd.getCoor());
             setMeta(nd);
 
-            if (bytesToRead > 0) {
-                Map<String, String> keys = readTags();
-                nd.setKeys(keys);
+            if (buf.hasRemaining()) {
+                nd.setKeys(readTags());
             }
             buildPrimitive(nd);
             
@@ -297,28 +282,27 @@ public class O5mReader extends AbstractReader {
             return;
         try {
             lastWayId += readSignedNum64();
-            if (bytesToRead == 0)
+            if (!buf.hasRemaining())
                 return; // only wayId: this is a delete action, we ignore it 
 
             readVersionTsAuthor();
-            if (bytesToRead == 0)
+            if (!buf.hasRemaining())
                 return; // only wayId + version: this is a delete action, we ignore it
             if (version == 0)
                 discourageUpload = true;
             final WayData wd = new WayData(lastWayId);
             setMeta(wd);
 
-            long refSize = readUnsignedNum32();
-            long stop = bytesToRead - refSize;
+            int refSize = readUnsignedNum32();
+            int stop = buf.position() + refSize;
             Collection<Long> nodeIds = new ArrayList<>();
 
-            while (bytesToRead > stop) {
+            while (buf.position() < stop) {
                 lastRef[0] += readSignedNum64();
                 nodeIds.add(lastRef[0]);
             }
 
-            Map<String, String> keys = readTags();
-            wd.setKeys(keys);
+            wd.setKeys(readTags());
             ways.put(wd.getUniqueId(), nodeIds);
             buildPrimitive(wd);
         } catch (IllegalDataException e) {
@@ -335,20 +319,20 @@ public class O5mReader extends AbstractReader {
             return;
         try {
             lastRelId += readSignedNum64(); 
-            if (bytesToRead == 0)
+            if (!buf.hasRemaining())
                 return; // only relId: this is a delete action, we ignore it 
             readVersionTsAuthor();
-            if (bytesToRead == 0)
+            if (!buf.hasRemaining())
                 return; // only relId + version: this is a delete action, we ignore it 
             if (version == 0)
                 discourageUpload = true;
             final RelationData rel = new RelationData(lastRelId);
             setMeta(rel);
 
-            long refSize = readUnsignedNum32();
-            long stop = bytesToRead - refSize;
+            int refSize = readUnsignedNum32();
+            int stop = buf.position() + refSize;
             Collection<RelationMemberData> members = new ArrayList<>();
-            while (bytesToRead > stop) {
+            while (buf.position() < stop) {
                 long deltaRef = readSignedNum64();
                 int refType = readRelRef();
                 String role = stringPair[1];
@@ -365,8 +349,7 @@ public class O5mReader extends AbstractReader {
                 }
                 members.add(new RelationMemberData(role, type, memId));
             }
-            Map<String, String> keys = readTags();
-            rel.setKeys(keys);
+            rel.setKeys(readTags());
             relations.put(rel.getUniqueId(), members);
             buildPrimitive(rel);
         } catch (IllegalDataException e) {
@@ -374,13 +357,16 @@ public class O5mReader extends AbstractReader {
         }
     }
 
+    /**
+     * Read the tags of the current primitive
+     * @return the tags, in a map that is reused for the next primitive
+     */
     private Map<String, String> readTags() {
-        Map<String, String> keys = new HashMap<>();
-        while (bytesToRead > 0) {
+        keys.clear();
+        while (buf.hasRemaining()) {
             readStringPair();
             keys.put(stringPair[0], stringPair[1]);
         }
-        assert bytesToRead == 0;
         return keys;
     }
 
@@ -388,8 +374,8 @@ public class O5mReader extends AbstractReader {
      * Store a new string pair (length check must be performed by caller)
      */
     private void storeStringPair() {
-        stringTable[0][currStringTablePos] = stringPair[0];
-        stringTable[1][currStringTablePos] = stringPair[1];
+        stringTableKeys[currStringTablePos] = stringPair[0];
+        stringTableValues[currStringTablePos] = stringPair[1];
         ++currStringTablePos;
         if (currStringTablePos >= STRING_TABLE_SIZE)
             currStringTablePos = 0;
@@ -404,8 +390,8 @@ public class O5mReader extends AbstractReader {
         int pos = currStringTablePos - ref;
         if (pos < 0) 
             pos += STRING_TABLE_SIZE;
-        stringPair[0] = stringTable[0][pos];
-        stringPair[1] = stringTable[1][pos];
+        stringPair[0] = stringTableKeys[pos];
+        stringPair[1] = stringTableValues[pos];
     }
 
     /**
@@ -432,27 +418,16 @@ public class O5mReader extends AbstractReader {
     private void readAuthor() {
         int stringRef = readUnsignedNum32();
         if (stringRef == 0) {
-            long toReadStart = bytesToRead;
+            int start = buf.position();
             long uidNum = readUnsignedNum64();
             if (uidNum == 0)
                 stringPair[0] = "";
             else {
                 stringPair[0] = Long.toUnsignedString(uidNum);
-                ioBufPos++; // skip terminating zero from uid
-                --bytesToRead;
+                buf.get(); // skip terminating zero from uid
             }
-            int start = 0;
-            int buffPos = 0; 
-            stringPair[1] = null;
-            while (stringPair[1] == null) {
-                final int b = ioBuf[ioBufPos++];
-                --bytesToRead;
-                cnvBuffer[buffPos++] = (byte) b;
-
-                if (b == 0)
-                    stringPair[1] = new String(cnvBuffer, start, buffPos-1, StandardCharsets.UTF_8);
-            }
-            long bytes = toReadStart - bytesToRead;
+            stringPair[1] = readString();
+            long bytes = buf.position() - start;
             if (bytes <= MAX_STRING_PAIR_SIZE)
                 storeStringPair();
         } else 
@@ -470,28 +445,16 @@ public class O5mReader extends AbstractReader {
      */
     private int readRelRef() {
         int refType = -1;
-        long toReadStart = bytesToRead;
+        int start = buf.position();
         int stringRef = readUnsignedNum32();
         if (stringRef == 0) {
-            refType = ioBuf[ioBufPos++] - 0x30;
-            --bytesToRead;
+            refType = buf.get() - 0x30;
 
             if (refType < 0 || refType > 2)
                 refType = 3;
             stringPair[0] = REL_REF_TYPES[refType];
-
-            int start = 0;
-            int buffPos = 0; 
-            stringPair[1] = null;
-            while (stringPair[1] == null) {
-                final int b = ioBuf[ioBufPos++];
-                --bytesToRead;
-                cnvBuffer[buffPos++] = (byte) b;
-
-                if (b == 0)
-                    stringPair[1] = new String(cnvBuffer, start, buffPos-1, StandardCharsets.UTF_8);
-            }
-            long bytes = toReadStart - bytesToRead;
+            stringPair[1] = readString();
+            long bytes = buf.position() - start;
             if (bytes <= MAX_STRING_PAIR_SIZE)
                 storeStringPair();
         } else {
@@ -513,35 +476,54 @@ public class O5mReader extends AbstractReader {
     private void readStringPair() {
         int stringRef = readUnsignedNum32();
         if (stringRef == 0) {
-            long toReadStart = bytesToRead;
-            int cnt = 0;
-            int buffPos = 0; 
-            int start = 0;
-            while (cnt < 2) {
-                final int b = ioBuf[ioBufPos++];
-                --bytesToRead;
-                cnvBuffer[buffPos++] = (byte) b;
-
-                if (b == 0) {
-                    stringPair[cnt] = new String(cnvBuffer, start, buffPos-start-1, StandardCharsets.UTF_8);
-                    ++cnt;
-                    start = buffPos;
-                }
-            }
-            long bytes = toReadStart - bytesToRead;
+            int start = buf.position();
+            String key = readString();
+            stringPair[0] = keyPool.computeIfAbsent(key, k -> k);
+            stringPair[1] = readString();
+            long bytes = buf.position() - start;
             if (bytes <= MAX_STRING_PAIR_SIZE)
                 storeStringPair();
         } else 
             setStringRefPair(stringRef);
     }
 
+    /**
+     * read a zero terminated UTF-8 string from the current data set
+     * @return the decoded string
+     */
+    private String readString() {
+        if (buf.hasArray()) {
+            // decode directly from the backing array
+            byte[] array = buf.array();
+            int offset = buf.arrayOffset();
+            int start = buf.position();
+            int limit = buf.limit();
+            int end = start;
+            while (end < limit && array[offset + end] != 0) {
+                end++;
+            }
+            buf.position(end + 1);
+            return new String(array, offset + start, end - start, StandardCharsets.UTF_8);
+        }
+        int len = 0;
+        byte b;
+        while ((b = buf.get()) != 0) {
+            if (len == cnvBuffer.length) {
+                cnvBuffer = Arrays.copyOf(cnvBuffer, 2 * len);
+            }
+            cnvBuffer[len++] = b;
+        }
+        return new String(cnvBuffer, 0, len, StandardCharsets.UTF_8);
+    }
+
     /** reset the delta values and string table */
     private void reset() {
         lastNodeId = 0; lastWayId = 0; lastRelId = 0;
         lastRef[0] = 0; lastRef[1] = 0; lastRef[2] = 0;
         lastTs = 0; lastChangeSet = 0;
         lastLon = 0; lastLat = 0;
-        stringTable = new String[2][STRING_TABLE_SIZE];
+        Arrays.fill(stringTableKeys, null);
+        Arrays.fill(stringTableValues, null);
         currStringTablePos = 0;
     }
 
@@ -550,10 +532,12 @@ public class O5mReader extends AbstractReader {
      * @throws IOException in case of I/O error
      */
     private void readHeader() throws IOException {
-        if (ioBuf[0] != 'o' || ioBuf[1] != '5' || (ioBuf[2] != 'c' && ioBuf[2] != 'm') || ioBuf[3] != '2') {
+        int pos = buf.position();
+        if (buf.remaining() < 4 || buf.get(pos) != 'o' || buf.get(pos + 1) != '5'
+                || (buf.get(pos + 2) != 'c' && buf.get(pos + 2) != 'm') || buf.get(pos + 3) != '2') {
             throw new IOException(tr("unsupported header"));
         }
-        header = new String(ioBuf, 0, 3, StandardCharsets.UTF_8);
+        header = new String(new byte[] {buf.get(pos), buf.get(pos + 1), buf.get(pos + 2)}, StandardCharsets.UTF_8);
     }
 
     /**
@@ -570,8 +554,7 @@ public class O5mReader extends AbstractReader {
      */
     private long readSignedNum64() {
         long result;
-        int b = ioBuf[ioBufPos++];
-        --bytesToRead;
+        int b = buf.get();
         result = b;
         if ((b & 0x80) == 0) {  // just one byte
             if ((b & 0x01) == 1)
@@ -581,12 +564,10 @@ public class O5mReader extends AbstractReader {
         int sign = b & 0x01;
         result = (result & 0x7e) >> 1;
         int shift = 6;
-        while (((b = ioBuf[ioBufPos++]) & 0x80) != 0) { // more bytes will follow
-            --bytesToRead;
+        while (((b = buf.get()) & 0x80) != 0) { // more bytes will follow
             result += ((long) (b & 0x7f)) << shift;
             shift += 7;
         }
-        --bytesToRead;
         result += ((long) b) << shift;
         if (sign == 1) // negative
             return -1 - result;
@@ -596,57 +577,214 @@ public class O5mReader extends AbstractReader {
     /**
      * read a varying length unsigned number (see o5m definition)
      * @return the number as long
-     * @throws IOException in case of I/O error
      */
-    private long readUnsignedNum64FromStream()throws IOException {
-        int b = is.read();
-        --bytesToRead;
+    private long readUnsignedNum64() {
+        int b = buf.get();
         long result = b;
         if ((b & 0x80) == 0) {  // just one byte
             return result;
         }
         result &= 0x7f;
         int shift = 7;
-        while (((b = is.read()) & 0x80) != 0) { // more bytes will follow
-            --bytesToRead;
+        while (((b = buf.get()) & 0x80) != 0) { // more bytes will follow
             result += ((long) (b & 0x7f)) << shift;
             shift += 7;
         }
-        --bytesToRead;
         result += ((long) b) << shift;
         return result;
     }
 
-
     /**
      * read a varying length unsigned number (see o5m definition)
-     * @return the number as long
+     * @return the number as int
      */
-    private long readUnsignedNum64() {
-        int b = ioBuf[ioBufPos++];
-        --bytesToRead;
-        long result = b;
-        if ((b & 0x80) == 0) {  // just one byte
+    private int readUnsignedNum32() {
+        return (int) readUnsignedNum64();
+    }
+
+    /**
+     * Source of o5m data sets.
+     */
+    private abstract static class Input {
+        /**
+         * read a single byte outside of data sets
+         * @return the byte value, or -1 at end of file
+         * @throws IOException in case of I/O error
+         */
+        abstract int read() throws IOException;
+
+        /**
+         * make the next data set available
+         * @param size length of the data set
+         * @return buffer positioned at the start of the data set and limited to its end
+         * @throws IOException in case of I/O error
+         */
+        abstract ByteBuffer dataSet(int size) throws IOException;
+
+        /**
+         * skip the remaining bytes of the current data set
+         */
+        abstract void endDataSet();
+
+        /**
+         * Skip the given number of bytes
+         * @param bytes number of bytes to skip 
+         * @throws IOException in case of I/O error
+         */
+        abstract void skip(long bytes) throws IOException;
+
+        /**
+         * @return the number of bytes read so far
+         */
+        abstract long position();
+
+        /**
+         * read a varying length unsigned number (see o5m definition) outside of data sets
+         * @return the number as long
+         * @throws IOException in case of I/O error
+         */
+        long readUnsignedNum64() throws IOException {
+            int b = read();
+            long result = b;
+            if ((b & 0x80) == 0) {  // just one byte
+                return result;
+            }
+            result &= 0x7f;
+            int shift = 7;
+            while (((b = read()) & 0x80) != 0) { // more bytes will follow
+                result += ((long) (b & 0x7f)) << shift;
+                shift += 7;
+            }
+            result += ((long) b) << shift;
             return result;
         }
-        result &= 0x7f;
-        int shift = 7;
-        while (((b = ioBuf[ioBufPos++]) & 0x80) != 0) { // more bytes will follow
-            --bytesToRead;
-            result += ((long) (b & 0x7f)) << shift;
-            shift += 7;
+    }
+
+    /**
+     * Reads data sets from a stream, copying each one into a reusable buffer.
+     */
+    private static final class StreamInput extends Input {
+        private final BufferedInputStream is;
+        private byte[] ioBuf = new byte[8192];
+        private ByteBuffer ioBuffer = ByteBuffer.wrap(ioBuf);
+        private long countBytes;
+
+        StreamInput(InputStream source) {
+            this.is = new BufferedInputStream(source);
+        }
+
+        @Override
+        int read() throws IOException {
+            ++countBytes;
+            return is.read();
+        }
+
+        @Override
+        ByteBuffer dataSet(int size) throws IOException {
+            if (size > ioBuf.length) {
+                ioBuf = new byte[size + 100];
+                ioBuffer = ByteBuffer.wrap(ioBuf);
+            }
+            int bytesRead = 0;
+            while (bytesRead < size) {
+                int n = is.read(ioBuf, bytesRead, size - bytesRead);
+                if (n < 0)
+                    throw new EOFException();
+                bytesRead += n;
+            }
+            countBytes += size;
+            ioBuffer.clear();
+            ioBuffer.limit(size);
+            return ioBuffer;
+        }
+
+        @Override
+        void endDataSet() {
+            // The next data set overwrites the buffer
+        }
+
+        @Override
+        void skip(long bytes) throws IOException {
+            long toSkip = bytes;
+            while (toSkip > 0) {
+                toSkip -= is.skip(toSkip);
+            }
+            countBytes += bytes;
+        }
+
+        @Override
+        long position() {
+            return countBytes;
         }
-        --bytesToRead;
-        result += ((long) b) << shift;
-        return result;
     }
 
     /**
-     * read a varying length unsigned number (see o5m definition)
-     * @return the number as int
+     * Reads data sets directly from a memory mapped file, one window at a time.
      */
-    private int readUnsignedNum32() {
-        return (int) readUnsignedNum64();
+    private static final class ChannelInput extends Input {
+        private final FileChannel channel;
+        private final long size;
+        private long windowStart;
+        private MappedByteBuffer window;
+        private int dataSetEnd;
+
+        ChannelInput(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+            this.windowStart = channel.position();
+        }
+
+        /**
+         * make sure that the given number of bytes can be read from the current window, mapping the next one if needed
+         * @param bytes number of bytes
+         * @throws IOException in case of I/O error
+         */
+        private void ensureAvailable(int bytes) throws IOException {
+            if (window == null || (window.remaining() < bytes && windowStart + window.limit() < size)) {
+                if (window != null) {
+                    windowStart += window.position();
+                }
+                window = channel.map(MapMode.READ_ONLY, windowStart, Math.min(size - windowStart, Math.max(bytes, MAP_WINDOW_SIZE)));
+            }
+        }
+
+        @Override
+        int read() throws IOException {
+            ensureAvailable(1);
+            return window.hasRemaining() ? window.get() & 0xff : EOF_FLAG;
+        }
+
+        @Override
+        ByteBuffer dataSet(int length) throws IOException {
+            ensureAvailable(length);
+            if (window.remaining() < length)
+                throw new EOFException();
+            dataSetEnd = window.position() + length;
+            window.limit(dataSetEnd);
+            return window;
+        }
+
+        @Override
+        void endDataSet() {
+            window.limit(window.capacity());
+            window.position(dataSetEnd);
+        }
+
+        @Override
+        void skip(long bytes) throws IOException {
+            long target = windowStart + window.position() + bytes;
+            if (target <= windowStart + window.limit()) {
+                window.position((int) (target - windowStart));
+            } else {
+                windowStart = Math.min(target, size);
+                window = channel.map(MapMode.READ_ONLY, windowStart, Math.min(size - windowStart, MAP_WINDOW_SIZE));
+            }
+        }
+
+        @Override
+        long position() {
+            return window == null ? windowStart : windowStart + window.position();
+        }
     }
 
     /**
@@ -678,16 +816,49 @@ public class O5mReader extends AbstractReader {
         return new O5mReader().doParseDataSet(source, progressMonitor);
     }
 
+    /**
+     * Parse the given local file and return the dataset.
+     * The file is memory mapped, which is much faster than reading it through a stream.
+     *
+     * @param file the source file. Must not be null.
+     * @param progressMonitor  the progress monitor. If null, {@link NullProgressMonitor#INSTANCE} is assumed
+     *
+     * @return the dataset with the parsed data
+     * @throws IOException if the file cannot be opened
+     * @throws IllegalDataException thrown if the an error was found while parsing the data from the source
+     * @throws IllegalArgumentException thrown if file is null
+     */
+    public static DataSet parseDataSet(Path file, ProgressMonitor progressMonitor) throws IOException, IllegalDataException {
+        if (progressMonitor == null) {
+            progressMonitor = NullProgressMonitor.INSTANCE;
+        }
+        CheckParameterUtil.ensureParameterNotNull(file, "file");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            O5mReader reader = new O5mReader();
+            return reader.doParseDataSet(() -> reader.parse(new ChannelInput(channel)), progressMonitor);
+        }
+    }
+
     @Override
     protected DataSet doParseDataSet(InputStream source, ProgressMonitor progressMonitor)
             throws IllegalDataException {
+        return doParseDataSet(() -> parse(source), progressMonitor);
+    }
+
+    @FunctionalInterface
+    private interface ParseTask {
+        void run() throws IOException, ParsingCancelException;
+    }
+
+    private DataSet doParseDataSet(ParseTask parseTask, ProgressMonitor progressMonitor)
+            throws IllegalDataException {
         ProgressMonitor.CancelListener cancelListener = () -> cancel = true;
         progressMonitor.addCancelListener(cancelListener);
         try {
             progressMonitor.beginTask(tr("Prepare OSM data..."), 3); // read, prepare, create data layer
             progressMonitor.indeterminateSubTask(tr("Reading OSM data..."));
 
-            parse(source);
+            parseTask.run();
             progressMonitor.worked(1);
             progressMonitor.indeterminateSubTask(tr("Preparing data set..."));
             prepareDataSet();
@@ -0,0 +1,87 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.o5m.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.Preferences;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.spi.preferences.Config;
+
+/**
+ * Compares stream and memory mapped o5m reading.
+ * The {@code bytes} secondary result is the read throughput, in bytes per second.
+ * Run with {@code mvn -Pbenchmark -pl o5m test-compile exec:exec -Dbenchmark=O5mReader}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class O5mReaderBenchmark {
+
+    /** File to read, the Monaco extract of the test data if empty */
+    @Param("")
+    public String file;
+
+    private Path path;
+    private long size;
+
+    /**
+     * Counts the bytes read during an iteration.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        /** Number of bytes read */
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        Config.setPreferencesInstance(Preferences.main());
+        path = Paths.get(file.isEmpty() ? TestUtils.getTestDataRoot() + "/monaco-latest.o5m" : file);
+        size = Files.size(path);
+    }
+
+    @Benchmark
+    public DataSet readStream(Bytes counter) throws Exception {
+        try (InputStream in = Files.newInputStream(path)) {
+            DataSet ds = O5mReader.parseDataSet(in, NullProgressMonitor.INSTANCE);
+            counter.bytes += size;
+            return ds;
+        }
+    }
+
+    @Benchmark
+    public DataSet readMapped(Bytes counter) throws Exception {
+        DataSet ds = O5mReader.parseDataSet(path, NullProgressMonitor.INSTANCE);
+        counter.bytes += size;
+        return ds;
+    }
+}
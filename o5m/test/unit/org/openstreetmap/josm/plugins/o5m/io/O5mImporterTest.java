@@ -6,6 +6,7 @@ import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -62,4 +63,26 @@ class O5mImporterTest {
     void testParseDataSetDropVersion() throws Exception {
         doTestMonaco(TestUtils.getTestDataRoot() + "/monaco-drop-version.o5m", true);
     }
+
+    /**
+     * Unit test of {@link O5mReader#parseDataSet(java.nio.file.Path, org.openstreetmap.josm.gui.progress.ProgressMonitor)}.
+     * Memory mapped file must give the same data as the stream.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testParseMappedFile() throws Exception {
+        String file = TestUtils.getTestDataRoot() + "/monaco-latest.o5m";
+        DataSet expected = new O5mImporter().parseDataSet(file);
+        DataSet ds = O5mReader.parseDataSet(Paths.get(file), null);
+        assertEquals(expected.getNodes().size(), ds.getNodes().size());
+        assertEquals(expected.getWays().size(), ds.getWays().size());
+        assertEquals(expected.getRelations().size(), ds.getRelations().size());
+        for (OsmPrimitive p : expected.allPrimitives()) {
+            OsmPrimitive q = ds.getPrimitiveById(p.getPrimitiveId());
+            assertNotNull(q, p.toString());
+            assertEquals(p.getKeys(), q.getKeys(), p.toString());
+            assertEquals(p.getUser(), q.getUser(), p.toString());
+            assertEquals(p.getInstant(), q.getInstant(), p.toString());
+        }
+    }
 }
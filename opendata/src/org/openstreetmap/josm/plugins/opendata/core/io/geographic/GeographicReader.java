@@ -87,6 +87,8 @@ public abstract class GeographicReader extends AbstractReader {
     private final GeographicHandler[] defaultHandlers;
 
     protected final Map<LatLon, Node> nodes;
+    /** Spatial index of {@link #nodes}, used when the handler checks node proximity */
+    private final NodeGrid nodeGrid = new NodeGrid(ILatLon.MAX_SERVER_PRECISION);
 
     protected CoordinateReferenceSystem crs;
     protected MathTransform transform;
@@ -110,17 +112,31 @@ public abstract class GeographicReader extends AbstractReader {
 
     protected Node getNode(Point p, LatLon key) {
         Node n = nodes.get(key);
-        if (n == null && handler != null && handler.checkNodeProximity()) {
-            LatLon ll = new LatLon(p.getY(), p.getX());
-            for (Node node : nodes.values()) {
-                if (node.equalsEpsilon(ll, ILatLon.MAX_SERVER_PRECISION)) {
-                    return node;
-                }
-            }
+        if (n == null && checkNodeProximity()) {
+            n = nodeGrid.find(new LatLon(p.getY(), p.getX()));
         }
         return n;
     }
 
+    private boolean checkNodeProximity() {
+        return handler != null && handler.checkNodeProximity();
+    }
+
+    private void putNode(LatLon key, Node n) {
+        nodes.put(key, n);
+        if (checkNodeProximity()) {
+            nodeGrid.put(key, n);
+        }
+    }
+
+    /**
+     * Clears the nodes used to merge identical or close points.
+     */
+    protected void clearNodes() {
+        nodes.clear();
+        nodeGrid.clear();
+    }
+
     protected Node createOrGetNode(Point p) throws MismatchedDimensionException, TransformException {
         return createOrGetNode(p, null);
     }
@@ -138,7 +154,7 @@ public abstract class GeographicReader extends AbstractReader {
                 n.put("ele", ele);
             }
             if (handler == null || handler.useNodeMap()) {
-                nodes.put(key, n);
+                putNode(key, n);
             }
             ds.addPrimitive(n);
         } else if (n.getDataSet() == null) {
@@ -158,7 +174,7 @@ public abstract class GeographicReader extends AbstractReader {
         if (n == null) {
             n = new Node(key);
             if (handler == null || handler.useNodeMap()) {
-                nodes.put(key, n);
+                putNode(key, n);
             }
             ds.addPrimitive(n);
         } else if (n.getDataSet() == null) {
@@ -144,7 +144,7 @@ public class GeotoolsConverter {
                 }
             }
         } finally {
-            reader.nodes.clear();
+            reader.clearNodes();
             this.reader.getDataSet().endUpdate();
             if (progressMonitor != null) {
                 progressMonitor.setCustomText(null);
@@ -0,0 +1,77 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.opendata.core.io.geographic;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.openstreetmap.josm.data.coor.ILatLon;
+import org.openstreetmap.josm.data.osm.Node;
+
+/**
+ * Spatial hash of nodes, used to find an existing node close to a given coordinate in constant time.
+ * <p>
+ * Coordinates are quantized to cells of {@code epsilon} degrees, so that any node within {@code epsilon} of a coordinate
+ * is in the cell of this coordinate or in one of its 8 neighbours.
+ */
+class NodeGrid {
+
+    private final double epsilon;
+    private final Map<Long, List<Node>> cells = new HashMap<>();
+
+    /**
+     * Constructs a new {@code NodeGrid}.
+     * @param epsilon maximal distance in degrees, on each axis, between a coordinate and a matching node
+     */
+    NodeGrid(double epsilon) {
+        this.epsilon = epsilon;
+    }
+
+    private long cell(double coordinate) {
+        return (long) Math.floor(coordinate / epsilon);
+    }
+
+    private static long key(long latCell, long lonCell) {
+        return (latCell << 32) ^ (lonCell & 0xffffffffL);
+    }
+
+    /**
+     * Adds a node to the grid.
+     * @param ll coordinate of the node
+     * @param node the node
+     */
+    void put(ILatLon ll, Node node) {
+        cells.computeIfAbsent(key(cell(ll.lat()), cell(ll.lon())), k -> new ArrayList<>(1)).add(node);
+    }
+
+    /**
+     * Finds a node close to the given coordinate.
+     * @param ll the coordinate
+     * @return a node whose coordinate equals {@code ll} within epsilon, or {@code null}
+     */
+    Node find(ILatLon ll) {
+        long latCell = cell(ll.lat());
+        long lonCell = cell(ll.lon());
+        for (long i = latCell - 1; i <= latCell + 1; i++) {
+            for (long j = lonCell - 1; j <= lonCell + 1; j++) {
+                List<Node> nodes = cells.get(key(i, j));
+                if (nodes != null) {
+                    for (Node node : nodes) {
+                        if (node.equalsEpsilon(ll, epsilon)) {
+                            return node;
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes all nodes from the grid.
+     */
+    void clear() {
+        cells.clear();
+    }
+}
@@ -0,0 +1,133 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.opendata.core.io.geographic;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.geotools.api.data.SimpleFeatureStore;
+import org.geotools.api.feature.simple.SimpleFeature;
+import org.geotools.api.feature.simple.SimpleFeatureType;
+import org.geotools.data.DefaultTransaction;
+import org.geotools.data.collection.ListFeatureCollection;
+import org.geotools.data.shapefile.ShapefileDataStore;
+import org.geotools.data.shapefile.ShapefileDataStoreFactory;
+import org.geotools.feature.simple.SimpleFeatureBuilder;
+import org.geotools.feature.simple.SimpleFeatureTypeBuilder;
+import org.geotools.referencing.crs.DefaultGeographicCRS;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygon;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.data.Preferences;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.projection.ProjectionRegistry;
+import org.openstreetmap.josm.data.projection.Projections;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Utils;
+
+/**
+ * Measures the import time of a synthetic cadastral-like shapefile with node proximity checking enabled.
+ * A grid of n x n adjacent square parcels has (n + 1)² distinct vertices; each vertex is shared by up to 4 parcels.
+ * Run with {@code mvn -Pbenchmark -pl opendata test-compile exec:exec -Dbenchmark=ShpReader}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ShpReaderBenchmark {
+
+    /** Number of parcels on each side of the grid */
+    @Param("450")
+    public int size;
+
+    private Path dir;
+    private File file;
+
+    private static File createShapefile(Path dir, int size) throws IOException {
+        SimpleFeatureTypeBuilder typeBuilder = new SimpleFeatureTypeBuilder();
+        typeBuilder.setName("parcels");
+        typeBuilder.setCRS(DefaultGeographicCRS.WGS84);
+        typeBuilder.add("the_geom", Polygon.class);
+        typeBuilder.add("id", Integer.class);
+        SimpleFeatureType type = typeBuilder.buildFeatureType();
+
+        GeometryFactory factory = new GeometryFactory();
+        SimpleFeatureBuilder featureBuilder = new SimpleFeatureBuilder(type);
+        List<SimpleFeature> features = new ArrayList<>(size * size);
+        double step = 0.0001;
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                double x = 2.3 + j * step;
+                double y = 48.8 + i * step;
+                // Shift one vertex by less than the proximity epsilon, so that exact lookups miss
+                double jitter = (i + j) % 2 == 0 ? 2e-8 : 0;
+                Coordinate[] ring = {
+                    new Coordinate(x, y), new Coordinate(x + step + jitter, y), new Coordinate(x + step, y + step),
+                    new Coordinate(x, y + step), new Coordinate(x, y)
+                };
+                featureBuilder.add(factory.createPolygon(ring));
+                featureBuilder.add(i * size + j);
+                features.add(featureBuilder.buildFeature(null));
+            }
+        }
+
+        File file = dir.resolve("parcels.shp").toFile();
+        Map<String, Serializable> params = new HashMap<>();
+        params.put(ShapefileDataStoreFactory.URLP.key, file.toURI().toURL());
+        ShapefileDataStore store = (ShapefileDataStore) new ShapefileDataStoreFactory().createNewDataStore(params);
+        try {
+            store.createSchema(type);
+            SimpleFeatureStore featureStore = (SimpleFeatureStore) store.getFeatureSource(store.getTypeNames()[0]);
+            try (DefaultTransaction transaction = new DefaultTransaction()) {
+                featureStore.setTransaction(transaction);
+                featureStore.addFeatures(new ListFeatureCollection(type, features));
+                transaction.commit();
+            }
+        } finally {
+            store.dispose();
+        }
+        return file;
+    }
+
+    @Setup
+    public void setUp() throws IOException {
+        Config.setPreferencesInstance(Preferences.main());
+        ProjectionRegistry.setProjection(Projections.getProjectionByCode("EPSG:3857"));
+        dir = Files.createTempDirectory("shp-benchmark");
+        file = createShapefile(dir, size);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Utils.deleteDirectory(dir.toFile());
+    }
+
+    @Benchmark
+    public DataSet parse() throws IOException {
+        DefaultShpHandler handler = new DefaultShpHandler();
+        handler.setCheckNodeProximity(true);
+        return new ShpReader(handler).parse(file, NullProgressMonitor.INSTANCE);
+    }
+}
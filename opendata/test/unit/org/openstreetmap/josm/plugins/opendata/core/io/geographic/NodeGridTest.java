@@ -0,0 +1,40 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.opendata.core.io.geographic;
+
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.ILatLon;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.Node;
+
+/**
+ * Unit tests of {@link NodeGrid} class.
+ */
+class NodeGridTest {
+    private static final double EPSILON = ILatLon.MAX_SERVER_PRECISION;
+
+    /**
+     * Unit test of {@link NodeGrid#find}, including matches in neighbouring cells.
+     */
+    @Test
+    void testFind() {
+        NodeGrid grid = new NodeGrid(EPSILON);
+        LatLon ll = new LatLon(48.8566, 2.3522);
+        Node node = new Node(ll);
+        grid.put(ll, node);
+        assertSame(node, grid.find(ll));
+        assertSame(node, grid.find(new LatLon(ll.lat() + EPSILON / 2, ll.lon() - EPSILON / 2)));
+        assertSame(node, grid.find(new LatLon(ll.lat() - EPSILON * 0.9, ll.lon() + EPSILON * 0.9)));
+        assertNull(grid.find(new LatLon(ll.lat() + EPSILON * 3, ll.lon())));
+
+        LatLon negative = new LatLon(-33.8688, -151.2093);
+        Node other = new Node(negative);
+        grid.put(negative, other);
+        assertSame(other, grid.find(new LatLon(negative.lat() + EPSILON / 2, negative.lon() - EPSILON / 2)));
+
+        grid.clear();
+        assertNull(grid.find(ll));
+    }
+}
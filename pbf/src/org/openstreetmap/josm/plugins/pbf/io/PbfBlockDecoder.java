@@ -0,0 +1,384 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pbf.io;
+
+import static org.openstreetmap.josm.tools.I18n.tr;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.NodeData;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.PrimitiveData;
+import org.openstreetmap.josm.data.osm.RelationData;
+import org.openstreetmap.josm.data.osm.RelationMemberData;
+import org.openstreetmap.josm.data.osm.User;
+import org.openstreetmap.josm.data.osm.WayData;
+import org.openstreetmap.josm.io.IllegalDataException;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
+import crosby.binary.BinaryParser;
+import crosby.binary.Fileformat.Blob;
+import crosby.binary.Osmformat;
+import crosby.binary.Osmformat.DenseInfo;
+import crosby.binary.Osmformat.DenseNodes;
+import crosby.binary.Osmformat.HeaderBlock;
+import crosby.binary.Osmformat.Info;
+import crosby.binary.Osmformat.PrimitiveBlock;
+import crosby.binary.Osmformat.Relation.MemberType;
+import crosby.binary.file.FileBlockPosition;
+
+/**
+ * Decodes PBF primitive blocks into {@link PrimitiveData}, without touching any data set.
+ * <p>
+ * An instance is not thread-safe, but distinct instances can decode distinct blocks concurrently.
+ * Decoded primitives are then merged in file order by {@link PbfReader}.
+ */
+class PbfBlockDecoder extends BinaryParser {
+
+    /** Decoded primitives, in file order */
+    protected final List<PrimitiveData> primitives = new ArrayList<>();
+    /** Node ids of decoded ways, by way unique id */
+    protected final Map<Long, Collection<Long>> wayNodes = new HashMap<>();
+    /** Members of decoded relations, by relation unique id */
+    protected final Map<Long, Collection<RelationMemberData>> relationMembers = new HashMap<>();
+
+    protected IllegalDataException exception;
+    protected boolean discourageUpload;
+
+    /** Users found in the current block, by user name string id */
+    private User[] users = new User[256];
+    /** Tags of the current dense node. Copied by {@link PrimitiveData#setKeys} */
+    private final Map<String, String> scratchKeys = new HashMap<>();
+
+    /**
+     * Inflates the content of a raw PBF blob.
+     * @param rawBlob serialized {@code Blob} message, as found in the file
+     * @return uncompressed blob data
+     * @throws IOException if the blob cannot be parsed
+     * @throws IllegalDataException if the blob is not correctly compressed
+     */
+    static ByteString inflate(byte[] rawBlob) throws IOException, IllegalDataException {
+        Blob blob = Blob.parseFrom(rawBlob);
+        if (blob.hasRaw()) {
+            return blob.getRaw();
+        } else if (blob.hasZlibData()) {
+            byte[] result = new byte[blob.getRawSize()];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(blob.getZlibData().asReadOnlyByteBuffer());
+                inflater.inflate(result);
+                if (!inflater.finished()) {
+                    throw new IllegalDataException(tr("Invalid compressed blob"));
+                }
+            } catch (DataFormatException e) {
+                throw new IllegalDataException(e);
+            } finally {
+                inflater.end();
+            }
+            return UnsafeByteOperations.unsafeWrap(result);
+        }
+        throw new IllegalDataException(tr("Unsupported blob compression"));
+    }
+
+    /**
+     * Inflates and decodes a raw {@code OSMData} blob.
+     * @param rawBlob serialized {@code Blob} message, as found in the file
+     * @return a new decoder holding the decoded primitives
+     * @throws IOException if the blob cannot be parsed
+     * @throws IllegalDataException if the blob is not correctly compressed
+     */
+    static PbfBlockDecoder decode(byte[] rawBlob) throws IOException, IllegalDataException {
+        PbfBlockDecoder decoder = new PbfBlockDecoder();
+        decoder.parse(PrimitiveBlock.parseFrom(inflate(rawBlob)));
+        return decoder;
+    }
+
+    /**
+     * Returns the user with the given id and name string id, looking up the users already found in the current block first.
+     * @param uid user id
+     * @param suid user name string id
+     * @return the user
+     */
+    private User getUser(int uid, int suid) {
+        if (suid < 0) {
+            return User.createOsmUser(uid, getStringById(suid));
+        } else if (suid >= users.length) {
+            users = Arrays.copyOf(users, Math.max(suid + 1, 2 * users.length));
+        }
+        User user = users[suid];
+        if (user == null || user.getId() != uid) {
+            user = User.createOsmUser(uid, getStringById(suid));
+            users[suid] = user;
+        }
+        return user;
+    }
+
+    @Override
+    public void parse(PrimitiveBlock block) {
+        // String ids are only valid inside a block
+        Arrays.fill(users, null);
+        super.parse(block);
+    }
+
+    /**
+     * Forgets all decoded primitives, once they have been merged.
+     */
+    protected void clear() {
+        primitives.clear();
+        wayNodes.clear();
+        relationMembers.clear();
+    }
+
+    @Override
+    protected void parse(HeaderBlock header) {
+        // Header blocks are handled by the reader
+    }
+
+    @Override
+    public boolean skipBlock(FileBlockPosition block) {
+        return exception != null;
+    }
+
+    @Override
+    public void complete() {
+        // Nothing to do
+    }
+
+    private void setMetadata(PrimitiveData osm, Info info) throws IllegalDataException {
+        if (info.hasChangeset()) {
+            checkChangesetId(info.getChangeset());
+            osm.setChangesetId((int) info.getChangeset());
+        }
+        if (info.hasUid() && info.hasUserSid()) {
+            osm.setUser(getUser(info.getUid(), info.getUserSid()));
+        }
+        if (info.hasTimestamp()) {
+            checkTimestamp(info.getTimestamp());
+            osm.setInstant(Instant.ofEpochMilli(date_granularity * info.getTimestamp()));
+        }
+    }
+
+    protected void checkCoordinates(LatLon coor) throws IllegalDataException {
+        if (!coor.isValid()) {
+            throw new IllegalDataException(tr("Invalid coordinates: {0}", coor));
+        }
+    }
+
+    protected void checkCoordinates(double lat, double lon) throws IllegalDataException {
+        if (!LatLon.isValidLat(lat) || !LatLon.isValidLon(lon)) {
+            throw new IllegalDataException(tr("Invalid coordinates: {0}", new LatLon(lat, lon)));
+        }
+    }
+
+    protected void checkChangesetId(long id) throws IllegalDataException {
+        if (id > Integer.MAX_VALUE) {
+            throw new IllegalDataException(tr("Invalid changeset id: {0}", id));
+        }
+    }
+
+    protected void checkTimestamp(long timestamp) throws IllegalDataException {
+        if (timestamp < 0) {
+            throw new IllegalDataException(tr("Invalid timestamp: {0}", timestamp));
+        }
+    }
+
+    @Override
+    protected void parseDense(DenseNodes nodes) {
+        final boolean hasDenseInfo = nodes.hasDenseinfo();
+        if (!hasDenseInfo)
+            discourageUpload = true;
+        if (exception == null) {
+            try {
+                final DenseInfo info = hasDenseInfo ? nodes.getDenseinfo() : null;
+                final int nodeCount = nodes.getIdCount();
+                final int keysValsCount = nodes.getKeysValsCount();
+                final int changesetCount = hasDenseInfo ? info.getChangesetCount() : 0;
+                final int userCount = hasDenseInfo ? Math.min(info.getUidCount(), info.getUserSidCount()) : 0;
+                final int timestampCount = hasDenseInfo ? info.getTimestampCount() : 0;
+                int keyIndex = 0;
+                // Almost all data is DELTA coded
+                long nodeId = 0;
+                long nodeLat = 0;
+                long nodeLon = 0;
+                long changesetId = 0;
+                int uid = 0;
+                int suid = 0;
+                long timestamp = 0;
+                Instant instant = null;
+                for (int i = 0; i < nodeCount; i++) {
+                    // Id (delta) and version (normal)
+                    nodeId += nodes.getId(i);
+                    NodeData nd = new NodeData(nodeId);
+                    nd.setVersion(hasDenseInfo ? info.getVersion(i) : 1);
+                    // Lat/Lon (delta)
+                    nodeLat += nodes.getLat(i);
+                    nodeLon += nodes.getLon(i);
+                    double lat = LatLon.roundToOsmPrecision(parseLat(nodeLat));
+                    double lon = LatLon.roundToOsmPrecision(parseLon(nodeLon));
+                    checkCoordinates(lat, lon);
+                    nd.setCoor(new LatLon(lat, lon));
+                    // Changeset (delta)
+                    if (changesetCount > i) {
+                        changesetId += info.getChangeset(i);
+                        checkChangesetId(changesetId);
+                        nd.setChangesetId((int) changesetId);
+                    }
+                    // User (delta)
+                    if (userCount > i) {
+                        uid += info.getUid(i);
+                        suid += info.getUserSid(i);
+                        nd.setUser(getUser(uid, suid));
+                    }
+                    // Timestamp (delta)
+                    if (timestampCount > i) {
+                        long delta = info.getTimestamp(i);
+                        if (delta != 0 || instant == null) {
+                            timestamp += delta;
+                            checkTimestamp(timestamp);
+                            instant = Instant.ofEpochMilli(date_granularity * timestamp);
+                        }
+                        nd.setInstant(instant);
+                    }
+                    // A single table contains all keys/values of all nodes.
+                    // Each node's tags are encoded in alternating <key_id> <value_id>.
+                    // A single stringid of 0 delimit when the tags of a node ends and the tags of the next node begin.
+                    // Most nodes have no tags: only fill the (reused) tag map when needed.
+                    if (keyIndex < keysValsCount && nodes.getKeysVals(keyIndex) != 0) {
+                        scratchKeys.clear();
+                        while (keyIndex < keysValsCount) {
+                            int keyId = nodes.getKeysVals(keyIndex++);
+                            if (keyId == 0) {
+                                break; // End of current node's tags
+                            } else if (keyIndex < keysValsCount) {
+                                scratchKeys.put(getStringById(keyId), getStringById(nodes.getKeysVals(keyIndex++)));
+                            } else {
+                                throw new IllegalDataException(tr("Invalid DenseNodes key/values table"));
+                            }
+                        }
+                        nd.setKeys(scratchKeys);
+                    } else {
+                        keyIndex++; // Skip delimiter of untagged node
+                    }
+                    primitives.add(nd);
+                }
+            } catch (IllegalDataException e) {
+                exception = e;
+            }
+        }
+    }
+
+    @Override
+    protected void parseNodes(List<Osmformat.Node> osmNodes) {
+        if (exception == null) {
+            try {
+                for (Osmformat.Node n : osmNodes) {
+                    final Info info = n.getInfo();
+                    if (!info.hasVersion())
+                        discourageUpload = true;
+                    NodeData nd = new NodeData(n.getId());
+                    nd.setVersion(info.hasVersion() ? info.getVersion() : 1);
+                    nd.setCoor(new LatLon(parseLat(n.getLat()), parseLon(n.getLon())).getRoundedToOsmPrecision());
+                    checkCoordinates(nd.getCoor());
+                    setMetadata(nd, info);
+                    Map<String, String> keys = new HashMap<>();
+                    for (int i = 0; i < n.getKeysCount(); i++) {
+                        keys.put(getStringById(n.getKeys(i)), getStringById(n.getVals(i)));
+                    }
+                    nd.setKeys(keys);
+                    primitives.add(nd);
+                }
+            } catch (IllegalDataException e) {
+                exception = e;
+            }
+        }
+    }
+
+    @Override
+    protected void parseWays(List<Osmformat.Way> osmWays) {
+        if (exception == null) {
+            try {
+                for (Osmformat.Way w : osmWays) {
+                    final Info info = w.getInfo();
+                    if (!info.hasVersion())
+                        discourageUpload = true;
+                    final WayData wd = new WayData(w.getId());
+                    wd.setVersion(info.hasVersion() ? info.getVersion() : 1);
+                    setMetadata(wd, info);
+                    Map<String, String> keys = new HashMap<>();
+                    for (int i = 0; i < w.getKeysCount(); i++) {
+                        keys.put(getStringById(w.getKeys(i)), getStringById(w.getVals(i)));
+                    }
+                    wd.setKeys(keys);
+                    long id = 0; // Node ids are delta coded
+                    Collection<Long> nodeIds = new ArrayList<>();
+                    for (Long idDelta : w.getRefsList()) {
+                        id += idDelta;
+                        nodeIds.add(id);
+                    }
+                    wayNodes.put(wd.getUniqueId(), nodeIds);
+                    primitives.add(wd);
+                }
+            } catch (IllegalDataException e) {
+                exception = e;
+            }
+        }
+    }
+
+    @Override
+    protected void parseRelations(List<Osmformat.Relation> osmRels) {
+        if (exception == null) {
+            try {
+                for (Osmformat.Relation r : osmRels) {
+                    final Info info = r.getInfo();
+                    if (!info.hasVersion())
+                        discourageUpload = true;
+                    final RelationData rd = new RelationData(r.getId());
+                    rd.setVersion(info.hasVersion() ? info.getVersion() : 1);
+                    setMetadata(rd, info);
+                    Map<String, String> keys = new HashMap<>();
+                    for (int i = 0; i < r.getKeysCount(); i++) {
+                        keys.put(getStringById(r.getKeys(i)), getStringById(r.getVals(i)));
+                    }
+                    rd.setKeys(keys);
+                    long memId = 0; // Member ids are delta coded
+                    Collection<RelationMemberData> members = new ArrayList<>();
+                    for (int i = 0; i < r.getMemidsCount(); i++) {
+                        memId += r.getMemids(i);
+                        members.add(new RelationMemberData(
+                                getStringById(r.getRolesSid(i)),
+                                mapOsmType(r.getTypes(i)),
+                                memId));
+                    }
+                    relationMembers.put(rd.getUniqueId(), members);
+                    primitives.add(rd);
+                }
+            } catch (IllegalDataException e) {
+                exception = e;
+            }
+        }
+    }
+
+    private static OsmPrimitiveType mapOsmType(MemberType type) {
+        switch (type) {
+        case NODE:
+            return OsmPrimitiveType.NODE;
+        case WAY:
+            return OsmPrimitiveType.WAY;
+        case RELATION:
+            return OsmPrimitiveType.RELATION;
+        default:
+            return null;
+        }
+    }
+}
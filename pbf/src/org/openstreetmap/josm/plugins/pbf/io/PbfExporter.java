@@ -5,10 +5,12 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.zip.Deflater;
 
 import org.openstreetmap.josm.gui.io.importexport.OsmExporter;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
 import org.openstreetmap.josm.plugins.pbf.PbfConstants;
+import org.openstreetmap.josm.spi.preferences.Config;
 
 /**
  * Exports data to a .pbf file.
@@ -16,6 +18,8 @@ import org.openstreetmap.josm.plugins.pbf.PbfConstants;
  */
 public class PbfExporter extends OsmExporter {
 
+    private Integer compressionLevel;
+
     /**
      * Constructs a new {@code PbfExporter}.
      */
@@ -23,11 +27,32 @@ public class PbfExporter extends OsmExporter {
         super(PbfConstants.FILE_FILTER);
     }
 
+    /**
+     * Returns the compression level of written files.
+     * Unless set by {@link #setCompressionLevel}, it is defined by the {@code pbf.writer.compression} preference.
+     * @return deflate compression level from 1 (fastest) to 9 (smallest),
+     *         {@link Deflater#DEFAULT_COMPRESSION}, or {@link PbfWriter#NO_COMPRESSION}
+     */
+    public int getCompressionLevel() {
+        return compressionLevel != null ? compressionLevel
+                : Config.getPref().getInt("pbf.writer.compression", Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * Sets the compression level of written files.
+     * @param compressionLevel deflate compression level from 1 (fastest) to 9 (smallest),
+     *        {@link Deflater#DEFAULT_COMPRESSION}, or {@link PbfWriter#NO_COMPRESSION} for faster local hand-offs
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
     @Override
     protected void doSave(File file, OsmDataLayer layer) throws IOException {
         try (
             OutputStream out = new FileOutputStream(file);
-            PbfWriter w = new PbfWriter(out);
+            PbfWriter w = new PbfWriter(out, getCompressionLevel(),
+                    Config.getPref().getInt("pbf.writer.threads", Runtime.getRuntime().availableProcessors()));
         ) {
             layer.data.getReadLock().lock();
             try {
@@ -0,0 +1,141 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pbf.io;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.NodeData;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.PrimitiveData;
+import org.openstreetmap.josm.data.osm.RelationMemberData;
+import org.openstreetmap.josm.data.osm.Tagged;
+import org.openstreetmap.josm.tools.CheckParameterUtil;
+
+/**
+ * Spatial and tag filter applied when reading a PBF file in two passes, so that only the selected primitives are materialized.
+ * <p>
+ * The first pass collects the ids of:
+ * <ul>
+ * <li>nodes inside the bounds and matching the tag filter,</li>
+ * <li>ways matching the tag filter and referencing at least one node inside the bounds, and all their nodes,</li>
+ * <li>relations matching the tag filter and referencing at least one of the above, or a relation selected before,
+ * and their member nodes inside the bounds.</li>
+ * </ul>
+ * Other members of selected relations are loaded as incomplete primitives.
+ * The second pass only builds these primitives. Memory use thus depends on the selected area, not on the file size.
+ * @see PbfReader#parseDataSet(java.nio.file.Path, PbfFilter, org.openstreetmap.josm.gui.progress.ProgressMonitor)
+ */
+public class PbfFilter {
+
+    private final Bounds bounds;
+    private final Predicate<Tagged> tagFilter;
+
+    private final Set<Long> nodesInBounds = new HashSet<>();
+    private final Set<Long> nodes = new HashSet<>();
+    private final Set<Long> ways = new HashSet<>();
+    private final Set<Long> relations = new HashSet<>();
+
+    /**
+     * Constructs a new {@code PbfFilter} selecting all primitives in the given bounds.
+     * @param bounds bounds of the area to load
+     */
+    public PbfFilter(Bounds bounds) {
+        this(bounds, null);
+    }
+
+    /**
+     * Constructs a new {@code PbfFilter}.
+     * @param bounds bounds of the area to load
+     * @param tagFilter optional filter on primitive tags. Can be null
+     */
+    public PbfFilter(Bounds bounds, Predicate<Tagged> tagFilter) {
+        CheckParameterUtil.ensureParameterNotNull(bounds, "bounds");
+        this.bounds = bounds;
+        this.tagFilter = tagFilter;
+    }
+
+    /**
+     * Returns the bounds of the area to load.
+     * @return the bounds of the area to load
+     */
+    public Bounds getBounds() {
+        return bounds;
+    }
+
+    private boolean matchesTags(Tagged tagged) {
+        return tagFilter == null || tagFilter.test(tagged);
+    }
+
+    /**
+     * First pass: collects the ids of primitives to load from a decoded block.
+     * Blocks must be given in file order.
+     * @param decoder block decoder
+     */
+    void collect(PbfBlockDecoder decoder) {
+        for (PrimitiveData pd : decoder.primitives) {
+            switch (pd.getType()) {
+            case NODE:
+                if (bounds.contains(((NodeData) pd).getCoor())) {
+                    nodesInBounds.add(pd.getUniqueId());
+                    if (matchesTags(pd)) {
+                        nodes.add(pd.getUniqueId());
+                    }
+                }
+                break;
+            case WAY:
+                Collection<Long> nodeIds = decoder.wayNodes.get(pd.getUniqueId());
+                if (matchesTags(pd) && nodeIds.stream().anyMatch(nodesInBounds::contains)) {
+                    ways.add(pd.getUniqueId());
+                    nodes.addAll(nodeIds);
+                }
+                break;
+            case RELATION:
+                Collection<RelationMemberData> members = decoder.relationMembers.get(pd.getUniqueId());
+                if (matchesTags(pd) && members.stream().anyMatch(this::isSelectedMember)) {
+                    relations.add(pd.getUniqueId());
+                    members.stream().filter(m -> m.getMemberType() == OsmPrimitiveType.NODE)
+                        .map(RelationMemberData::getMemberId).filter(nodesInBounds::contains).forEach(nodes::add);
+                }
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    private boolean isSelectedMember(RelationMemberData member) {
+        switch (member.getMemberType()) {
+        case NODE:
+            return nodesInBounds.contains(member.getMemberId());
+        case WAY:
+            return ways.contains(member.getMemberId());
+        case RELATION:
+            return relations.contains(member.getMemberId());
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Frees memory used only by the first pass.
+     */
+    void endCollect() {
+        nodesInBounds.clear();
+    }
+
+    /**
+     * Second pass: determines if a decoded primitive has to be built.
+     * @param pd decoded primitive
+     * @return {@code true} if the primitive has been selected during the first pass
+     */
+    boolean accept(PrimitiveData pd) {
+        long id = pd.getUniqueId();
+        OsmPrimitiveType type = pd.getType();
+        return (type == OsmPrimitiveType.NODE && nodes.contains(id))
+            || (type == OsmPrimitiveType.WAY && ways.contains(id))
+            || (type == OsmPrimitiveType.RELATION && relations.contains(id));
+    }
+}
@@ -3,43 +3,41 @@ package org.openstreetmap.josm.plugins.pbf.io;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
+import java.io.DataInputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Date;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.openstreetmap.josm.data.Bounds;
 import org.openstreetmap.josm.data.DataSource;
 import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.data.osm.DataSet;
-import org.openstreetmap.josm.data.osm.NodeData;
 import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
 import org.openstreetmap.josm.data.osm.PrimitiveData;
-import org.openstreetmap.josm.data.osm.RelationData;
-import org.openstreetmap.josm.data.osm.RelationMemberData;
 import org.openstreetmap.josm.data.osm.UploadPolicy;
-import org.openstreetmap.josm.data.osm.User;
-import org.openstreetmap.josm.data.osm.WayData;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.io.AbstractReader;
 import org.openstreetmap.josm.io.IllegalDataException;
 import org.openstreetmap.josm.io.ImportCancelException;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.CheckParameterUtil;
 import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
 
-import crosby.binary.BinaryParser;
-import crosby.binary.Osmformat;
-import crosby.binary.Osmformat.DenseInfo;
-import crosby.binary.Osmformat.DenseNodes;
+import crosby.binary.Fileformat.BlobHeader;
 import crosby.binary.Osmformat.HeaderBBox;
 import crosby.binary.Osmformat.HeaderBlock;
-import crosby.binary.Osmformat.Info;
-import crosby.binary.Osmformat.Relation.MemberType;
+import crosby.binary.Osmformat.PrimitiveBlock;
 import crosby.binary.file.BlockInputStream;
 import crosby.binary.file.FileBlockPosition;
 
@@ -49,16 +47,17 @@ import crosby.binary.file.FileBlockPosition;
  */
 public class PbfReader extends AbstractReader {
 
-    protected class PbfParser extends BinaryParser {
+    protected class PbfParser extends PbfBlockDecoder {
 
-        private IllegalDataException exception;
-        private boolean discourageUpload;
         private double parseRawDegrees(long raw) {
             return raw * .000000001;
         }
 
         @Override
         protected void parse(HeaderBlock header) {
+            if (collecting) {
+                return;
+            }
 
             for (String requiredFeature : header.getRequiredFeaturesList()) {
                 switch (requiredFeature) {
@@ -72,7 +71,9 @@ public class PbfReader extends AbstractReader {
                 }
             }
 
-            if (header.hasBbox()) {
+            if (filter != null) {
+                ds.addDataSource(new DataSource(filter.getBounds(), header.getSource()));
+            } else if (header.hasBbox()) {
                 HeaderBBox bbox = header.getBbox();
                     double minlat = parseRawDegrees(bbox.getBottom());
                     double minlon = parseRawDegrees(bbox.getLeft());
@@ -92,226 +93,77 @@ public class PbfReader extends AbstractReader {
                 && LatLon.isValidLon(minlon) && LatLon.isValidLon(maxlon);
         }
 
-        private void setMetadata(PrimitiveData osm, Info info) throws IllegalDataException {
-            if (info.hasChangeset()) {
-                checkChangesetId(info.getChangeset());
-                osm.setChangesetId((int) info.getChangeset());
-            }
-            if (info.hasUid() && info.hasUserSid()) {
-                osm.setUser(User.createOsmUser(info.getUid(), getStringById(info.getUserSid())));
-            }
-            if (info.hasTimestamp()) {
-                checkTimestamp(info.getTimestamp());
-                osm.setInstant(getDate(info).toInstant());
-            }
-        }
-
         @Override
         public boolean skipBlock(FileBlockPosition block) {
             return exception != null || cancel;
         }
 
-        protected void checkCoordinates(LatLon coor) throws IllegalDataException {
-            if (!coor.isValid()) {
-                throw new IllegalDataException(tr("Invalid coordinates: {0}", coor));
-            }
-        }
-
-        protected void checkChangesetId(long id) throws IllegalDataException {
-            if (id > Integer.MAX_VALUE) {
-                throw new IllegalDataException(tr("Invalid changeset id: {0}", id));
-            }
-        }
-
-        protected void checkTimestamp(long timestamp) throws IllegalDataException {
-            if (timestamp < 0) {
-                throw new IllegalDataException(tr("Invalid timestamp: {0}", timestamp));
-            }
-        }
-
         @Override
-        protected void parseDense(DenseNodes nodes) {
-            if (!nodes.hasDenseinfo())
-                discourageUpload = true;
+        public void parse(PrimitiveBlock block) {
+            super.parse(block);
             if (exception == null) {
-                try {
-                    int keyIndex = 0;
-                    // Almost all data is DELTA coded
-                    long nodeId = 0;
-                    long nodeLat = 0;
-                    long nodeLon = 0;
-                    long changesetId = 0;
-                    int uid = 0;
-                    int suid = 0;
-                    long timestamp = 0;
-                    for (int i = 0; i < nodes.getIdCount(); i++) {
-                        // Id (delta) and version (normal)
-                        nodeId += nodes.getId(i);
-                        NodeData nd = new NodeData(nodeId);
-                        nd.setVersion(nodes.hasDenseinfo() ? nodes.getDenseinfo().getVersion(i) : 1);
-                        // Lat/Lon (delta)
-                        nodeLat += nodes.getLat(i);
-                        nodeLon += nodes.getLon(i);
-                        nd.setCoor(new LatLon(parseLat(nodeLat), parseLon(nodeLon)).getRoundedToOsmPrecision());
-                        checkCoordinates(nd.getCoor());
-                        if (nodes.hasDenseinfo()) {
-                            DenseInfo info = nodes.getDenseinfo();
-                            // Changeset (delta)
-                            if (info.getChangesetCount() > i) {
-                                changesetId += info.getChangeset(i);
-                                checkChangesetId(changesetId);
-                                nd.setChangesetId((int) changesetId);
-                            }
-                            // User (delta)
-                            if (info.getUidCount() > i && info.getUserSidCount() > i) {
-                                uid += info.getUid(i);
-                                suid += info.getUserSid(i);
-                                nd.setUser(User.createOsmUser(uid, getStringById(suid)));
-                            }
-                            // Timestamp (delta)
-                            if (info.getTimestampCount() > i) {
-                                timestamp += info.getTimestamp(i);
-                                checkTimestamp(timestamp);
-                                nd.setInstant(new Date(date_granularity * timestamp).toInstant());
-                            }
-                        }
-                        // A single table contains all keys/values of all nodes.
-                        // Each node's tags are encoded in alternating <key_id> <value_id>.
-                        // A single stringid of 0 delimit when the tags of a node ends and the tags of the next node begin.
-                        Map<String, String> keys = new HashMap<>();
-                        while (keyIndex < nodes.getKeysValsCount()) {
-                            int keyId = nodes.getKeysVals(keyIndex++);
-                            if (keyId == 0) {
-                                break; // End of current node's tags
-                            } else if (keyIndex < nodes.getKeysValsCount()) {
-                                keys.put(getStringById(keyId), getStringById(nodes.getKeysVals(keyIndex++)));
-                            } else {
-                                throw new IllegalDataException(tr("Invalid DenseNodes key/values table"));
-                            }
-                        }
-                        nd.setKeys(keys);
-                        buildPrimitive(nd);
-                    }
-                } catch (IllegalDataException e) {
-                    exception = e;
-                }
+                handleDecodedBlock(this);
             }
         }
 
-        @Override
-        protected void parseNodes(List<Osmformat.Node> osmNodes) {
-            if (exception == null) {
-                try {
-                    for (Osmformat.Node n : osmNodes) {
-                        final Info info = n.getInfo();
-                        if (!info.hasVersion())
-                            discourageUpload = true;
-                        NodeData nd = new NodeData(n.getId());
-                        nd.setVersion(info.hasVersion() ? info.getVersion() : 1);
-                        nd.setCoor(new LatLon(parseLat(n.getLat()), parseLon(n.getLon())).getRoundedToOsmPrecision());
-                        checkCoordinates(nd.getCoor());
-                        setMetadata(nd, info);
-                        Map<String, String> keys = new HashMap<>();
-                        for (int i = 0; i < n.getKeysCount(); i++) {
-                            keys.put(getStringById(n.getKeys(i)), getStringById(n.getVals(i)));
-                        }
-                        nd.setKeys(keys);
-                        buildPrimitive(nd);
-                    }
-                } catch (IllegalDataException e) {
-                    exception = e;
-                }
+        /**
+         * Handles the primitives decoded by the given decoder. Must be called in file order.
+         * @param decoder block decoder
+         */
+        protected void handleDecodedBlock(PbfBlockDecoder decoder) {
+            if (collecting) {
+                filter.collect(decoder);
+            } else {
+                merge(decoder);
             }
+            decoder.clear();
         }
 
-        @Override
-        protected void parseWays(List<Osmformat.Way> osmWays) {
-            if (exception == null) {
-                try {
-                    for (Osmformat.Way w : osmWays) {
-                        final Info info = w.getInfo();
-                        if (!info.hasVersion())
-                            discourageUpload = true;
-                        final WayData wd = new WayData(w.getId());
-                        wd.setVersion(info.hasVersion() ? info.getVersion() : 1);
-                        setMetadata(wd, info);
-                        Map<String, String> keys = new HashMap<>();
-                        for (int i = 0; i < w.getKeysCount(); i++) {
-                            keys.put(getStringById(w.getKeys(i)), getStringById(w.getVals(i)));
-                        }
-                        wd.setKeys(keys);
-                        long id = 0; // Node ids are delta coded
-                        Collection<Long> nodeIds = new ArrayList<>();
-                        for (Long idDelta : w.getRefsList()) {
-                            id += idDelta;
-                            nodeIds.add(id);
-                        }
-                        ways.put(wd.getUniqueId(), nodeIds);
-                        buildPrimitive(wd);
+        private void merge(PbfBlockDecoder decoder) {
+            for (PrimitiveData pd : decoder.primitives) {
+                if (filter == null || filter.accept(pd)) {
+                    buildPrimitive(pd);
+                    if (pd.getType() == OsmPrimitiveType.WAY) {
+                        ways.put(pd.getUniqueId(), decoder.wayNodes.get(pd.getUniqueId()));
+                    } else if (pd.getType() == OsmPrimitiveType.RELATION) {
+                        relations.put(pd.getUniqueId(), decoder.relationMembers.get(pd.getUniqueId()));
                     }
-                } catch (IllegalDataException e) {
-                    exception = e;
                 }
             }
+            discourageUpload |= decoder.discourageUpload;
         }
 
         @Override
-        protected void parseRelations(List<Osmformat.Relation> osmRels) {
-            if (exception == null) {
-                try {
-                    for (Osmformat.Relation r : osmRels) {
-                        final Info info = r.getInfo();
-                        if (!info.hasVersion())
-                            discourageUpload = true;
-                        final RelationData rd = new RelationData(r.getId());
-                        rd.setVersion(info.hasVersion() ? info.getVersion() : 1);
-                        setMetadata(rd, info);
-                        Map<String, String> keys = new HashMap<>();
-                        for (int i = 0; i < r.getKeysCount(); i++) {
-                            keys.put(getStringById(r.getKeys(i)), getStringById(r.getVals(i)));
-                        }
-                        rd.setKeys(keys);
-                        long memId = 0; // Member ids are delta coded
-                        Collection<RelationMemberData> members = new ArrayList<>();
-                        for (int i = 0; i < r.getMemidsCount(); i++) {
-                            memId += r.getMemids(i);
-                            members.add(new RelationMemberData(
-                                    getStringById(r.getRolesSid(i)),
-                                    mapOsmType(r.getTypes(i)),
-                                    memId));
-                        }
-                        relations.put(rd.getUniqueId(), members);
-                        buildPrimitive(rd);
-                    }
-                } catch (IllegalDataException e) {
-                    exception = e;
-                }
-            }
-            if (discourageUpload)
+        public void complete() {
+            if (!collecting && discourageUpload)
                 ds.setUploadPolicy(UploadPolicy.DISCOURAGED);
         }
+    }
 
-        private OsmPrimitiveType mapOsmType(MemberType type) {
-            switch (type) {
-            case NODE:
-                return OsmPrimitiveType.NODE;
-            case WAY:
-                return OsmPrimitiveType.WAY;
-            case RELATION:
-                return OsmPrimitiveType.RELATION;
-            default:
-                return null;
-            }
-        }
+    /** Maximum size of a serialized {@code BlobHeader}, as per the specification */
+    private static final int MAX_BLOB_HEADER_SIZE = 64 * 1024;
+    /** Maximum size of a serialized {@code Blob}, as per the specification */
+    private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
 
-        @Override
-        public void complete() {
-            if (discourageUpload)
-                ds.setUploadPolicy(UploadPolicy.DISCOURAGED);
-        }
+    private final PbfParser parser = new PbfParser();
+    private final int threads;
+    private PbfFilter filter;
+    private boolean collecting;
+
+    /**
+     * Constructs a new {@code PbfReader} using the number of decoding threads defined in preferences.
+     */
+    public PbfReader() {
+        this(Config.getPref().getInt("pbf.reader.threads", Runtime.getRuntime().availableProcessors()));
     }
 
-    private PbfParser parser = new PbfParser();
+    /**
+     * Constructs a new {@code PbfReader}.
+     * @param threads number of threads used to decode data blocks. A value of 1 or less disables parallel decoding
+     */
+    public PbfReader(int threads) {
+        this.threads = threads;
+    }
 
     /**
      * Parse the given input source and return the dataset.
@@ -329,6 +181,55 @@ public class PbfReader extends AbstractReader {
         return new PbfReader().doParseDataSet(source, monitor);
     }
 
+    /**
+     * Parse the given file in two passes and return the dataset, containing only the primitives selected by the given filter.
+     *
+     * @param file the source file. Must not be null.
+     * @param filter the filter selecting primitives to load. Must not be null.
+     * @param progressMonitor  the progress monitor. If null, {link NullProgressMonitor#INSTANCE} is assumed
+     *
+     * @return the dataset with the selected data
+     * @throws IOException if the file cannot be read
+     * @throws IllegalDataException thrown if the an error was found while parsing the data from the source
+     * @throws IllegalArgumentException thrown if file or filter is null
+     * @see PbfFilter
+     */
+    public static DataSet parseDataSet(Path file, PbfFilter filter, ProgressMonitor progressMonitor)
+            throws IOException, IllegalDataException {
+        ProgressMonitor monitor = progressMonitor == null ? NullProgressMonitor.INSTANCE : progressMonitor;
+        CheckParameterUtil.ensureParameterNotNull(file, "file");
+        CheckParameterUtil.ensureParameterNotNull(filter, "filter");
+        PbfReader reader = new PbfReader();
+        reader.filter = filter;
+        monitor.beginTask(tr("Filtering OSM data..."), 2);
+        try {
+            reader.collect(file, monitor.createSubTaskMonitor(1, false));
+            try (InputStream in = Files.newInputStream(file)) {
+                return reader.doParseDataSet(in, monitor.createSubTaskMonitor(1, false));
+            }
+        } finally {
+            monitor.finishTask();
+        }
+    }
+
+    private void collect(Path file, ProgressMonitor monitor) throws IOException, IllegalDataException {
+        ProgressMonitor.CancelListener cancelListener = () -> cancel = true;
+        monitor.addCancelListener(cancelListener);
+        monitor.beginTask(tr("Selecting OSM data..."));
+        collecting = true;
+        try (InputStream in = Files.newInputStream(file)) {
+            parse(in);
+            if (cancel) {
+                throw new IllegalDataException(new ParsingCancelException(tr("Import was canceled")));
+            }
+        } finally {
+            collecting = false;
+            filter.endCollect();
+            monitor.finishTask();
+            monitor.removeCancelListener(cancelListener);
+        }
+    }
+
     @Override
     protected DataSet doParseDataSet(InputStream source, ProgressMonitor monitor)
             throws IllegalDataException {
@@ -366,12 +267,94 @@ public class PbfReader extends AbstractReader {
 
     @SuppressWarnings("resource")
     public void parse(InputStream source) throws IOException, IllegalDataException {
-        new BlockInputStream(source, parser).process();
+        if (threads > 1) {
+            parseParallel(source);
+        } else {
+            new BlockInputStream(source, parser).process();
+        }
         if (parser.exception != null) {
             throw parser.exception;
         }
     }
 
+    /**
+     * Reads blobs on the calling thread, inflates and decodes data blocks on a worker pool,
+     * then builds the decoded primitives in file order on the calling thread.
+     * @param source the source input stream
+     * @throws IOException if an I/O error occurs
+     * @throws IllegalDataException if invalid data is found
+     */
+    private void parseParallel(InputStream source) throws IOException, IllegalDataException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                Utils.newThreadFactory("pbf-reader-%d", Thread.NORM_PRIORITY));
+        // Bounds the number of decoded blocks waiting in memory
+        int maxPending = 2 * threads;
+        Deque<Future<PbfBlockDecoder>> pending = new ArrayDeque<>(maxPending);
+        try {
+            DataInputStream in = new DataInputStream(source);
+            while (!cancel && parser.exception == null) {
+                int headerSize;
+                try {
+                    headerSize = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                if (headerSize < 0 || headerSize > MAX_BLOB_HEADER_SIZE) {
+                    throw new IllegalDataException(tr("Invalid blob header size: {0}", headerSize));
+                }
+                byte[] rawHeader = new byte[headerSize];
+                in.readFully(rawHeader);
+                BlobHeader header = BlobHeader.parseFrom(rawHeader);
+                if (header.getDatasize() < 0 || header.getDatasize() > MAX_BLOB_SIZE) {
+                    throw new IllegalDataException(tr("Invalid blob size: {0}", header.getDatasize()));
+                }
+                byte[] rawBlob = new byte[header.getDatasize()];
+                in.readFully(rawBlob);
+                switch (header.getType()) {
+                case "OSMHeader":
+                    parser.parse(HeaderBlock.parseFrom(PbfBlockDecoder.inflate(rawBlob)));
+                    break;
+                case "OSMData":
+                    if (pending.size() >= maxPending) {
+                        mergeDecodedBlock(pending.removeFirst());
+                    }
+                    pending.addLast(executor.submit(() -> PbfBlockDecoder.decode(rawBlob)));
+                    break;
+                default:
+                    Logging.debug("Skipped block of type: " + header.getType());
+                }
+            }
+            while (!cancel && parser.exception == null && !pending.isEmpty()) {
+                mergeDecodedBlock(pending.removeFirst());
+            }
+            parser.complete();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void mergeDecodedBlock(Future<PbfBlockDecoder> future) throws IOException, IllegalDataException {
+        try {
+            PbfBlockDecoder decoder = future.get();
+            if (decoder.exception != null) {
+                parser.exception = decoder.exception;
+            } else {
+                parser.handleDecodedBlock(decoder);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IllegalDataException) {
+                throw (IllegalDataException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IllegalDataException(cause);
+        }
+    }
+
     /**
      * Exception thrown after user cancellation.
      */
@@ -3,12 +3,23 @@ package org.openstreetmap.josm.plugins.pbf.io;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
 
 import org.openstreetmap.josm.data.DataSource;
 import org.openstreetmap.josm.data.osm.DataSet;
@@ -19,15 +30,20 @@ import org.openstreetmap.josm.data.osm.Relation;
 import org.openstreetmap.josm.data.osm.RelationMember;
 import org.openstreetmap.josm.data.osm.Way;
 import org.openstreetmap.josm.gui.layer.OsmDataLayer;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
 
 import crosby.binary.BinarySerializer;
+import crosby.binary.Fileformat;
 import crosby.binary.Osmformat;
 import crosby.binary.Osmformat.DenseInfo;
 import crosby.binary.Osmformat.Relation.MemberType;
 import crosby.binary.StringTable;
 import crosby.binary.file.BlockOutputStream;
-import crosby.binary.file.FileBlock;
 
 /**
  * OSM writer for the PBF file format.
@@ -35,14 +51,34 @@ import crosby.binary.file.FileBlock;
  */
 public class PbfWriter implements Closeable {
 
+    /**
+     * Compression level writing uncompressed blobs.
+     */
+    public static final int NO_COMPRESSION = Deflater.NO_COMPRESSION;
+
     private final PbfSerializer out;
 
     /**
-     * Constructs a new {@code PbfWriter}.
+     * Constructs a new {@code PbfWriter} with default compression, using the number of encoding threads defined in preferences.
      * @param out output stream
      */
     public PbfWriter(OutputStream out) {
-        this.out = new PbfSerializer(new BlockOutputStream(out));
+        this(out, Deflater.DEFAULT_COMPRESSION,
+                Config.getPref().getInt("pbf.writer.threads", Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * Constructs a new {@code PbfWriter}.
+     * @param out output stream
+     * @param compressionLevel deflate compression level from 1 (fastest) to 9 (smallest),
+     *        {@link Deflater#DEFAULT_COMPRESSION}, or {@link #NO_COMPRESSION}
+     * @param threads number of threads used to encode and compress blocks. A value of 1 or less encodes on the calling thread
+     */
+    public PbfWriter(OutputStream out, int compressionLevel, int threads) {
+        if (compressionLevel != Deflater.DEFAULT_COMPRESSION && (compressionLevel < 0 || compressionLevel > 9)) {
+            throw new IllegalArgumentException("Invalid compression level: " + compressionLevel);
+        }
+        this.out = new PbfSerializer(out, compressionLevel, threads);
     }
 
     // Copied from OsmosisSerializer (public domain)
@@ -54,13 +90,32 @@ public class PbfWriter implements Closeable {
         /** Has the header been written yet? */
         protected boolean headerWritten;
 
+        /** Raw output, where encoded blobs are written in order */
+        private final OutputStream stream;
+        /** Deflate compression level, or {@link PbfWriter#NO_COMPRESSION} */
+        private final int compressionLevel;
+        /** Pool encoding blocks, or {@code null} to encode them on the calling thread */
+        private final ExecutorService executor;
+        /** Encoded blobs waiting to be written, in file order */
+        private final Deque<Future<byte[]>> pending = new ArrayDeque<>();
+        /** Maximum number of blobs waiting to be written */
+        private final int maxPending;
+
         /**
          * Constructs a new {@code PbfSerializer}.
          *
-         * @param output The PBF block stream to send serialized data
+         * @param output The output stream to send serialized data
+         * @param compressionLevel deflate compression level, or {@link PbfWriter#NO_COMPRESSION}
+         * @param threads number of threads used to encode blocks
          */
-        public PbfSerializer(BlockOutputStream output) {
-            super(output);
+        public PbfSerializer(OutputStream output, int compressionLevel, int threads) {
+            super(new BlockOutputStream(output));
+            this.stream = output;
+            this.compressionLevel = compressionLevel;
+            this.executor = threads > 1
+                    ? Executors.newFixedThreadPool(threads, Utils.newThreadFactory("pbf-writer-%d", Thread.NORM_PRIORITY))
+                    : null;
+            this.maxPending = 2 * Math.max(1, threads);
         }
 
         /**
@@ -78,6 +133,8 @@ public class PbfWriter implements Closeable {
         private abstract class Prim<T extends OsmPrimitive> {
             /** Queue that tracks the list of all primitives. */
             ArrayList<T> contents = new ArrayList<>();
+            /** String table of the block this group belongs to. */
+            StringTable stable;
 
             /**
              * Add to the queue.
@@ -92,7 +149,6 @@ public class PbfWriter implements Closeable {
              * Add all of the tags of all entities in the queue to the stringtable.
              */
             public void addStringsToStringtable() {
-                StringTable stable = getStringTable();
                 for (T i : contents) {
                     for (Map.Entry<String, String> tag : i.getKeys().entrySet()) {
                         stable.incr(tag.getKey());
@@ -120,7 +176,6 @@ public class PbfWriter implements Closeable {
                 long lastchangeset = 0;
                 int lastuserSid = 0;
                 int lastuid = 0;
-                StringTable stable = getStringTable();
                 for (OsmPrimitive e : entities) {
 
                     int uid = e.getUser() == null ? -1 : (int) e.getUser().getId();
@@ -142,7 +197,6 @@ public class PbfWriter implements Closeable {
             }
 
             public Osmformat.Info.Builder serializeMetadata(OsmPrimitive e) {
-                StringTable stable = getStringTable();
                 Osmformat.Info.Builder b = Osmformat.Info.newBuilder();
                 if (!omit_metadata) {
                     if (e.getUser() != null) {
@@ -177,7 +231,6 @@ public class PbfWriter implements Closeable {
                     return null;
                 }
                 Osmformat.PrimitiveGroup.Builder builder = Osmformat.PrimitiveGroup.newBuilder();
-                StringTable stable = getStringTable();
 
                 long lastlat = 0;
                 long lastlon = 0;
@@ -228,7 +281,6 @@ public class PbfWriter implements Closeable {
                 if (contents.isEmpty()) {
                     return null;
                 }
-                StringTable stable = getStringTable();
                 Osmformat.PrimitiveGroup.Builder builder = Osmformat.PrimitiveGroup.newBuilder();
                 for (Node i : contents) {
                     long id = i.getUniqueId();
@@ -259,7 +311,6 @@ public class PbfWriter implements Closeable {
                     return null;
                 }
 
-                StringTable stable = getStringTable();
                 Osmformat.PrimitiveGroup.Builder builder = Osmformat.PrimitiveGroup.newBuilder();
                 for (Way i : contents) {
                     Osmformat.Way.Builder bi = Osmformat.Way.newBuilder();
@@ -286,7 +337,6 @@ public class PbfWriter implements Closeable {
         private class RelationGroup extends Prim<Relation> implements PrimGroupWriterInterface {
             @Override
             public void addStringsToStringtable() {
-                StringTable stable = getStringTable();
                 super.addStringsToStringtable();
                 for (Relation i : contents) {
                     for (RelationMember j : i.getMembers()) {
@@ -301,7 +351,6 @@ public class PbfWriter implements Closeable {
                     return null;
                 }
 
-                StringTable stable = getStringTable();
                 Osmformat.PrimitiveGroup.Builder builder = Osmformat.PrimitiveGroup.newBuilder();
                 for (Relation i : contents) {
                     Osmformat.Relation.Builder bi = Osmformat.Relation.newBuilder();
@@ -474,13 +523,80 @@ public class PbfWriter implements Closeable {
             }
             Osmformat.HeaderBlock message = headerblock.build();
             try {
-                output.write(FileBlock.newInstance("OSMHeader", message.toByteString(), null));
+                submit(CompletableFuture.completedFuture(encodeBlob("OSMHeader", message.toByteArray(), compressionLevel)));
             } catch (IOException e) {
                 throw new RuntimeException("Unable to write OSM header.", e);
             }
             headerWritten = true;
         }
 
+        /**
+         * Hands the current batch of groups over to the encoding pool, so that the next batch can be filled meanwhile.
+         */
+        @Override
+        public void processBatch() {
+            if (groups.isEmpty()) {
+                return;
+            }
+            List<PrimGroupWriterInterface> batch = new ArrayList<>(groups);
+            groups.clear();
+            batch_size = 0;
+            Callable<byte[]> task = () -> encodeBlob("OSMData", serializeBatch(batch), compressionLevel);
+            try {
+                submit(executor != null ? executor.submit(task) : CompletableFuture.completedFuture(task.call()));
+            } catch (Exception e) {
+                throw new RuntimeException("Unable to write OSM data.", e);
+            }
+        }
+
+        /**
+         * Builds the string table and encodes a batch of groups into a primitive block.
+         * @param batch groups of primitives sharing the same block
+         * @return serialized primitive block
+         */
+        private byte[] serializeBatch(List<PrimGroupWriterInterface> batch) {
+            StringTable stable = new StringTable();
+            for (PrimGroupWriterInterface i : batch) {
+                ((Prim<?>) i).stable = stable;
+                i.addStringsToStringtable();
+            }
+            stable.finish();
+            Osmformat.PrimitiveBlock.Builder primblock = Osmformat.PrimitiveBlock.newBuilder();
+            for (PrimGroupWriterInterface i : batch) {
+                Osmformat.PrimitiveGroup group = i.serialize();
+                if (group != null) {
+                    primblock.addPrimitivegroup(group);
+                }
+            }
+            primblock.setStringtable(stable.serialize());
+            primblock.setGranularity(granularity);
+            primblock.setDateGranularity(date_granularity);
+            return primblock.build().toByteArray();
+        }
+
+        /**
+         * Queues an encoded blob, writing the oldest ones when too many are waiting.
+         * @param blob encoded blob
+         * @throws IOException if an I/O error occurs
+         */
+        private void submit(Future<byte[]> blob) throws IOException {
+            pending.addLast(blob);
+            while (!pending.isEmpty() && (pending.size() > maxPending || pending.peekFirst().isDone())) {
+                writePending();
+            }
+        }
+
+        private void writePending() throws IOException {
+            try {
+                stream.write(pending.removeFirst().get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException(e.getMessage());
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+        }
+
         public void process(DataSet ds) {
             processor.processSources(ds.getDataSources());
             Comparator<OsmPrimitive> cmp = Comparator.comparingLong(OsmPrimitive::getUniqueId);
@@ -493,11 +609,57 @@ public class PbfWriter implements Closeable {
             try {
                 switchTypes();
                 processBatch();
+                while (!pending.isEmpty()) {
+                    writePending();
+                }
                 flush();
             } catch (IOException e) {
                 throw new RuntimeException("Unable to complete the PBF file.", e);
             }
         }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                if (executor != null) {
+                    executor.shutdownNow();
+                }
+            }
+        }
+    }
+
+    /**
+     * Encodes a blob, including its length prefix and header, as written in a PBF file.
+     * @param type blob type, {@code OSMHeader} or {@code OSMData}
+     * @param data serialized block
+     * @param compressionLevel deflate compression level, or {@link #NO_COMPRESSION}
+     * @return encoded blob
+     */
+    static byte[] encodeBlob(String type, byte[] data, int compressionLevel) {
+        Fileformat.Blob.Builder blob = Fileformat.Blob.newBuilder();
+        if (compressionLevel == NO_COMPRESSION) {
+            blob.setRaw(UnsafeByteOperations.unsafeWrap(data));
+        } else {
+            Deflater deflater = new Deflater(compressionLevel);
+            try {
+                deflater.setInput(data);
+                deflater.finish();
+                ByteString.Output compressed = ByteString.newOutput(data.length / 2 + 64);
+                byte[] buffer = new byte[64 * 1024];
+                while (!deflater.finished()) {
+                    compressed.write(buffer, 0, deflater.deflate(buffer));
+                }
+                blob.setRawSize(data.length);
+                blob.setZlibData(compressed.toByteString());
+            } finally {
+                deflater.end();
+            }
+        }
+        byte[] rawBlob = blob.build().toByteArray();
+        byte[] header = Fileformat.BlobHeader.newBuilder().setType(type).setDatasize(rawBlob.length).build().toByteArray();
+        return ByteBuffer.allocate(4 + header.length + rawBlob.length).putInt(header.length).put(header).put(rawBlob).array();
     }
 
     /**
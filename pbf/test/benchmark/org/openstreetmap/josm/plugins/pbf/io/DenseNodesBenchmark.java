@@ -0,0 +1,106 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pbf.io;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.data.Preferences;
+import org.openstreetmap.josm.spi.preferences.Config;
+
+import com.google.protobuf.ByteString;
+
+import crosby.binary.Osmformat.DenseInfo;
+import crosby.binary.Osmformat.DenseNodes;
+import crosby.binary.Osmformat.PrimitiveBlock;
+import crosby.binary.Osmformat.PrimitiveGroup;
+import crosby.binary.Osmformat.StringTable;
+
+/**
+ * Measures {@link PbfBlockDecoder} on a synthetic DenseNodes block, in time per node.
+ * Run with {@code mvn -Pbenchmark -pl pbf test-compile exec:exec -Dbenchmark=DenseNodes -Dbenchmark.args="-f 1 -prof gc"}
+ * to also measure heap allocation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class DenseNodesBenchmark {
+
+    private static final int NODES = 8000;
+
+    private PrimitiveBlock block;
+    private PbfBlockDecoder decoder;
+
+    /**
+     * Builds a block of dense nodes, with a few users and one tagged node out of ten, similar to real world extracts.
+     * @param count number of nodes
+     * @return synthetic primitive block
+     */
+    static PrimitiveBlock createBlock(int count) {
+        StringTable.Builder strings = StringTable.newBuilder();
+        for (String s : new String[] {"", "alice", "bob", "carol", "highway", "crossing", "barrier", "gate"}) {
+            strings.addS(ByteString.copyFromUtf8(s));
+        }
+        DenseNodes.Builder nodes = DenseNodes.newBuilder();
+        DenseInfo.Builder info = DenseInfo.newBuilder();
+        int lastUid = 0;
+        int lastSid = 0;
+        for (int i = 0; i < count; i++) {
+            nodes.addId(1 + i % 3);
+            nodes.addLat(i % 2 == 0 ? 17 : -13);
+            nodes.addLon(i % 2 == 0 ? 23 : -19);
+            int user = (i / 100) % 3;
+            info.addVersion(1 + i % 4);
+            info.addChangeset(i % 100 == 0 ? 1 : 0);
+            info.addTimestamp(i % 10 == 0 ? 60 : 0);
+            info.addUid(user + 1 - lastUid);
+            info.addUserSid(user + 1 - lastSid);
+            lastUid = user + 1;
+            lastSid = user + 1;
+            if (i % 10 == 0) {
+                nodes.addKeysVals(4 + 2 * (i % 20 / 10));
+                nodes.addKeysVals(5 + 2 * (i % 20 / 10));
+            }
+            nodes.addKeysVals(0);
+        }
+        nodes.setDenseinfo(info);
+        return PrimitiveBlock.newBuilder()
+                .setStringtable(strings)
+                .setLatOffset(43700000000L)
+                .setLonOffset(7400000000L)
+                .addPrimitivegroup(PrimitiveGroup.newBuilder().setDense(nodes))
+                .build();
+    }
+
+    @Setup
+    public void setUp() {
+        Config.setPreferencesInstance(Preferences.main());
+        block = createBlock(NODES);
+        decoder = new PbfBlockDecoder();
+        // A decoding error would turn all following invocations into no-ops
+        decoder.parse(block);
+        if (decoder.exception != null || decoder.primitives.size() != NODES) {
+            throw new IllegalStateException("Invalid benchmark block", decoder.exception);
+        }
+        decoder.clear();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NODES)
+    public void decode() {
+        decoder.parse(block);
+        decoder.clear();
+    }
+}
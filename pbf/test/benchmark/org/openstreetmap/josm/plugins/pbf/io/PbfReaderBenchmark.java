@@ -0,0 +1,61 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pbf.io;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.Preferences;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.spi.preferences.Config;
+
+/**
+ * Compares sequential and parallel PBF decoding.
+ * Run with {@code mvn -Pbenchmark -pl pbf test-compile exec:exec -Dbenchmark=PbfReader}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PbfReaderBenchmark {
+
+    /** File to read, the Monaco extract of the test data if empty */
+    @Param("")
+    public String file;
+
+    /** Number of decoding threads, 1 for sequential decoding */
+    @Param({"1", "4"})
+    public int threads;
+
+    private Path path;
+
+    @Setup
+    public void setUp() {
+        Config.setPreferencesInstance(Preferences.main());
+        path = Paths.get(file.isEmpty() ? TestUtils.getTestDataRoot() + "/monaco-latest.osm.pbf" : file);
+    }
+
+    @Benchmark
+    public DataSet parse() throws Exception {
+        try (InputStream in = Files.newInputStream(path)) {
+            return new PbfReader(threads).doParseDataSet(in, NullProgressMonitor.INSTANCE);
+        }
+    }
+}
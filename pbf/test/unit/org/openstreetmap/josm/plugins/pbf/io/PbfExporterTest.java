@@ -5,9 +5,11 @@ import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 
 import java.io.FileInputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.zip.Deflater;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.Timeout;
@@ -39,4 +41,26 @@ class PbfExporterTest {
             Files.delete(out);
         }
     }
+
+    /**
+     * Checks that files written with any compression level and number of threads are read back identically.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testCompressionLevels() throws Exception {
+        DataSet ds = PbfReaderTest.parse(TestUtils.getTestDataRoot() + "/monaco-latest.osm.pbf", 1);
+        for (int level : new int[] {PbfWriter.NO_COMPRESSION, 1, Deflater.DEFAULT_COMPRESSION}) {
+            for (int threads : new int[] {1, 4}) {
+                Path out = Files.createTempFile("pbf-compression", "pbf");
+                try {
+                    try (OutputStream os = Files.newOutputStream(out); PbfWriter w = new PbfWriter(os, level, threads)) {
+                        w.writeData(ds);
+                    }
+                    PbfReaderTest.assertSameData(ds, PbfReaderTest.parse(out.toString(), 1));
+                } finally {
+                    Files.delete(out);
+                }
+            }
+        }
+    }
 }
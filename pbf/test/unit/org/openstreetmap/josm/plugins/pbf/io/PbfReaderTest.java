@@ -0,0 +1,111 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pbf.io;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.TestUtils;
+import org.openstreetmap.josm.data.Bounds;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
+import org.openstreetmap.josm.data.osm.Relation;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Unit tests for {@link PbfReader}.
+ */
+@BasicPreferences
+class PbfReaderTest {
+
+    static DataSet parse(String file, int threads) throws Exception {
+        try (InputStream in = Files.newInputStream(Paths.get(file))) {
+            return new PbfReader(threads).doParseDataSet(in, NullProgressMonitor.INSTANCE);
+        }
+    }
+
+    static void assertSameData(DataSet expected, DataSet actual) {
+        assertEquals(expected.getNodes().size(), actual.getNodes().size());
+        assertEquals(expected.getWays().size(), actual.getWays().size());
+        assertEquals(expected.getRelations().size(), actual.getRelations().size());
+        assertEquals(expected.getUploadPolicy(), actual.getUploadPolicy());
+        for (OsmPrimitive p : expected.allPrimitives()) {
+            OsmPrimitive q = actual.getPrimitiveById(p.getPrimitiveId());
+            assertNotNull(q, p.toString());
+            assertEquals(p.getKeys(), q.getKeys(), p.toString());
+            assertEquals(p.getVersion(), q.getVersion(), p.toString());
+            assertEquals(p.getUser(), q.getUser(), p.toString());
+            assertEquals(p.getInstant(), q.getInstant(), p.toString());
+            assertEquals(p.getChangesetId(), q.getChangesetId(), p.toString());
+            if (p instanceof Node) {
+                assertEquals(((Node) p).getCoor(), ((Node) q).getCoor(), p.toString());
+            } else if (p instanceof Way) {
+                assertEquals(((Way) p).getNodes().size(), ((Way) q).getNodes().size(), p.toString());
+                for (int i = 0; i < ((Way) p).getNodesCount(); i++) {
+                    assertEquals(((Way) p).getNodeId(i), ((Way) q).getNodeId(i), p.toString());
+                }
+            } else if (p instanceof Relation) {
+                assertEquals(((Relation) p).getMemberPrimitivesList().size(),
+                        ((Relation) q).getMemberPrimitivesList().size(), p.toString());
+            }
+        }
+    }
+
+    /**
+     * Checks that parallel decoding produces the same data as sequential decoding.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testParallelDecoding() throws Exception {
+        String file = TestUtils.getTestDataRoot() + "/monaco-latest.osm.pbf";
+        assertSameData(parse(file, 1), parse(file, 4));
+    }
+
+    /**
+     * Checks that parallel decoding handles files without metadata.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testParallelDecodingWithoutMetadata() throws Exception {
+        String file = TestUtils.getRegressionDataFile(10132, "Monaco-SP.osm.pbf");
+        assertSameData(parse(file, 1), parse(file, 4));
+    }
+
+    /**
+     * Unit test of {@link PbfReader#parseDataSet(java.nio.file.Path, PbfFilter, org.openstreetmap.josm.gui.progress.ProgressMonitor)}.
+     * @throws Exception if an error occurs
+     */
+    @Test
+    void testFilteredParsing() throws Exception {
+        String file = TestUtils.getTestDataRoot() + "/monaco-latest.osm.pbf";
+        Bounds bounds = new Bounds(43.735, 7.42, 43.74, 7.43);
+        DataSet full = parse(file, 1);
+        DataSet ds = PbfReader.parseDataSet(Paths.get(file), new PbfFilter(bounds), null);
+        assertTrue(ds.getNodes().size() < full.getNodes().size());
+        assertEquals(1, ds.getDataSources().size());
+        assertEquals(bounds, ds.getDataSources().iterator().next().bounds);
+        for (Node n : full.getNodes()) {
+            if (bounds.contains(n.getCoor())) {
+                assertNotNull(ds.getPrimitiveById(n.getPrimitiveId()), n.toString());
+            }
+        }
+        for (Way w : ds.getWays()) {
+            assertFalse(w.isIncomplete(), w.toString());
+            assertTrue(w.getNodes().stream().allMatch(Node::isLatLonKnown), w.toString());
+        }
+
+        DataSet buildings = PbfReader.parseDataSet(Paths.get(file), new PbfFilter(bounds, t -> t.hasKey("building")), null);
+        assertFalse(buildings.getWays().isEmpty());
+        assertTrue(buildings.getWays().stream().allMatch(w -> w.hasKey("building")));
+        assertTrue(buildings.getWays().size() < ds.getWays().size());
+    }
+}
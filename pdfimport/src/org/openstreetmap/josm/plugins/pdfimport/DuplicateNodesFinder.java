@@ -4,83 +4,154 @@ package org.openstreetmap.josm.plugins.pdfimport;
 import java.awt.geom.Point2D;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public final class DuplicateNodesFinder {
 
+    /**
+     * Number of points per horizontal stripe. Stripes only depend on the input, so that results are deterministic.
+     */
+    private static final int STRIPE_POINTS = 16384;
+
     private DuplicateNodesFinder() {
         // Hide default constructor for utilities classes
     }
 
+    /**
+     * Representatives of one stripe, and the mapping of other points of the stripe to them.
+     */
+    private static final class Stripe {
+        final List<Point2D> representatives = new ArrayList<>();
+        final Map<Point2D, Point2D> mapping = new HashMap<>();
+        double maxY = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Uniform grid of representative points, with cells as large as the tolerance.
+     */
+    private static final class Grid {
+        private final double tolerance;
+        private final double cellSize;
+        private final Map<Long, List<Point2D>> cells = new HashMap<>();
+
+        Grid(double tolerance) {
+            this.tolerance = tolerance;
+            this.cellSize = tolerance > 0 ? tolerance : 1;
+        }
+
+        private long cell(double coordinate) {
+            return (long) Math.floor(coordinate / cellSize);
+        }
+
+        private static long key(long x, long y) {
+            return (y << 32) ^ (x & 0xffffffffL);
+        }
+
+        void add(Point2D point) {
+            cells.computeIfAbsent(key(cell(point.getX()), cell(point.getY())), k -> new ArrayList<>(1)).add(point);
+        }
+
+        /**
+         * Finds the nearest point whose coordinates both differ by at most the tolerance.
+         * Ties are resolved by cell then insertion order, which only depend on the input.
+         */
+        Point2D findNearest(Point2D point) {
+            long x = cell(point.getX());
+            long y = cell(point.getY());
+            Point2D nearest = null;
+            double nearestDistance = Double.POSITIVE_INFINITY;
+
+            for (long j = y - 1; j <= y + 1; j++) {
+                for (long i = x - 1; i <= x + 1; i++) {
+                    List<Point2D> points = cells.get(key(i, j));
+                    if (points == null) {
+                        continue;
+                    }
+                    for (Point2D p: points) {
+                        double dx = Math.abs(p.getX() - point.getX());
+                        double dy = Math.abs(p.getY() - point.getY());
+                        if (dx <= tolerance && dy <= tolerance && dx + dy < nearestDistance) {
+                            nearest = p;
+                            nearestDistance = dx + dy;
+                        }
+                    }
+                }
+            }
+
+            return nearest;
+        }
+    }
+
     /***
      * This method finds very close nodes and constructs a mapping from node to suggested representative node.
-     * Works by performing a sweep and noting down similar nodes.
+     * Works by clustering points on a uniform grid: points are sorted by Y then X and split into stripes
+     * which are clustered in parallel, then clusters are merged across stripe boundaries.
+     * Each point is mapped to the nearest earlier representative whose coordinates both differ by at most the tolerance.
+     * Clusters merged across a stripe boundary may have a representative up to twice the tolerance away.
      * @param nodes the nodes to process
      * @return map from nodes that need replacement to a representative node.
      */
     public static Map<Point2D, Point2D> findDuplicateNodes(Collection<Point2D> nodes, final double tolerance) {
         List<Point2D> points = new ArrayList<>(nodes);
-        Collections.sort(points, new Comparator<Point2D>() {
-            @Override
-            public int compare(Point2D o1, Point2D o2) {
-                double diff = o1.getY() - o2.getY();
-                return diff > 0 ? 1 : (diff < 0 ? -1 : 0);
-            }
-        });
+        points.sort(Comparator.comparingDouble(Point2D::getY).thenComparingDouble(Point2D::getX));
 
+        int stripeCount = (points.size() + STRIPE_POINTS - 1) / STRIPE_POINTS;
+        List<Stripe> stripes = IntStream.range(0, stripeCount).parallel()
+                .mapToObj(s -> cluster(points.subList(s * STRIPE_POINTS, Math.min(points.size(), (s + 1) * STRIPE_POINTS)),
+                        tolerance))
+                .collect(Collectors.toList());
+
+        //stitch stripes, only representatives close to the top of a stripe may be close to points of later stripes
         Map<Point2D, Point2D> result = new HashMap<>();
-        TreeMap<Point2D, Point2D> sweepLine = new TreeMap<>(new Comparator<Point2D>() {
-            @Override
-            public int compare(Point2D o1, Point2D o2) {
-                double diff = o1.getX() - o2.getX();
+        Grid boundary = new Grid(tolerance);
+        double maxY = Double.NEGATIVE_INFINITY;
+
+        for (Stripe stripe: stripes) {
+            Map<Point2D, Point2D> merged = new HashMap<>();
+
+            for (Point2D rep: stripe.representatives) {
+                Point2D closePoint = rep.getY() - tolerance <= maxY ? boundary.findNearest(rep) : null;
 
-                if (Math.abs(diff) <= tolerance) {
-                    return 0;
+                if (closePoint != null) {
+                    merged.put(rep, closePoint);
+                    result.put(rep, closePoint);
+                } else if (rep.getY() >= stripe.maxY - tolerance) {
+                    boundary.add(rep);
                 }
+            }
 
-                return diff > 0 ? 1 : (diff < 0 ? -1 : 0);
+            for (Map.Entry<Point2D, Point2D> e: stripe.mapping.entrySet()) {
+                result.put(e.getKey(), merged.getOrDefault(e.getValue(), e.getValue()));
             }
-        });
 
-        //sweep from top to bottom.
-        double prevY = Double.NEGATIVE_INFINITY;
+            maxY = Math.max(maxY, stripe.maxY);
+        }
+
+        return result;
+    }
+
+    private static Stripe cluster(List<Point2D> points, double tolerance) {
+        Stripe stripe = new Stripe();
+        Grid grid = new Grid(tolerance);
 
         for (Point2D point: points) {
-            boolean mappedToOtherPoint = false;
+            Point2D closePoint = grid.findNearest(point);
 
-            if (point.getY() - prevY > tolerance) {
-                sweepLine.clear();
-                //big offset, clear old points
+            if (closePoint != null) {
+                stripe.mapping.put(point, closePoint);
             } else {
-                //small offset, test against existing points (there may be more than one)
-
-                while (!mappedToOtherPoint && sweepLine.containsKey(point)) {
-                    //a close point found
-                    Point2D closePoint = sweepLine.get(point);
-                    double dy = point.getY() - closePoint.getY();
-                    if (dy <= tolerance) {
-                        //mark them as close
-                        result.put(point, closePoint);
-                        mappedToOtherPoint = true;
-                    } else {
-                        sweepLine.remove(point);
-
-                    }
-                }
+                grid.add(point);
+                stripe.representatives.add(point);
             }
 
-            if (!mappedToOtherPoint) {
-                sweepLine.put(point, point);
-            }
-
-            prevY = point.getY();
+            stripe.maxY = Math.max(stripe.maxY, point.getY());
         }
 
-        return result;
+        return stripe;
     }
 }
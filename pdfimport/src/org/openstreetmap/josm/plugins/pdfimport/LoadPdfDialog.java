@@ -17,6 +17,7 @@ import java.awt.event.WindowEvent;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.concurrent.CancellationException;
 
 import javax.swing.JButton;
 import javax.swing.JFileChooser;
@@ -153,6 +154,9 @@ public class LoadPdfDialog extends JFrame {
 
 	private LoadProgressRenderer progressRenderer;
 
+	/** Monitor of the PDF file being loaded, cancelled with the dialog */
+	private volatile ProgressMonitor loadMonitor;
+
 	public LoadPdfDialog() {
 		buildGUI();
 		removeLayer();
@@ -247,8 +251,12 @@ public class LoadPdfDialog extends JFrame {
 				// async part
 				LoadPdfDialog.this.loadProgress.setVisible(true);
 				SwingRenderingProgressMonitor monitor = new SwingRenderingProgressMonitor(progressRenderer);
+				loadMonitor = monitor;
 				monitor.beginTask("Loading file", 1000);
 				pdfData = loadPDF(newFileName, monitor.createSubTaskMonitor(500, false));
+				if (monitor.isCanceled()) {
+					pdfData = null;
+				}
 				OsmBuilder.Mode mode = LoadPdfDialog.this.configPanel.debugModeCheck.getValue()
 						? OsmBuilder.Mode.Debug
 						: OsmBuilder.Mode.Draft;
@@ -286,6 +294,10 @@ public class LoadPdfDialog extends JFrame {
 					LoadPdfDialog.this.actionPanel.saveButton.setEnabled(true);
 					LoadPdfDialog.this.actionPanel.okButton.setEnabled(true);
 					LoadPdfDialog.this.loadProgress.setVisible(false);
+				} else {
+					// Loading failed or was cancelled, allow to load a file again
+					LoadPdfDialog.this.loadFileButton.setEnabled(true);
+					LoadPdfDialog.this.loadProgress.setVisible(false);
 				}
 			}
 		});
@@ -374,6 +386,10 @@ public class LoadPdfDialog extends JFrame {
 		/*
 		 * perform cancel action
 		 */
+		ProgressMonitor monitor = loadMonitor;
+		if (monitor != null) {
+			monitor.cancel();
+		}
 		removeLayer();
 		setVisible(false);
 	}
@@ -497,11 +513,14 @@ public class LoadPdfDialog extends JFrame {
 
 		try {
 			PdfBoxParser parser = new PdfBoxParser(data);
-			parser.parse(fileName, maxPaths, monitor.createSubTaskMonitor(80, false));
+			parser.parse(fileName, configPanel.pages.getText(), maxPaths, monitor.createSubTaskMonitor(80, false));
 
 		} catch (FileNotFoundException e1) {
 			JOptionPane.showMessageDialog(MainApplication.getMainFrame(), tr("File not found."));
 			return null;
+		} catch (CancellationException e) {
+			Logging.debug(e);
+			return null;
 		} catch (Exception e) {
 			e.printStackTrace();
 			JOptionPane.showMessageDialog(MainApplication.getMainFrame(), tr("Error while parsing: {0}", e.getMessage()));
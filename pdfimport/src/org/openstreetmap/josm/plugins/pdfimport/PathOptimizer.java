@@ -10,10 +10,22 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Set;
+import java.util.TreeMap;
 
 public class PathOptimizer {
 
+    /**
+     * Maximum offset error of each point of similar shapes, see {@link #pathsSimilar(List, List)}.
+     */
+    private static final double SIMILAR_TOLERANCE = 1e-4;
+
+    /**
+     * Grid size used to quantize shape sizes in shape signatures, much larger than the tolerance of similar shapes.
+     */
+    private static final double SHAPE_QUANTUM = 0.01;
+
     public List<Point2D> uniquePoints;
     public Map<Point2D, Point2D> uniquePointMap;
     private final Map<LayerInfo, LayerContents> layerMap;
@@ -46,6 +58,44 @@ public class PathOptimizer {
         }
     }
 
+    /**
+     * Creates an empty optimizer with the same settings, to collect the paths of another page.
+     * @return a new optimizer
+     * @see #addPage(PathOptimizer)
+     */
+    public PathOptimizer createPageOptimizer() {
+        return new PathOptimizer(pointsTolerance, color, splitOnColorChange);
+    }
+
+    /**
+     * Adds the paths collected by another optimizer, typically created by {@link #createPageOptimizer()}.
+     * Points of the page are replaced by equal points of this optimizer and its layers are merged into
+     * the layers of this optimizer with the same attributes.
+     * @param page the optimizer holding the paths of a page
+     */
+    public void addPage(PathOptimizer page) {
+        Map<Point2D, Point2D> pointMap = new HashMap<>();
+
+        for (Point2D point: page.uniquePoints) {
+            pointMap.put(point, getUniquePoint(point));
+        }
+
+        for (LayerContents pageLayer: page.layers) {
+            this.fixPoints(pageLayer, pointMap);
+            LayerContents layer = this.getLayer(pageLayer.info);
+            layer.paths.addAll(pageLayer.paths);
+            layer.multiPaths.addAll(pageLayer.multiPaths);
+        }
+
+        if (page.bounds != null) {
+            if (this.bounds == null) {
+                this.bounds = (Rectangle2D) page.bounds.clone();
+            } else {
+                this.bounds.add(page.bounds);
+            }
+        }
+    }
+
     public void addPath(LayerInfo info, PdfPath path) {
         if (!isColorOK(info)) {
             return;
@@ -323,41 +373,31 @@ public class PathOptimizer {
         double angleTolerance = 1.0 / 180.0 * Math.PI; // 1 degree
         int minSegments = 10;
 
-        //filter paths by direction
-        List<ParallelSegmentsFinder> angles = new ArrayList<>();
+        //filter paths by direction, buckets are indexed by the mean angle of their paths
+        NavigableMap<Double, ParallelSegmentsFinder> angles = new TreeMap<>();
 
         for (PdfPath path: layer.paths) {
             if (path.points.size() != 2) {
                 continue;
             }
 
-            Point2D p1 = path.firstPoint();
-            Point2D p2 = path.lastPoint();
-            double angle = Math.atan2(p2.getX() - p1.getX(), p2.getY() - p1.getY());
-            //normalize between 0 and 180 degrees
-            while (angle < 0) angle += Math.PI;
-            while (angle > Math.PI) angle -= Math.PI;
-            boolean added = false;
+            double angle = segmentAngle(path);
+            ParallelSegmentsFinder pa = findAngleBucket(angles, angle, angleTolerance);
 
-            for (ParallelSegmentsFinder pa: angles) {
-                if (Math.abs(pa.angle - angle) < angleTolerance) {
-                    pa.addPath(path, angle);
-                    added = true;
-                    break;
-                }
+            if (pa == null) {
+                pa = new ParallelSegmentsFinder();
+            } else {
+                angles.remove(pa.angle);
             }
 
-            if (!added) {
-                ParallelSegmentsFinder pa = new ParallelSegmentsFinder();
-                pa.addPath(path, angle);
-                angles.add(pa);
-            }
+            pa.addPath(path, angle);
+            addAngleBucket(angles, pa);
         }
 
         Set<PdfPath> pathsToRemove = new HashSet<>();
 
         //process each direction
-        for (ParallelSegmentsFinder pa: angles) {
+        for (ParallelSegmentsFinder pa: angles.values()) {
             if (pa.paths.size() < minSegments) {
                 continue;
             }
@@ -383,6 +423,51 @@ public class PathOptimizer {
         layer.paths = result;
     }
 
+    /**
+     * Computes the direction of a segment, between 0 and 180 degrees.
+     */
+    private static double segmentAngle(PdfPath path) {
+        Point2D p1 = path.firstPoint();
+        Point2D p2 = path.lastPoint();
+        double angle = Math.atan2(p2.getX() - p1.getX(), p2.getY() - p1.getY());
+        //normalize between 0 and 180 degrees
+        while (angle < 0) angle += Math.PI;
+        while (angle > Math.PI) angle -= Math.PI;
+        return angle;
+    }
+
+    /**
+     * Indexes a direction bucket by its mean angle. A bucket which already has the same mean angle is merged into it.
+     */
+    private static void addAngleBucket(NavigableMap<Double, ParallelSegmentsFinder> angles, ParallelSegmentsFinder pa) {
+        ParallelSegmentsFinder other = angles.remove(pa.angle);
+        if (other != null) {
+            for (PdfPath path: other.paths) {
+                pa.addPath(path, segmentAngle(path));
+            }
+        }
+        angles.put(pa.angle, pa);
+    }
+
+    /**
+     * Finds the direction bucket whose mean angle is the closest to the given angle.
+     * @return the bucket, or <code>null</code> if there is no bucket within the tolerance.
+     */
+    private static ParallelSegmentsFinder findAngleBucket(NavigableMap<Double, ParallelSegmentsFinder> angles,
+            double angle, double angleTolerance) {
+        Map.Entry<Double, ParallelSegmentsFinder> lower = angles.floorEntry(angle);
+        Map.Entry<Double, ParallelSegmentsFinder> higher = angles.higherEntry(angle);
+        double lowerDistance = lower == null ? Double.POSITIVE_INFINITY : angle - lower.getKey();
+        double higherDistance = higher == null ? Double.POSITIVE_INFINITY : higher.getKey() - angle;
+
+        if (lowerDistance <= higherDistance && lowerDistance < angleTolerance) {
+            return lower.getValue();
+        } else if (higherDistance < angleTolerance) {
+            return higher.getValue();
+        }
+
+        return null;
+    }
 
     /**
      * This method merges together paths with common end nodes.
@@ -630,20 +715,47 @@ public class PathOptimizer {
 
     private List<LayerContents> splitBySimilarGroups(LayerContents layer) {
         List<List<PdfPath>> subparts = new ArrayList<>();
+        Map<Long, List<List<PdfPath>>> subpartsBySignature = new HashMap<>();
 
         //split into similar parts
         for (PdfPath path: layer.paths) {
             List<PdfPath> sublayer = null;
 
-            for (List<PdfPath> ll: subparts) {
-                if (this.pathsSimilar(ll.get(0).points, path.points)) {
-                    sublayer = ll;
-                    break;
+            if (path.points.size() >= 3) {
+                //similar paths have nearly the same size, so their signatures are the same or in a neighbouring cell
+                Rectangle2D size = shapeSize(path.points);
+                long[] widthCells = shapeCells(size.getWidth());
+                long[] heightCells = shapeCells(size.getHeight());
+
+                search:
+                for (long widthCell: widthCells) {
+                    for (long heightCell: heightCells) {
+                        List<List<PdfPath>> candidates = subpartsBySignature.get(
+                                shapeSignature(path.points.size(), widthCell, heightCell));
+                        if (candidates == null) {
+                            continue;
+                        }
+
+                        for (List<PdfPath> ll: candidates) {
+                            if (this.pathsSimilar(ll.get(0).points, path.points)) {
+                                sublayer = ll;
+                                break search;
+                            }
+                        }
+                    }
+                }
+
+                if (sublayer == null) {
+                    sublayer = new ArrayList<>();
+                    long signature = shapeSignature(path.points.size(), shapeCell(size.getWidth()), shapeCell(size.getHeight()));
+                    subpartsBySignature.computeIfAbsent(signature, k -> new ArrayList<>(1)).add(sublayer);
                 }
+            } else {
+                //cannot judge so small paths
+                sublayer = new ArrayList<>(1);
             }
 
-            if (sublayer == null) {
-                sublayer = new ArrayList<>();
+            if (sublayer.isEmpty()) {
                 subparts.add(sublayer);
             }
 
@@ -721,6 +833,46 @@ public class PathOptimizer {
         return this.layers;
     }
 
+    /**
+     * Computes the bounding box of the points of a path.
+     */
+    private static Rectangle2D shapeSize(List<Point2D> points) {
+        Rectangle2D size = new Rectangle2D.Double(points.get(0).getX(), points.get(0).getY(), 0, 0);
+
+        for (Point2D p: points) {
+            size.add(p);
+        }
+
+        return size;
+    }
+
+    /**
+     * Quantizes a width or height of a shape.
+     */
+    private static long shapeCell(double size) {
+        return (long) Math.floor(size / SHAPE_QUANTUM);
+    }
+
+    /**
+     * Returns the cells of the sizes of the shapes which may be similar to a shape of the given width or height.
+     * Sizes of similar shapes differ by at most twice the point tolerance, which is smaller than the grid size,
+     * so there are one or two cells.
+     */
+    private static long[] shapeCells(double size) {
+        long low = shapeCell(size - 2 * SIMILAR_TOLERANCE);
+        long high = shapeCell(size + 2 * SIMILAR_TOLERANCE);
+        return low == high ? new long[] {low} : new long[] {low, high};
+    }
+
+    /**
+     * Computes a signature of the shape of a path, which does not depend on its position.
+     * Paths similar according to {@link #pathsSimilar(List, List)} have the same number of points and
+     * size cells which are equal or neighbours, see {@link #shapeCells(double)}.
+     */
+    private static long shapeSignature(int pointCount, long widthCell, long heightCell) {
+        return (pointCount * 31L + widthCell) * 31 + heightCell;
+    }
+
     /**
      * Test if paths are different only by offset.
      */
@@ -739,7 +891,7 @@ public class PathOptimizer {
 
         double offsetX = p1.getX() - p2.getX();
         double offsetY = p1.getY() - p2.getY();
-        double tolerance = 1e-4;
+        double tolerance = SIMILAR_TOLERANCE;
 
         for (int pos = 0; pos < path1.size(); pos++) {
             p1 = path1.get(pos);
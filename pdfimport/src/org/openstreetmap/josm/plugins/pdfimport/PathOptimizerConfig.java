@@ -26,6 +26,7 @@ public class PathOptimizerConfig {
 	public GuiFieldDouble removeSmallObjectsSize;
 	public JTextField colorFilterColor;
 	public GuiFieldBool colorFilterCheck;
+	public JTextField pages;
 	public GuiFieldBool removeParallelSegmentsCheck;
 	public GuiFieldDouble removeParallelSegmentsTolerance;
 	public GuiFieldBool removeLargeObjectsCheck;
@@ -70,6 +71,8 @@ public class PathOptimizerConfig {
 		Preferences.setLimitPathValue(limitPathCount.getValue());
 		Preferences.setLimitPath(limitPathCountCheck.getValue());
 
+		Preferences.setPages(pages.getText());
+
 		Preferences.setLayerAttribChange(splitOnColorChangeCheck.getValue());
 		Preferences.setLayerClosed(splitOnShapeClosedCheck.getValue());
 
@@ -107,6 +110,9 @@ public class PathOptimizerConfig {
 		limitPathCountCheck = new GuiFieldBool(tr("Take only first X paths"), Preferences.isLimitPath());
 		limitPathCountCheck.setCompanion(limitPathCount);
 
+		pages = new JTextField(Preferences.getPages());
+		pages.setToolTipText(tr("Pages to import, for example 1-3,5. Leave empty to import all pages."));
+
 		splitOnColorChangeCheck = new GuiFieldBool(tr("Color/width change"), Preferences.isLayerAttribChange());
 		splitOnShapeClosedCheck = new GuiFieldBool(tr("Shape closed"), Preferences.isLayerClosed());
 
@@ -163,6 +169,9 @@ public class PathOptimizerConfig {
 
 		panel.add(debugModeCheck, cLeft);
 
+		cLeft.gridy = 7; panel.add(new JLabel(tr("Pages:")), cLeft);
+		cRight.gridy = 7; panel.add(pages, cRight);
+
 		cLeft.gridy = 8; panel.add(new JLabel(tr("Introduce separate layers for:")), cLeft);
 		cMiddle.gridy = 8; panel.add(splitOnShapeClosedCheck, cMiddle);
 		cRight.gridy = 8; panel.add(splitOnSingleSegmentCheck, cRight);
@@ -144,6 +144,14 @@ public class Preferences {
 		Config.getPref().put(Preferences.prefix + "limitColor.value", v);
 	}
 
+	public static String getPages() {
+		return Config.getPref().get(Preferences.prefix + "pages", "");
+	}
+
+	public static void setPages(String v) {
+		Config.getPref().put(Preferences.prefix + "pages", v);
+	}
+
 	public static boolean isDebugTags() {
 		return Config.getPref().getBoolean(Preferences.prefix + "debugTags");
 	}
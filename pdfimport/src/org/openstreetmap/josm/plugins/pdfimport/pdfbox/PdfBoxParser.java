@@ -6,7 +6,16 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 import java.awt.geom.Rectangle2D;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
@@ -14,6 +23,7 @@ import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.util.PDFStreamEngine;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.plugins.pdfimport.PathOptimizer;
+import org.openstreetmap.josm.tools.Utils;
 
 public class PdfBoxParser extends PDFStreamEngine {
     private final PathOptimizer target;
@@ -23,8 +33,26 @@ public class PdfBoxParser extends PDFStreamEngine {
     }
 
     public void parse(File file, int maxPaths, ProgressMonitor monitor) throws IOException {
-        monitor.beginTask(tr("Parsing PDF"), 1);
+        parse(file, null, maxPaths, monitor);
+    }
 
+    /**
+     * Parses some pages of a PDF file.
+     * <p>
+     * When several pages are selected, they are parsed concurrently, each into its own {@link PathOptimizer},
+     * and merged into the target in page order. Each worker thread loads its own copy of the document,
+     * as PDFBox documents cannot be shared between threads.
+     * If the monitor is cancelled, nothing is added to the target.
+     *
+     * @param file the PDF file
+     * @param pages the pages to parse, for example <code>1-3,5</code>. <code>null</code> or empty for all pages
+     * @param maxPaths the maximum number of paths read from each page
+     * @param monitor the progress monitor
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the document is encrypted or the page range is invalid
+     * @throws CancellationException if the monitor was cancelled before all pages were parsed
+     */
+    public void parse(File file, String pages, int maxPaths, ProgressMonitor monitor) throws IOException {
         try (PDDocument document = PDDocument.load(file)) {
 
             if (document.isEncrypted()) {
@@ -32,27 +60,145 @@ public class PdfBoxParser extends PDFStreamEngine {
             }
 
             List<?> allPages = document.getDocumentCatalog().getAllPages();
+            List<Integer> pageNumbers = parsePageRange(pages, allPages.size());
 
-            if (allPages.size() != 1) {
-                throw new IllegalArgumentException(tr("The PDF file must have exactly one page."));
+            if (pageNumbers.size() == 1) {
+                monitor.beginTask(tr("Parsing PDF"), 1);
+                parsePage((PDPage) allPages.get(pageNumbers.get(0) - 1), this.target, maxPaths, monitor);
+            } else {
+                monitor.beginTask(tr("Parsing PDF"), pageNumbers.size());
+                PathOptimizer[] parsedPages = parsePages(file, document, pageNumbers, maxPaths, monitor);
+                if (monitor.isCanceled()) {
+                    // Some pages are missing, do not import a part of the document
+                    throw new CancellationException(tr("Parsing PDF cancelled"));
+                }
+                for (PathOptimizer page: parsedPages) {
+                    this.target.addPage(page);
+                }
             }
+        }
+
+        monitor.finishTask();
+    }
+
+    private PathOptimizer[] parsePages(File file, PDDocument document, List<Integer> pageNumbers, int maxPaths,
+            ProgressMonitor monitor) throws IOException {
+        PathOptimizer[] result = new PathOptimizer[pageNumbers.size()];
+        AtomicInteger nextPage = new AtomicInteger();
+        AtomicInteger pagesDone = new AtomicInteger();
+        int threads = Math.min(Runtime.getRuntime().availableProcessors(), pageNumbers.size());
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                Utils.newThreadFactory("pdfimport-parser-%d", Thread.NORM_PRIORITY));
+
+        try {
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                final boolean shared = i == 0;
+                futures.add(executor.submit(() -> {
+                    PDDocument doc = shared ? document : PDDocument.load(file);
+                    try {
+                        List<?> allPages = doc.getDocumentCatalog().getAllPages();
+                        int index;
+                        while (!monitor.isCanceled() && (index = nextPage.getAndIncrement()) < result.length) {
+                            int pageNumber = pageNumbers.get(index);
+                            PathOptimizer page = this.target.createPageOptimizer();
+                            ProgressMonitor pageMonitor;
+                            synchronized (monitor) {
+                                pageMonitor = monitor.createSubTaskMonitor(1, false);
+                            }
+                            pageMonitor.beginTask(tr("Page {0}:", pageNumber));
+                            parsePage((PDPage) allPages.get(pageNumber - 1), page, maxPaths, pageMonitor);
+                            result[index] = page;
 
-            PDPage page = (PDPage) allPages.get(0);
-            PDRectangle pageSize = page.findMediaBox();
-            Integer rotationVal = page.getRotation();
-            int rotation = 0;
-            if (rotationVal != null) {
-                rotation = rotationVal.intValue();
+                            synchronized (monitor) {
+                                pageMonitor.finishTask();
+                                monitor.setCustomText(tr("Page {0} ({1} of {2})", pageNumber, pagesDone.incrementAndGet(),
+                                        result.length));
+                            }
+                        }
+                    } finally {
+                        if (!shared) {
+                            doc.close();
+                        }
+                    }
+                    return null;
+                }));
             }
 
-            new PageDrawer().drawPage(new GraphicsProcessor(target, rotation, maxPaths, monitor), page);
-            this.target.bounds = new Rectangle2D.Double(
-                    pageSize.getLowerLeftX(),
-                    pageSize.getLowerLeftY(),
-                    pageSize.getWidth(),
-                    pageSize.getHeight());
+            for (Future<?> future: futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            } else if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        } finally {
+            executor.shutdownNow();
         }
 
-        monitor.finishTask();
+        return result;
+    }
+
+    private static void parsePage(PDPage page, PathOptimizer target, int maxPaths, ProgressMonitor monitor)
+            throws IOException {
+        PDRectangle pageSize = page.findMediaBox();
+        Integer rotationVal = page.getRotation();
+        int rotation = 0;
+        if (rotationVal != null) {
+            rotation = rotationVal.intValue();
+        }
+
+        new PageDrawer().drawPage(new GraphicsProcessor(target, rotation, maxPaths, monitor), page);
+        target.bounds = new Rectangle2D.Double(
+                pageSize.getLowerLeftX(),
+                pageSize.getLowerLeftY(),
+                pageSize.getWidth(),
+                pageSize.getHeight());
+    }
+
+    /**
+     * Parses a page range such as <code>1-3,5</code>.
+     * @param pages the page range, <code>null</code> or empty for all pages
+     * @param pageCount the number of pages of the document
+     * @return the sorted page numbers, starting at 1
+     * @throws IllegalArgumentException if the range is invalid or there is no page
+     */
+    public static List<Integer> parsePageRange(String pages, int pageCount) {
+        if (pageCount == 0) {
+            throw new IllegalArgumentException(tr("The PDF file has no pages."));
+        }
+
+        SortedSet<Integer> result = new TreeSet<>();
+
+        if (pages == null || pages.trim().isEmpty()) {
+            for (int page = 1; page <= pageCount; page++) {
+                result.add(page);
+            }
+            return new ArrayList<>(result);
+        }
+
+        for (String part: pages.split(",")) {
+            String[] bounds = part.trim().split("-", -1);
+            try {
+                int first = Integer.parseInt(bounds[0].trim());
+                int last = bounds.length == 2 ? Integer.parseInt(bounds[1].trim()) : first;
+                if (bounds.length > 2 || first < 1 || last > pageCount || first > last) {
+                    throw new IllegalArgumentException(tr("Invalid page range: {0}", part.trim()));
+                }
+                for (int page = first; page <= last; page++) {
+                    result.add(page);
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(tr("Invalid page range: {0}", part.trim()), e);
+            }
+        }
+
+        return new ArrayList<>(result);
     }
 }
@@ -0,0 +1,60 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pdfimport;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link DuplicateNodesFinder} on a dense synthetic drawing.
+ * Run with {@code mvn -Pbenchmark -pl pdfimport test-compile exec:exec -Dbenchmark=DuplicateNodesFinder}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DuplicateNodesFinderBenchmark {
+
+    /** Number of points */
+    @Param("1000000")
+    public int count;
+
+    private List<Point2D> points;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        points = new ArrayList<>(count);
+        while (points.size() < count) {
+            // segment ends drawn several times with small rounding differences, as in CAD exports
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 1000;
+            int copies = 1 + random.nextInt(4);
+            for (int i = 0; i < copies && points.size() < count; i++) {
+                points.add(new Point2D.Double(x + random.nextDouble() * 1e-4, y + random.nextDouble() * 1e-4));
+            }
+        }
+    }
+
+    @Benchmark
+    public Map<Point2D, Point2D> findDuplicateNodes() {
+        return DuplicateNodesFinder.findDuplicateNodes(points, 1e-3);
+    }
+}
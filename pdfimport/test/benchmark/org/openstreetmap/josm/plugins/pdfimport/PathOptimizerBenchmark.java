@@ -0,0 +1,98 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pdfimport;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures similar shape grouping and parallel line removal of {@link PathOptimizer} on a synthetic layer.
+ * Both operations modify the layer, so each measurement runs once on a new layer.
+ * Run with {@code mvn -Pbenchmark -pl pdfimport test-compile exec:exec -Dbenchmark=PathOptimizer}.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PathOptimizerBenchmark {
+
+    private static final int SYMBOLS = 2_000;
+
+    /** Number of paths of the layer */
+    @Param("100000")
+    public int count;
+
+    private PathOptimizer data;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        data = createLayer(count, new Random(42));
+    }
+
+    @Benchmark
+    public PathOptimizer removeParallelLines() {
+        data.removeParallelLines(5.0);
+        return data;
+    }
+
+    @Benchmark
+    public PathOptimizer splitLayersBySimilarShapes() {
+        data.splitLayersBySimilarShapes(0.0);
+        return data;
+    }
+
+    /**
+     * Creates a layer with half of the paths being translated copies of {@link #SYMBOLS} random symbols
+     * and the other half being hatching segments in a few directions.
+     */
+    private static PathOptimizer createLayer(int count, Random random) {
+        List<List<Point2D>> symbols = new ArrayList<>(SYMBOLS);
+        for (int i = 0; i < SYMBOLS; i++) {
+            int size = 3 + random.nextInt(6);
+            List<Point2D> symbol = new ArrayList<>(size);
+            for (int j = 0; j < size; j++) {
+                symbol.add(new Point2D.Double(random.nextDouble() * 10, random.nextDouble() * 10));
+            }
+            symbols.add(symbol);
+        }
+
+        LayerInfo info = new LayerInfo();
+        info.stroke = Color.BLACK;
+        info.width = 1;
+        PathOptimizer data = new PathOptimizer(0.0, null, false);
+        for (int i = 0; i < count; i++) {
+            double x = random.nextDouble() * 10_000;
+            double y = random.nextDouble() * 10_000;
+            List<Point2D> points = new ArrayList<>();
+            if (i % 2 == 0) {
+                for (Point2D p : symbols.get(random.nextInt(SYMBOLS))) {
+                    points.add(data.getUniquePoint(new Point2D.Double(x + p.getX(), y + p.getY())));
+                }
+            } else {
+                double angle = Math.toRadians(15 * random.nextInt(12) + random.nextDouble() * 0.5);
+                points.add(data.getUniquePoint(new Point2D.Double(x, y)));
+                points.add(data.getUniquePoint(new Point2D.Double(x + 20 * Math.sin(angle), y + 20 * Math.cos(angle))));
+            }
+            data.addPath(info, new PdfPath(points));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,44 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pdfimport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class DuplicateNodesFinderTest {
+
+    @Test
+    void testFindDuplicateNodes() {
+        Random random = new Random(42);
+        List<Point2D> points = new ArrayList<>();
+        int clusters = 0;
+        // enough points for several stripes
+        for (int i = 0; i < 150; i++) {
+            for (int j = 0; j < 150; j++) {
+                for (int k = 0; k < 3; k++) {
+                    points.add(new Point2D.Double(i * 10 + random.nextDouble() * 0.1, j * 10 + random.nextDouble() * 0.1));
+                }
+                clusters++;
+            }
+        }
+
+        Map<Point2D, Point2D> result = DuplicateNodesFinder.findDuplicateNodes(points, 0.5);
+        assertEquals(points.size() - clusters, result.size());
+        for (Map.Entry<Point2D, Point2D> e: result.entrySet()) {
+            assertTrue(e.getKey().distance(e.getValue()) < 0.2);
+            assertFalse(result.containsKey(e.getValue()));
+        }
+
+        Collections.shuffle(points, random);
+        assertEquals(result, DuplicateNodesFinder.findDuplicateNodes(points, 0.5));
+    }
+}
@@ -0,0 +1,84 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pdfimport;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.awt.Color;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class PathOptimizerTest {
+
+    private static LayerInfo layerInfo() {
+        LayerInfo info = new LayerInfo();
+        info.stroke = Color.BLACK;
+        info.width = 1;
+        return info;
+    }
+
+    private static PdfPath path(double x, double y, double... offsets) {
+        List<Point2D> points = new ArrayList<>();
+        for (int i = 0; i < offsets.length; i += 2) {
+            points.add(new Point2D.Double(x + offsets[i], y + offsets[i + 1]));
+        }
+        return new PdfPath(points);
+    }
+
+    /**
+     * Shapes similar within the tolerance are grouped, even when their sizes are on both sides of a grid boundary.
+     */
+    @Test
+    void testSimilarShapesAcrossGridBoundary() {
+        PathOptimizer data = new PathOptimizer(0.0, null, false);
+        LayerInfo info = layerInfo();
+        for (int i = 0; i < 10; i++) {
+            data.addPath(info, path(i * 20, 0, 0, 0, 5.00999, 0, 0, 3));
+            data.addPath(info, path(i * 20, 50, 0, 0, 5.01001, 0, 0, 3));
+        }
+        // Not similar: the second point is too far
+        data.addPath(info, path(0, 100, 0, 0, 5.02, 0, 0, 3));
+
+        data.splitLayersBySimilarShapes(0.0);
+
+        List<LayerContents> layers = data.getLayers();
+        assertEquals(2, layers.size());
+        assertTrue(layers.get(0).info.isGroup);
+        assertEquals(20, layers.get(0).paths.size());
+        assertEquals(1, layers.get(1).paths.size());
+    }
+
+    /**
+     * Directions are grouped by their mean angle, so that a line more than the tolerance away from the first line
+     * of a direction, but close to the mean direction, is removed with the others, whatever the order.
+     */
+    @Test
+    void testParallelLinesGroupedByMeanAngle() {
+        List<PdfPath> hatching = new ArrayList<>();
+        double[] angles = {30.8, 30, 30, 30, 30, 30, 30, 30, 30, 29.3};
+        for (int i = 0; i < angles.length; i++) {
+            double angle = Math.toRadians(angles[i]);
+            hatching.add(path(i * 2, 0, 0, 0, 20 * Math.sin(angle), 20 * Math.cos(angle)));
+        }
+
+        for (int round = 0; round < 2; round++) {
+            PathOptimizer data = new PathOptimizer(0.0, null, false);
+            LayerInfo info = layerInfo();
+            for (PdfPath path : hatching) {
+                data.addPath(info, path);
+            }
+            PdfPath other = path(0, 100, 0, 0, 20, 0);
+            data.addPath(info, other);
+
+            data.removeParallelLines(5.0);
+
+            assertEquals(Arrays.asList(other), data.getLayers().get(0).paths, "round " + round);
+            Collections.reverse(hatching);
+        }
+    }
+}
@@ -3,24 +3,86 @@ package org.openstreetmap.josm.plugins.pdfimport.pdfbox;
 
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.awt.Rectangle;
 import java.io.File;
+import java.util.Arrays;
 
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.edit.PDPageContentStream;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.openstreetmap.josm.TestUtils;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.plugins.pdfimport.LayerContents;
 import org.openstreetmap.josm.plugins.pdfimport.PathOptimizer;
 
 class PDFParserTest {
 
+    @TempDir
+    File tempDir;
+
     private PathOptimizer parse(String fileName) throws Exception {
+        return parse(new File(fileName), null);
+    }
+
+    private PathOptimizer parse(File file, String pages) throws Exception {
         PathOptimizer data = new PathOptimizer(0.0, null, false);
         PdfBoxParser parser = new PdfBoxParser(data);
-        parser.parse(new File(fileName), Integer.MAX_VALUE, NullProgressMonitor.INSTANCE);
+        parser.parse(file, pages, Integer.MAX_VALUE, NullProgressMonitor.INSTANCE);
         return data;
     }
 
+    /**
+     * Creates a document whose page <code>n</code> has <code>n</code> separate lines.
+     */
+    private File createDocument(int pageCount) throws Exception {
+        File file = new File(tempDir, "pages.pdf");
+        PDDocument document = new PDDocument();
+        try {
+            for (int n = 1; n <= pageCount; n++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                PDPageContentStream content = new PDPageContentStream(document, page);
+                for (int i = 0; i < n; i++) {
+                    content.drawLine(100 + 10 * n, 50 + 100 * i, 300 + 10 * n, 80 + 100 * i);
+                }
+                content.close();
+            }
+            document.save(file);
+        } finally {
+            document.close();
+        }
+        return file;
+    }
+
+    private static int pathCount(PathOptimizer data) {
+        int count = 0;
+        for (LayerContents layer : data.getLayers()) {
+            count += layer.paths.size();
+        }
+        return count;
+    }
+
+    @Test
+    void testParseSeveralPages() throws Exception {
+        File file = createDocument(4);
+
+        // Pages are parsed concurrently and merged
+        PathOptimizer data = parse(file, "1,3-4");
+        assertEquals(1 + 3 + 4, pathCount(data));
+        assertEquals(2 * (1 + 3 + 4), data.uniquePoints.size());
+
+        PathOptimizer all = parse(file, null);
+        assertEquals(1 + 2 + 3 + 4, pathCount(all));
+        assertEquals(2 * (1 + 2 + 3 + 4), all.uniquePoints.size());
+
+        PathOptimizer single = parse(file, "2");
+        assertEquals(2, pathCount(single));
+    }
+
     @Test
     void testParse9053() throws Exception {
         PathOptimizer data = parse(TestUtils.getRegressionDataFile(9053, "testpdf.pdf"));
@@ -39,4 +101,16 @@ class PDFParserTest {
         assertEquals(127300, data.uniquePoints.size());
         assertEquals(34, data.getLayers().size());
     }
+
+    @Test
+    void testParsePageRange() {
+        assertEquals(Arrays.asList(1, 2, 3), PdfBoxParser.parsePageRange(null, 3));
+        assertEquals(Arrays.asList(1, 2, 3), PdfBoxParser.parsePageRange(" ", 3));
+        assertEquals(Arrays.asList(2, 3, 4, 7), PdfBoxParser.parsePageRange("7, 2-4,3", 10));
+        assertThrows(IllegalArgumentException.class, () -> PdfBoxParser.parsePageRange("0-2", 10));
+        assertThrows(IllegalArgumentException.class, () -> PdfBoxParser.parsePageRange("5-11", 10));
+        assertThrows(IllegalArgumentException.class, () -> PdfBoxParser.parsePageRange("4-2", 10));
+        assertThrows(IllegalArgumentException.class, () -> PdfBoxParser.parsePageRange("a", 10));
+        assertThrows(IllegalArgumentException.class, () -> PdfBoxParser.parsePageRange(null, 0));
+    }
 }
@@ -4,10 +4,13 @@ package org.openstreetmap.josm.plugins.photo_geotagging;
 
 import static org.openstreetmap.josm.tools.I18n.tr;
 
-import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
 import java.text.DecimalFormat;
 import java.time.Instant;
 import java.util.Calendar;
@@ -51,19 +54,81 @@ public final class ExifGPSTagger {
      */
     public static void setExifGPSTag(File imageFile, File dst, double lat, double lon, Instant gpsTime, Double speed,
             Double ele, Double imgDir, boolean lossy) throws IOException {
+        byte[] image = updateExifGPSTag(Files.readAllBytes(imageFile.toPath()), lat, lon, gpsTime, speed, ele, imgDir, lossy);
+        Files.write(dst.toPath(), image);
+    }
+
+    /**
+     * Set the GPS values in the EXIF metadata of an image held in memory.
+     * The image is read only once, for its metadata and for rewriting it.
+     *
+     * @param image The JPEG or TIFF image.
+     * @param lat latitude
+     * @param lon longitude
+     * @param gpsTime time - can be null if not available
+     * @param speed speed in km/h - can be null if not available
+     * @param ele elevation - can be null if not available
+     * @param imgDir image direction in degrees (0..360) - can be null if not available
+     * @param lossy whether to use lossy approach when writing metadata (overwriting unknown tags)
+     * @return The updated image
+     * @throws IOException in case of read/write error, caused by an
+     *      {@link org.apache.commons.imaging.ImagingOverflowException} if there is not enough free space for lossless writing
+     */
+    public static byte[] updateExifGPSTag(byte[] image, double lat, double lon, Instant gpsTime, Double speed,
+            Double ele, Double imgDir, boolean lossy) throws IOException {
         try {
-            setExifGPSTagWorker(imageFile, dst, lat, lon, gpsTime, speed, ele, imgDir, lossy);
+            return setExifGPSTagWorker(image, lat, lon, gpsTime, speed, ele, imgDir, lossy);
         } catch (ImagingException ire) {
             // This used to be two separate exceptions; ImageReadException and imageWriteException
             throw new IOException(tr("Read/write error: " + ire.getMessage()), ire);
         }
     }
 
-    public static void setExifGPSTagWorker(File imageFile, File dst, double lat, double lon, Instant gpsTime, Double speed,
+    /**
+     * Write an updated image over the original file, if it only differs in place.
+     * This is the case when lossless writing found enough free space in the EXIF section (APP1 segment)
+     * to keep the layout of the file: only the changed bytes of this section are written.
+     *
+     * @param file The original image file.
+     * @param original The content of the original image file.
+     * @param updated The updated image, see {@link #updateExifGPSTag}.
+     * @return {@code true} if the file was patched, {@code false} if the whole file has to be rewritten
+     * @throws IOException in case of I/O error
+     */
+    public static boolean patchInPlace(File file, byte[] original, byte[] updated) throws IOException {
+        if (original.length != updated.length) {
+            return false;
+        }
+        int start = 0;
+        while (start < original.length && original[start] == updated[start]) {
+            start++;
+        }
+        int end = original.length;
+        while (end > start && original[end - 1] == updated[end - 1]) {
+            end--;
+        }
+        if (start < end) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                if (channel.size() != original.length) {
+                    // the file changed since it was read
+                    return false;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(updated, start, end - start);
+                long position = start;
+                while (buffer.hasRemaining()) {
+                    position += channel.write(buffer, position);
+                }
+                channel.force(false);
+            }
+        }
+        return true;
+    }
+
+    private static byte[] setExifGPSTagWorker(byte[] image, double lat, double lon, Instant gpsTime, Double speed,
             Double ele, Double imgDir, boolean lossy) throws IOException {
 
         TiffOutputSet outputSet = null;
-        ImageMetadata metadata = Imaging.getMetadata(imageFile);
+        ImageMetadata metadata = Imaging.getMetadata(image);
 
         if (metadata instanceof JpegImageMetadata) {
             TiffImageMetadata exif = ((JpegImageMetadata) metadata).getExif();
@@ -153,16 +218,18 @@ public final class ExifGPSTagger {
             gpsDirectory.add(GpsTagConstants.GPS_TAG_GPS_IMG_DIRECTION, RationalNumber.valueOf(imgDir));
         }
 
-        try (BufferedOutputStream os = new BufferedOutputStream(new FileOutputStream(dst))) {
-            if (metadata instanceof JpegImageMetadata) {
-                if (lossy) {
-                    new ExifRewriter().updateExifMetadataLossy(imageFile, os, outputSet);
-                } else {
-                    new ExifRewriter().updateExifMetadataLossless(imageFile, os, outputSet);
-                }
-            } else if (metadata instanceof TiffImageMetadata) {
-                new TiffImageWriterLossy().write(os, outputSet);
+        ByteArrayOutputStream os = new ByteArrayOutputStream(image.length + 1024);
+        if (metadata instanceof JpegImageMetadata) {
+            if (lossy) {
+                new ExifRewriter().updateExifMetadataLossy(image, os, outputSet);
+            } else {
+                new ExifRewriter().updateExifMetadataLossless(image, os, outputSet);
             }
+        } else if (metadata instanceof TiffImageMetadata) {
+            new TiffImageWriterLossy().write(os, outputSet);
+        } else {
+            throw new IOException(tr("Only JPEG and TIFF images are supported."));
         }
+        return os.toByteArray();
     }
 }
@@ -13,14 +13,22 @@ import java.awt.GridBagLayout;
 import java.awt.event.ActionEvent;
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.text.DecimalFormat;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import javax.swing.AbstractAction;
 import javax.swing.BorderFactory;
@@ -63,6 +71,7 @@ class GeotaggingAction extends AbstractAction implements LayerAction {
     static final String MTIME_MODE = "plugins.photo_geotagging.mtime-mode";
     static final int MTIME_MODE_GPS = 1;
     static final int MTIME_MODE_PREVIOUS_VALUE = 2;
+    static final String THREADS = "plugins.photo_geotagging.threads";
 
     public GeotaggingAction() {
         super(tr("Write coordinates to image header"), ImageProvider.get("geotagging"));
@@ -201,28 +210,37 @@ class GeotaggingAction extends AbstractAction implements LayerAction {
             Config.getPref().put(MTIME_MODE, mTimeModePref);
         }
 
-        MainApplication.worker.execute(new GeoTaggingRunnable(images, keep_backup, mTimeMode.getSelectedIndex()));
+        // files are written in parallel, which speeds up tagging on disks handling concurrent I/O well
+        int threads = Config.getPref().getInt(THREADS, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        MainApplication.worker.execute(new GeoTaggingRunnable(images, keep_backup, mTimeMode.getSelectedIndex(), threads));
     }
 
     static class GeoTaggingRunnable extends PleaseWaitRunnable {
         private final List<ImageEntry> images;
         private final boolean keep_backup;
         private final int mTimeMode;
+        private final int threads;
 
-        private boolean canceled = false;
-        Boolean override_backup = null;
-
-        private File fileFrom;
-        private File fileTo;
-        private File fileDelete;
-
-        private int currentIndex;
+        private volatile boolean canceled = false;
+        volatile Boolean override_backup = null;
 
         public GeoTaggingRunnable(List<ImageEntry> images, boolean keep_backup, int mTimeMode) {
+            this(images, keep_backup, mTimeMode, 1);
+        }
+
+        /**
+         * Constructs a new {@code GeoTaggingRunnable}.
+         * @param images the images to tag
+         * @param keep_backup whether to keep the original files as backup
+         * @param mTimeMode how to set the file modification time
+         * @param threads number of files processed in parallel
+         */
+        public GeoTaggingRunnable(List<ImageEntry> images, boolean keep_backup, int mTimeMode, int threads) {
             super(tr("Photo Geotagging Plugin"));
             this.images = images;
             this.keep_backup = keep_backup;
             this.mTimeMode = mTimeMode;
+            this.threads = Math.max(1, threads);
         }
 
 
@@ -272,6 +290,13 @@ class GeotaggingAction extends AbstractAction implements LayerAction {
             }
         }
 
+        /**
+         * Writes the position information to the image files. Files are processed in parallel by a bounded
+         * pool of workers, errors are reported file by file in the order of the entries.
+         * @param entries the images to tag
+         * @param lossy whether to use lossy approach when writing metadata (overwriting unknown tags)
+         * @return the entries which could not be tagged losslessly because there is not enough free space in the EXIF section
+         */
         List<ImageEntry> processEntries(List<ImageEntry> entries, boolean lossy) {
             progressMonitor.subTask(tr("Writing position information to image files..."));
             progressMonitor.setTicksCount(entries.size());
@@ -281,73 +306,123 @@ class GeotaggingAction extends AbstractAction implements LayerAction {
 
             final long startTime = System.currentTimeMillis();
 
-            currentIndex = 0;
-            while (currentIndex < entries.size()) {
-                if (canceled)
-                    return exifFailedEntries;
-                ImageEntry e = entries.get(currentIndex);
-                Logging.trace("photo_geotagging: GeotaggingAction: i: {0} {1} ", currentIndex, e.getFile().getName());
-                try {
-                    processEntry(e, lossy);
-                } catch (final IOException ioe) {
-                    Logging.trace(ioe);
-                    restoreFile();
-                    if (!lossy && ioe.getCause() instanceof ImagingOverflowException) {
-                        exifFailedEntries.add(e);
-                    } else {
-                        int ret = GuiHelper.runInEDTAndWaitAndReturn(() -> {
-                            ExtendedDialog dlg = new ExtendedDialog(progressMonitor.getWindowParent(),
-                                    tr("Error"),
-                                    tr("Abort"), tr("Retry"), tr("Ignore"));
-                            dlg.setButtonIcons("cancel", "dialogs/refresh", "dialogs/next");
-
-                            String msg;
-                            if (ioe instanceof NoSuchFileException) {
-                                msg = tr("File not found.");
-                            } else {
-                                msg = ioe.toString();
-                            }
+            final ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, entries.size())),
+                    Utils.newThreadFactory("photo-geotagging-%d", Thread.NORM_PRIORITY));
+            try {
+                final List<Future<?>> results = new ArrayList<>(entries.size());
+                for (ImageEntry e : entries) {
+                    results.add(pool.submit(() -> {
+                        if (!canceled) {
+                            processEntry(e, lossy);
+                        }
+                        return null;
+                    }));
+                }
 
-                            dlg.setIcon(JOptionPane.ERROR_MESSAGE)
-                               .setContent(tr("Unable to process file ''{0}'':", e.getFile().toString()) + "<br/>" + msg)
-                               .setDefaultButton(3)
-                               .showDialog();
-
-                            return dlg.getValue();
-                        });
-
-                        switch (ret) {
-                            case 2: // retry
-                                currentIndex--;
-                                break;
-                            case 3: // continue
-                                break;
-                            default: // abort
-                                canceled = true;
+                for (int i = 0; i < entries.size(); i++) {
+                    if (canceled)
+                        return exifFailedEntries;
+                    ImageEntry e = entries.get(i);
+                    Logging.trace("photo_geotagging: GeotaggingAction: i: {0} {1} ", i, e.getFile().getName());
+                    IOException failure = getFailure(results.get(i));
+                    while (failure != null) {
+                        final IOException ioe = failure;
+                        failure = null;
+                        Logging.trace(ioe);
+                        if (!lossy && ioe.getCause() instanceof ImagingOverflowException) {
+                            exifFailedEntries.add(e);
+                        } else {
+                            switch (askRetry(e, ioe)) {
+                                case 2: // retry
+                                    try {
+                                        processEntry(e, lossy);
+                                    } catch (IOException retryException) {
+                                        failure = retryException;
+                                    }
+                                    break;
+                                case 3: // continue
+                                    break;
+                                default: // abort
+                                    canceled = true;
+                            }
                         }
                     }
-                }
-                progressMonitor.worked(1);
+                    progressMonitor.worked(1);
 
-                float millisecondsPerFile = (float) (System.currentTimeMillis() - startTime) / (currentIndex + 1); // currentIndex starts at 0
-                int filesLeft = entries.size() - currentIndex - 1;
-                String timeLeft = Utils.getDurationString((long) Math.ceil(millisecondsPerFile * filesLeft));
+                    float millisecondsPerFile = (float) (System.currentTimeMillis() - startTime) / (i + 1); // i starts at 0
+                    int filesLeft = entries.size() - i - 1;
+                    String timeLeft = Utils.getDurationString((long) Math.ceil(millisecondsPerFile * filesLeft));
 
-                progressMonitor.subTask(tr("Writing position information to image files... Estimated time left: {0}", timeLeft));
+                    progressMonitor.subTask(tr("Writing position information to image files... Estimated time left: {0}", timeLeft));
 
-                Logging.trace("photo_geotagging: GeotaggingAction: finished {0}", e.getFile());
-                currentIndex++;
+                    Logging.trace("photo_geotagging: GeotaggingAction: finished {0}", e.getFile());
+                }
+            } finally {
+                // let running workers finish their file, queued ones are skipped once canceled
+                pool.shutdown();
+                try {
+                    while (!pool.awaitTermination(1, TimeUnit.SECONDS)) {
+                        Logging.trace("photo_geotagging: GeotaggingAction: waiting for workers");
+                    }
+                } catch (InterruptedException ex) {
+                    Logging.trace(ex);
+                    Thread.currentThread().interrupt();
+                }
             }
             return exifFailedEntries;
         }
 
+        private IOException getFailure(Future<?> result) {
+            try {
+                result.get();
+                return null;
+            } catch (InterruptedException ex) {
+                Logging.trace(ex);
+                Thread.currentThread().interrupt();
+                canceled = true;
+                return null;
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof IOException) {
+                    return (IOException) ex.getCause();
+                } else if (ex.getCause() instanceof Error) {
+                    throw (Error) ex.getCause();
+                }
+                return new IOException(ex.getCause());
+            }
+        }
+
+        private int askRetry(ImageEntry e, IOException ioe) {
+            return GuiHelper.runInEDTAndWaitAndReturn(() -> {
+                ExtendedDialog dlg = new ExtendedDialog(progressMonitor.getWindowParent(),
+                        tr("Error"),
+                        tr("Abort"), tr("Retry"), tr("Ignore"));
+                dlg.setButtonIcons("cancel", "dialogs/refresh", "dialogs/next");
+
+                String msg;
+                if (ioe instanceof NoSuchFileException) {
+                    msg = tr("File not found.");
+                } else {
+                    msg = ioe.toString();
+                }
+
+                dlg.setIcon(JOptionPane.ERROR_MESSAGE)
+                   .setContent(tr("Unable to process file ''{0}'':", e.getFile().toString()) + "<br/>" + msg)
+                   .setDefaultButton(3)
+                   .showDialog();
+
+                return dlg.getValue();
+            });
+        }
+
+        /**
+         * Writes the position information to one image file. The file is only replaced once the new content
+         * has been completely written, so it is left unchanged if an error occurs.
+         */
         private void processEntry(ImageEntry e, boolean lossy) throws IOException {
-            fileFrom = null;
-            fileTo = null;
-            fileDelete = null;
+            final File file = e.getFile();
 
             if (mTimeMode != 0) {
-                testMTimeReadAndWrite(e.getFile());
+                testMTimeReadAndWrite(file);
             }
 
             Instant mTime = null;
@@ -363,58 +438,51 @@ class GeotaggingAction extends AbstractAction implements LayerAction {
                  // this is also the fallback if one of the other
                  // modes failed to determine the modification time
                  || (mTimeMode != 0 && mTime == null)) {
-                mTime = Instant.ofEpochMilli(e.getFile().lastModified());
+                mTime = Instant.ofEpochMilli(file.lastModified());
                 if (Instant.EPOCH.equals(mTime))
                     throw new IOException(tr("Could not read mtime."));
             }
 
-            chooseFiles(e.getFile());
-            if (canceled) return;
-            ExifGPSTagger.setExifGPSTag(fileFrom, fileTo, e.getPos().lat(), e.getPos().lon(),
+            Logging.trace("photo_geotagging: GeotaggingAction: f: "+file.getAbsolutePath());
+            final byte[] original = Files.readAllBytes(file.toPath());
+            final byte[] updated = ExifGPSTagger.updateExifGPSTag(original, e.getPos().lat(), e.getPos().lon(),
                     e.getGpsInstant(), e.getSpeed(), e.getElevation(), e.getExifImgDir(), lossy);
 
-            if (mTime != null) {
-                if (!fileTo.setLastModified(mTime.toEpochMilli()))
+            final File fileBackup = keep_backup ? chooseBackup(file) : null;
+            if (canceled) return;
+
+            if (fileBackup == null && ExifGPSTagger.patchInPlace(file, original, updated)) {
+                // only the EXIF section was written
+                if (mTime != null && !file.setLastModified(mTime.toEpochMilli()))
                     throw new IOException(tr("Could not write mtime."));
+            } else {
+                replaceFile(file, updated, fileBackup, mTime);
             }
-
-            cleanupFiles();
             e.unflagNewGpsData();
         }
 
-        private void chooseFiles(File file) throws IOException {
-            Logging.trace("photo_geotagging: GeotaggingAction: f: "+file.getAbsolutePath());
-
-            if (!keep_backup) {
-                chooseFilesNoBackup(file);
-                return;
-            }
-
-            File fileBackup = new File(file.getParentFile(),file.getName()+"_");
+        /**
+         * Returns the backup file of an image, after deleting an old backup if the user wants to override it.
+         * @return the backup file, or {@code null} if no backup is kept for this file
+         */
+        private File chooseBackup(File file) throws IOException {
+            File fileBackup = new File(file.getParentFile(), file.getName()+"_");
             if (fileBackup.exists()) {
                 confirm_override();
-                if (canceled)
-                    return;
-
-                if (override_backup) {
-                    if (!fileBackup.delete())
-                        throw new IOException(tr("File could not be deleted!"));
-                } else {
-                    chooseFilesNoBackup(file);
-                    return;
-                }
+                if (canceled || !override_backup)
+                    return null;
+                if (!fileBackup.delete())
+                    throw new IOException(tr("File could not be deleted!"));
             }
-            if (!file.renameTo(fileBackup))
-                throw new IOException(tr("Could not rename file!"));
-
-            fileFrom = fileBackup;
-            fileTo = file;
-            fileDelete = null;
+            return fileBackup;
         }
 
-        private void chooseFilesNoBackup(File file) throws IOException {
+        /**
+         * Replaces an image file by writing a temporary file in the same directory and renaming it.
+         * If a backup is kept, the original file is renamed to the backup file just before.
+         */
+        private static void replaceFile(File file, byte[] content, File fileBackup, Instant mTime) throws IOException {
             File fileTmp;
-            //fileTmp = File.createTempFile("img", ".jpg", file.getParentFile());
             // on win32, file.renameTo(fileTmp) does not work when the destination file exists
             // see https://bugs.openjdk.java.net/browse/JDK-4017593
             // so we cannot use createTempFile(), which would create that "existing destination file"
@@ -425,17 +493,33 @@ class GeotaggingAction extends AbstractAction implements LayerAction {
             } while (fileTmp.exists());
             Logging.trace("photo_geotagging: GeotaggingAction: TMP: {0}", fileTmp.getAbsolutePath());
             try {
-                Files.move(file.toPath(), fileTmp.toPath());
-            } catch (IOException e) {
-                Logging.error(tr("Could not rename file {0} to {1}!", file, fileTmp));
-                throw e;
+                Files.write(fileTmp.toPath(), content, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+                if (mTime != null && !fileTmp.setLastModified(mTime.toEpochMilli()))
+                    throw new IOException(tr("Could not write mtime."));
+
+                if (fileBackup != null && !file.renameTo(fileBackup))
+                    throw new IOException(tr("Could not rename file!"));
+                try {
+                    try {
+                        Files.move(fileTmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                    } catch (AtomicMoveNotSupportedException ex) {
+                        Logging.trace(ex);
+                        Files.move(fileTmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                } catch (IOException ex) {
+                    Logging.error(tr("Could not rename file {0} to {1}!", fileTmp, file));
+                    // restore the original file
+                    if (fileBackup != null && !file.exists() && !fileBackup.renameTo(file))
+                        Logging.error(tr("Could not rename file {0} to {1}!", fileBackup, file));
+                    throw ex;
+                }
+            } finally {
+                if (!fileTmp.delete() && fileTmp.exists())
+                    Logging.warn(tr("Could not delete temporary file!"));
             }
-            fileFrom = fileTmp;
-            fileTo = file;
-            fileDelete = fileTmp;
         }
 
-        private void confirm_override() {
+        private synchronized void confirm_override() {
             if (override_backup != null)
                 return;
             try {
@@ -466,25 +550,9 @@ class GeotaggingAction extends AbstractAction implements LayerAction {
             }
         }
 
-        private void restoreFile() {
-            if (fileFrom != null && fileFrom.exists()) {
-                if (fileTo != null && fileTo.exists()) {
-                    fileTo.delete();
-                }
-                fileFrom.renameTo(fileTo);
-            }
-        }
-
-        private void cleanupFiles() throws IOException {
-            if (fileDelete != null) {
-                if (!fileDelete.delete())
-                    throw new IOException(tr("Could not delete temporary file!"));
-            }
-        }
-
         boolean testMTimeReadAndWriteDone = false;
 
-        private void testMTimeReadAndWrite(File file) throws IOException {
+        private synchronized void testMTimeReadAndWrite(File file) throws IOException {
             if (testMTimeReadAndWriteDone)  // do this only once
                 return;
             File fileTest = File.createTempFile("geo", ".txt", file.getParentFile());
@@ -3,9 +3,11 @@ package org.openstreetmap.josm.plugins.photo_geotagging;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.nio.file.Files;
 import java.time.Instant;
 import java.util.Scanner;
 
@@ -13,6 +15,7 @@ import org.apache.commons.imaging.Imaging;
 import org.apache.commons.imaging.formats.jpeg.JpegImageMetadata;
 import org.apache.commons.imaging.formats.jpeg.exif.ExifRewriter;
 import org.apache.commons.imaging.formats.tiff.TiffImageMetadata;
+import org.apache.commons.imaging.formats.tiff.TiffImageMetadata.GpsInfo;
 import org.apache.commons.imaging.formats.tiff.write.TiffOutputSet;
 import org.junit.jupiter.api.Disabled;
 import org.junit.jupiter.api.Test;
@@ -41,6 +44,27 @@ class ExifGPSTaggerTest {
         assertEquals(lastModified, in.lastModified());
     }
 
+    @Test
+    void testPatchInPlace() throws Exception {
+        final File in = new File(TestUtils.getTestDataRoot(), "_DSC1234.jpg");
+        final File out = new File(tempFolder, in.getName());
+        // rewrite the EXIF section once, so that there is room for the GPS tags
+        ExifGPSTagger.setExifGPSTag(in, out, 12, 34, Instant.now(), 12.34, Math.E, Math.PI, true);
+
+        final byte[] original = Files.readAllBytes(out.toPath());
+        final byte[] updated = ExifGPSTagger.updateExifGPSTag(original, 56, 78, null, null, null, null, false);
+        assertEquals(original.length, updated.length);
+        assertTrue(ExifGPSTagger.patchInPlace(out, original, updated));
+        assertEquals(original.length, out.length());
+
+        final GpsInfo gps = ((JpegImageMetadata) Imaging.getMetadata(out)).getExif().getGpsInfo();
+        assertEquals(56, gps.getLatitudeAsDegreesNorth(), 1e-6);
+        assertEquals(78, gps.getLongitudeAsDegreesEast(), 1e-6);
+
+        // different sizes cannot be patched
+        assertFalse(ExifGPSTagger.patchInPlace(out, original, new byte[original.length + 1]));
+    }
+
     @Test
     @Disabled("To enable after https://josm.openstreetmap.de/ticket/11902 is fixed")
     void testTicket11902() throws Exception {
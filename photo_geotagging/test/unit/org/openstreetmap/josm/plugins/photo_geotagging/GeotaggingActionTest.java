@@ -5,10 +5,14 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import org.apache.commons.imaging.Imaging;
+import org.apache.commons.imaging.formats.jpeg.JpegImageMetadata;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.openstreetmap.josm.TestUtils;
 import org.openstreetmap.josm.data.coor.LatLon;
 import org.openstreetmap.josm.gui.layer.geoimage.ImageEntry;
@@ -54,4 +58,29 @@ class GeotaggingActionTest {
         backup.delete();
         copy.delete();
     }
+
+    @Test
+    void testProcessEntriesParallel(@TempDir File tempFolder) throws Exception {
+        File original = new File(TestUtils.getTestDataRoot(), "_DSC1234.jpg");
+        List<ImageEntry> list = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            File copy = new File(tempFolder, "img" + i + ".jpg");
+            Files.copy(original.toPath(), copy.toPath());
+            ImageEntry entry = new ImageEntry(copy);
+            entry.setPos(new LatLon(i, 2));
+            list.add(entry);
+        }
+
+        GeoTaggingRunnable runnable = new GeotaggingAction.GeoTaggingRunnable(list, true, 0, 4);
+        runnable.getProgressMonitor().beginTask("test");
+        assertEquals(0, runnable.processEntries(list, true).size());
+
+        for (int i = 0; i < list.size(); i++) {
+            File file = list.get(i).getFile();
+            assertEquals(original.length(), new File(tempFolder, file.getName() + "_").length());
+            assertEquals(i, ((JpegImageMetadata) Imaging.getMetadata(file)).getExif().getGpsInfo().getLatitudeAsDegreesNorth(), 1e-6);
+        }
+        // no temporary file is left
+        assertEquals(2 * list.size(), tempFolder.list().length);
+    }
 }
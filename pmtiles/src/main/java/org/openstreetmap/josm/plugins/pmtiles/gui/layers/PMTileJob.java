@@ -20,7 +20,6 @@ import org.openstreetmap.josm.data.cache.CacheEntryAttributes;
 import org.openstreetmap.josm.data.cache.ICachedLoaderListener;
 import org.openstreetmap.josm.data.cache.JCSCachedTileLoaderJob;
 import org.openstreetmap.josm.data.imagery.TileJobOptions;
-import org.openstreetmap.josm.plugins.pmtiles.lib.DirectoryCache;
 import org.openstreetmap.josm.plugins.pmtiles.lib.Header;
 import org.openstreetmap.josm.plugins.pmtiles.lib.PMTiles;
 import org.openstreetmap.josm.tools.Logging;
@@ -33,8 +32,10 @@ class PMTileJob extends JCSCachedTileLoaderJob<String, CacheEntry> implements Ti
     private final Tile tile;
     /** The tiles information */
     private final Header header;
-    /** The directory cache */
-    private final DirectoryCache directoryCache;
+    /** The reader of the tiles, shared by the jobs of a loader */
+    private final TileBatchReader batchReader;
+    /** The hilbert index of the tile */
+    private final long index;
 
     /**
      * Create a new job
@@ -43,17 +44,18 @@ class PMTileJob extends JCSCachedTileLoaderJob<String, CacheEntry> implements Ti
      * @param downloadJobExecutor that will be executing the jobs
      * @param header The header for the tiles
      * @param tile The tile to fetch
-     * @param directoryCache The cache of directories
+     * @param batchReader The reader of the tiles, shared by the jobs of the loader
      */
     PMTileJob(ICacheAccess<String, CacheEntry> cache,
               TileJobOptions options,
               ThreadPoolExecutor downloadJobExecutor, Header header, Tile tile,
-              DirectoryCache directoryCache) {
+              TileBatchReader batchReader) {
         super(cache, options, downloadJobExecutor);
-        Objects.requireNonNull(directoryCache);
+        Objects.requireNonNull(batchReader);
         this.tile = tile;
         this.header = header;
-        this.directoryCache = directoryCache;
+        this.batchReader = batchReader;
+        this.index = PMTiles.convertToHilbert(tile.getZoom(), tile.getXtile(), tile.getYtile());
     }
 
     @Override
@@ -64,11 +66,14 @@ class PMTileJob extends JCSCachedTileLoaderJob<String, CacheEntry> implements Ti
     @Override
     public void submit(boolean force) {
         tile.initLoading();
+        // Read with the tiles of the other jobs submitted until a job runs
+        this.batchReader.request(this.index);
         try {
             super.submit(this, force);
         } catch (IOException | IllegalArgumentException e) {
             // if we fail to submit the job, mark tile as loaded and set error message
             Logging.log(Logging.LEVEL_WARN, e);
+            this.batchReader.release(this.index);
             tile.finishLoading();
             tile.setError(e.getMessage());
         }
@@ -87,6 +92,7 @@ class PMTileJob extends JCSCachedTileLoaderJob<String, CacheEntry> implements Ti
 
     @Override
     public void loadingFinished(CacheEntry data, CacheEntryAttributes attributes, LoadResult result) {
+        this.batchReader.release(this.index);
         switch (result) {
             case FAILURE -> this.tile.setError(data == null ?
                     tr("Data could not be read") : new String(data.getContent(), StandardCharsets.UTF_8));
@@ -136,9 +142,7 @@ class PMTileJob extends JCSCachedTileLoaderJob<String, CacheEntry> implements Ti
         }
         try {
             Logging.debug("JCS - starting HttpClient GET request for URL: {0}", getUrlNoException());
-            final var data = PMTiles.readData(this.header,
-                    PMTiles.convertToHilbert(this.tile.getZoom(), this.tile.getXtile(), this.tile.getYtile()),
-                    this.directoryCache);
+            final var data = this.batchReader.read(this.index);
             this.cacheData = this.createCacheEntry(data);
             this.cache.put(getCacheKey(), this.cacheData, this.attributes);
             return true;
@@ -18,7 +18,6 @@ import org.openstreetmap.josm.data.imagery.TileJobOptions;
 import org.openstreetmap.josm.plugins.pmtiles.data.imagery.PMTilesImageryInfo;
 import org.openstreetmap.josm.plugins.pmtiles.lib.DirectoryCache;
 import org.openstreetmap.josm.plugins.pmtiles.lib.Header;
-import org.openstreetmap.josm.plugins.pmtiles.lib.PMTiles;
 
 /**
  * The loader class for PMTiles
@@ -34,8 +33,8 @@ public class PMTilesLoader implements TileLoader {
     private final TileJobOptions options;
     /** The PMTiles header */
     private Header header;
-    /** The cache of PMTiles directories */
-    private DirectoryCache directoryCache;
+    /** The reader of the tiles of the jobs, which reads the tiles of a viewport in batches */
+    private TileBatchReader batchReader;
 
     /**
      * Create a new tile loader
@@ -51,7 +50,7 @@ public class PMTilesLoader implements TileLoader {
 
     @Override
     public TileJob createTileLoaderJob(Tile tile) {
-        final var job = new PMTileJob(cache, options, EXECUTOR, header, tile, directoryCache);
+        final var job = new PMTileJob(cache, options, EXECUTOR, header, tile, batchReader);
         this.jobs.add(job);
         return job;
     }
@@ -60,6 +59,9 @@ public class PMTilesLoader implements TileLoader {
     public void cancelOutstandingTasks() {
         this.jobs.forEach(PMTileJob::handleJobCancellation);
         this.jobs.clear();
+        if (this.batchReader != null) {
+            this.batchReader.clear();
+        }
     }
 
     @Override
@@ -74,7 +76,7 @@ public class PMTilesLoader implements TileLoader {
     void setInfo(PMTilesImageryInfo info) {
         this.header = info.header();
         try {
-            this.directoryCache = new DirectoryCache(PMTiles.readRootDirectory(this.header));
+            this.batchReader = new TileBatchReader(this.header, DirectoryCache.getCache(this.header));
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -0,0 +1,139 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pmtiles.gui.layers;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.openstreetmap.josm.plugins.pmtiles.lib.DirectoryCache;
+import org.openstreetmap.josm.plugins.pmtiles.lib.DirectoryEntry;
+import org.openstreetmap.josm.plugins.pmtiles.lib.Header;
+import org.openstreetmap.josm.plugins.pmtiles.lib.PMTiles;
+
+/**
+ * Reads the tiles requested by the jobs of a loader in batches. The first job to run reads the tiles of all jobs
+ * submitted so far (usually the tiles of the viewport) with {@link PMTiles#readData(Header, java.util.Collection)},
+ * so that tiles close to each other in the archive are fetched with a few range requests.
+ * The other jobs then take their data from the batch instead of reading it again.
+ */
+final class TileBatchReader {
+    /** The maximum number of tiles read in one batch */
+    private static final int MAX_BATCH_SIZE = 64;
+
+    /** The tiles information */
+    private final Header header;
+    /** The directory cache */
+    private final DirectoryCache directoryCache;
+    /** The tiles of the submitted jobs that are not read yet, by hilbert index, in submission order */
+    private final Set<Long> requested = new LinkedHashSet<>();
+    /** The tiles which are being read or have been read for a job that did not take them yet, by hilbert index */
+    private final Map<Long, CompletableFuture<byte[]>> batched = new HashMap<>();
+
+    /**
+     * Create a new batch reader
+     * @param header The header for the tiles
+     * @param directoryCache The cache of directories
+     */
+    TileBatchReader(Header header, DirectoryCache directoryCache) {
+        this.header = header;
+        this.directoryCache = directoryCache;
+    }
+
+    /**
+     * Register a tile that will be read, so that it is read with the next batch
+     * @param index The hilbert index of the tile
+     */
+    synchronized void request(long index) {
+        this.requested.add(index);
+    }
+
+    /**
+     * Forget a tile, once its job is finished (whether it was read or found in the tile cache)
+     * @param index The hilbert index of the tile
+     */
+    synchronized void release(long index) {
+        this.requested.remove(index);
+        this.batched.remove(index);
+    }
+
+    /**
+     * Forget all the tiles, when the jobs are cancelled
+     */
+    synchronized void clear() {
+        this.requested.clear();
+        this.batched.clear();
+    }
+
+    /**
+     * Read the data of a tile, with the other requested tiles if it has not been read yet
+     * @param index The hilbert index of the tile
+     * @return The tile data, empty if the archive does not contain the tile
+     * @throws IOException if the tile could not be read
+     */
+    byte[] read(long index) throws IOException {
+        CompletableFuture<byte[]> future;
+        Map<Long, CompletableFuture<byte[]>> batch = null;
+        synchronized (this) {
+            future = this.batched.get(index);
+            if (future == null) {
+                batch = new HashMap<>();
+                future = new CompletableFuture<>();
+                batch.put(index, future);
+                this.requested.remove(index);
+                final var iterator = this.requested.iterator();
+                while (iterator.hasNext() && batch.size() < MAX_BATCH_SIZE) {
+                    final long other = iterator.next();
+                    iterator.remove();
+                    if (!this.batched.containsKey(other)) {
+                        batch.put(other, new CompletableFuture<>());
+                    }
+                }
+                this.batched.putAll(batch);
+            }
+        }
+        if (batch != null) {
+            readBatch(batch);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (InterruptedIOException) new InterruptedIOException(Long.toString(index)).initCause(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    private void readBatch(Map<Long, CompletableFuture<byte[]>> batch) {
+        try {
+            // Several tiles may share an entry when the archive deduplicates them
+            final var tiles = new HashMap<DirectoryEntry, List<Long>>(batch.size());
+            for (var index : batch.keySet()) {
+                final var entry = PMTiles.getDataLocation(this.header, index, this.directoryCache);
+                if (entry == null) {
+                    batch.get(index).complete(new byte[0]);
+                } else {
+                    tiles.computeIfAbsent(entry, e -> new ArrayList<>(1)).add(index);
+                }
+            }
+            final var data = PMTiles.readData(this.header, tiles.keySet());
+            tiles.forEach((entry, indexes) -> indexes.forEach(index -> batch.get(index).complete(data.get(entry))));
+        } catch (IOException | RuntimeException e) {
+            // Do not keep the failure for the other jobs of the batch, they try again on their own
+            synchronized (this) {
+                batch.forEach((index, future) -> this.batched.remove(index, future));
+            }
+            batch.values().forEach(future -> future.completeExceptionally(e));
+        }
+    }
+}
@@ -1,34 +1,178 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.pmtiles.lib;
 
-import java.util.Arrays;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.Iterator;
-import java.util.Objects;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 /**
- * A cache for directories
+ * A cache for directories. The root directory is always kept, leaf directories are kept in a size-bounded LRU cache
+ * keyed by their offset in the leaf directory section.
+ * <p>
+ * This class is thread safe, so that all tile sources for an archive can share the same cache, see {@link #getCache(Header)}.
  */
 public final class DirectoryCache implements Iterable<Directory> {
-    /** The cached directories; [0] is the root, [1] is the last read directory */
-    private final Directory[] directories = new Directory[2];
+    /** The default maximum number of cached leaf directories */
+    public static final int DEFAULT_MAX_DIRECTORIES = 64;
+    /** The maximum number of archives in the shared cache */
+    private static final int MAX_ARCHIVES = 8;
+    /**
+     * The caches shared by all tile sources, keyed by archive location. Caches are loaded outside the lock,
+     * so that reading the root directory of an archive does not block the users of other archives.
+     */
+    private static final Map<URI, CompletableFuture<DirectoryCache>> SHARED_CACHES =
+            new LinkedHashMap<>(MAX_ARCHIVES, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<URI, CompletableFuture<DirectoryCache>> eldest) {
+            return size() > MAX_ARCHIVES;
+        }
+    };
+
+    /** The root directory */
+    private final Directory root;
+    /** The cached leaf directories, in access order */
+    private final LinkedHashMap<Long, Directory> leaves;
+    /** The number of leaf directories found in the cache */
+    private long hits;
+    /** The number of leaf directories not found in the cache */
+    private long misses;
+
     /**
      * Create a new cache
      * @param root The root directory. This is <i>never</i> evicted.
      */
     public DirectoryCache(Directory root) {
-        this.directories[0] = root;
+        this(root, DEFAULT_MAX_DIRECTORIES);
+    }
+
+    /**
+     * Create a new cache
+     * @param root The root directory. This is <i>never</i> evicted.
+     * @param maxDirectories The maximum number of cached leaf directories
+     */
+    public DirectoryCache(Directory root, int maxDirectories) {
+        if (maxDirectories < 1) {
+            throw new IllegalArgumentException("maxDirectories must be > 0");
+        }
+        this.root = root;
+        this.leaves = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Directory> eldest) {
+                return size() > maxDirectories;
+            }
+        };
+    }
+
+    /**
+     * Get the cache shared by all users of an archive, reading the root directory if needed
+     * @param header The header of the archive
+     * @return The directory cache for the archive
+     * @throws IOException If the root directory could not be read
+     */
+    public static DirectoryCache getCache(Header header) throws IOException {
+        final CompletableFuture<DirectoryCache> future;
+        final boolean load;
+        synchronized (SHARED_CACHES) {
+            final var existing = SHARED_CACHES.get(header.location());
+            load = existing == null;
+            future = load ? new CompletableFuture<>() : existing;
+            if (load) {
+                SHARED_CACHES.put(header.location(), future);
+            }
+        }
+        if (load) {
+            try {
+                future.complete(new DirectoryCache(PMTiles.readRootDirectory(header)));
+            } catch (IOException | RuntimeException e) {
+                // Do not keep the failure, so that the next user tries again
+                synchronized (SHARED_CACHES) {
+                    SHARED_CACHES.remove(header.location(), future);
+                }
+                future.completeExceptionally(e);
+                throw e;
+            }
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw (InterruptedIOException) new InterruptedIOException(header.location().toString()).initCause(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    /**
+     * Get the root directory
+     * @return The root directory
+     */
+    public Directory getRoot() {
+        return this.root;
+    }
+
+    /**
+     * Get a cached leaf directory
+     * @param offset The offset of the leaf directory inside the leaf directory area
+     * @return The directory, or {@code null} if it is not cached
+     */
+    public synchronized Directory getLeafDirectory(long offset) {
+        final var directory = this.leaves.get(offset);
+        if (directory == null) {
+            this.misses++;
+        } else {
+            this.hits++;
+        }
+        return directory;
     }
 
     /**
-     * Add a directory to the cache. It is highly likely to evict another directory.
+     * Add a leaf directory to the cache. This may evict the least recently used leaf directory.
+     * @param offset The offset of the leaf directory inside the leaf directory area
      * @param directory The directory to cache.
      */
-    public void addDirectory(Directory directory) {
-        this.directories[1] = directory;
+    public synchronized void addLeafDirectory(long offset, Directory directory) {
+        this.leaves.put(offset, directory);
+    }
+
+    /**
+     * Get the number of leaf directories found in the cache
+     * @return The number of cache hits
+     */
+    public synchronized long getHits() {
+        return this.hits;
+    }
+
+    /**
+     * Get the number of leaf directories that were not found in the cache
+     * @return The number of cache misses
+     */
+    public synchronized long getMisses() {
+        return this.misses;
+    }
+
+    /**
+     * Get the number of cached leaf directories
+     * @return The number of cached leaf directories
+     */
+    public synchronized int size() {
+        return this.leaves.size();
     }
 
     @Override
-    public Iterator<Directory> iterator() {
-        return Arrays.stream(this.directories).filter(Objects::nonNull).iterator();
+    public synchronized Iterator<Directory> iterator() {
+        final List<Directory> directories = new ArrayList<>(this.leaves.size() + 1);
+        directories.add(this.root);
+        directories.addAll(this.leaves.values());
+        return directories.iterator();
     }
 }
@@ -9,8 +9,15 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.zip.InflaterInputStream;
 
 import org.apache.commons.compress.compressors.brotli.BrotliCompressorInputStream;
@@ -28,6 +35,12 @@ import jakarta.json.JsonObject;
 public final class PMTiles {
     /** An empty byte array for reuse */
     private static final byte[] EMPTY_BYTE = new byte[0];
+    /** Entries separated by at most this number of bytes are fetched with a single read */
+    private static final long MAX_READ_GAP = 16 * 1024;
+    /** The maximum number of bytes fetched with a single read when merging entries */
+    private static final long MAX_READ_LENGTH = 8 * 1024 * 1024;
+    /** The client for HTTP requests, shared so that connections are reused */
+    private static final HttpClient HTTP_CLIENT = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build();
 
     /** The constructor for this class. Hidden, so we don't have instances of this class. */
     private PMTiles() {/* hide the constructor */}
@@ -106,55 +119,96 @@ public final class PMTiles {
         }
     }
 
+    /**
+     * Read the data for several tiles at once. Entries that are close to each other in the archive are fetched with a
+     * single read, which avoids many round trips for neighbouring tiles in clustered archives.
+     * @param header The header data
+     * @param entries The tile entries to read, usually from {@link #getDataLocation(Header, long, DirectoryCache)}.
+     *                Leaf directory entries are ignored.
+     * @return The decompressed data for each entry
+     * @throws IOException if the file could not be read
+     */
+    public static Map<DirectoryEntry, byte[]> readData(Header header, Collection<DirectoryEntry> entries) throws IOException {
+        final var sorted = entries.stream().filter(entry -> !entry.isLeafDirectory()).distinct()
+                .sorted(Comparator.comparingLong(DirectoryEntry::offset)).toList();
+        final var data = new HashMap<DirectoryEntry, byte[]>(sorted.size());
+        var first = 0;
+        while (first < sorted.size()) {
+            // Merge following entries as long as the gap and the total size stay small enough
+            final long start = sorted.get(first).offset();
+            long end = start + sorted.get(first).length();
+            var last = first + 1;
+            while (last < sorted.size()) {
+                final var next = sorted.get(last);
+                final long nextEnd = Math.max(end, next.offset() + next.length());
+                if (next.offset() - end > MAX_READ_GAP || nextEnd - start > MAX_READ_LENGTH) {
+                    break;
+                }
+                end = nextEnd;
+                last++;
+            }
+            final var bytes = readRange(header.location(), header.tileOffset() + start, end - start);
+            for (var i = first; i < last; i++) {
+                final var entry = sorted.get(i);
+                try (var inputStream = decompressInputStream(header.tileCompression(),
+                        new ByteArrayInputStream(bytes, (int) (entry.offset() - start), (int) entry.length()))) {
+                    data.put(entry, inputStream.readAllBytes());
+                }
+            }
+            first = last;
+        }
+        return data;
+    }
+
     /**
      * Get the data location in PM tiles
      * @param header The header to read
      * @param index The index to find
-     * @param cachedDirectories The directories to use to avoid recurring calls; this array <i>should</i> be of length 2.
-     *                          The first directory should be the root directory. The second should be the most recently used
-     *                          leaf directory, if available.
+     * @param cachedDirectories The directories to use to avoid recurring calls. Leaf directories that have to be read
+     *                          are added to this cache.
      * @return The entry with the data. If {@code null} there is no entry for the data.
      * @throws IOException if we could not read data
      */
     public static DirectoryEntry getDataLocation(Header header, long index, DirectoryCache cachedDirectories) throws IOException {
-        DirectoryEntry leaf = null;
-        for (var directory : cachedDirectories) {
-            final var entry = getDataEntry(index, directory);
-            if (entry != null && entry.isLeafDirectory()) {
-                leaf = entry;
-            } else if (entry != null) {
-                return entry;
+        var entry = getDataEntry(index, cachedDirectories.getRoot());
+        while (entry != null && entry.isLeafDirectory()) {
+            var leafDirectory = cachedDirectories.getLeafDirectory(entry.offset());
+            if (leafDirectory == null) {
+                leafDirectory = readLeafDirectory(header, entry.offset(), entry.length());
+                cachedDirectories.addLeafDirectory(entry.offset(), leafDirectory);
             }
+            entry = getDataEntry(index, leafDirectory);
         }
-        // We now need to find the appropriate leaf directory, since it wasn't in the cached directories
-        while (leaf != null) {
-            final var leafDirectory = readLeafDirectory(header, leaf.offset(), leaf.length());
-            cachedDirectories.addDirectory(leafDirectory);
-            leaf = getDataEntry(index, leafDirectory);
-            if (leaf != null && leaf.contains(index) && !leaf.isLeafDirectory()) {
-                return leaf;
-            }
-        }
-        return null;
+        return entry;
     }
 
     /**
      * Perform a search for the specified entry
      * @param index The index to find
-     * @param directory The directory to look through
+     * @param directory The directory to look through. Entries are sorted by tile id.
      * @return The appropriate entry (may be a leaf directory or {@code null})
      */
     private static DirectoryEntry getDataEntry(long index, Directory directory) {
-        // This finds either the entry or the leaf directory
-        DirectoryEntry entry = null;
-        for (var current : directory) {
-            if (current.contains(index)) {
-                return current;
-            } else if (current.tileId() < index && current.isLeafDirectory() && (entry == null || current.tileId() > entry.tileId())) {
-                entry = current;
+        // Binary search for the last entry starting at or before the index
+        final var entries = directory.entries();
+        var low = 0;
+        var high = entries.length - 1;
+        while (low <= high) {
+            final var mid = (low + high) >>> 1;
+            final var tileId = entries[mid].tileId();
+            if (tileId < index) {
+                low = mid + 1;
+            } else if (tileId > index) {
+                high = mid - 1;
+            } else {
+                return entries[mid];
             }
         }
-        return entry;
+        // This finds either the entry or the leaf directory
+        if (high >= 0 && (entries[high].isLeafDirectory() || entries[high].contains(index))) {
+            return entries[high];
+        }
+        return null;
     }
 
     /**
@@ -278,23 +332,11 @@ public final class PMTiles {
      */
     private static InputStream getInputStream(URI location, long start, long length) throws IOException {
         if (Utils.isLocalUrl(location.toString())) {
-            final var file = Path.of(location);
-            try (var is = Files.newInputStream(file)) {
-                if (start != is.skip(start)) {
-                    throw new IOException("Something is wrong with the file");
-                }
-                if (length < Integer.MAX_VALUE) {
-                    return new ByteArrayInputStream(is.readNBytes((int) length));
-                } else {
-                    throw new IOException("The PMTiles plugin currently does not support large streams from the file system");
-                }
-            }
+            return new ByteArrayInputStream(readLocalRange(location, start, length));
         }
-        var request = HttpRequest.newBuilder(location).header("Range", "bytes=" + start + "-" + (start + length - 1))
-                .header("User-Agent", "JOSM PMTiles v1").GET().build();
         try {
-            final var client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build();
-            final var response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+            final var response = HTTP_CLIENT.send(createRangeRequest(location, start, length),
+                    HttpResponse.BodyHandlers.ofInputStream());
             if (response.statusCode() < 200 || response.statusCode() > 300) {
                 throw new IOException("Bad response code for " + response.request().uri() + ": " + response.statusCode());
             }
@@ -304,4 +346,72 @@ public final class PMTiles {
             throw new IOException(interruptedException);
         }
     }
+
+    /**
+     * Read a range of bytes from a given location
+     * @param location The location of the data
+     * @param start The start byte
+     * @param length The number of bytes to read
+     * @return The bytes read
+     * @throws IOException If there is something that prevents reading the data from the given location.
+     */
+    private static byte[] readRange(URI location, long start, long length) throws IOException {
+        if (Utils.isLocalUrl(location.toString())) {
+            return readLocalRange(location, start, length);
+        }
+        try {
+            final var response = HTTP_CLIENT.send(createRangeRequest(location, start, length),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() < 200 || response.statusCode() > 300) {
+                throw new IOException("Bad response code for " + response.request().uri() + ": " + response.statusCode());
+            }
+            final var body = response.body();
+            if (response.statusCode() == 206) {
+                return body;
+            }
+            // The server ignored the range and sent the whole file
+            if (body.length < start + length) {
+                throw new IOException("Unexpected end of data for " + location);
+            }
+            return Arrays.copyOfRange(body, (int) start, (int) (start + length));
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new IOException(interruptedException);
+        }
+    }
+
+    /**
+     * Read a range of bytes from a local file, using a positional read
+     * @param location The location of the file
+     * @param start The start byte
+     * @param length The number of bytes to read
+     * @return The bytes read
+     * @throws IOException If the file could not be read
+     */
+    private static byte[] readLocalRange(URI location, long start, long length) throws IOException {
+        if (length >= Integer.MAX_VALUE) {
+            throw new IOException("The PMTiles plugin currently does not support large streams from the file system");
+        }
+        try (var channel = FileChannel.open(Path.of(location), StandardOpenOption.READ)) {
+            final var buffer = ByteBuffer.allocate((int) length);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new IOException("Something is wrong with the file");
+                }
+            }
+            return buffer.array();
+        }
+    }
+
+    /**
+     * Create a request for a range of bytes
+     * @param location The location of the data
+     * @param start The start byte
+     * @param length The number of bytes to read
+     * @return The request
+     */
+    private static HttpRequest createRangeRequest(URI location, long start, long length) {
+        return HttpRequest.newBuilder(location).header("Range", "bytes=" + start + "-" + (start + length - 1))
+                .header("User-Agent", "JOSM PMTiles v1").GET().build();
+    }
 }
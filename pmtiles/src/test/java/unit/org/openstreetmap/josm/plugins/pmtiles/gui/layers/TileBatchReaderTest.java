@@ -0,0 +1,78 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pmtiles.gui.layers;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.openstreetmap.josm.plugins.pmtiles.PMTestUtils.ODBL_RASTER_STAMEN;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.plugins.pmtiles.lib.DirectoryCache;
+import org.openstreetmap.josm.plugins.pmtiles.lib.DirectoryEntry;
+import org.openstreetmap.josm.plugins.pmtiles.lib.PMTiles;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Test class for {@link TileBatchReader}
+ */
+class TileBatchReaderTest {
+    @Test
+    void testReadRequestedTilesInOneBatch() throws IOException {
+        final byte[] archive;
+        try (InputStream inputStream = ODBL_RASTER_STAMEN.toURL().openStream()) {
+            archive = inputStream.readAllBytes();
+        }
+        final var requests = new AtomicInteger();
+        final var server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            final var range = exchange.getRequestHeaders().getFirst("Range").replace("bytes=", "").split("-", -1);
+            final var start = Integer.parseInt(range[0]);
+            final var end = Math.min(archive.length - 1, Integer.parseInt(range[1]));
+            exchange.sendResponseHeaders(206, end - start + 1L);
+            try (var body = exchange.getResponseBody()) {
+                body.write(archive, start, end - start + 1);
+            }
+        });
+        server.start();
+        try {
+            final var location = URI.create("http://localhost:" + server.getAddress().getPort() + "/batch.pmtiles");
+            final var header = PMTiles.readHeader(location);
+            final var root = PMTiles.readRootDirectory(header);
+            final var directoryCache = new DirectoryCache(root);
+            final var reader = new TileBatchReader(header, directoryCache);
+            // Tiles which are contiguous in the archive
+            final List<Long> indexes = Arrays.stream(root.entries()).skip(5).limit(16)
+                    .map(DirectoryEntry::tileId).collect(Collectors.toList());
+            indexes.forEach(reader::request);
+            requests.set(0);
+            final var data = new ArrayList<byte[]>();
+            for (var index : indexes) {
+                data.add(reader.read(index));
+                reader.release(index);
+            }
+            // The first read fetches all the requested tiles
+            assertEquals(1, requests.get());
+            for (int i = 0; i < indexes.size(); i++) {
+                assertArrayEquals(PMTiles.readData(header, indexes.get(i), directoryCache), data.get(i));
+            }
+
+            // Released tiles are read again
+            requests.set(0);
+            reader.read(indexes.get(0));
+            assertEquals(1, requests.get());
+        } finally {
+            server.stop(0);
+        }
+    }
+}
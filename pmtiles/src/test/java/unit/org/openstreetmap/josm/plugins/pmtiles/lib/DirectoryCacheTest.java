@@ -0,0 +1,73 @@
+// License: GPL. For details, see LICENSE file.
+package org.openstreetmap.josm.plugins.pmtiles.lib;
+
+import static org.junit.jupiter.api.Assertions.assertAll;
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.openstreetmap.josm.plugins.pmtiles.PMTestUtils.ODBL_RASTER_STAMEN;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test class for {@link DirectoryCache}
+ */
+class DirectoryCacheTest {
+    private static Directory leaf(long tileId) {
+        return new Directory(new DirectoryEntry(tileId, 0, 1, 1));
+    }
+
+    @Test
+    void testLeastRecentlyUsedEviction() {
+        final var root = leaf(0);
+        final var cache = new DirectoryCache(root, 2);
+        final var first = leaf(1);
+        final var second = leaf(2);
+        cache.addLeafDirectory(10, first);
+        cache.addLeafDirectory(20, second);
+        // Use the first directory, so the second one is evicted
+        assertSame(first, cache.getLeafDirectory(10));
+        cache.addLeafDirectory(30, leaf(3));
+        assertAll(() -> assertEquals(2, cache.size()),
+                () -> assertNull(cache.getLeafDirectory(20)),
+                () -> assertSame(first, cache.getLeafDirectory(10)),
+                () -> assertSame(root, cache.getRoot()),
+                () -> assertSame(root, cache.iterator().next()),
+                () -> assertEquals(2, cache.getHits()),
+                () -> assertEquals(1, cache.getMisses()));
+    }
+
+    @Test
+    void testSharedCache() {
+        final var header = assertDoesNotThrow(() -> PMTiles.readHeader(ODBL_RASTER_STAMEN));
+        final var otherHeader = assertDoesNotThrow(() -> PMTiles.readHeader(ODBL_RASTER_STAMEN));
+        final var cache = assertDoesNotThrow(() -> DirectoryCache.getCache(header));
+        assertSame(cache, assertDoesNotThrow(() -> DirectoryCache.getCache(otherHeader)));
+        assertEquals(header.tileEntries(), cache.getRoot().entries().length);
+    }
+
+    @Test
+    void testSharedCacheConcurrentUsers() throws Exception {
+        final var header = assertDoesNotThrow(() -> PMTiles.readHeader(ODBL_RASTER_STAMEN));
+        final var executor = Executors.newFixedThreadPool(4);
+        try {
+            final var tasks = new ArrayList<Callable<DirectoryCache>>();
+            for (int i = 0; i < 8; i++) {
+                tasks.add(() -> DirectoryCache.getCache(header));
+            }
+            final var caches = executor.invokeAll(tasks);
+            final var expected = DirectoryCache.getCache(header);
+            for (Future<DirectoryCache> cache : caches) {
+                assertSame(expected, cache.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 // License: GPL. For details, see LICENSE file.
 package org.openstreetmap.josm.plugins.pmtiles.lib;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -10,9 +11,16 @@ import static org.openstreetmap.josm.plugins.pmtiles.PMTestUtils.ODBL_RASTER_STA
 import static org.openstreetmap.josm.plugins.pmtiles.PMTestUtils.ODBL_VECTOR_FIRENZE;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.junit.jupiter.api.Test;
 
+import com.sun.net.httpserver.HttpServer;
+
 /**
  * Test class for {@link PMTiles}
  */
@@ -110,4 +118,49 @@ class PMTilesTest {
         assertEquals((byte) 0x60, data[9342]);
         assertEquals((byte) 0x82, data[9343]);
     }
+
+    @Test
+    void testBatchedHttpRead() throws IOException {
+        final byte[] archive;
+        try (InputStream inputStream = ODBL_RASTER_STAMEN.toURL().openStream()) {
+            archive = inputStream.readAllBytes();
+        }
+        final var requests = new AtomicInteger();
+        final var server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            final var range = exchange.getRequestHeaders().getFirst("Range").replace("bytes=", "").split("-", -1);
+            final var start = Integer.parseInt(range[0]);
+            final var end = Math.min(archive.length - 1, Integer.parseInt(range[1]));
+            exchange.sendResponseHeaders(206, end - start + 1L);
+            try (var body = exchange.getResponseBody()) {
+                body.write(archive, start, end - start + 1);
+            }
+        });
+        server.start();
+        try {
+            final var location = URI.create("http://localhost:" + server.getAddress().getPort() + "/archive.pmtiles");
+            final var header = PMTiles.readHeader(location);
+            final var root = PMTiles.readRootDirectory(header);
+            final var entries = Arrays.asList(root.entries()).subList(5, 21);
+            requests.set(0);
+            final var data = PMTiles.readData(header, entries);
+            // The entries are contiguous in the archive, so they are fetched at once
+            assertEquals(1, requests.get());
+            assertEquals(entries.size(), data.size());
+            final var cache = new DirectoryCache(root);
+            for (var entry : entries) {
+                assertArrayEquals(PMTiles.readData(header, entry.tileId(), cache), data.get(entry));
+            }
+            // Local archives give the same data
+            if ("file".equals(ODBL_RASTER_STAMEN.getScheme())) {
+                final var localData = PMTiles.readData(PMTiles.readHeader(ODBL_RASTER_STAMEN), entries);
+                for (var entry : entries) {
+                    assertArrayEquals(data.get(entry), localData.get(entry));
+                }
+            }
+        } finally {
+            server.stop(0);
+        }
+    }
 }
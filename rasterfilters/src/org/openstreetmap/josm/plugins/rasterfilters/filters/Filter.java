@@ -33,12 +33,29 @@ public interface Filter {
      * This method processes given image and returns
      * updated version of the image. Algorithm and implementation of
      * this method depends on your needs and wishes.
+     * <p>
+     * Tiles are processed concurrently, so this method must be thread safe
+     * and must not change the given image, unless {@link #isInPlace()} is true.
      *
      * @param img image to process
      * @return processed image
      */
     BufferedImage applyFilter(BufferedImage img);
 
+    /**
+     * Tells whether this filter can be applied to parts of an image in place.
+     * <p>
+     * Filters returning true must compute each pixel only from the same pixel
+     * of the given image, write the result into the given image and return it.
+     * Such filters are applied concurrently to horizontal bands of a copy of
+     * the tile.
+     *
+     * @return true if the filter works in place on single pixels
+     */
+    default boolean isInPlace() {
+        return false;
+    }
+
     /**
      * Every filter must have his own unique ID number.
      * In case of rasterfilters plugin it ID is the type of UID.
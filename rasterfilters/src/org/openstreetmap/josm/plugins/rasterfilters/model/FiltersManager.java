@@ -1,17 +1,31 @@
 // SPDX-License-Identifier: WTFPL
 package org.openstreetmap.josm.plugins.rasterfilters.model;
 
+import java.awt.AlphaComposite;
 import java.awt.Dimension;
+import java.awt.Graphics2D;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ItemEvent;
 import java.awt.event.ItemListener;
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
 import java.rmi.server.UID;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import jakarta.json.JsonArray;
 import jakarta.json.JsonObject;
@@ -31,6 +45,7 @@ import org.openstreetmap.josm.plugins.rasterfilters.gui.FiltersDialog;
 import org.openstreetmap.josm.plugins.rasterfilters.preferences.FiltersDownloader;
 import org.openstreetmap.josm.tools.ImageProcessor;
 import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
 
 import com.bric.colorpicker.ColorPicker;
 
@@ -38,16 +53,52 @@ import com.bric.colorpicker.ColorPicker;
 /**
  * This class adds filter to the dialog and can also remove
  * or disable it from the filters chain.
+ * <p>
+ * Processed tiles are cached until the filters chain changes, so
+ * that repainting the layer does not apply the filters again. When
+ * it changes, the tiles processed last are processed again
+ * concurrently on a worker pool.
  *
  * @author Nipel-Crumple
  */
 public class FiltersManager implements StateChangeListener, ImageProcessor, ActionListener, ItemListener {
     private static final String TITLE = "title";
 
+    /**
+     * Minimal height of the bands processed concurrently by filters working in place.
+     */
+    private static final int MIN_BAND_HEIGHT = 32;
+
+    /**
+     * Pool processing the tiles after a change of the filters chain, and the bands of
+     * the tiles processed by filters working in place.
+     */
+    private static final ExecutorService POOL = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            Utils.newThreadFactory("rasterfilters-%d", Thread.NORM_PRIORITY));
+
     private final Map<UID, Filter> filtersMap = new LinkedHashMap<>();
     private final Set<Filter> disabledFilters = new HashSet<>();
     private final FiltersDialog dialog;
 
+    // enabled filters in order, replaced each time the filters chain or the state of a filter changes
+    private volatile List<Filter> chain = Collections.emptyList();
+
+    // processed tiles by source image, dropped along with the source image
+    private final Map<BufferedImage, ProcessedTile> processedTiles = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private static final class ProcessedTile {
+        // the filters chain the tile is processed with
+        private final List<Filter> chain;
+        // gives null if the filters left the source image unchanged, to not reference the weak key
+        private final Future<BufferedImage> image;
+
+        ProcessedTile(List<Filter> chain, Future<BufferedImage> image) {
+            this.chain = chain;
+            this.image = image;
+        }
+    }
+
     /**
      * Create a new {@link FiltersManager} given a {@link FiltersDialog}
      * @param dialog The dialog to use
@@ -92,11 +143,9 @@ public class FiltersManager implements StateChangeListener, ImageProcessor, Acti
 
         if (filter != null) {
 
-            UID filterId = new UID();
+            UID filterId = addFilter(filter);
             fp.setFilterId(filterId);
             filterListener.setFilterId(filterId);
-            filter.setId(filterId);
-            filtersMap.put(filterId, filter);
 
             // all filters enabled in the beggining by default
         }
@@ -136,6 +185,7 @@ public class FiltersManager implements StateChangeListener, ImageProcessor, Acti
         if (filter != null) {
             filter.changeFilterState(filterState.encodeJson());
         }
+        invalidate();
         MainApplication.getLayerManager().getActiveLayer().setFilterStateChanged();
 
         fp.createBottomPanel(this);
@@ -148,6 +198,20 @@ public class FiltersManager implements StateChangeListener, ImageProcessor, Acti
         return fp;
     }
 
+    /**
+     * Adds a filter at the end of the filters chain. The change is taken into
+     * account with the next change of the filter's state.
+     *
+     * @param filter the filter to add
+     * @return the id given to the filter
+     */
+    UID addFilter(Filter filter) {
+        UID filterId = new UID();
+        filter.setId(filterId);
+        filtersMap.put(filterId, filter);
+        return filterId;
+    }
+
     /**
      * The method notifies about changes in the filter's status.
      *
@@ -159,6 +223,7 @@ public class FiltersManager implements StateChangeListener, ImageProcessor, Acti
         if (filtersMap.get(filterId) != null) {
             filtersMap.get(filterId).changeFilterState(filterState.encodeJson());
         }
+        invalidate();
 
         if (MainApplication.getLayerManager().getActiveLayer() != null) {
             MainApplication.getLayerManager().getActiveLayer().setFilterStateChanged();
@@ -178,13 +243,102 @@ public class FiltersManager implements StateChangeListener, ImageProcessor, Acti
         return null;
     }
 
+    /**
+     * Takes a change of the filters chain into account. The tiles processed with
+     * the previous chain, that is the tiles painted since the previous change,
+     * are processed again on the pool so that they are ready when the layer is
+     * repainted. The other tiles are forgotten.
+     */
+    private void invalidate() {
+
+        List<Filter> previous = chain;
+        List<Filter> current = new ArrayList<>(filtersMap.size());
+
+        for (Filter filter : filtersMap.values()) {
+            if (!disabledFilters.contains(filter)) {
+                current.add(filter);
+            }
+        }
+
+        chain = Collections.unmodifiableList(current);
+
+        synchronized (processedTiles) {
+            Iterator<Map.Entry<BufferedImage, ProcessedTile>> it = processedTiles.entrySet().iterator();
+
+            while (it.hasNext()) {
+                Map.Entry<BufferedImage, ProcessedTile> entry = it.next();
+                ProcessedTile processed = entry.getValue();
+
+                // the result would be outdated
+                processed.image.cancel(false);
+
+                if (processed.chain == previous) {
+                    BufferedImage tile = entry.getKey();
+                    List<Filter> filters = chain;
+                    // bands are not processed on the pool, which may be busy with other tiles
+                    entry.setValue(new ProcessedTile(filters, POOL.submit(() -> applyFilters(filters, tile, false))));
+                } else {
+                    it.remove();
+                }
+            }
+        }
+    }
+
     @Override
     public BufferedImage process(BufferedImage image) {
 
-        // iterating through map of filters according to the order
-        for (Filter curFilter : filtersMap.values()) {
+        List<Filter> currentChain = chain;
+        ProcessedTile processed = processedTiles.get(image);
+
+        if (processed == null || processed.chain != currentChain) {
+            FutureTask<BufferedImage> task = new FutureTask<>(() -> applyFilters(currentChain, image, true));
+            processed = new ProcessedTile(currentChain, task);
+            processedTiles.put(image, processed);
+            task.run();
+        }
+
+        try {
+            BufferedImage result = await(processed.image);
+            return result != null ? result : image;
+        } catch (CancellationException e) {
+            // the filters chain changed meanwhile
+            return process(image);
+        }
+    }
+
+    /**
+     * Applies the filters to a tile.
+     *
+     * @param filters the filters chain
+     * @param source the tile
+     * @param parallelBands true to apply the filters working in place to
+     * bands of the tile on the pool
+     * @return the processed tile, or null if the filters left it unchanged
+     */
+    private static BufferedImage applyFilters(List<Filter> filters, BufferedImage source, boolean parallelBands) {
+
+        BufferedImage image = source;
+
+        // true if image is a copy of the source which filters may change in place
+        boolean copied = false;
+
+        // iterating through the filters according to the order
+        for (Filter curFilter : filters) {
+
+            if (curFilter.isInPlace()) {
 
-            if (!disabledFilters.contains(curFilter)) {
+                if (!copied) {
+                    image = copy(image);
+                    copied = true;
+                }
+
+                if (parallelBands) {
+                    applyInPlace(curFilter, image);
+                } else {
+                    applyToBand(curFilter, image);
+                }
+
+            } else {
                 // if next filter will return null
                 // we should take an old example of the image
                 BufferedImage oldImg = image;
@@ -195,10 +349,85 @@ public class FiltersManager implements StateChangeListener, ImageProcessor, Acti
                 if (image == null) {
                     image = oldImg;
                 }
+
+                copied = copied && image == oldImg;
             }
         }
 
-        return image;
+        return image != source ? image : null;
+    }
+
+    /**
+     * Applies a filter working in place to horizontal bands of the image in parallel.
+     */
+    private static void applyInPlace(Filter filter, BufferedImage image) {
+
+        int bands = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(),
+                image.getHeight() / MIN_BAND_HEIGHT));
+
+        if (bands == 1) {
+            applyToBand(filter, image);
+            return;
+        }
+
+        List<Future<?>> futures = new ArrayList<>(bands);
+
+        for (int i = 0; i < bands; i++) {
+            int y = image.getHeight() * i / bands;
+            int height = image.getHeight() * (i + 1) / bands - y;
+            // sub images share the pixels of the image
+            BufferedImage band = image.getSubimage(0, y, image.getWidth(), height);
+            futures.add(POOL.submit(() -> applyToBand(filter, band)));
+        }
+
+        for (Future<?> future : futures) {
+            await(future);
+        }
+    }
+
+    /**
+     * Waits for a result computed on the pool. Results are short to compute,
+     * so this waits even if the thread is interrupted.
+     */
+    private static <T> T await(Future<T> future) {
+
+        boolean interrupted = false;
+
+        try {
+            while (true) {
+                try {
+                    return future.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException) e.getCause();
+                    }
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void applyToBand(Filter filter, BufferedImage band) {
+
+        BufferedImage result = filter.applyFilter(band);
+
+        if (result != null && result != band) {
+            Graphics2D g = band.createGraphics();
+            g.setComposite(AlphaComposite.Src);
+            g.drawImage(result, 0, 0, null);
+            g.dispose();
+        }
+    }
+
+    private static BufferedImage copy(BufferedImage image) {
+        ColorModel cm = image.getColorModel();
+        return new BufferedImage(cm, image.copyData(null), cm.isAlphaPremultiplied(), null);
     }
 
     @Override
@@ -211,6 +440,7 @@ public class FiltersManager implements StateChangeListener, ImageProcessor, Acti
 
         // removing filter from the filters chain
         filtersMap.remove(filterId);
+        invalidate();
 
         dialog.getShowedFiltersTitles().remove(filterPanel.getName());
 
@@ -255,6 +485,7 @@ public class FiltersManager implements StateChangeListener, ImageProcessor, Acti
 
             UID filterId = filterPanel.getFilterId();
             disabledFilters.add(filtersMap.get(filterId));
+            invalidate();
 
             MainApplication.getLayerManager().getActiveLayer().setFilterStateChanged();
 
@@ -262,6 +493,7 @@ public class FiltersManager implements StateChangeListener, ImageProcessor, Acti
 
             UID filterId = filterPanel.getFilterId();
             disabledFilters.remove(filtersMap.get(filterId));
+            invalidate();
 
             MainApplication.getLayerManager().getActiveLayer().setFilterStateChanged();
 
@@ -0,0 +1,183 @@
+// SPDX-License-Identifier: WTFPL
+package org.openstreetmap.josm.plugins.rasterfilters.model;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.awt.image.BufferedImage;
+import java.rmi.server.UID;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import jakarta.json.Json;
+import jakarta.json.JsonObject;
+
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.plugins.rasterfilters.filters.Filter;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+/**
+ * Unit tests of {@link FiltersManager} class.
+ */
+@BasicPreferences
+class FiltersManagerTest {
+
+    /**
+     * Adds an offset to the blue component of each pixel.
+     */
+    private static class OffsetFilter implements Filter {
+        private final boolean inPlace;
+        private final AtomicInteger calls = new AtomicInteger();
+        private volatile int offset;
+        private UID id;
+
+        OffsetFilter(boolean inPlace) {
+            this.inPlace = inPlace;
+        }
+
+        @Override
+        public JsonObject changeFilterState(JsonObject filterState) {
+            offset = filterState.getJsonObject("offset").getInt("value");
+            return filterState;
+        }
+
+        @Override
+        public BufferedImage applyFilter(BufferedImage img) {
+            calls.incrementAndGet();
+            BufferedImage result = inPlace ? img : new BufferedImage(img.getWidth(), img.getHeight(), BufferedImage.TYPE_INT_ARGB);
+            for (int y = 0; y < img.getHeight(); y++) {
+                for (int x = 0; x < img.getWidth(); x++) {
+                    int rgb = img.getRGB(x, y);
+                    result.setRGB(x, y, (rgb & 0xffffff00) | ((rgb + offset) & 0xff));
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public boolean isInPlace() {
+            return inPlace;
+        }
+
+        @Override
+        public void setId(UID id) {
+            this.id = id;
+        }
+
+        @Override
+        public UID getId() {
+            return id;
+        }
+    }
+
+    private static FilterStateModel state(int offset) {
+        FilterStateModel state = new FilterStateModel();
+        state.addParams(Json.createObjectBuilder()
+                .add("name", "offset")
+                .add("type", "linear_slider")
+                .add("value_type", "integer")
+                .add("default", offset)
+                .build());
+        return state;
+    }
+
+    private static BufferedImage tile(int width, int height) {
+        Random random = new Random(42);
+        BufferedImage tile = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                tile.setRGB(x, y, random.nextInt());
+            }
+        }
+        return tile;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+    }
+
+    /**
+     * Applies the filter to a copy of the whole image.
+     */
+    private static int[] expected(BufferedImage tile, int offset) {
+        OffsetFilter filter = new OffsetFilter(false);
+        filter.changeFilterState(state(offset).encodeJson());
+        return pixels(filter.applyFilter(tile));
+    }
+
+    /**
+     * Tiles are returned unchanged when there is no filter.
+     */
+    @Test
+    void testNoFilter() {
+        FiltersManager manager = new FiltersManager(null);
+        BufferedImage tile = tile(16, 16);
+        assertSame(tile, manager.process(tile));
+    }
+
+    /**
+     * Processed tiles are reused until the state of a filter changes.
+     */
+    @Test
+    void testProcessedTilesReused() {
+        FiltersManager manager = new FiltersManager(null);
+        OffsetFilter filter = new OffsetFilter(false);
+        manager.filterStateChanged(manager.addFilter(filter), state(10));
+        BufferedImage tile = tile(64, 64);
+
+        BufferedImage processed = manager.process(tile);
+        assertNotSame(tile, processed);
+        assertArrayEquals(expected(tile, 10), pixels(processed));
+        assertSame(processed, manager.process(tile));
+        assertSame(processed, manager.process(tile));
+        assertEquals(1, filter.calls.get());
+    }
+
+    /**
+     * Processed tiles are processed again once the state of a filter changes.
+     */
+    @Test
+    void testStateChangeInvalidatesTiles() {
+        FiltersManager manager = new FiltersManager(null);
+        OffsetFilter filter = new OffsetFilter(false);
+        UID filterId = manager.addFilter(filter);
+        manager.filterStateChanged(filterId, state(10));
+        BufferedImage tile = tile(64, 64);
+        BufferedImage other = tile(32, 32);
+
+        BufferedImage processed = manager.process(tile);
+        manager.process(other);
+        manager.filterStateChanged(filterId, state(20));
+
+        BufferedImage reprocessed = manager.process(tile);
+        assertNotSame(processed, reprocessed);
+        assertArrayEquals(expected(tile, 10), pixels(processed));
+        assertArrayEquals(expected(tile, 20), pixels(reprocessed));
+        assertArrayEquals(expected(other, 20), pixels(manager.process(other)));
+        assertSame(reprocessed, manager.process(tile));
+        assertEquals(4, filter.calls.get());
+    }
+
+    /**
+     * Filters working in place give the same result when applied to bands of the tile,
+     * or to the whole tile on the pool after a change of state, and the source tile is left unchanged.
+     */
+    @Test
+    void testBandsSameAsWholeImage() {
+        FiltersManager manager = new FiltersManager(null);
+        OffsetFilter filter = new OffsetFilter(true);
+        UID filterId = manager.addFilter(filter);
+        manager.filterStateChanged(filterId, state(10));
+        BufferedImage tile = tile(256, 300);
+        int[] source = pixels(tile);
+
+        assertArrayEquals(expected(tile, 10), pixels(manager.process(tile)));
+        assertArrayEquals(source, pixels(tile));
+
+        manager.filterStateChanged(filterId, state(30));
+        assertArrayEquals(expected(tile, 30), pixels(manager.process(tile)));
+        assertArrayEquals(source, pixels(tile));
+    }
+}
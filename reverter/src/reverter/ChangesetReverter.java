@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -269,9 +270,11 @@ public class ChangesetReverter {
                     }
                 }
             }
-            rdr.readMultiObjectsOrNextOlder(OsmPrimitiveType.NODE, nodeList, progressMonitor);
-            rdr.readMultiObjectsOrNextOlder(OsmPrimitiveType.WAY, wayList, progressMonitor);
-            rdr.readMultiObjectsOrNextOlder(OsmPrimitiveType.RELATION, relationList, progressMonitor);
+            Map<OsmPrimitiveType, Map<Long, Integer>> lists = new EnumMap<>(OsmPrimitiveType.class);
+            lists.put(OsmPrimitiveType.NODE, nodeList);
+            lists.put(OsmPrimitiveType.WAY, wayList);
+            lists.put(OsmPrimitiveType.RELATION, relationList);
+            rdr.readMultiObjectsOrNextOlder(lists, progressMonitor);
             if (progressMonitor.isCanceled()) return;
             nds = rdr.parseOsm(progressMonitor.createSubTaskMonitor(1, true));
             ds.update(this::addPartialPrimitives);
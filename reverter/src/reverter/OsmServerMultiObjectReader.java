@@ -1,28 +1,53 @@
 // License: GPL. For details, see LICENSE file.
 package reverter;
 
-import static org.openstreetmap.josm.tools.I18n.tr;
-
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.HttpURLConnection;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.DataSetMerger;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
 import org.openstreetmap.josm.data.osm.PrimitiveId;
 import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
 import org.openstreetmap.josm.gui.progress.ProgressMonitor;
 import org.openstreetmap.josm.io.IllegalDataException;
 import org.openstreetmap.josm.io.OsmApiException;
+import org.openstreetmap.josm.io.OsmReader;
 import org.openstreetmap.josm.io.OsmServerReader;
 import org.openstreetmap.josm.io.OsmTransferException;
+import org.openstreetmap.josm.spi.preferences.Config;
 import org.openstreetmap.josm.tools.Logging;
+import org.openstreetmap.josm.tools.Utils;
 
+/**
+ * Reads specific versions of many objects into a single data set.
+ * <p>
+ * Requests are sent concurrently, up to {@code reverter.download.threads} at a time, and each response is parsed
+ * by the thread which received it, then merged into the data set. Requests failing because of the connection, a server
+ * error or rate limiting are retried up to {@code reverter.download.retries} times, waiting
+ * {@code reverter.download.retry-delay} milliseconds before the first retry and twice as long before each next one,
+ * unless a rate limited response tells how long to wait, within the longest of these delays. Waiting stops when the
+ * progress monitor is canceled.
+ */
 public class OsmServerMultiObjectReader extends OsmServerReader {
-    private final MultiOsmReader rdr = new MultiOsmReader();
+    private final DataSet ds = new DataSet();
 
     public void readObject(PrimitiveId id, int version, ProgressMonitor progressMonitor) throws OsmTransferException {
         readObject(id.getUniqueId(), version, id.getType(), progressMonitor);
@@ -36,10 +61,11 @@ public class OsmServerMultiObjectReader extends OsmServerReader {
         sb.append("/");
         sb.append(version);
         progressMonitor.beginTask("", 1);
-        try (InputStream in = getInputStream(sb.toString(), progressMonitor.createSubTaskMonitor(1, true))) {
-            rdr.addData(in);
-        } catch (IOException | IllegalDataException e) {
-            throw new OsmTransferException(e);
+        try {
+            DataSet data = new QueryReader(sb.toString()).parseOsm(progressMonitor);
+            if (data != null) {
+                merge(data, null, null);
+            }
         } finally {
             progressMonitor.finishTask();
         }
@@ -117,31 +143,42 @@ public class OsmServerMultiObjectReader extends OsmServerReader {
      * @throws OsmTransferException If there is an issue getting the data
      */
     public void readMultiObjects(OsmPrimitiveType type, Map<Long, Integer> list, ProgressMonitor progressMonitor) throws OsmTransferException {
-        for (String query : makeQueryStrings(type, list)) {
-            if (progressMonitor.isCanceled()) {
-                return;
-            }
-            rdr.callback = id -> {
-                if (id.getType() == type && list.remove(id.getUniqueId()) != null) {
-                    progressMonitor.worked(1);
-                }
-            };
-            try (InputStream in = getInputStream(query, NullProgressMonitor.INSTANCE)) {
-                rdr.addData(in);
-            } catch (IOException | IllegalDataException e) {
-                Logging.warn(e);
-                throw new OsmTransferException(e);
-            } catch (OsmApiException e) {
-                Logging.warn(e);
-                // allow to continue further bulk requests
-                if (e.getResponseCode() != HttpURLConnection.HTTP_FORBIDDEN
-                        && e.getResponseCode() != HttpURLConnection.HTTP_NOT_FOUND) {
-                    throw e;
-                }
-            } finally {
-                rdr.callback = null;
+        readMultiObjects(Collections.singletonMap(type, list), progressMonitor);
+    }
+
+    /**
+     * Parse many objects of several types, with concurrent requests.
+     * @param lists The maps of object id to object version, by object type. Successfully retrieved objects are removed.
+     * @param progressMonitor The progress monitor to update
+     * @throws OsmTransferException If there is an issue getting the data
+     */
+    public void readMultiObjects(Map<OsmPrimitiveType, Map<Long, Integer>> lists, ProgressMonitor progressMonitor)
+            throws OsmTransferException {
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Map.Entry<OsmPrimitiveType, Map<Long, Integer>> entry : lists.entrySet()) {
+            OsmPrimitiveType type = entry.getKey();
+            Map<Long, Integer> list = entry.getValue();
+            // queries are made before any request, as responses remove objects from the list
+            for (String query : makeQueryStrings(type, list)) {
+                tasks.add(() -> {
+                    try {
+                        DataSet data = new QueryReader(query).parseOsm(progressMonitor);
+                        if (data != null) {
+                            worked(progressMonitor, merge(data, type, list));
+                        }
+                    } catch (OsmApiException e) {
+                        Logging.warn(e);
+                        // allow to continue further bulk requests
+                        if (e.getResponseCode() != HttpURLConnection.HTTP_FORBIDDEN
+                                && e.getResponseCode() != HttpURLConnection.HTTP_NOT_FOUND) {
+                            throw e;
+                        }
+                    }
+                    return null;
+                });
             }
         }
+        runAll(tasks, progressMonitor);
     }
 
     /**
@@ -153,20 +190,42 @@ public class OsmServerMultiObjectReader extends OsmServerReader {
      */
     public void readMultiObjectsOrNextOlder(OsmPrimitiveType type, Map<Long, Integer> list,
             ProgressMonitor progressMonitor) throws OsmTransferException {
-        readMultiObjects(type, list, progressMonitor);
+        readMultiObjectsOrNextOlder(Collections.singletonMap(type, list), progressMonitor);
+    }
+
+    /**
+     * Parse many objects of several types, with concurrent requests.
+     * If redacted elements are requested the method tries to retrieve the next older version.
+     * @param lists The maps of object id to object version, by object type.
+     * Objects successfully retrieved by multi fetch requests are removed.
+     * @param progressMonitor The progress monitor to update
+     * @throws OsmTransferException If there is an issue getting the data
+     */
+    public void readMultiObjectsOrNextOlder(Map<OsmPrimitiveType, Map<Long, Integer>> lists,
+            ProgressMonitor progressMonitor) throws OsmTransferException {
+        readMultiObjects(lists, progressMonitor);
         // If multi-read failed, retry with regular read
-        for (Map.Entry<Long, Integer> entry : list.entrySet()) {
-            if (progressMonitor.isCanceled()) return;
-            readObjectVersion(type, entry.getKey(), entry.getValue(), progressMonitor);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (Map.Entry<OsmPrimitiveType, Map<Long, Integer>> entry : lists.entrySet()) {
+            OsmPrimitiveType type = entry.getKey();
+            for (Map.Entry<Long, Integer> object : entry.getValue().entrySet()) {
+                long id = object.getKey();
+                int version = object.getValue();
+                tasks.add(() -> {
+                    readObjectVersion(type, id, version);
+                    worked(progressMonitor, 1);
+                    return null;
+                });
+            }
         }
+        runAll(tasks, progressMonitor);
     }
 
-    private void readObjectVersion(OsmPrimitiveType type, long id, int version, ProgressMonitor progressMonitor)
-            throws OsmTransferException {
+    private void readObjectVersion(OsmPrimitiveType type, long id, int version) throws OsmTransferException {
         boolean readOK = false;
         while (!readOK && version >= 1) {
             try {
-                readObject(id, version, type, progressMonitor.createSubTaskMonitor(1, true));
+                readObject(id, version, type, NullProgressMonitor.INSTANCE);
                 readOK = true;
             } catch (OsmApiException e) {
                 if (e.getResponseCode() != HttpURLConnection.HTTP_FORBIDDEN) {
@@ -182,6 +241,203 @@ public class OsmServerMultiObjectReader extends OsmServerReader {
         }
     }
 
+    private static void worked(ProgressMonitor progressMonitor, int ticks) {
+        synchronized (progressMonitor) {
+            progressMonitor.worked(ticks);
+        }
+    }
+
+    /**
+     * Run download tasks concurrently, and wait for all of them.
+     * @param tasks The tasks to run, each skipped if the progress monitor is canceled
+     * @param progressMonitor The progress monitor
+     * @throws OsmTransferException The first exception thrown by a task
+     */
+    private static void runAll(List<Callable<Void>> tasks, ProgressMonitor progressMonitor) throws OsmTransferException {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        int threads = Math.max(1, Math.min(tasks.size(), Config.getPref().getInt("reverter.download.threads", 4)));
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                Utils.newThreadFactory("reverter-download-%d", Thread.NORM_PRIORITY));
+        try {
+            List<Future<Void>> futures = new ArrayList<>(tasks.size());
+            for (Callable<Void> task : tasks) {
+                futures.add(executor.submit(() -> progressMonitor.isCanceled() ? null : task.call()));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OsmTransferException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OsmTransferException) {
+                throw (OsmTransferException) e.getCause();
+            }
+            throw new OsmTransferException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static boolean isTransient(OsmTransferException e) {
+        if (e instanceof OsmApiException) {
+            int code = ((OsmApiException) e).getResponseCode();
+            return code == 429 || code >= HttpURLConnection.HTTP_INTERNAL_ERROR;
+        }
+        // connection failures
+        return true;
+    }
+
+    /**
+     * Merge a response into the data set.
+     * @param data The objects of the response
+     * @param type The type of the requested objects, may be {@code null}
+     * @param list The map of object id to object version from which retrieved objects are removed, may be {@code null}
+     * @return The number of objects removed from {@code list}
+     */
+    private int merge(DataSet data, OsmPrimitiveType type, Map<Long, Integer> list) {
+        int removed = 0;
+        synchronized (ds) {
+            new DataSetMerger(ds, data).merge(NullProgressMonitor.INSTANCE);
+            if (list != null) {
+                for (OsmPrimitive p : data.allPrimitives()) {
+                    if (p.getType() == type && !p.isIncomplete() && list.remove(p.getUniqueId()) != null) {
+                        removed++;
+                    }
+                }
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Parse the delay in milliseconds given by a {@code Retry-After} header, either in seconds or as an HTTP date.
+     * @param retryAfter The header value
+     * @param now The current time
+     * @return The delay, or -1 if it cannot be parsed
+     */
+    static long parseRetryAfter(String retryAfter, Instant now) {
+        String value = retryAfter.trim();
+        try {
+            if (!value.isEmpty() && value.chars().allMatch(Character::isDigit)) {
+                return Math.multiplyExact(Long.parseLong(value), 1000L);
+            }
+            Instant date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return Math.max(0, date.toEpochMilli() - now.toEpochMilli());
+        } catch (ArithmeticException | NumberFormatException | DateTimeParseException e) {
+            Logging.trace(e);
+            return -1;
+        }
+    }
+
+    /**
+     * Reader for a single query, retrying after transient failures.
+     * Requests use distinct readers, as readers keep track of their active connection.
+     */
+    private static final class QueryReader extends OsmServerReader {
+        private final String query;
+
+        /**
+         * Constructs a new {@code QueryReader}.
+         * @param query The query, relative to the API base URL
+         */
+        QueryReader(String query) {
+            this.query = query;
+        }
+
+        /**
+         * Parse the response to the query.
+         * @param progressMonitor The progress monitor, retries stop when it is canceled
+         * @return The objects of the response, or {@code null} if the request was canceled
+         * @throws OsmTransferException If the request failed or the response is not valid
+         */
+        @Override
+        public DataSet parseOsm(ProgressMonitor progressMonitor) throws OsmTransferException {
+            try {
+                byte[] data = fetch(progressMonitor);
+                return data == null ? null : OsmReader.parseDataSet(new ByteArrayInputStream(data),
+                        NullProgressMonitor.INSTANCE);
+            } catch (IllegalDataException e) {
+                Logging.warn(e);
+                throw new OsmTransferException(e);
+            } finally {
+                activeConnection = null;
+            }
+        }
+
+        private byte[] fetch(ProgressMonitor progressMonitor) throws OsmTransferException {
+            int retries = Config.getPref().getInt("reverter.download.retries", 3);
+            int delay = Config.getPref().getInt("reverter.download.retry-delay", 1000);
+            for (int attempt = 0;; attempt++) {
+                long wait;
+                try {
+                    return read();
+                } catch (OsmTransferException e) {
+                    if (attempt >= retries || !isTransient(e) || progressMonitor.isCanceled()) {
+                        throw e;
+                    }
+                    // a rate limited response may ask for any delay, never wait longer than the last backoff
+                    wait = Math.min(retryAfter(e), (long) delay << retries);
+                    if (wait < 0) {
+                        wait = (long) delay << attempt;
+                    }
+                    Logging.info("Request {0} failed ({1}), retrying in {2} ms", query, e.getMessage(), wait);
+                }
+                if (!sleep(wait, progressMonitor)) {
+                    return null;
+                }
+            }
+        }
+
+        /**
+         * Wait before a retry, in short steps to stop as soon as the progress monitor is canceled.
+         * @param wait The delay in milliseconds
+         * @param progressMonitor The progress monitor
+         * @return {@code false} if the progress monitor was canceled
+         * @throws OsmTransferException If the thread is interrupted
+         */
+        private static boolean sleep(long wait, ProgressMonitor progressMonitor) throws OsmTransferException {
+            long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(wait);
+            try {
+                for (long left = wait; left > 0; left = TimeUnit.NANOSECONDS.toMillis(end - System.nanoTime())) {
+                    if (progressMonitor.isCanceled()) {
+                        return false;
+                    }
+                    Thread.sleep(Math.min(left, 100));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new OsmTransferException(e);
+            }
+            return !progressMonitor.isCanceled();
+        }
+
+        private byte[] read() throws OsmTransferException {
+            try (InputStream in = getInputStream(query, NullProgressMonitor.INSTANCE)) {
+                return in == null ? null : in.readAllBytes();
+            } catch (IOException e) {
+                throw new OsmTransferException(e);
+            }
+        }
+
+        /**
+         * Get the delay asked by a rate limited response.
+         * @param e The failure
+         * @return The delay in milliseconds, or -1 if the response does not give it
+         */
+        private long retryAfter(OsmTransferException e) {
+            if (e instanceof OsmApiException && ((OsmApiException) e).getResponseCode() == 429
+                    && activeConnection != null && activeConnection.getResponse() != null) {
+                String retryAfter = activeConnection.getResponse().getHeaderField("Retry-After");
+                if (retryAfter != null) {
+                    return parseRetryAfter(retryAfter, Instant.now());
+                }
+            }
+            return -1;
+        }
+    }
 
     /**
      * Method to parse downloaded objects
@@ -190,16 +446,6 @@ public class OsmServerMultiObjectReader extends OsmServerReader {
      */
     @Override
     public DataSet parseOsm(ProgressMonitor progressMonitor) throws OsmTransferException {
-        progressMonitor.beginTask("", 1);
-        progressMonitor.subTask(tr("Preparing history data..."));
-        try {
-            rdr.processData();
-            return rdr.getDataSet();
-        } catch (Exception e) {
-            throw new OsmTransferException(e);
-        } finally {
-            progressMonitor.finishTask();
-            activeConnection = null;
-        }
+        return ds;
     }
 }
@@ -0,0 +1,192 @@
+// License: GPL. For details, see LICENSE file.
+package reverter;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.OsmPrimitiveType;
+import org.openstreetmap.josm.data.osm.SimplePrimitiveId;
+import org.openstreetmap.josm.gui.progress.NullProgressMonitor;
+import org.openstreetmap.josm.io.OsmApiException;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+import org.openstreetmap.josm.testutils.annotations.HTTP;
+
+import com.github.tomakehurst.wiremock.junit5.WireMockExtension;
+import com.github.tomakehurst.wiremock.stubbing.Scenario;
+
+/**
+ * Test class for {@link OsmServerMultiObjectReader}
+ */
+@BasicPreferences
+@HTTP
+class OsmServerMultiObjectReaderTest {
+    @RegisterExtension
+    static WireMockExtension wireMockExtension = WireMockExtension.newInstance().options(
+            wireMockConfig().dynamicPort()).build();
+
+    private static final String CAPABILITIES = "<osm version=\"0.6\"><api><version minimum=\"0.6\" maximum=\"0.6\"/>"
+            + "<status database=\"online\" api=\"online\" gpx=\"online\"/></api></osm>";
+
+    @BeforeEach
+    void setUp() {
+        wireMockExtension.stubFor(get(urlPathEqualTo("/capabilities"))
+                .willReturn(aResponse().withBody(CAPABILITIES)));
+        Config.getPref().put("osm-server.url", wireMockExtension.getRuntimeInfo().getHttpBaseUrl());
+        Config.getPref().putInt("reverter.download.retry-delay", 1);
+    }
+
+    private static String osm(String... primitives) {
+        return "<osm version=\"0.6\">" + String.join("", primitives) + "</osm>";
+    }
+
+    private static String node(long id, int version) {
+        return "<node id=\"" + id + "\" version=\"" + version + "\" changeset=\"1\" timestamp=\"2020-01-01T00:00:00Z\""
+                + " user=\"test\" uid=\"1\" visible=\"true\" lat=\"1.0\" lon=\"2.0\"/>";
+    }
+
+    /**
+     * Transient server errors are retried, with the same query.
+     */
+    @Test
+    void testRetry() throws Exception {
+        wireMockExtension.stubFor(get(urlPathEqualTo("/0.6/nodes")).inScenario("retry")
+                .whenScenarioStateIs(Scenario.STARTED).willReturn(aResponse().withStatus(503))
+                .willSetStateTo("available"));
+        wireMockExtension.stubFor(get(urlPathEqualTo("/0.6/nodes")).inScenario("retry")
+                .whenScenarioStateIs("available").willReturn(aResponse().withBody(osm(node(1, 1), node(2, 3)))));
+
+        Map<Long, Integer> nodes = new HashMap<>();
+        nodes.put(1L, 1);
+        nodes.put(2L, 3);
+        OsmServerMultiObjectReader reader = new OsmServerMultiObjectReader();
+        reader.readMultiObjects(OsmPrimitiveType.NODE, nodes, NullProgressMonitor.INSTANCE);
+
+        assertTrue(nodes.isEmpty());
+        wireMockExtension.verify(2, getRequestedFor(urlPathEqualTo("/0.6/nodes")));
+        DataSet ds = reader.parseOsm(NullProgressMonitor.INSTANCE);
+        assertEquals(2, ds.getNodes().size());
+        assertEquals(3, ds.getPrimitiveById(new SimplePrimitiveId(2, OsmPrimitiveType.NODE)).getVersion());
+    }
+
+    /**
+     * Rate limited requests are retried after the delay given by the server rather than the configured one.
+     */
+    @Test
+    @Timeout(30)
+    void testRetryAfter() throws Exception {
+        Config.getPref().putInt("reverter.download.retry-delay", 600_000);
+        wireMockExtension.stubFor(get(urlPathEqualTo("/0.6/nodes")).inScenario("rate limit")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse().withStatus(429).withHeader("Retry-After", "0"))
+                .willSetStateTo("available"));
+        wireMockExtension.stubFor(get(urlPathEqualTo("/0.6/nodes")).inScenario("rate limit")
+                .whenScenarioStateIs("available").willReturn(aResponse().withBody(osm(node(1, 1)))));
+
+        Map<Long, Integer> nodes = new HashMap<>();
+        nodes.put(1L, 1);
+        OsmServerMultiObjectReader reader = new OsmServerMultiObjectReader();
+        reader.readMultiObjects(OsmPrimitiveType.NODE, nodes, NullProgressMonitor.INSTANCE);
+
+        assertTrue(nodes.isEmpty());
+        wireMockExtension.verify(2, getRequestedFor(urlPathEqualTo("/0.6/nodes")));
+        assertEquals(1, reader.parseOsm(NullProgressMonitor.INSTANCE).getNodes().size());
+    }
+
+    /**
+     * Rate limited requests do not wait longer than the last retry would, whatever the delay given by the server.
+     */
+    @Test
+    @Timeout(30)
+    void testRetryAfterCapped() throws Exception {
+        wireMockExtension.stubFor(get(urlPathEqualTo("/0.6/nodes")).inScenario("rate limit")
+                .whenScenarioStateIs(Scenario.STARTED)
+                .willReturn(aResponse().withStatus(429).withHeader("Retry-After", "3600"))
+                .willSetStateTo("available"));
+        wireMockExtension.stubFor(get(urlPathEqualTo("/0.6/nodes")).inScenario("rate limit")
+                .whenScenarioStateIs("available").willReturn(aResponse().withBody(osm(node(1, 1)))));
+
+        Map<Long, Integer> nodes = new HashMap<>();
+        nodes.put(1L, 1);
+        OsmServerMultiObjectReader reader = new OsmServerMultiObjectReader();
+        reader.readMultiObjects(OsmPrimitiveType.NODE, nodes, NullProgressMonitor.INSTANCE);
+
+        assertTrue(nodes.isEmpty());
+        wireMockExtension.verify(2, getRequestedFor(urlPathEqualTo("/0.6/nodes")));
+    }
+
+    /**
+     * Retry-After headers are given in seconds or as a date.
+     */
+    @Test
+    void testParseRetryAfter() {
+        Instant now = Instant.parse("2015-10-21T07:28:00Z");
+        assertEquals(2000, OsmServerMultiObjectReader.parseRetryAfter("2", now));
+        assertEquals(120_000, OsmServerMultiObjectReader.parseRetryAfter(" 120 ", now));
+        assertEquals(30_000, OsmServerMultiObjectReader.parseRetryAfter("Wed, 21 Oct 2015 07:28:30 GMT", now));
+        assertEquals(0, OsmServerMultiObjectReader.parseRetryAfter("Wed, 21 Oct 2015 07:27:00 GMT", now));
+        assertEquals(-1, OsmServerMultiObjectReader.parseRetryAfter("soon", now));
+        assertEquals(-1, OsmServerMultiObjectReader.parseRetryAfter("", now));
+    }
+
+    /**
+     * Client errors are not retried.
+     */
+    @Test
+    void testNoRetryOnClientError() {
+        wireMockExtension.stubFor(get(urlPathEqualTo("/0.6/nodes")).willReturn(aResponse().withStatus(400)));
+
+        Map<Long, Integer> nodes = new HashMap<>();
+        nodes.put(1L, 1);
+        OsmApiException e = assertThrows(OsmApiException.class, () -> new OsmServerMultiObjectReader()
+                .readMultiObjects(OsmPrimitiveType.NODE, nodes, NullProgressMonitor.INSTANCE));
+        assertEquals(400, e.getResponseCode());
+        wireMockExtension.verify(1, getRequestedFor(urlPathEqualTo("/0.6/nodes")));
+    }
+
+    /**
+     * All types are read in one go, objects missing from multi fetch responses are read one by one,
+     * falling back to older versions of redacted ones.
+     */
+    @Test
+    void testReadMultiObjectsOrNextOlder() throws Exception {
+        wireMockExtension.stubFor(get(urlPathEqualTo("/0.6/nodes")).willReturn(aResponse().withBody(osm(node(1, 1)))));
+        wireMockExtension.stubFor(get(urlPathEqualTo("/0.6/ways")).willReturn(aResponse().withBody(osm(
+                "<way id=\"10\" version=\"2\" changeset=\"1\" timestamp=\"2020-01-01T00:00:00Z\" user=\"test\" uid=\"1\""
+                + " visible=\"true\"><nd ref=\"1\"/><nd ref=\"2\"/></way>"))));
+        wireMockExtension.stubFor(get(urlPathEqualTo("/0.6/node/2/4")).willReturn(aResponse().withStatus(403)));
+        wireMockExtension.stubFor(get(urlPathEqualTo("/0.6/node/2/3")).willReturn(aResponse().withBody(osm(node(2, 3)))));
+
+        Map<OsmPrimitiveType, Map<Long, Integer>> lists = new EnumMap<>(OsmPrimitiveType.class);
+        lists.put(OsmPrimitiveType.NODE, new HashMap<>());
+        lists.get(OsmPrimitiveType.NODE).put(1L, 1);
+        lists.get(OsmPrimitiveType.NODE).put(2L, 4);
+        lists.put(OsmPrimitiveType.WAY, new HashMap<>());
+        lists.get(OsmPrimitiveType.WAY).put(10L, 2);
+        OsmServerMultiObjectReader reader = new OsmServerMultiObjectReader();
+        reader.readMultiObjectsOrNextOlder(lists, NullProgressMonitor.INSTANCE);
+
+        assertTrue(lists.get(OsmPrimitiveType.WAY).isEmpty());
+        DataSet ds = reader.parseOsm(NullProgressMonitor.INSTANCE);
+        assertNotNull(ds.getPrimitiveById(new SimplePrimitiveId(10, OsmPrimitiveType.WAY)));
+        assertEquals(3, ds.getPrimitiveById(new SimplePrimitiveId(2, OsmPrimitiveType.NODE)).getVersion());
+        assertEquals(2, ds.getNodes().size());
+    }
+}
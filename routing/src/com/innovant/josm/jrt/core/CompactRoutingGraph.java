@@ -0,0 +1,542 @@
+// License: GPL. For details, see LICENSE file.
+package com.innovant.josm.jrt.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+
+/**
+ * Compact, array-backed directed routing graph.
+ *
+ * Edges are stored in compressed sparse row (CSR) form: the outgoing edges of vertex <code>v</code> are
+ * <code>offsets[v]</code> to <code>offsets[v + 1] - 1</code>. A second CSR index holds incoming edges for
+ * backward searches. Compared to the JGraphT graph this uses a few arrays instead of one object per edge,
+ * and supports A* and bidirectional Dijkstra queries.
+ *
+ * @see RoutingGraph.Algorithm#ROUTING_ALG_ASTAR
+ * @see RoutingGraph.Algorithm#ROUTING_ALG_BIDIRECTIONAL_DIJKSTRA
+ */
+public class CompactRoutingGraph {
+
+    /**
+     * Mean earth radius in meters, slightly smaller than the one used for edge lengths to keep the A* heuristic admissible.
+     */
+    private static final double EARTH_RADIUS = 6371000;
+
+    private final Node[] vertices;
+    private final Map<Node, Integer> vertexIndex;
+    private final double[] lat;
+    private final double[] lon;
+
+    private final int[] offsets;
+    private final int[] sources;
+    private final int[] targets;
+    private final float[] weights;
+    private final Way[] ways;
+
+    private final int[] reverseOffsets;
+    private final int[] reverseEdges;
+
+    /** Highest ratio length / weight of all edges, used to turn distances into a lower bound of weights */
+    private final double maxSpeed;
+
+    /**
+     * Builder of {@link CompactRoutingGraph}.
+     */
+    public static class Builder {
+        private final Map<Node, Integer> vertexIndex = new HashMap<>();
+        private final List<Node> vertices = new ArrayList<>();
+        private int[] from = new int[1024];
+        private int[] to = new int[1024];
+        private float[] weights = new float[1024];
+        private Way[] ways = new Way[1024];
+        private int edgeCount;
+        private double maxSpeed;
+
+        private int vertex(Node node) {
+            return vertexIndex.computeIfAbsent(node, n -> {
+                vertices.add(n);
+                return vertices.size() - 1;
+            });
+        }
+
+        /**
+         * Adds a directed edge.
+         * @param way the way the edge belongs to
+         * @param fromNode the source node
+         * @param toNode the target node
+         * @param length the length of the edge, in meters
+         * @param weight the weight of the edge
+         * @return this builder
+         */
+        public Builder addEdge(Way way, Node fromNode, Node toNode, double length, double weight) {
+            if (edgeCount == from.length) {
+                int capacity = edgeCount * 2;
+                from = Arrays.copyOf(from, capacity);
+                to = Arrays.copyOf(to, capacity);
+                weights = Arrays.copyOf(weights, capacity);
+                ways = Arrays.copyOf(ways, capacity);
+            }
+            from[edgeCount] = vertex(fromNode);
+            to[edgeCount] = vertex(toNode);
+            weights[edgeCount] = (float) weight;
+            ways[edgeCount] = way;
+            edgeCount++;
+            if (weight > 0) {
+                maxSpeed = Math.max(maxSpeed, length / weight);
+            }
+            return this;
+        }
+
+        /**
+         * Builds the graph.
+         * @return the new graph
+         */
+        public CompactRoutingGraph build() {
+            return new CompactRoutingGraph(this);
+        }
+    }
+
+    private CompactRoutingGraph(Builder builder) {
+        int n = builder.vertices.size();
+        int m = builder.edgeCount;
+        vertices = builder.vertices.toArray(new Node[0]);
+        vertexIndex = builder.vertexIndex;
+        lat = new double[n];
+        lon = new double[n];
+        for (int v = 0; v < n; v++) {
+            lat[v] = Math.toRadians(vertices[v].lat());
+            lon[v] = Math.toRadians(vertices[v].lon());
+        }
+        maxSpeed = builder.maxSpeed;
+
+        // Counting sort of edges by source vertex
+        offsets = new int[n + 1];
+        for (int e = 0; e < m; e++) {
+            offsets[builder.from[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        sources = new int[m];
+        targets = new int[m];
+        weights = new float[m];
+        ways = new Way[m];
+        int[] next = Arrays.copyOf(offsets, n);
+        for (int e = 0; e < m; e++) {
+            int i = next[builder.from[e]]++;
+            sources[i] = builder.from[e];
+            targets[i] = builder.to[e];
+            weights[i] = builder.weights[e];
+            ways[i] = builder.ways[e];
+        }
+
+        // Incoming edges, by target vertex
+        reverseOffsets = new int[n + 1];
+        for (int e = 0; e < m; e++) {
+            reverseOffsets[targets[e] + 1]++;
+        }
+        for (int v = 0; v < n; v++) {
+            reverseOffsets[v + 1] += reverseOffsets[v];
+        }
+        reverseEdges = new int[m];
+        next = Arrays.copyOf(reverseOffsets, n);
+        for (int e = 0; e < m; e++) {
+            reverseEdges[next[targets[e]]++] = e;
+        }
+    }
+
+    /**
+     * Returns the number of vertices.
+     * @return the number of vertices
+     */
+    public int getVertexCount() {
+        return vertices.length;
+    }
+
+    /**
+     * Returns the number of edges.
+     * @return the number of edges
+     */
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * Returns the source node of an edge.
+     * @param edge the edge index
+     * @return the source node
+     */
+    public Node getEdgeSource(int edge) {
+        return vertices[sources[edge]];
+    }
+
+    /**
+     * Returns the target node of an edge.
+     * @param edge the edge index
+     * @return the target node
+     */
+    public Node getEdgeTarget(int edge) {
+        return vertices[targets[edge]];
+    }
+
+    /**
+     * Returns the way of an edge.
+     * @param edge the edge index
+     * @return the way the edge belongs to
+     */
+    public Way getEdgeWay(int edge) {
+        return ways[edge];
+    }
+
+    /**
+     * Returns the weight of an edge.
+     * @param edge the edge index
+     * @return the weight of the edge
+     */
+    public double getEdgeWeight(int edge) {
+        return weights[edge];
+    }
+
+    /**
+     * Returns the weight of a path.
+     * @param path edge indexes of the path
+     * @return the sum of the edge weights
+     */
+    public double getPathWeight(int[] path) {
+        double weight = 0;
+        for (int edge : path) {
+            weight += weights[edge];
+        }
+        return weight;
+    }
+
+    /**
+     * Finds the shortest path between two nodes.
+     * @param from the source node
+     * @param to the target node
+     * @param algorithm {@link RoutingGraph.Algorithm#ROUTING_ALG_ASTAR} or
+     * {@link RoutingGraph.Algorithm#ROUTING_ALG_BIDIRECTIONAL_DIJKSTRA}
+     * @return the edge indexes of the path, or {@code null} if there is no path
+     */
+    public int[] findPath(Node from, Node to, RoutingGraph.Algorithm algorithm) {
+        Integer s = vertexIndex.get(from);
+        Integer t = vertexIndex.get(to);
+        if (s == null || t == null) {
+            return null;
+        }
+        if (s.equals(t)) {
+            return new int[0];
+        }
+        switch (algorithm) {
+        case ROUTING_ALG_ASTAR:
+            return aStar(s, t);
+        case ROUTING_ALG_BIDIRECTIONAL_DIJKSTRA:
+            return bidirectionalDijkstra(s, t);
+        default:
+            throw new IllegalArgumentException("Unsupported algorithm: " + algorithm);
+        }
+    }
+
+    /**
+     * Lower bound of the weight between two vertices.
+     */
+    private double heuristic(int v, int t) {
+        if (maxSpeed <= 0) {
+            return 0;
+        }
+        double dLat = lat[t] - lat[v];
+        double dLon = lon[t] - lon[v];
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(lat[v]) * Math.cos(lat[t]) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        double distance = 2 * EARTH_RADIUS * Math.asin(Math.min(1, Math.sqrt(a)));
+        // Keep a small margin for float weights rounding
+        return distance / maxSpeed * 0.999;
+    }
+
+    private int[] aStar(int s, int t) {
+        int n = vertices.length;
+        double[] dist = new double[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        int[] predEdge = new int[n];
+        boolean[] settled = new boolean[n];
+        VertexHeap heap = new VertexHeap();
+        dist[s] = 0;
+        heap.add(s, heuristic(s, t));
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            if (settled[u]) {
+                continue;
+            }
+            if (u == t) {
+                return buildPath(predEdge, s, t);
+            }
+            settled[u] = true;
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                int v = targets[e];
+                double d = dist[u] + weights[e];
+                if (d < dist[v]) {
+                    dist[v] = d;
+                    predEdge[v] = e;
+                    settled[v] = false;
+                    heap.add(v, d + heuristic(v, t));
+                }
+            }
+        }
+        return null;
+    }
+
+    private int[] bidirectionalDijkstra(int s, int t) {
+        int n = vertices.length;
+        double[] distF = new double[n];
+        double[] distB = new double[n];
+        Arrays.fill(distF, Double.POSITIVE_INFINITY);
+        Arrays.fill(distB, Double.POSITIVE_INFINITY);
+        int[] predF = new int[n];
+        int[] predB = new int[n];
+        boolean[] settledF = new boolean[n];
+        boolean[] settledB = new boolean[n];
+        VertexHeap heapF = new VertexHeap();
+        VertexHeap heapB = new VertexHeap();
+        distF[s] = 0;
+        distB[t] = 0;
+        heapF.add(s, 0);
+        heapB.add(t, 0);
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+        while (!heapF.isEmpty() && !heapB.isEmpty()) {
+            if (heapF.peekKey() + heapB.peekKey() >= best) {
+                break;
+            }
+            boolean forward = heapF.size() <= heapB.size();
+            VertexHeap heap = forward ? heapF : heapB;
+            double[] dist = forward ? distF : distB;
+            double[] otherDist = forward ? distB : distF;
+            int[] pred = forward ? predF : predB;
+            boolean[] settled = forward ? settledF : settledB;
+            int u = heap.poll();
+            if (settled[u]) {
+                continue;
+            }
+            settled[u] = true;
+            int start = forward ? offsets[u] : reverseOffsets[u];
+            int end = forward ? offsets[u + 1] : reverseOffsets[u + 1];
+            for (int i = start; i < end; i++) {
+                int e = forward ? i : reverseEdges[i];
+                int v = forward ? targets[e] : sources[e];
+                double d = dist[u] + weights[e];
+                if (d < dist[v]) {
+                    dist[v] = d;
+                    pred[v] = e;
+                    heap.add(v, d);
+                }
+                if (d + otherDist[v] < best) {
+                    best = d + otherDist[v];
+                    meeting = v;
+                }
+            }
+        }
+        if (meeting < 0) {
+            return null;
+        }
+        int[] head = buildPath(predF, s, meeting);
+        // Backward predecessors point to the next edge towards t
+        List<Integer> tail = new ArrayList<>();
+        for (int v = meeting; v != t; v = targets[predB[v]]) {
+            tail.add(predB[v]);
+        }
+        int[] path = Arrays.copyOf(head, head.length + tail.size());
+        for (int i = 0; i < tail.size(); i++) {
+            path[head.length + i] = tail.get(i);
+        }
+        return path;
+    }
+
+    private int[] buildPath(int[] predEdge, int s, int t) {
+        int length = 0;
+        for (int v = t; v != s; v = sources[predEdge[v]]) {
+            length++;
+        }
+        int[] path = new int[length];
+        for (int v = t; v != s; v = sources[predEdge[v]]) {
+            path[--length] = predEdge[v];
+        }
+        return path;
+    }
+
+    /**
+     * Computes the weights of the shortest paths between several origins and destinations.
+     * One shortest path tree is grown for each origin, in parallel in the common fork-join pool.
+     * @param origins the origin nodes
+     * @param destinations the destination nodes
+     * @param maxWeight the maximum weight to explore from each origin
+     * @return the matrix of weights, indexed by origin then destination.
+     * {@link Double#POSITIVE_INFINITY} means that the destination cannot be reached within {@code maxWeight}
+     */
+    public double[][] computeMatrix(List<Node> origins, List<Node> destinations, double maxWeight) {
+        int[] destinationVertices = new int[destinations.size()];
+        boolean[] isDestination = new boolean[vertices.length];
+        for (int j = 0; j < destinationVertices.length; j++) {
+            Integer v = vertexIndex.get(destinations.get(j));
+            destinationVertices[j] = v == null ? -1 : v;
+            if (v != null) {
+                isDestination[v] = true;
+            }
+        }
+        int destinationCount = 0;
+        for (boolean d : isDestination) {
+            if (d) {
+                destinationCount++;
+            }
+        }
+        final int remaining = destinationCount;
+        double[][] matrix = new double[origins.size()][];
+        IntStream.range(0, origins.size()).parallel().forEach(i -> {
+            double[] row = new double[destinationVertices.length];
+            Arrays.fill(row, Double.POSITIVE_INFINITY);
+            Integer s = vertexIndex.get(origins.get(i));
+            if (s != null) {
+                double[] dist = shortestPathTree(s, maxWeight, isDestination, remaining);
+                for (int j = 0; j < row.length; j++) {
+                    if (destinationVertices[j] >= 0) {
+                        row[j] = dist[destinationVertices[j]];
+                    }
+                }
+            }
+            matrix[i] = row;
+        });
+        return matrix;
+    }
+
+    /**
+     * Finds the edges which can be fully traversed from a node within a maximum weight.
+     * @param origin the origin node
+     * @param maxWeight the maximum weight
+     * @return the indexes of the reachable edges
+     */
+    public int[] computeReachableEdges(Node origin, double maxWeight) {
+        Integer s = vertexIndex.get(origin);
+        if (s == null) {
+            return new int[0];
+        }
+        double[] dist = shortestPathTree(s, maxWeight, null, 0);
+        int[] result = new int[targets.length];
+        int count = 0;
+        for (int e = 0; e < targets.length; e++) {
+            if (dist[sources[e]] < Double.POSITIVE_INFINITY && dist[sources[e]] + weights[e] <= maxWeight) {
+                result[count++] = e;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    /**
+     * Grows a shortest path tree (Dijkstra) from a vertex, up to a maximum weight.
+     * @param s the source vertex
+     * @param maxWeight the maximum weight to explore
+     * @param destinations if not null, the search stops once all these vertices are settled
+     * @param destinationCount the number of destination vertices
+     * @return the weight of the shortest path to each vertex, {@link Double#POSITIVE_INFINITY} if it is not reached
+     */
+    private double[] shortestPathTree(int s, double maxWeight, boolean[] destinations, int destinationCount) {
+        double[] dist = new double[vertices.length];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        boolean[] settled = new boolean[vertices.length];
+        VertexHeap heap = new VertexHeap();
+        int remaining = destinationCount;
+        dist[s] = 0;
+        heap.add(s, 0);
+        while (!heap.isEmpty()) {
+            int u = heap.poll();
+            if (settled[u]) {
+                continue;
+            }
+            settled[u] = true;
+            if (destinations != null && destinations[u] && --remaining == 0) {
+                break;
+            }
+            for (int e = offsets[u]; e < offsets[u + 1]; e++) {
+                int v = targets[e];
+                double d = dist[u] + weights[e];
+                if (d <= maxWeight && d < dist[v]) {
+                    dist[v] = d;
+                    heap.add(v, d);
+                }
+            }
+        }
+        return dist;
+    }
+
+    /**
+     * Binary min-heap of vertices with lazy deletion: a vertex may be added several times, outdated entries are
+     * skipped by the caller.
+     */
+    static final class VertexHeap {
+        private int[] items = new int[64];
+        private double[] keys = new double[64];
+        private int size;
+
+        void add(int item, double key) {
+            if (size == items.length) {
+                items = Arrays.copyOf(items, size * 2);
+                keys = Arrays.copyOf(keys, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (keys[parent] <= key) {
+                    break;
+                }
+                items[i] = items[parent];
+                keys[i] = keys[parent];
+                i = parent;
+            }
+            items[i] = item;
+            keys[i] = key;
+        }
+
+        int poll() {
+            int result = items[0];
+            size--;
+            int item = items[size];
+            double key = keys[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[child + 1] < keys[child]) {
+                    child++;
+                }
+                if (key <= keys[child]) {
+                    break;
+                }
+                items[i] = items[child];
+                keys[i] = keys[child];
+                i = child;
+            }
+            items[i] = item;
+            keys[i] = key;
+            return result;
+        }
+
+        double peekKey() {
+            return keys[0];
+        }
+
+        int size() {
+            return size;
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+    }
+}
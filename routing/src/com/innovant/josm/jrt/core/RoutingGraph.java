@@ -5,8 +5,12 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import org.jgrapht.Graph;
 import org.jgrapht.alg.BellmanFordShortestPath;
@@ -14,23 +18,31 @@ import org.jgrapht.alg.DijkstraShortestPath;
 import org.jgrapht.graph.DirectedWeightedMultigraph;
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.OsmPrimitive;
 import org.openstreetmap.josm.data.osm.Way;
-import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.data.osm.event.AbstractDatasetChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataChangedEvent;
+import org.openstreetmap.josm.data.osm.event.DataSetListener;
+import org.openstreetmap.josm.data.osm.event.NodeMovedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesAddedEvent;
+import org.openstreetmap.josm.data.osm.event.PrimitivesRemovedEvent;
+import org.openstreetmap.josm.data.osm.event.RelationMembersChangedEvent;
+import org.openstreetmap.josm.data.osm.event.TagsChangedEvent;
+import org.openstreetmap.josm.data.osm.event.WayNodesChangedEvent;
 
 import com.innovant.josm.jrt.osm.OsmEdge;
-import com.innovant.josm.plugin.routing.RoutingLayer;
-import com.innovant.josm.plugin.routing.RoutingModel;
-import org.openstreetmap.josm.gui.layer.Layer;
 import org.openstreetmap.josm.tools.Logging;
 
 /**
  * Class utility to work with graph routers.
  *
+ * Once created, the graph is kept up to date by listening to changes of the data set.
+ *
  * @author Juangui
  * @author Jose Vidal
  * @author Hassan S
  */
-public class RoutingGraph {
+public class RoutingGraph implements DataSetListener {
 
     /**
      * Routing Profile
@@ -41,7 +53,19 @@ public class RoutingGraph {
      * Diferent algorithms to apply to the graph.
      */
     public enum Algorithm {
-        ROUTING_ALG_DIJKSTRA, ROUTING_ALG_BELLMANFORD
+        ROUTING_ALG_DIJKSTRA, ROUTING_ALG_BELLMANFORD,
+        /** A* on the compact graph, with a great circle distance heuristic */
+        ROUTING_ALG_ASTAR,
+        /** Bidirectional Dijkstra on the compact graph */
+        ROUTING_ALG_BIDIRECTIONAL_DIJKSTRA;
+
+        /**
+         * Determines if this algorithm runs on the {@link CompactRoutingGraph} instead of the JGraphT graph.
+         * @return {@code true} if this algorithm runs on the compact graph
+         */
+        public boolean usesCompactGraph() {
+            return this == ROUTING_ALG_ASTAR || this == ROUTING_ALG_BIDIRECTIONAL_DIJKSTRA;
+        }
     }
 
     /**
@@ -62,6 +86,11 @@ public class RoutingGraph {
      */
     private final DataSet data;
 
+    /**
+     * Edge weights are lengths in meters divided by speeds in km/h; multiply by 3.6 to get seconds.
+     */
+    private static final double SECONDS_PER_WEIGHT = 3.6;
+
     private static final Collection<String> excludedHighwayValues = Arrays.asList("bus_stop", "traffic_signals", "street_lamp", "stop",
             "construction", "platform", "give_way", "proposed", "milestone", "speed_camera", "abandoned");
 
@@ -79,6 +108,56 @@ public class RoutingGraph {
     //  private WeightedMultigraph<Node, OsmEdge> graph;
     private Graph<Node, OsmEdge> graph;
     private RoutingGraphDelegator rgDelegator;
+    /**
+     * Oneway setting of the routing profile the graph edges follow.
+     */
+    private boolean graphOnewayUse;
+    /**
+     * Route type used to compute the weights of the graph edges.
+     */
+    private RouteType graphRouteType;
+
+    /**
+     * Compact graph, used by {@link Algorithm#usesCompactGraph()} algorithms.
+     */
+    private CompactRoutingGraph compactGraph;
+    /**
+     * Route type used to compute the weights of the compact graph.
+     */
+    private RouteType compactGraphRouteType;
+    /**
+     * Oneway setting of the routing profile the compact graph edges follow.
+     */
+    private boolean compactGraphOnewayUse;
+
+    /**
+     * Vertices and edges added to the graph for each way, so that the graph can be updated when the way changes.
+     */
+    private final Map<Way, WayEdges> wayEdges = new HashMap<>();
+    /**
+     * Number of ways using each vertex of the graph.
+     */
+    private final Map<Node, Integer> vertexReferences = new HashMap<>();
+    /**
+     * Incremented each time the graph changes.
+     */
+    private int modificationCount;
+
+    /**
+     * Vertices and edges added to the graph for a way.
+     */
+    private static final class WayEdges {
+        private final List<Node> vertices = new ArrayList<>();
+        private final List<OsmEdge> edges = new ArrayList<>();
+    }
+
+    /**
+     * Receives the directed segments to add to a graph.
+     */
+    @FunctionalInterface
+    private interface SegmentConsumer {
+        void accept(Way way, Node from, Node to);
+    }
 
     /**
      * Graph getter
@@ -88,18 +167,18 @@ public class RoutingGraph {
     }
 
     @SuppressWarnings("squid:S2234")
-    private void addEdgeBidirectional(Way way, Node from, Node to) {
-        addEdge(way, from, to);
-        addEdge(way, to, from);
+    private static void addEdgeBidirectional(SegmentConsumer consumer, Way way, Node from, Node to) {
+        consumer.accept(way, from, to);
+        consumer.accept(way, to, from);
     }
 
     @SuppressWarnings("squid:S2234")
-    private void addEdgeReverseOneway(Way way, Node from, Node to) {
-        addEdge(way, to, from);
+    private static void addEdgeReverseOneway(SegmentConsumer consumer, Way way, Node from, Node to) {
+        consumer.accept(way, to, from);
     }
 
-    private void addEdgeNormalOneway(Way way, Node from, Node to) {
-        addEdge(way, from, to);
+    private static void addEdgeNormalOneway(SegmentConsumer consumer, Way way, Node from, Node to) {
+        consumer.accept(way, from, to);
     }
 
     /**
@@ -123,98 +202,294 @@ public class RoutingGraph {
     }
 
     /**
-     * Create OSM graph for routing
+     * Create OSM graph for routing.
+     * It is only needed by the JGraphT algorithms, {@link #applyAlgorithm} calls it the first time one of them is used.
      */
     public void createGraph() {
         Logging.trace("Creating Graph...");
         graph = new DirectedWeightedMultigraph<>(OsmEdge.class);
         rgDelegator = new RoutingGraphDelegator(graph);
         rgDelegator.setRouteType(this.routeType);
-        // iterate all ways and segments for all nodes:
+        wayEdges.clear();
+        vertexReferences.clear();
+        graphOnewayUse = routingProfile.isOnewayUsed();
+        graphRouteType = routeType;
         for (Way way : data.getWays()) {
+            addWay(way);
+        }
+        modificationCount++;
 
-            // skip way if not suitable for routing.
-            if (way == null || way.isDeleted() || !this.isvalidWay(way)
-                    || way.getNodesCount() == 0) continue;
+        Logging.trace("End Create Graph");
+        Logging.trace("Vertex: {0}", graph.vertexSet().size());
+        Logging.trace("Edges: {0}", graph.edgeSet().size());
+    }
 
-            // INIT
-            Node from = null;
-            Node to = null;
-            List<Node> nodes = way.getNodes();
-            int nodesCount = nodes.size();
+    /**
+     * Add the vertices and edges of a way to the graph.
+     */
+    private void addWay(Way way) {
+        WayEdges edges = new WayEdges();
+        forEachSegment(way, node -> {
+            edges.vertices.add(node);
+            if (vertexReferences.merge(node, 1, Integer::sum) == 1) {
+                graph.addVertex(node);
+            }
+        }, (w, from, to) -> {
+            OsmEdge edge = addEdge(w, from, to);
+            if (edge != null) {
+                edges.edges.add(edge);
+            }
+        });
+        if (!edges.vertices.isEmpty()) {
+            wayEdges.put(way, edges);
+        }
+    }
+
+    /**
+     * Remove the vertices and edges of a way from the graph.
+     */
+    private void removeWay(Way way) {
+        WayEdges edges = wayEdges.remove(way);
+        if (edges == null) {
+            return;
+        }
+        for (OsmEdge edge : edges.edges) {
+            graph.removeEdge(edge);
+        }
+        for (Node node : edges.vertices) {
+            Integer count = vertexReferences.computeIfPresent(node, (n, c) -> c > 1 ? c - 1 : null);
+            if (count == null) {
+                graph.removeVertex(node);
+            }
+        }
+    }
+
+    /**
+     * Update the graph after a change of ways. Changes of ways which are not used for routing are ignored.
+     * The compact graph cannot be updated in place: it is discarded, and built again when needed.
+     * @param ways the changed ways
+     */
+    private void updateWays(Collection<Way> ways) {
+        if (ways.stream().noneMatch(way -> wayEdges.containsKey(way) || isvalidWay(way))) {
+            return;
+        }
+        compactGraph = null;
+        if (graph != null) {
+            for (Way way : ways) {
+                removeWay(way);
+                addWay(way);
+            }
+        }
+        modificationCount++;
+    }
+
+    /**
+     * Update the edges of the ways whose direction depends on the oneway setting.
+     */
+    private void updateOnewayWays() {
+        List<Way> ways = new ArrayList<>();
+        for (Way way : wayEdges.keySet()) {
+            if (way.get("oneway") != null || way.get("junction") != null) {
+                ways.add(way);
+            }
+        }
+        graphOnewayUse = routingProfile.isOnewayUsed();
+        updateWays(ways);
+    }
+
+    /**
+     * Compute again the weights of all graph edges, after a change of the route type.
+     */
+    private void updateWeights() {
+        for (OsmEdge edge : graph.edgeSet()) {
+            ((DirectedWeightedMultigraph<Node, OsmEdge>) graph).setEdgeWeight(edge, getWeight(edge.getWay(), edge.getLength()));
+        }
+        graphRouteType = routeType;
+    }
+
+    /**
+     * Returns a number which changes each time the graph is modified.
+     * @return the modification count of the graph
+     */
+    public int getModificationCount() {
+        return modificationCount;
+    }
 
-            /*
-             * Assume node is A B C D E. The procedure should be
-             *
-             *  case 1 - bidirectional ways:
-             *  1) Add vertex A B C D E
-             *  2) Link A<->B, B<->C, C<->D, D<->E as Edges
-             *
-             *  case 2 - oneway reverse:
-             *  1) Add vertex A B C D E
-             *  2) Link B->A,C->B,D->C,E->D as Edges. result: A<-B<-C<-D<-E
-             *
-             *  case 3 - oneway normal:
-             *  1) Add vertex A B C D E
-             *  2) Link A->B, B->C, C->D, D->E as Edges. result: A->B->C->D->E
-             *
-             *
-             */
+    private static List<Way> getWays(Collection<? extends OsmPrimitive> primitives) {
+        return primitives.stream().filter(Way.class::isInstance).map(Way.class::cast).collect(Collectors.toList());
+    }
 
-            String onewayVal = way.get("oneway");   /*   get (oneway=?) tag for this way.   */
-            String junctionVal = way.get("junction");   /*   get (junction=?) tag for this way.   */
+    @Override
+    public void primitivesAdded(PrimitivesAddedEvent event) {
+        updateWays(getWays(event.getPrimitives()));
+    }
 
-            from = nodes.get(0);                   /*   1st node A  */
-            graph.addVertex(from);                 /*   add vertex A */
+    @Override
+    public void primitivesRemoved(PrimitivesRemovedEvent event) {
+        updateWays(getWays(event.getPrimitives()));
+    }
 
-            for (int i = 1; i < nodesCount; i++) { /*   loop from B until E */
+    @Override
+    public void tagsChanged(TagsChangedEvent event) {
+        if (event.getPrimitive() instanceof Way) {
+            Way way = (Way) event.getPrimitive();
+            if (!wayEdges.containsKey(way) && !isvalidWay(way) && hasRoutingTags(event.getOriginalKeys()::get)) {
+                // The way is not used for routing anymore, but the compact graph may still contain it
+                compactGraph = null;
+                modificationCount++;
+            } else {
+                updateWays(Collections.singleton(way));
+            }
+        }
+    }
 
-                to = nodes.get(i);                   /*   2nd node B   */
+    @Override
+    public void nodeMoved(NodeMovedEvent event) {
+        updateWays(event.getNode().getParentWays());
+    }
 
-                if (to != null && !to.isDeleted()) {
-                    graph.addVertex(to);               /*   add vertex B */
+    @Override
+    public void wayNodesChanged(WayNodesChangedEvent event) {
+        updateWays(Collections.singleton(event.getChangedWay()));
+    }
 
+    @Override
+    public void relationMembersChanged(RelationMembersChangedEvent event) {
+        // Relations are not used for routing
+    }
 
-                    //this is where we link the vertices
-                    if (!routingProfile.isOnewayUsed()) {
-                        //"Ignore oneways" is selected
-                        addEdgeBidirectional(way, from, to);
+    @Override
+    public void otherDatasetChange(AbstractDatasetChangedEvent event) {
+        // Nothing to update
+    }
 
-                    } else if (onewayVal == null && "roundabout".equals(junctionVal)) {
-                        //Case (roundabout): oneway=implicit yes
-                        addEdgeNormalOneway(way, from, to);
+    @Override
+    public void dataChanged(DataChangedEvent event) {
+        // Too many changes, build the graph again when needed
+        resetGraph();
+        modificationCount++;
+    }
 
-                    } else if (onewayVal == null || Arrays.asList("false", "no", "0").contains(onewayVal)) {
-                        //Case (bi-way): oneway=false OR oneway=unset OR oneway=0 OR oneway=no
-                        addEdgeBidirectional(way, from, to);
+    /**
+     * Create compact OSM graph for routing
+     * @see CompactRoutingGraph
+     */
+    public void createCompactGraph() {
+        Logging.trace("Creating compact Graph...");
+        CompactRoutingGraph.Builder builder = new CompactRoutingGraph.Builder();
+        forEachSegment(node -> { }, (way, from, to) -> {
+            if (from.isLatLonKnown() && to.isLatLonKnown()) {
+                double length = from.greatCircleDistance(to);
+                builder.addEdge(way, from, to, length, getWeight(way, length));
+            }
+        });
+        compactGraph = builder.build();
+        compactGraphRouteType = routeType;
+        compactGraphOnewayUse = routingProfile.isOnewayUsed();
+        Logging.trace("End Create compact Graph");
+        Logging.trace("Vertex: {0}", compactGraph.getVertexCount());
+        Logging.trace("Edges: {0}", compactGraph.getEdgeCount());
+    }
 
-                    } else if ("-1".equals(onewayVal)) {
-                        //Case (oneway reverse): oneway=-1
-                        addEdgeReverseOneway(way, from, to);
+    /**
+     * Compact graph getter
+     * @return the compact graph, or {@code null} if it has not been created
+     */
+    public CompactRoutingGraph getCompactGraph() {
+        return compactGraph;
+    }
 
-                    } else if (Arrays.asList("1", "yes", "true").contains(onewayVal)) {
-                        //Case (oneway normal): oneway=yes OR 1 OR true
-                        addEdgeNormalOneway(way, from, to);
+    /**
+     * Visit the nodes and directed segments of all ways suitable for routing, following oneway rules.
+     */
+    private void forEachSegment(Consumer<Node> vertexConsumer, SegmentConsumer consumer) {
+        // iterate all ways and segments for all nodes:
+        for (Way way : data.getWays()) {
+            forEachSegment(way, vertexConsumer, consumer);
+        } // end of looping thru ways
+    }
 
-                    }
+    /**
+     * Visit the nodes and directed segments of a way, if it is suitable for routing, following oneway rules.
+     */
+    private void forEachSegment(Way way, Consumer<Node> vertexConsumer, SegmentConsumer consumer) {
+        // skip way if not suitable for routing.
+        if (way == null || way.isDeleted() || way.getDataSet() != data || !this.isvalidWay(way)
+                || way.getNodesCount() == 0) return;
+
+        // INIT
+        Node from = null;
+        Node to = null;
+        List<Node> nodes = way.getNodes();
+        int nodesCount = nodes.size();
+
+        /*
+         * Assume node is A B C D E. The procedure should be
+         *
+         *  case 1 - bidirectional ways:
+         *  1) Add vertex A B C D E
+         *  2) Link A<->B, B<->C, C<->D, D<->E as Edges
+         *
+         *  case 2 - oneway reverse:
+         *  1) Add vertex A B C D E
+         *  2) Link B->A,C->B,D->C,E->D as Edges. result: A<-B<-C<-D<-E
+         *
+         *  case 3 - oneway normal:
+         *  1) Add vertex A B C D E
+         *  2) Link A->B, B->C, C->D, D->E as Edges. result: A->B->C->D->E
+         *
+         *
+         */
+
+        String onewayVal = way.get("oneway");   /*   get (oneway=?) tag for this way.   */
+        String junctionVal = way.get("junction");   /*   get (junction=?) tag for this way.   */
+
+        from = nodes.get(0);                   /*   1st node A  */
+        vertexConsumer.accept(from);           /*   add vertex A */
+
+        for (int i = 1; i < nodesCount; i++) { /*   loop from B until E */
+
+            to = nodes.get(i);                   /*   2nd node B   */
+
+            if (to != null && !to.isDeleted()) {
+                vertexConsumer.accept(to);         /*   add vertex B */
+
+
+                //this is where we link the vertices
+                if (!routingProfile.isOnewayUsed()) {
+                    //"Ignore oneways" is selected
+                    addEdgeBidirectional(consumer, way, from, to);
+
+                } else if (onewayVal == null && "roundabout".equals(junctionVal)) {
+                    //Case (roundabout): oneway=implicit yes
+                    addEdgeNormalOneway(consumer, way, from, to);
+
+                } else if (onewayVal == null || Arrays.asList("false", "no", "0").contains(onewayVal)) {
+                    //Case (bi-way): oneway=false OR oneway=unset OR oneway=0 OR oneway=no
+                    addEdgeBidirectional(consumer, way, from, to);
+
+                } else if ("-1".equals(onewayVal)) {
+                    //Case (oneway reverse): oneway=-1
+                    addEdgeReverseOneway(consumer, way, from, to);
+
+                } else if (Arrays.asList("1", "yes", "true").contains(onewayVal)) {
+                    //Case (oneway normal): oneway=yes OR 1 OR true
+                    addEdgeNormalOneway(consumer, way, from, to);
 
-                    from = to;                         /*   we did A<->B, next loop we will do B<->C, so from=B,to=C for next loop. */
                 }
 
-            } // end of looping thru nodes
-        } // end of looping thru ways
+                from = to;                         /*   we did A<->B, next loop we will do B<->C, so from=B,to=C for next loop. */
+            }
 
-        Logging.trace("End Create Graph");
-        Logging.trace("Vertex: {0}", graph.vertexSet().size());
-        Logging.trace("Edges: {0}", graph.edgeSet().size());
+        } // end of looping thru nodes
     }
 
     /**
      * Compute weight and add edge to the graph
      */
-    private void addEdge(Way way, Node from, Node to) {
+    private OsmEdge addEdge(Way way, Node from, Node to) {
         if (!from.isLatLonKnown() || !to.isLatLonKnown()) {
-            return;
+            return null;
         }
 
         OsmEdge edge = new OsmEdge(way, from, to);
@@ -226,6 +501,7 @@ public class RoutingGraph {
         setWeight(edge, length);
         Logging.trace("edge for way {0} (from node {1} to node {2}) has weight: {3}", way.getId(), from.getId(), to.getId(), weight);
         ((DirectedWeightedMultigraph<Node, OsmEdge>) graph).setEdgeWeight(edge, weight);
+        return edge;
     }
 
     /**
@@ -286,11 +562,21 @@ public class RoutingGraph {
         //if (!way.isTagged())            <---not needed me thinks
         //    return false;
 
-        String highway = way.get("highway");
+        return hasRoutingTags(way::get);
+    }
 
-        return (highway != null && !excludedHighwayValues.contains(highway)) || way.get("junction") != null
-                || way.get("service") != null;
+    /**
+     * Check if tags make a way suitable for routing.
+     *
+     * @param tags
+     *            Returns the value of a tag, or <code>null</code> if it is not set.
+     * @return <code>true</code> is valid. <code>false</code> is not valid.
+     */
+    private static boolean hasRoutingTags(Function<String, String> tags) {
+        String highway = tags.apply("highway");
 
+        return (highway != null && !excludedHighwayValues.contains(highway)) || tags.apply("junction") != null
+                || tags.apply("service") != null;
     }
 
     /**
@@ -308,15 +594,16 @@ public class RoutingGraph {
         List<OsmEdge> path = new ArrayList<>();
         Graph<Node, OsmEdge> g;
         double totalWeight = 0;
-        final Layer editLayer = MainApplication.getLayerManager().getEditLayer();
-        final RoutingLayer layer = MainApplication.getLayerManager().getLayersOfType(RoutingLayer.class)
-                .stream().filter(rLayer -> rLayer.getDataLayer() == editLayer).findFirst().orElse(null);
-        if (layer == null) {
-            return Collections.emptyList();
-        }
-        RoutingModel routingModel = layer.getRoutingModel();
 
-        if (graph == null || routingModel.getOnewayChanged())
+        // Keep the graph in use up to date with the "Ignore oneways" option, whatever the algorithm
+        if (graph != null && graphOnewayUse != routingProfile.isOnewayUsed())
+            this.updateOnewayWays();
+        // Edges added since the last change of the route type already have the new weights, update the others
+        if (graph != null && graphRouteType != routeType)
+            this.updateWeights();
+        if (algorithm.usesCompactGraph())
+            this.getUpToDateCompactGraph();
+        else if (graph == null)
             this.createGraph();
         Logging.trace("apply algorithm between nodes ");
 
@@ -354,6 +641,19 @@ public class RoutingGraph {
                 }
             }
             break;
+        case ROUTING_ALG_ASTAR:
+        case ROUTING_ALG_BIDIRECTIONAL_DIJKSTRA:
+            Logging.trace("Using {0} on compact graph", algorithm);
+            for (int index = 1; index < nodes.size(); ++index) {
+                int[] edges = compactGraph.findPath(nodes.get(index - 1), nodes.get(index), algorithm);
+                if (edges == null) {
+                    Logging.trace("no path found!");
+                    break;
+                }
+                path.addAll(toOsmEdges(compactGraph, edges));
+                totalWeight += compactGraph.getPathWeight(edges);
+            }
+            break;
         default:
             Logging.trace("Wrong algorithm");
             break;
@@ -364,22 +664,113 @@ public class RoutingGraph {
     }
 
     /**
-     * Return the number of vertices.
-     * @return the number of vertices.
+     * Convert a path of the compact graph to edges, as returned by the JGraphT graph.
+     * @param g the compact graph
+     * @param edges edge indexes in the compact graph
+     * @return the edges of the path
+     */
+    private List<OsmEdge> toOsmEdges(CompactRoutingGraph g, int[] edges) {
+        List<OsmEdge> result = new ArrayList<>(edges.length);
+        for (int edge : edges) {
+            OsmEdge osmEdge = new OsmEdge(g.getEdgeWay(edge), g.getEdgeSource(edge), g.getEdgeTarget(edge));
+            osmEdge.setSpeed(12.1);
+            setWeight(osmEdge, osmEdge.getLength());
+            result.add(osmEdge);
+        }
+        return result;
+    }
+
+    /**
+     * Compute the travel times between several origins and destinations.
+     * One bounded shortest path tree is computed for each origin, in parallel.
+     *
+     * @param origins the origin nodes
+     * @param destinations the destination nodes
+     * @param maxSeconds the maximum travel time to explore from each origin
+     * @return the travel times in seconds, indexed by origin then destination.
+     *         {@link Double#POSITIVE_INFINITY} if a destination is not reachable within <code>maxSeconds</code>
+     */
+    public double[][] computeTravelTimeMatrix(List<Node> origins, List<Node> destinations, double maxSeconds) {
+        return computeTravelTimeMatrix(getUpToDateCompactGraph(), origins, destinations, maxSeconds);
+    }
+
+    /**
+     * Compute the travel times between several origins and destinations on a given compact graph.
+     * The compact graph is immutable, so this can run outside of the event dispatch thread.
+     *
+     * @param g the compact graph, see {@link #getUpToDateCompactGraph()}
+     * @param origins the origin nodes
+     * @param destinations the destination nodes
+     * @param maxSeconds the maximum travel time to explore from each origin
+     * @return the travel times in seconds, indexed by origin then destination.
+     *         {@link Double#POSITIVE_INFINITY} if a destination is not reachable within <code>maxSeconds</code>
+     */
+    public static double[][] computeTravelTimeMatrix(CompactRoutingGraph g, List<Node> origins, List<Node> destinations,
+            double maxSeconds) {
+        double[][] matrix = g.computeMatrix(origins, destinations, maxSeconds / SECONDS_PER_WEIGHT);
+        for (double[] row : matrix) {
+            for (int j = 0; j < row.length; j++) {
+                row[j] *= SECONDS_PER_WEIGHT;
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Compute the isochrone of a node: the edges which can be traversed within a given travel time.
+     *
+     * @param origin the origin node
+     * @param maxSeconds the maximum travel time
+     * @return the reachable edges
+     */
+    public List<OsmEdge> computeIsochrone(Node origin, double maxSeconds) {
+        return computeIsochrone(getUpToDateCompactGraph(), origin, maxSeconds);
+    }
+
+    /**
+     * Compute the isochrone of a node on a given compact graph.
+     * The compact graph is immutable, so this can run outside of the event dispatch thread.
+     *
+     * @param g the compact graph, see {@link #getUpToDateCompactGraph()}
+     * @param origin the origin node
+     * @param maxSeconds the maximum travel time
+     * @return the reachable edges
+     */
+    public List<OsmEdge> computeIsochrone(CompactRoutingGraph g, Node origin, double maxSeconds) {
+        int[] edges = g.computeReachableEdges(origin, maxSeconds / SECONDS_PER_WEIGHT);
+        Logging.trace("Isochrone of {0} s from {1}: {2} edges", maxSeconds, origin.getId(), edges.length);
+        return toOsmEdges(g, edges);
+    }
+
+    /**
+     * Returns the compact graph, after building it again if the data, the route type or the oneway option changed.
+     * @return the up to date compact graph
+     */
+    public CompactRoutingGraph getUpToDateCompactGraph() {
+        if (compactGraph == null || compactGraphRouteType != routeType || compactGraphOnewayUse != routingProfile.isOnewayUsed())
+            this.createCompactGraph();
+        return compactGraph;
+    }
+
+    /**
+     * Return the number of vertices of the graph in use.
+     * @return the number of vertices, 0 if no graph has been built yet.
      */
     public int getVertexCount() {
         int value = 0;
         if (graph != null) value = graph.vertexSet().size();
+        else if (compactGraph != null) value = compactGraph.getVertexCount();
         return value;
     }
 
     /**
-     * Return the number of edges.
-     * @return the number of edges.
+     * Return the number of edges of the graph in use.
+     * @return the number of edges, 0 if no graph has been built yet.
      */
     public int getEdgeCount() {
         int value = 0;
         if (graph != null) value = graph.edgeSet().size();
+        else if (compactGraph != null) value = compactGraph.getEdgeCount();
         return value;
     }
 
@@ -388,7 +779,8 @@ public class RoutingGraph {
      */
     public void setTypeRoute(RouteType routeType) {
         this.routeType = routeType;
-        this.rgDelegator.setRouteType(routeType);
+        if (this.rgDelegator != null)
+            this.rgDelegator.setRouteType(routeType);
     }
 
     /**
@@ -408,6 +800,7 @@ public class RoutingGraph {
 
     public void resetGraph() {
         graph = null;
+        compactGraph = null;
     }
 
     public RoutingProfile getRoutingProfile() {
@@ -53,7 +53,10 @@ public class RoutingLayer extends Layer {
         KEY_ACTIVE_ROUTE_COLOR(marktr("routing active route")),
         KEY_INACTIVE_ROUTE_COLOR(marktr("routing inactive route")),
         KEY_ROUTE_WIDTH("routing.route.width"),
-        KEY_ROUTE_SELECT("routing.route.select");
+        KEY_ROUTE_SELECT("routing.route.select"),
+        KEY_ROUTE_ALGORITHM("routing.route.algorithm"),
+        KEY_ISOCHRONE_COLOR(marktr("routing isochrone")),
+        KEY_ISOCHRONE_MINUTES("routing.isochrone.minutes");
 
         private final String key;
         PreferencesKeys(String key) {
@@ -104,7 +107,8 @@ public class RoutingLayer extends Layer {
         this.routingModel = new RoutingModel(dataLayer.data);
         Logging.trace("Routing Layer created.");
 
-        this.routingModel.routingGraph.createGraph();    /* construct the graph right after we create the layer */
+        /* the graph is built when the first route is computed, with the structure needed by the algorithm */
+        dataLayer.data.addDataSetListener(this.routingModel.routingGraph); /* and kept up to date */
         invalidate();                            /* update MapView */
     }
 
@@ -231,6 +235,14 @@ public class RoutingLayer extends Layer {
             }
         }
 
+        // Paint edges reachable from the isochrone origin
+        List<OsmEdge> isochroneEdges = routingModel.getIsochroneEdges();
+        if (isochroneEdges != null) {
+            Color isochroneColor = new NamedColorProperty(PreferencesKeys.KEY_ISOCHRONE_COLOR.getKey(), Color.BLUE).get();
+            for (OsmEdge edge : isochroneEdges) {
+                drawEdge(g, mv, edge, isochroneColor, width, false);
+            }
+        }
 
         if (nodes == null || nodes.isEmpty()) return;
 
@@ -273,6 +285,7 @@ public class RoutingLayer extends Layer {
 
     @Override
     public synchronized void destroy() {
+        dataLayer.data.removeDataSetListener(routingModel.routingGraph);
         routingModel.reset();
         //      layerAdded = false;
     }
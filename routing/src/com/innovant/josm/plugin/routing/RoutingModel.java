@@ -2,15 +2,20 @@
 package com.innovant.josm.plugin.routing;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.openstreetmap.josm.data.osm.DataSet;
 import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.util.GuiHelper;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Logging;
 
+import com.innovant.josm.jrt.core.CompactRoutingGraph;
 import com.innovant.josm.jrt.core.RoutingGraph;
 import com.innovant.josm.jrt.core.RoutingGraph.Algorithm;
 import com.innovant.josm.jrt.osm.OsmEdge;
-import org.openstreetmap.josm.tools.Logging;
 
 /**
  * This class holds all the routing data and operations
@@ -31,6 +36,11 @@ public class RoutingModel {
 
     private List<OsmEdge> path;
 
+    /**
+     * Algorithm used to compute the route.
+     */
+    private Algorithm algorithm;
+
     /**
      * Flag to advise about changes in the selected nodes.
      */
@@ -41,6 +51,31 @@ public class RoutingModel {
      */
     private boolean changeOneway;
 
+    /**
+     * Modification count of the graph when the path was computed.
+     */
+    private int graphModificationCount;
+
+    /**
+     * Origin of the isochrone, or <code>null</code> if no isochrone is shown.
+     */
+    private Node isochroneOrigin;
+
+    /**
+     * Maximum travel time of the isochrone, in seconds.
+     */
+    private double isochroneSeconds;
+
+    /**
+     * Last computed isochrone, shown until the requested one is computed.
+     */
+    private List<OsmEdge> isochrone;
+
+    /**
+     * Origin, travel time and graph state of the isochrone being computed or last computed.
+     */
+    private List<Object> isochroneRequest;
+
     /**
      * Default Constructor.
      * @param data The data to use for the routing graph
@@ -49,6 +84,39 @@ public class RoutingModel {
         nodes = new ArrayList<>();
         Logging.trace("gr " + data);
         routingGraph = new RoutingGraph(data);
+        algorithm = getPreferredAlgorithm();
+    }
+
+    /**
+     * Returns the algorithm of the {@code routing.route.algorithm} preference, used by new routing layers.
+     * @return the preferred algorithm, Dijkstra if the preference is not set or unknown
+     */
+    public static Algorithm getPreferredAlgorithm() {
+        String algorithmName = Config.getPref().get(RoutingLayer.PreferencesKeys.KEY_ROUTE_ALGORITHM.getKey(),
+                Algorithm.ROUTING_ALG_DIJKSTRA.name());
+        try {
+            return Algorithm.valueOf(algorithmName);
+        } catch (IllegalArgumentException e) {
+            Logging.warn("Unknown routing algorithm: " + algorithmName);
+            return Algorithm.ROUTING_ALG_DIJKSTRA;
+        }
+    }
+
+    /**
+     * Returns the algorithm used to compute the route.
+     * @return the algorithm used to compute the route
+     */
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Sets the algorithm used to compute the route.
+     * @param algorithm the algorithm used to compute the route
+     */
+    public void setAlgorithm(Algorithm algorithm) {
+        this.algorithm = algorithm;
+        this.changeNodes = true;
     }
 
     /**
@@ -108,14 +176,72 @@ public class RoutingModel {
      * @return A list of edges forming the shortest path
      */
     public List<OsmEdge> getRouteEdges() {
-        if (this.changeNodes || path == null) {
-            path = this.routingGraph.applyAlgorithm(nodes, Algorithm.ROUTING_ALG_DIJKSTRA);
+        if (this.changeNodes || this.changeOneway || path == null
+                || graphModificationCount != routingGraph.getModificationCount()) {
+            path = this.routingGraph.applyAlgorithm(nodes, algorithm);
             this.changeNodes = false;
             this.changeOneway = false;
+            this.graphModificationCount = routingGraph.getModificationCount();
         }
         return path;
     }
 
+    /**
+     * Shows the edges reachable from a node within a travel time.
+     * The edges are computed in the background, the map is repainted once they are known.
+     * @param origin the origin node
+     * @param seconds the maximum travel time, in seconds
+     */
+    public void setIsochrone(Node origin, double seconds) {
+        this.isochroneOrigin = origin;
+        this.isochroneSeconds = seconds;
+        this.isochrone = null;
+        updateIsochrone();
+    }
+
+    /**
+     * Get the edges of the isochrone. If the graph changed, the isochrone is computed again in the background and
+     * the previous edges are returned in the meantime.
+     * @return A list of the edges reachable from the isochrone origin, or <code>null</code> if no isochrone is shown
+     * or it is not computed yet
+     */
+    public List<OsmEdge> getIsochroneEdges() {
+        if (isochroneOrigin == null) {
+            return null;
+        }
+        updateIsochrone();
+        return isochrone;
+    }
+
+    /**
+     * Starts the computation of the isochrone, unless it is already computed or being computed for the current graph.
+     * The compact graph is brought up to date here, in the event dispatch thread where the graph is modified;
+     * the search itself runs on the immutable compact graph in the JOSM worker thread.
+     */
+    private void updateIsochrone() {
+        final List<Object> request = Arrays.asList(isochroneOrigin, isochroneSeconds, routingGraph.getModificationCount(),
+                routingGraph.getTypeRoute(), routingGraph.getRoutingProfile().isOnewayUsed());
+        if (request.equals(isochroneRequest)) {
+            return;
+        }
+        isochroneRequest = request;
+        final Node origin = isochroneOrigin;
+        final double seconds = isochroneSeconds;
+        final CompactRoutingGraph graph = routingGraph.getUpToDateCompactGraph();
+        MainApplication.worker.submit(() -> {
+            List<OsmEdge> edges = routingGraph.computeIsochrone(graph, origin, seconds);
+            GuiHelper.runInEDT(() -> {
+                // Drop the result if another isochrone has been requested in the meantime
+                if (request == isochroneRequest) {
+                    isochrone = edges;
+                    if (MainApplication.getMap() != null) {
+                        MainApplication.getMap().repaint();
+                    }
+                }
+            });
+        });
+    }
+
     /**
      * Marks that some node or the node order has changed so the path should be computed again
      */
@@ -142,6 +268,9 @@ public class RoutingModel {
      */
     public void reset() {
         nodes.clear();
+        isochroneOrigin = null;
+        isochrone = null;
+        isochroneRequest = null;
         this.changeNodes = true;
     }
 
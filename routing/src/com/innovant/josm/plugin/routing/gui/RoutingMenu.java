@@ -6,19 +6,32 @@ import static org.openstreetmap.josm.tools.I18n.tr;
 
 import java.awt.event.ItemEvent;
 import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.List;
 
 import javax.swing.ButtonGroup;
 import javax.swing.JCheckBoxMenuItem;
 import javax.swing.JMenu;
 import javax.swing.JMenuItem;
+import javax.swing.JOptionPane;
 import javax.swing.JRadioButtonMenuItem;
+import javax.swing.JScrollPane;
+import javax.swing.JTable;
 
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.gui.MainApplication;
+import org.openstreetmap.josm.gui.MainMenu;
+import org.openstreetmap.josm.gui.util.GuiHelper;
+import org.openstreetmap.josm.spi.preferences.Config;
+import org.openstreetmap.josm.tools.Logging;
+
+import com.innovant.josm.jrt.core.CompactRoutingGraph;
+import com.innovant.josm.jrt.core.RoutingGraph;
+import com.innovant.josm.jrt.core.RoutingGraph.Algorithm;
 import com.innovant.josm.jrt.core.RoutingGraph.RouteType;
 import com.innovant.josm.plugin.routing.RoutingLayer;
 import com.innovant.josm.plugin.routing.RoutingModel;
 import com.innovant.josm.plugin.routing.RoutingPlugin;
-import org.openstreetmap.josm.gui.MainApplication;
-import org.openstreetmap.josm.gui.MainMenu;
 
 /**
  * The menu bar from this plugin
@@ -36,6 +49,8 @@ public class RoutingMenu extends JMenu {
     private final JMenuItem reverseMI;
     private final JMenuItem clearMI;
     private final JMenuItem regraphMI;
+    private final JMenuItem isochroneMI;
+    private final JMenuItem matrixMI;
     private final JMenu criteriaM;
     private final JMenu menu;
 
@@ -80,6 +95,14 @@ public class RoutingMenu extends JMenu {
         criteriaM.add(rshorter);
         criteriaM.add(rfaster);
 
+        criteriaM.addSeparator();
+        ButtonGroup algorithmGroup = new ButtonGroup();
+        Algorithm preferred = RoutingModel.getPreferredAlgorithm();
+        addAlgorithmItem(algorithmGroup, tr("Dijkstra"), Algorithm.ROUTING_ALG_DIJKSTRA, preferred);
+        addAlgorithmItem(algorithmGroup, tr("Bellman-Ford"), Algorithm.ROUTING_ALG_BELLMANFORD, preferred);
+        addAlgorithmItem(algorithmGroup, tr("A*"), Algorithm.ROUTING_ALG_ASTAR, preferred);
+        addAlgorithmItem(algorithmGroup, tr("Bidirectional Dijkstra"), Algorithm.ROUTING_ALG_BIDIRECTIONAL_DIJKSTRA, preferred);
+
         criteriaM.addSeparator();
         JCheckBoxMenuItem cbmi = new JCheckBoxMenuItem(tr("Ignore oneways"));
         cbmi.addItemListener(e -> {
@@ -120,13 +143,67 @@ public class RoutingMenu extends JMenu {
         });
         menu.add(clearMI);
 
+        isochroneMI = new JMenuItem(tr("Show isochrone"));
+        isochroneMI.addActionListener(e -> {
+            if (MainApplication.getLayerManager().getActiveLayer() instanceof RoutingLayer) {
+                RoutingLayer layer = (RoutingLayer) MainApplication.getLayerManager().getActiveLayer();
+                RoutingModel routingModel = layer.getRoutingModel();
+                if (routingModel.getSelectedNodes().isEmpty()) {
+                    JOptionPane.showMessageDialog(MainApplication.getMainFrame(),
+                            tr("Please add a start node to the route first."), tr("Show isochrone"), JOptionPane.INFORMATION_MESSAGE);
+                    return;
+                }
+                String key = RoutingLayer.PreferencesKeys.KEY_ISOCHRONE_MINUTES.getKey();
+                Object minutes = JOptionPane.showInputDialog(MainApplication.getMainFrame(),
+                        tr("Maximum travel time from the start node (minutes):"), tr("Show isochrone"),
+                        JOptionPane.QUESTION_MESSAGE, null, null, Config.getPref().getDouble(key, 10));
+                if (minutes == null) {
+                    return;
+                }
+                try {
+                    double value = Double.parseDouble(minutes.toString());
+                    Config.getPref().putDouble(key, value);
+                    routingModel.setIsochrone(routingModel.getSelectedNodes().get(0), value * 60);
+                    MainApplication.getMap().repaint();
+                } catch (NumberFormatException ex) {
+                    Logging.trace(ex);
+                    JOptionPane.showMessageDialog(MainApplication.getMainFrame(),
+                            tr("Invalid travel time: {0}", minutes), tr("Show isochrone"), JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        });
+        menu.add(isochroneMI);
+
+        matrixMI = new JMenuItem(tr("Travel time matrix"));
+        matrixMI.addActionListener(e -> {
+            if (MainApplication.getLayerManager().getActiveLayer() instanceof RoutingLayer) {
+                RoutingLayer layer = (RoutingLayer) MainApplication.getLayerManager().getActiveLayer();
+                RoutingModel routingModel = layer.getRoutingModel();
+                List<Node> nodes = new ArrayList<>(routingModel.getSelectedNodes());
+                if (nodes.size() < 2) {
+                    JOptionPane.showMessageDialog(MainApplication.getMainFrame(),
+                            tr("Please add at least two nodes to the route first."), tr("Travel time matrix"),
+                            JOptionPane.INFORMATION_MESSAGE);
+                    return;
+                }
+                // Build the graph here, the shortest path trees are computed in the background
+                CompactRoutingGraph graph = routingModel.routingGraph.getUpToDateCompactGraph();
+                MainApplication.worker.submit(() -> {
+                    double[][] matrix = RoutingGraph.computeTravelTimeMatrix(graph, nodes, nodes, Double.POSITIVE_INFINITY);
+                    GuiHelper.runInEDT(() -> showTravelTimeMatrix(matrix));
+                });
+            }
+        });
+        menu.add(matrixMI);
+
         regraphMI = new JMenuItem(tr("Reconstruct Graph"));
         regraphMI.addActionListener(e -> {
             if (MainApplication.getLayerManager().getActiveLayer() instanceof RoutingLayer) {
                 RoutingLayer layer = (RoutingLayer) MainApplication.getLayerManager().getActiveLayer();
                 RoutingModel routingModel = layer.getRoutingModel();
                 routingModel.routingGraph.resetGraph();
-                routingModel.routingGraph.createGraph();
+                routingModel.setNodesChanged();
+                MainApplication.getMap().repaint();
             }
         });
         menu.add(regraphMI);
@@ -135,12 +212,36 @@ public class RoutingMenu extends JMenu {
         disableAllItems();
     }
 
+    /**
+     * Adds a menu item selecting the algorithm of the active routing layer. The selected algorithm is also
+     * stored in the preferences, for the next routing layers.
+     */
+    private void addAlgorithmItem(ButtonGroup group, String text, Algorithm algorithm, Algorithm preferred) {
+        JRadioButtonMenuItem item = new JRadioButtonMenuItem(text);
+        item.setSelected(algorithm == preferred);
+        item.addItemListener(e -> {
+            if (e.getStateChange() != ItemEvent.SELECTED) {
+                return;
+            }
+            Config.getPref().put(RoutingLayer.PreferencesKeys.KEY_ROUTE_ALGORITHM.getKey(), algorithm.name());
+            if (MainApplication.getLayerManager().getActiveLayer() instanceof RoutingLayer) {
+                RoutingLayer layer = (RoutingLayer) MainApplication.getLayerManager().getActiveLayer();
+                layer.getRoutingModel().setAlgorithm(algorithm);
+                MainApplication.getMap().repaint();
+            }
+        });
+        group.add(item);
+        criteriaM.add(item);
+    }
+
     public void disableAllItems() {
         startMI.setEnabled(false);
         reverseMI.setEnabled(false);
         clearMI.setEnabled(false);
         criteriaM.setEnabled(false);
         regraphMI.setEnabled(false);
+        isochroneMI.setEnabled(false);
+        matrixMI.setEnabled(false);
     }
 
     public void enableStartItem() {
@@ -152,6 +253,8 @@ public class RoutingMenu extends JMenu {
         clearMI.setEnabled(true);
         criteriaM.setEnabled(true);
         regraphMI.setEnabled(true);
+        isochroneMI.setEnabled(true);
+        matrixMI.setEnabled(true);
     }
 
     public void disableRestOfItems() {
@@ -159,5 +262,27 @@ public class RoutingMenu extends JMenu {
         clearMI.setEnabled(false);
         criteriaM.setEnabled(false);
         regraphMI.setEnabled(false);
+        isochroneMI.setEnabled(false);
+        matrixMI.setEnabled(false);
+    }
+
+    /**
+     * Shows the travel times between the nodes of the route, in minutes, in route order.
+     */
+    private static void showTravelTimeMatrix(double[][] matrix) {
+        String[] columns = new String[matrix.length + 1];
+        Object[][] rows = new Object[matrix.length][matrix.length + 1];
+        columns[0] = tr("From / To");
+        for (int i = 0; i < matrix.length; i++) {
+            columns[i + 1] = Integer.toString(i + 1);
+            rows[i][0] = Integer.toString(i + 1);
+            for (int j = 0; j < matrix.length; j++) {
+                rows[i][j + 1] = Double.isInfinite(matrix[i][j]) ? "-" : String.format("%.1f", matrix[i][j] / 60);
+            }
+        }
+        JTable table = new JTable(rows, columns);
+        table.setEnabled(false);
+        JOptionPane.showMessageDialog(MainApplication.getMainFrame(), new JScrollPane(table),
+                tr("Travel time matrix (minutes)"), JOptionPane.PLAIN_MESSAGE);
     }
 }
@@ -0,0 +1,145 @@
+// License: GPL. For details, see LICENSE file.
+package com.innovant.josm.jrt.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.jgrapht.alg.DijkstraShortestPath;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openstreetmap.josm.data.Preferences;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.spi.preferences.Config;
+
+import com.innovant.josm.jrt.core.RoutingGraph.Algorithm;
+
+/**
+ * Compares the route queries of the JGraphT graph and of the {@link CompactRoutingGraph}, in time per route,
+ * on a synthetic street grid where one street out of three is oneway.
+ * Run with {@code mvn -Pbenchmark -pl routing test-compile exec:exec -Dbenchmark=RoutingGraph}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RoutingGraphBenchmark {
+
+    private static final int ROUTES = 100;
+
+    /** Number of nodes on each side of the grid */
+    @Param("200")
+    public int size;
+
+    private RoutingGraph routingGraph;
+    private final List<Node> origins = new ArrayList<>(ROUTES);
+    private final List<Node> destinations = new ArrayList<>(ROUTES);
+
+    /**
+     * Builds a grid of streets, with slightly moved nodes so that there are no ties between routes.
+     * @param ds the data set receiving the nodes and ways
+     * @param size number of nodes on each side of the grid
+     * @return the grid nodes, by row
+     */
+    private static Node[][] createGrid(DataSet ds, int size) {
+        Random random = new Random(42);
+        Node[][] grid = new Node[size][size];
+        for (int i = 0; i < size; i++) {
+            for (int j = 0; j < size; j++) {
+                grid[i][j] = new Node(new LatLon(48.8 + i * 0.001 + random.nextDouble() * 1e-4,
+                        2.3 + j * 0.0015 + random.nextDouble() * 1e-4));
+                ds.addPrimitive(grid[i][j]);
+            }
+        }
+        String[] highways = {"residential", "tertiary", "secondary", "primary"};
+        for (int i = 0; i < size; i++) {
+            Node[] row = grid[i];
+            Node[] column = new Node[size];
+            for (int j = 0; j < size; j++) {
+                column[j] = grid[j][i];
+            }
+            for (Node[] nodes : Arrays.asList(row, column)) {
+                Way way = new Way();
+                way.setNodes(Arrays.asList(nodes));
+                way.put("highway", highways[i % highways.length]);
+                if (i % 3 == 1) {
+                    way.put("oneway", i % 2 == 0 ? "yes" : "-1");
+                }
+                ds.addPrimitive(way);
+            }
+        }
+        return grid;
+    }
+
+    @Setup
+    public void setUp() {
+        Config.setPreferencesInstance(Preferences.main());
+        DataSet ds = new DataSet();
+        Node[][] grid = createGrid(ds, size);
+        Random random = new Random(7);
+        for (int i = 0; i < ROUTES; i++) {
+            origins.add(grid[random.nextInt(size)][random.nextInt(size)]);
+            destinations.add(grid[random.nextInt(size)][random.nextInt(size)]);
+        }
+        routingGraph = new RoutingGraph(ds);
+        routingGraph.setTypeRoute(RoutingGraph.RouteType.FASTEST);
+        routingGraph.createGraph();
+        routingGraph.createCompactGraph();
+    }
+
+    @Benchmark
+    public void buildGraph() {
+        routingGraph.createGraph();
+    }
+
+    @Benchmark
+    public void buildCompactGraph() {
+        routingGraph.createCompactGraph();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROUTES)
+    public void dijkstra(Blackhole blackhole) {
+        for (int i = 0; i < ROUTES; i++) {
+            blackhole.consume(new DijkstraShortestPath<>(routingGraph.getGraph(), origins.get(i), destinations.get(i))
+                    .getPathEdgeList());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROUTES)
+    public void aStar(Blackhole blackhole) {
+        findPaths(Algorithm.ROUTING_ALG_ASTAR, blackhole);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(ROUTES)
+    public void bidirectionalDijkstra(Blackhole blackhole) {
+        findPaths(Algorithm.ROUTING_ALG_BIDIRECTIONAL_DIJKSTRA, blackhole);
+    }
+
+    private void findPaths(Algorithm algorithm, Blackhole blackhole) {
+        CompactRoutingGraph compactGraph = routingGraph.getCompactGraph();
+        for (int i = 0; i < ROUTES; i++) {
+            blackhole.consume(compactGraph.findPath(origins.get(i), destinations.get(i), algorithm));
+        }
+    }
+}
@@ -0,0 +1,115 @@
+// License: GPL. For details, see LICENSE file.
+package com.innovant.josm.jrt.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jgrapht.Graph;
+import org.jgrapht.alg.DijkstraShortestPath;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+import com.innovant.josm.jrt.core.RoutingGraph.Algorithm;
+import com.innovant.josm.jrt.osm.OsmEdge;
+
+/**
+ * Unit tests of {@link CompactRoutingGraph} class.
+ */
+@BasicPreferences
+class CompactRoutingGraphTest {
+
+    private static Node node(DataSet ds, double lat, double lon) {
+        Node n = new Node(new LatLon(lat, lon));
+        ds.addPrimitive(n);
+        return n;
+    }
+
+    private static Way way(DataSet ds, String highway, Node... nodes) {
+        Way w = new Way();
+        w.setNodes(Arrays.asList(nodes));
+        w.put("highway", highway);
+        ds.addPrimitive(w);
+        return w;
+    }
+
+    private static String edge(Way way, Node from, Node to) {
+        return way.getUniqueId() + ":" + from.getUniqueId() + ">" + to.getUniqueId();
+    }
+
+    /**
+     * Checks that A* and bidirectional Dijkstra find the same routes as the JGraphT Dijkstra implementation,
+     * on a small network with oneways, for both route types.
+     */
+    @Test
+    void testSameRoutesAsJGraphT() {
+        DataSet ds = new DataSet();
+        Node n1 = node(ds, 48.0, 2.0);
+        Node n2 = node(ds, 48.0012, 2.0003);
+        Node n3 = node(ds, 48.0021, 2.0017);
+        Node n4 = node(ds, 48.0007, 2.0031);
+        Node n5 = node(ds, 47.9994, 2.0018);
+        Node n6 = node(ds, 48.0033, 2.0042);
+        Node n7 = node(ds, 48.0051, 2.0009);
+        Node n8 = node(ds, 47.998, 2.006);
+        way(ds, "residential", n1, n2, n3);
+        way(ds, "primary", n3, n4, n5, n1).put("oneway", "yes");
+        way(ds, "secondary", n2, n5);
+        way(ds, "service", n4, n6).put("oneway", "-1");
+        way(ds, "tertiary", n6, n7, n2);
+        way(ds, "primary", n5, n8).put("oneway", "yes");
+        List<Node> nodes = Arrays.asList(n1, n2, n3, n4, n5, n6, n7, n8);
+
+        for (RoutingGraph.RouteType routeType : RoutingGraph.RouteType.values()) {
+            RoutingGraph routingGraph = new RoutingGraph(ds);
+            routingGraph.setTypeRoute(routeType);
+            routingGraph.createGraph();
+            routingGraph.createCompactGraph();
+            Graph<Node, OsmEdge> graph = routingGraph.getGraph();
+            CompactRoutingGraph compact = routingGraph.getCompactGraph();
+            assertEquals(graph.vertexSet().size(), compact.getVertexCount());
+            assertEquals(graph.edgeSet().size(), compact.getEdgeCount());
+
+            for (Node from : nodes) {
+                for (Node to : nodes) {
+                    if (from == to) {
+                        continue;
+                    }
+                    String message = routeType + " " + from.getUniqueId() + " > " + to.getUniqueId();
+                    DijkstraShortestPath<Node, OsmEdge> dijkstra = new DijkstraShortestPath<>(graph, from, to);
+                    List<String> expected = null;
+                    if (dijkstra.getPathEdgeList() != null) {
+                        expected = new ArrayList<>();
+                        for (OsmEdge e : dijkstra.getPathEdgeList()) {
+                            expected.add(edge(e.getWay(), graph.getEdgeSource(e), graph.getEdgeTarget(e)));
+                        }
+                    }
+                    for (Algorithm algorithm : Arrays.asList(Algorithm.ROUTING_ALG_ASTAR, Algorithm.ROUTING_ALG_BIDIRECTIONAL_DIJKSTRA)) {
+                        int[] path = compact.findPath(from, to, algorithm);
+                        if (expected == null) {
+                            assertNull(path, message + " " + algorithm);
+                            continue;
+                        }
+                        assertNotNull(path, message + " " + algorithm);
+                        List<String> actual = new ArrayList<>();
+                        for (int e : path) {
+                            actual.add(edge(compact.getEdgeWay(e), compact.getEdgeSource(e), compact.getEdgeTarget(e)));
+                        }
+                        assertEquals(expected, actual, message + " " + algorithm);
+                        // Compact graph weights are floats
+                        assertEquals(dijkstra.getPathLength(), compact.getPathWeight(path),
+                                dijkstra.getPathLength() * 1e-6, message + " " + algorithm);
+                    }
+                }
+            }
+        }
+    }
+}
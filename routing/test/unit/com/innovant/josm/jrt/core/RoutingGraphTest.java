@@ -0,0 +1,280 @@
+// License: GPL. For details, see LICENSE file.
+package com.innovant.josm.jrt.core;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.jgrapht.Graph;
+import org.jgrapht.alg.DijkstraShortestPath;
+import org.junit.jupiter.api.Test;
+import org.openstreetmap.josm.data.coor.LatLon;
+import org.openstreetmap.josm.data.osm.DataSet;
+import org.openstreetmap.josm.data.osm.Node;
+import org.openstreetmap.josm.data.osm.Way;
+import org.openstreetmap.josm.testutils.annotations.BasicPreferences;
+
+import com.innovant.josm.jrt.core.RoutingGraph.RouteType;
+import com.innovant.josm.jrt.osm.OsmEdge;
+
+/**
+ * Unit tests of {@link RoutingGraph} class.
+ */
+@BasicPreferences
+class RoutingGraphTest {
+
+    private static Node node(DataSet ds, double lat, double lon) {
+        Node n = new Node(new LatLon(lat, lon));
+        ds.addPrimitive(n);
+        return n;
+    }
+
+    private static Way way(DataSet ds, String highway, Node... nodes) {
+        Way w = new Way();
+        w.setNodes(Arrays.asList(nodes));
+        w.put("highway", highway);
+        ds.addPrimitive(w);
+        return w;
+    }
+
+    private static List<String> edges(Graph<Node, OsmEdge> graph) {
+        List<String> edges = new ArrayList<>();
+        for (OsmEdge edge : graph.edgeSet()) {
+            edges.add(edge.getWay().getUniqueId() + ":" + graph.getEdgeSource(edge).getUniqueId() + ">"
+                    + graph.getEdgeTarget(edge).getUniqueId() + ":" + graph.getEdgeWeight(edge));
+        }
+        Collections.sort(edges);
+        return edges;
+    }
+
+    private static void assertSameGraph(DataSet ds, RoutingGraph incremental) {
+        RoutingGraph fresh = new RoutingGraph(ds);
+        fresh.getRoutingProfile().setOnewayUse(incremental.getRoutingProfile().isOnewayUsed());
+        fresh.setTypeRoute(incremental.getTypeRoute());
+        fresh.setWaySpeeds(incremental.getWaySpeeds());
+        fresh.createGraph();
+        assertEquals(fresh.getGraph().vertexSet(), incremental.getGraph().vertexSet());
+        assertEquals(edges(fresh.getGraph()), edges(incremental.getGraph()));
+    }
+
+    /**
+     * Checks that the graph updated from data set events is the same as a graph built from scratch.
+     */
+    @Test
+    void testIncrementalUpdates() {
+        DataSet ds = new DataSet();
+        Node n1 = node(ds, 48.0, 2.0);
+        Node n2 = node(ds, 48.001, 2.0);
+        Node n3 = node(ds, 48.002, 2.001);
+        Node n4 = node(ds, 48.003, 2.001);
+        Way w1 = way(ds, "residential", n1, n2, n3);
+        Way w2 = way(ds, "primary", n3, n4);
+        w2.put("oneway", "yes");
+
+        RoutingGraph graph = new RoutingGraph(ds);
+        graph.createGraph();
+        ds.addDataSetListener(graph);
+        assertSameGraph(ds, graph);
+
+        // Add a way
+        Node n5 = node(ds, 48.004, 2.002);
+        Way w3 = way(ds, "service", n4, n5);
+        assertSameGraph(ds, graph);
+
+        // Change tags
+        w2.put("oneway", "-1");
+        assertSameGraph(ds, graph);
+        w1.put("highway", "proposed");
+        assertSameGraph(ds, graph);
+        w1.put("highway", "residential");
+        assertSameGraph(ds, graph);
+
+        // Move a node
+        n2.setCoor(new LatLon(48.0015, 2.0005));
+        assertSameGraph(ds, graph);
+
+        // Change way nodes
+        w1.addNode(n5);
+        assertSameGraph(ds, graph);
+        w1.removeNode(n2);
+        assertSameGraph(ds, graph);
+
+        // Remove a way, its nodes are still used by other ways
+        ds.removePrimitive(w3);
+        assertSameGraph(ds, graph);
+        w2.setDeleted(true);
+        assertSameGraph(ds, graph);
+        w2.setDeleted(false);
+        assertSameGraph(ds, graph);
+
+        // Ignore oneways
+        graph.getRoutingProfile().setOnewayUse(false);
+        ds.removePrimitive(w2);
+        ds.addPrimitive(w2);
+        assertSameGraph(ds, graph);
+        assertEquals(0, graph.getGraph().vertexSet().stream().filter(n -> n.getDataSet() == null).count());
+    }
+
+    /**
+     * Checks that routes follow the "Ignore oneways" option when it is toggled, with both graph implementations.
+     */
+    @Test
+    void testOnewayToggle() {
+        DataSet ds = new DataSet();
+        Node n1 = node(ds, 48.0, 2.0);
+        Node n2 = node(ds, 48.003, 2.004);
+        Node n3 = node(ds, 48.0, 2.003);
+        Way w1 = way(ds, "residential", n1, n2, n3);
+        Way w2 = way(ds, "residential", n1, n3);
+        w2.put("oneway", "yes");
+        List<Node> route = Arrays.asList(n3, n1);
+
+        for (RoutingGraph.Algorithm algorithm : RoutingGraph.Algorithm.values()) {
+            RoutingGraph graph = new RoutingGraph(ds);
+            ds.addDataSetListener(graph);
+            try {
+                // Build the JGraphT graph too, it must follow the option even when the compact graph is used
+                graph.createGraph();
+                assertEquals(Arrays.asList(w1, w1), ways(graph.applyAlgorithm(route, algorithm)), algorithm.name());
+
+                graph.getRoutingProfile().setOnewayUse(false);
+                assertEquals(Collections.singletonList(w2), ways(graph.applyAlgorithm(route, algorithm)), algorithm.name());
+                assertSameGraph(ds, graph);
+
+                graph.getRoutingProfile().setOnewayUse(true);
+                assertEquals(Arrays.asList(w1, w1), ways(graph.applyAlgorithm(route, algorithm)), algorithm.name());
+                assertSameGraph(ds, graph);
+            } finally {
+                ds.removeDataSetListener(graph);
+            }
+        }
+    }
+
+    /**
+     * Checks that the edge weights follow the route type when it is toggled, including the edges of ways edited
+     * between the toggle and the next route.
+     */
+    @Test
+    void testRouteTypeToggle() {
+        DataSet ds = new DataSet();
+        Node n1 = node(ds, 48.0, 2.0);
+        Node n2 = node(ds, 48.001, 2.0);
+        Node n3 = node(ds, 48.002, 2.001);
+        Node n4 = node(ds, 48.003, 2.001);
+        Way w1 = way(ds, "residential", n1, n2);
+        way(ds, "primary", n2, n3);
+        List<Node> route = Arrays.asList(n1, n3);
+
+        RoutingGraph graph = new RoutingGraph(ds);
+        graph.getRoutingProfile().setWayTypeSpeed("residential", 30);
+        graph.getRoutingProfile().setWayTypeSpeed("secondary", 70);
+        graph.getRoutingProfile().setWayTypeSpeed("primary", 90);
+        ds.addDataSetListener(graph);
+        try {
+            graph.createGraph();
+            graph.applyAlgorithm(route, RoutingGraph.Algorithm.ROUTING_ALG_DIJKSTRA);
+
+            graph.setTypeRoute(RouteType.FASTEST);
+            way(ds, "primary", n3, n4);
+            graph.applyAlgorithm(route, RoutingGraph.Algorithm.ROUTING_ALG_DIJKSTRA);
+            assertSameGraph(ds, graph);
+
+            graph.setTypeRoute(RouteType.SHORTEST);
+            w1.put("highway", "secondary");
+            graph.applyAlgorithm(route, RoutingGraph.Algorithm.ROUTING_ALG_DIJKSTRA);
+            assertSameGraph(ds, graph);
+        } finally {
+            ds.removeDataSetListener(graph);
+        }
+    }
+
+    /**
+     * Checks that tag changes only invalidate the graphs if they concern a way used for routing, before or after
+     * the change.
+     */
+    @Test
+    void testTagChanges() {
+        DataSet ds = new DataSet();
+        Node n1 = node(ds, 48.0, 2.0);
+        Node n2 = node(ds, 48.001, 2.0);
+        Way w1 = way(ds, "residential", n1, n2);
+        Way building = way(ds, "residential", n1, n2);
+        building.remove("highway");
+        building.put("building", "yes");
+
+        RoutingGraph graph = new RoutingGraph(ds);
+        ds.addDataSetListener(graph);
+        try {
+            CompactRoutingGraph compact = graph.getUpToDateCompactGraph();
+            int count = graph.getModificationCount();
+            building.put("name", "Town hall");
+            assertEquals(count, graph.getModificationCount());
+            assertSame(compact, graph.getCompactGraph());
+
+            // Only the compact graph is built, it still contains the way
+            w1.put("highway", "proposed");
+            assertNotEquals(count, graph.getModificationCount());
+            assertNull(graph.getCompactGraph());
+            assertEquals(0, graph.getUpToDateCompactGraph().getEdgeCount());
+        } finally {
+            ds.removeDataSetListener(graph);
+        }
+    }
+
+    private static List<Way> ways(List<OsmEdge> path) {
+        List<Way> ways = new ArrayList<>();
+        for (OsmEdge edge : path) {
+            ways.add(edge.getWay());
+        }
+        return ways;
+    }
+
+    /**
+     * Checks the travel time matrix and the isochrone against the JGraphT shortest paths between each pair of nodes.
+     */
+    @Test
+    void testTravelTimeMatrix() {
+        DataSet ds = new DataSet();
+        Node n1 = node(ds, 48.0, 2.0);
+        Node n2 = node(ds, 48.001, 2.0);
+        Node n3 = node(ds, 48.002, 2.001);
+        Node n4 = node(ds, 48.003, 2.001);
+        Node n5 = node(ds, 48.01, 2.01);
+        way(ds, "residential", n1, n2, n3);
+        way(ds, "primary", n3, n4).put("oneway", "yes");
+        List<Node> nodes = Arrays.asList(n1, n2, n3, n4, n5);
+
+        RoutingGraph graph = new RoutingGraph(ds);
+        double[][] matrix = graph.computeTravelTimeMatrix(nodes, nodes, Double.POSITIVE_INFINITY);
+        graph.createGraph();
+        for (int i = 0; i < nodes.size(); i++) {
+            for (int j = 0; j < nodes.size(); j++) {
+                double expected = 0;
+                if (!graph.getGraph().containsVertex(nodes.get(i)) || !graph.getGraph().containsVertex(nodes.get(j))) {
+                    // n5 is not on any way
+                    expected = Double.POSITIVE_INFINITY;
+                } else if (i != j) {
+                    // JGraphT weights are lengths divided by speeds in km/h
+                    expected = new DijkstraShortestPath<>(graph.getGraph(), nodes.get(i), nodes.get(j)).getPathLength() * 3.6;
+                }
+                assertEquals(expected, matrix[i][j], Double.isInfinite(expected) ? 0 : expected * 1e-6, i + " > " + j);
+            }
+        }
+        // Oneway
+        assertEquals(Double.POSITIVE_INFINITY, matrix[3][2]);
+
+        // Only the first edge can be traversed within the travel time to n2
+        List<OsmEdge> isochrone = graph.computeIsochrone(n1, matrix[0][1] + 1e-3);
+        assertEquals(1, isochrone.size());
+        assertEquals(n1.getEastNorth(), isochrone.get(0).fromEastNorth());
+        assertEquals(n2.getEastNorth(), isochrone.get(0).toEastNorth());
+        assertEquals(5, graph.computeIsochrone(n1, Double.POSITIVE_INFINITY).size());
+        assertEquals(0, graph.computeIsochrone(n5, Double.POSITIVE_INFINITY).size());
+    }
+}